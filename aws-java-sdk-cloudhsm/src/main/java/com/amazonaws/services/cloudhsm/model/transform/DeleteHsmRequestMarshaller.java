@@ -32,6 +32,7 @@ import com.amazonaws.Request;
 import com.amazonaws.DefaultRequest;
 import com.amazonaws.http.HttpMethodName;
 import com.amazonaws.services.cloudhsm.model.*;
+import com.amazonaws.transform.JsonRequestContent;
 import com.amazonaws.transform.Marshaller;
 import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.StringUtils;
@@ -56,8 +57,8 @@ public class DeleteHsmRequestMarshaller implements Marshaller<Request<DeleteHsmR
         request.setResourcePath("");
         
         try {
-          StringWriter stringWriter = new StringWriter();
-          JSONWriter jsonWriter = new JSONWriter(stringWriter);
+          JsonRequestContent jsonContent = new JsonRequestContent();
+          JSONWriter jsonWriter = jsonContent.getJsonWriter();
 
           jsonWriter.object();
           
@@ -67,10 +68,8 @@ public class DeleteHsmRequestMarshaller implements Marshaller<Request<DeleteHsmR
 
           jsonWriter.endObject();
 
-          String snippet = stringWriter.toString();
-          byte[] content = snippet.getBytes(UTF8);
-          request.setContent(new StringInputStream(snippet));
-          request.addHeader("Content-Length", Integer.toString(content.length));
+          request.setContent(jsonContent.toInputStream());
+          request.addHeader("Content-Length", Integer.toString(jsonContent.getContentLength()));
           request.addHeader("Content-Type", "application/x-amz-json-1.1");
         } catch(Throwable t) {
           throw new AmazonClientException("Unable to marshall request to JSON: " + t.getMessage(), t);
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.cloudwatch.buffered;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.internal.BufferedPublisherSupport;
+import com.amazonaws.services.cloudwatch.AmazonCloudWatch;
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.PutMetricDataRequest;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+import com.amazonaws.util.HttpUtils;
+import com.amazonaws.util.StringUtils;
+import com.amazonaws.util.VersionInfoUtils;
+
+/**
+ * AmazonCloudWatchBufferedPublisher publishes metrics to Amazon CloudWatch
+ * with a fraction of the requests. <br>
+ *
+ * Rather than putting each datapoint in a PutMetricData call, the publisher
+ * aggregates the datapoints of each metric, by namespace, name, unit and
+ * dimensions, into a statistic set (sample count, sum, minimum and maximum)
+ * over a configurable flush interval (default=60s). At the end of each
+ * interval, a background thread packs the statistic sets into PutMetricData
+ * requests of up to 20 metrics and 40 KB, and sends them concurrently.
+ * Recording a datapoint doesn't lock: the statistics of each metric are
+ * striped over the recording threads. <br>
+ *
+ * Requests that fail because of throttling or a server error are retried
+ * with a backoff; those that still fail are logged, and their datapoints
+ * dropped. <br>
+ *
+ * AmazonCloudWatchBufferedPublisher is thread-safe.<br>
+ */
+@ThreadSafe
+public class AmazonCloudWatchBufferedPublisher {
+
+    public static final String USER_AGENT = AmazonCloudWatchBufferedPublisher.class.getSimpleName() + "/" + VersionInfoUtils.getVersion();
+
+    private static final Log log = LogFactory.getLog(AmazonCloudWatchBufferedPublisher.class);
+
+    /** The maximum number of metrics of a PutMetricData call allowed by CloudWatch. */
+    private static final int MAX_METRICS_PER_REQUEST = 20;
+
+    /** The maximum size, in bytes, of a PutMetricData request allowed by CloudWatch. */
+    private static final int MAX_REQUEST_BYTES = 40 * 1024;
+
+    /** The maximum number of dimensions of a metric allowed by CloudWatch. */
+    private static final int MAX_DIMENSIONS = 10;
+
+    /** The maximum time (milliseconds) before a failed request is retried. */
+    private static final long MAX_RETRY_BACKOFF_MS = 20 * 1000;
+
+    private static final Comparator<Dimension> BY_NAME = new Comparator<Dimension>() {
+        @Override
+        public int compare(Dimension a, Dimension b) {
+            return a.getName().compareTo(b.getName());
+        }
+    };
+
+    private final AmazonCloudWatch cloudWatch;
+    private final MetricsPublisherConfig config;
+    /** Counts the requests being sent, and flushes at the end of each interval */
+    private final BufferedPublisherSupport support;
+
+    private final ConcurrentMap<List<Object>, MetricAccumulator> accumulators =
+            new ConcurrentHashMap<List<Object>, MetricAccumulator>();
+
+    private final AtomicLong droppedDatapoints = new AtomicLong();
+
+    public AmazonCloudWatchBufferedPublisher(AmazonCloudWatch cloudWatch) {
+        this(cloudWatch, new MetricsPublisherConfig());
+    }
+
+    public AmazonCloudWatchBufferedPublisher(AmazonCloudWatch cloudWatch,
+            MetricsPublisherConfig config) {
+        this(cloudWatch, config, null);
+    }
+
+    /**
+     * Constructs a publisher which sends the requests on the given executor,
+     * which isn't shut down by this publisher. If the executor is null, the
+     * publisher uses its own pool of
+     * {@link MetricsPublisherConfig#getMaxConcurrency()} threads.
+     */
+    public AmazonCloudWatchBufferedPublisher(AmazonCloudWatch cloudWatch,
+            MetricsPublisherConfig config, ExecutorService executor) {
+        config.validate();
+        this.cloudWatch = cloudWatch;
+        this.config = new MetricsPublisherConfig(config);
+        // The requests aren't limited in size, only counted
+        this.support = new BufferedPublisherSupport("cloudwatch-publisher-", executor,
+                config.getMaxConcurrency(), 0);
+        support.schedulePeriodically(new Runnable() {
+            @Override
+            public void run() {
+                flush();
+            }
+        }, config.getFlushIntervalMs());
+    }
+
+    /**
+     * Records a datapoint of the given metric, without unit or dimensions.
+     *
+     * @throws AmazonClientException
+     *             if the metric or value is invalid, or the publisher has
+     *             been shut down
+     */
+    public void putMetric(String namespace, String metricName, double value) {
+        putMetric(namespace, metricName, value, null);
+    }
+
+    /**
+     * Records a datapoint of the given metric.
+     *
+     * @param unit
+     *            the unit of the metric, or null
+     * @param dimensions
+     *            the dimensions of the metric, up to 10, in any order
+     * @throws AmazonClientException
+     *             if the metric or value is invalid, or the publisher has
+     *             been shut down
+     */
+    public void putMetric(String namespace, String metricName, double value,
+            StandardUnit unit, Dimension... dimensions) {
+        record(namespace, metricName, unit == null ? null : unit.toString(),
+                dimensions == null ? Collections.<Dimension>emptyList() : Arrays.asList(dimensions),
+                1, value, value, value);
+    }
+
+    /**
+     * Records the datapoints of the given request, each either a single value
+     * or a statistic set. This eases replacing calls to
+     * {@link AmazonCloudWatch#putMetricData(PutMetricDataRequest)}; the
+     * timestamps of the datapoints are ignored.
+     *
+     * @throws AmazonClientException
+     *             if a metric or value is invalid, or the publisher has
+     *             been shut down
+     */
+    public void putMetricData(PutMetricDataRequest putMetricDataRequest) {
+        for (MetricDatum datum : putMetricDataRequest.getMetricData()) {
+            List<Dimension> dimensions = datum.getDimensions();
+            StatisticSet stats = datum.getStatisticValues();
+            if (datum.getValue() != null) {
+                double value = datum.getValue();
+                record(putMetricDataRequest.getNamespace(), datum.getMetricName(),
+                        datum.getUnit(), dimensions, 1, value, value, value);
+            } else if (stats != null) {
+                if (stats.getSampleCount() == null || stats.getSum() == null
+                        || stats.getMinimum() == null || stats.getMaximum() == null) {
+                    throw new AmazonClientException("The sample count, sum, minimum and maximum of metric "
+                            + datum.getMetricName() + " must be specified");
+                }
+                record(putMetricDataRequest.getNamespace(), datum.getMetricName(),
+                        datum.getUnit(), dimensions, stats.getSampleCount(),
+                        stats.getSum(), stats.getMinimum(), stats.getMaximum());
+            } else {
+                throw new AmazonClientException("The value or statistic values of metric "
+                        + datum.getMetricName() + " must be specified");
+            }
+        }
+    }
+
+    /**
+     * Sends the metrics aggregated so far, without waiting for them to be
+     * sent.
+     */
+    public void flush() {
+        Date timestamp = new Date();
+        Map<String, List<MetricDatum>> metricsByNamespace = new HashMap<String, List<MetricDatum>>();
+        for (Map.Entry<List<Object>, MetricAccumulator> entry : accumulators.entrySet()) {
+            MetricAccumulator accumulator = entry.getValue();
+            MetricAccumulator.Stats stats = accumulator.harvest();
+            if (stats == null) {
+                // Idle for an interval; datapoints recorded meanwhile are
+                // harvested on retiring, or recorded into a new accumulator
+                if (accumulators.remove(entry.getKey(), accumulator)) {
+                    stats = accumulator.retire();
+                }
+                if (stats == null) {
+                    continue;
+                }
+            }
+            List<MetricDatum> metrics = metricsByNamespace.get(accumulator.namespace);
+            if (metrics == null) {
+                metrics = new ArrayList<MetricDatum>();
+                metricsByNamespace.put(accumulator.namespace, metrics);
+            }
+            metrics.add(new MetricDatum()
+                    .withMetricName(accumulator.metricName)
+                    .withDimensions(accumulator.dimensions)
+                    .withUnit(accumulator.unit)
+                    .withTimestamp(timestamp)
+                    .withStatisticValues(new StatisticSet()
+                            .withSampleCount(stats.sampleCount)
+                            .withSum(stats.sum)
+                            .withMinimum(stats.minimum)
+                            .withMaximum(stats.maximum)));
+        }
+        for (Map.Entry<String, List<MetricDatum>> entry : metricsByNamespace.entrySet()) {
+            send(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Returns the number of datapoints dropped, because there were too many
+     * distinct metrics or their request failed.
+     */
+    public long getDroppedDatapointCount() {
+        return droppedDatapoints.get();
+    }
+
+    /**
+     * Sends the metrics aggregated so far, waiting for them to be sent, and
+     * releases the threads of this publisher. The CloudWatch client isn't
+     * shut down.
+     *
+     * @throws AmazonClientException
+     *             if the thread is interrupted while waiting
+     */
+    public void shutdown() {
+        support.markShutdown();
+        try {
+            flush();
+            support.awaitOutstanding();
+        } finally {
+            support.releaseThreads();
+        }
+    }
+
+    private void record(String namespace, String metricName, String unit,
+            List<Dimension> dimensions, double sampleCount, double sum,
+            double minimum, double maximum) {
+        if (support.isShutdown()) {
+            throw new AmazonClientException("The publisher has been shut down");
+        }
+        if (namespace == null || metricName == null) {
+            throw new AmazonClientException("The namespace and metric name must be specified");
+        }
+        if (sampleCount <= 0 || isInvalid(sampleCount)
+                || isInvalid(sum) || isInvalid(minimum) || isInvalid(maximum)) {
+            throw new AmazonClientException("Invalid value for metric " + metricName);
+        }
+        List<Dimension> sortedDimensions = dimensions == null
+                ? new ArrayList<Dimension>()
+                : new ArrayList<Dimension>(dimensions);
+        if (sortedDimensions.size() > MAX_DIMENSIONS) {
+            throw new AmazonClientException("Metric " + metricName + " has more than "
+                    + MAX_DIMENSIONS + " dimensions");
+        }
+        Collections.sort(sortedDimensions, BY_NAME);
+        List<Object> key = Arrays.<Object>asList(namespace, metricName, unit, sortedDimensions);
+
+        while (true) {
+            MetricAccumulator accumulator = accumulators.get(key);
+            if (accumulator == null) {
+                if (accumulators.size() >= config.getMaxMetrics()) {
+                    droppedDatapoints.addAndGet((long) sampleCount);
+                    return;
+                }
+                MetricAccumulator created = new MetricAccumulator(namespace,
+                        metricName, unit, sortedDimensions);
+                accumulator = accumulators.putIfAbsent(key, created);
+                if (accumulator == null) {
+                    accumulator = created;
+                }
+            }
+            if (accumulator.record(sampleCount, sum, minimum, maximum)) {
+                return;
+            }
+            // Retired by a flush; record into a new accumulator
+        }
+    }
+
+    private static boolean isInvalid(double value) {
+        return Double.isNaN(value) || Double.isInfinite(value);
+    }
+
+    /**
+     * Sends the given metrics of a namespace in as few requests as possible,
+     * within the limits of CloudWatch.
+     */
+    private void send(String namespace, List<MetricDatum> metrics) {
+        int fixedBytes = parameterSize("Action", "PutMetricData")
+                + parameterSize("Version", "2010-08-01")
+                + parameterSize("Namespace", namespace);
+        List<MetricDatum> batch = new ArrayList<MetricDatum>();
+        int batchBytes = fixedBytes;
+        for (MetricDatum datum : metrics) {
+            int bytes = sizeOf(datum);
+            if (batch.size() == MAX_METRICS_PER_REQUEST
+                    || (!batch.isEmpty() && batchBytes + bytes > MAX_REQUEST_BYTES)) {
+                send(new PutMetricDataRequest().withNamespace(namespace).withMetricData(batch));
+                batch = new ArrayList<MetricDatum>();
+                batchBytes = fixedBytes;
+            }
+            batch.add(datum);
+            batchBytes += bytes;
+        }
+        if (!batch.isEmpty()) {
+            send(new PutMetricDataRequest().withNamespace(namespace).withMetricData(batch));
+        }
+    }
+
+    private void send(PutMetricDataRequest request) {
+        request.getRequestClientOptions().appendUserAgent(USER_AGENT);
+        // Doesn't wait, the requests aren't limited in size
+        support.reserve(1, 0);
+        send(request, 0);
+    }
+
+    /**
+     * Sends the given request on the executor; or drops it if the executor
+     * rejects it.
+     */
+    private void send(final PutMetricDataRequest request, final int failures) {
+        try {
+            support.execute(new Runnable() {
+                @Override
+                public void run() {
+                    putMetricData(request, failures);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            drop(request, e);
+        }
+    }
+
+    /**
+     * Sends the given request, and retries it after a backoff if it fails
+     * because of throttling or a server error.
+     */
+    private void putMetricData(final PutMetricDataRequest request, final int failures) {
+        try {
+            cloudWatch.putMetricData(request);
+        } catch (AmazonClientException e) {
+            if (BufferedPublisherSupport.isRetryable(e) && failures < config.getMaxRetries()) {
+                long backoffMs = BufferedPublisherSupport.backoffMs(config.getRetryBackoffMs(),
+                        failures + 1, MAX_RETRY_BACKOFF_MS);
+                try {
+                    support.schedule(new Runnable() {
+                        @Override
+                        public void run() {
+                            send(request, failures + 1);
+                        }
+                    }, backoffMs);
+                    return;
+                } catch (RejectedExecutionException rejected) {
+                    // Dropped below
+                }
+            }
+            drop(request, e);
+            return;
+        } catch (RuntimeException e) {
+            drop(request, e);
+            return;
+        }
+        support.release(1, 0);
+    }
+
+    private void drop(PutMetricDataRequest request, Exception cause) {
+        long datapoints = 0;
+        for (MetricDatum datum : request.getMetricData()) {
+            datapoints += datum.getStatisticValues().getSampleCount().longValue();
+        }
+        droppedDatapoints.addAndGet(datapoints);
+        log.warn("Unable to send " + request.getMetricData().size()
+                + " metrics of namespace " + request.getNamespace(), cause);
+        support.release(1, 0);
+    }
+
+    /**
+     * Returns the size of the given metric in a request, as an upper bound of
+     * the size of its encoded parameters.
+     */
+    private static int sizeOf(MetricDatum datum) {
+        // Member indexes of up to two digits
+        String prefix = "MetricData.member.NN.";
+        int size = parameterSize(prefix + "MetricName", datum.getMetricName())
+                 + parameterSize(prefix + "Unit", datum.getUnit())
+                 + parameterSize(prefix + "Timestamp", StringUtils.fromDate(datum.getTimestamp()));
+        StatisticSet stats = datum.getStatisticValues();
+        size += parameterSize(prefix + "StatisticValues.SampleCount", StringUtils.fromDouble(stats.getSampleCount()))
+              + parameterSize(prefix + "StatisticValues.Sum", StringUtils.fromDouble(stats.getSum()))
+              + parameterSize(prefix + "StatisticValues.Minimum", StringUtils.fromDouble(stats.getMinimum()))
+              + parameterSize(prefix + "StatisticValues.Maximum", StringUtils.fromDouble(stats.getMaximum()));
+        for (Dimension dimension : datum.getDimensions()) {
+            size += parameterSize(prefix + "Dimensions.member.NN.Name", dimension.getName())
+                  + parameterSize(prefix + "Dimensions.member.NN.Value", dimension.getValue());
+        }
+        return size;
+    }
+
+    /** Returns the size of an encoded parameter, with its separator. */
+    private static int parameterSize(String name, String value) {
+        if (value == null) {
+            return 0;
+        }
+        return name.length() + 1 + HttpUtils.urlEncode(value, false).length() + 1;
+    }
+}
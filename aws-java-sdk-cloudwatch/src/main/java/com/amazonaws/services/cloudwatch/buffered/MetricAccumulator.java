@@ -0,0 +1,133 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.cloudwatch.buffered;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.amazonaws.services.cloudwatch.model.Dimension;
+
+/**
+ * Accumulates the statistics of the datapoints recorded for a metric during
+ * a flush interval, without locking. The statistics are spread over stripes
+ * picked by thread, each holding an immutable set of statistics replaced by
+ * compare-and-set, so that threads recording the same metric rarely contend,
+ * and the statistics are harvested consistently.
+ * <p>
+ * An accumulator idle for a flush interval is retired, after which recording
+ * into it fails, so that the recording thread uses a new accumulator instead
+ * and no datapoint is lost.
+ */
+final class MetricAccumulator {
+
+    private static final int STRIPES = stripes();
+    private static final Stats RETIRED = new Stats(0, 0, 0, 0);
+
+    final String namespace;
+    final String metricName;
+    /** May be null */
+    final String unit;
+    /** Sorted by name */
+    final List<Dimension> dimensions;
+
+    /** Each element is null, the statistics of a stripe, or RETIRED */
+    private final AtomicReferenceArray<Stats> stripes = new AtomicReferenceArray<Stats>(STRIPES);
+
+    MetricAccumulator(String namespace, String metricName, String unit,
+            List<Dimension> dimensions) {
+        this.namespace = namespace;
+        this.metricName = metricName;
+        this.unit = unit;
+        this.dimensions = dimensions;
+    }
+
+    /**
+     * Adds the given statistics to this accumulator; or returns false if it
+     * has been retired.
+     */
+    boolean record(double sampleCount, double sum, double minimum, double maximum) {
+        int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+        while (true) {
+            Stats current = stripes.get(stripe);
+            if (current == RETIRED) {
+                return false;
+            }
+            Stats updated = current == null
+                    ? new Stats(sampleCount, sum, minimum, maximum)
+                    : current.plus(sampleCount, sum, minimum, maximum);
+            if (stripes.compareAndSet(stripe, current, updated)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Removes and returns the statistics accumulated so far; or null if there
+     * are none.
+     */
+    Stats harvest() {
+        return harvest(null);
+    }
+
+    /**
+     * Retires this accumulator, and returns the statistics accumulated since
+     * the last harvest; or null if there are none.
+     */
+    Stats retire() {
+        return harvest(RETIRED);
+    }
+
+    private Stats harvest(Stats replacement) {
+        Stats total = null;
+        for (int i = 0; i < STRIPES; i++) {
+            Stats stats = stripes.getAndSet(i, replacement);
+            if (stats != null && stats != RETIRED) {
+                total = total == null
+                        ? stats
+                        : total.plus(stats.sampleCount, stats.sum, stats.minimum, stats.maximum);
+            }
+        }
+        return total;
+    }
+
+    /** Returns the power of two at least the number of processors, up to 64. */
+    private static int stripes() {
+        int processors = Math.min(Runtime.getRuntime().availableProcessors(), 64);
+        int stripes = 1;
+        while (stripes < processors) {
+            stripes <<= 1;
+        }
+        return stripes;
+    }
+
+    static final class Stats {
+        final double sampleCount;
+        final double sum;
+        final double minimum;
+        final double maximum;
+
+        Stats(double sampleCount, double sum, double minimum, double maximum) {
+            this.sampleCount = sampleCount;
+            this.sum = sum;
+            this.minimum = minimum;
+            this.maximum = maximum;
+        }
+
+        Stats plus(double sampleCount, double sum, double minimum, double maximum) {
+            return new Stats(this.sampleCount + sampleCount, this.sum + sum,
+                    Math.min(this.minimum, minimum), Math.max(this.maximum, maximum));
+        }
+    }
+}
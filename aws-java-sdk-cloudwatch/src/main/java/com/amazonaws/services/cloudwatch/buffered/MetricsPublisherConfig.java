@@ -0,0 +1,207 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.cloudwatch.buffered;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * The configuration of an {@link AmazonCloudWatchBufferedPublisher}.
+ */
+public class MetricsPublisherConfig {
+
+    /** The time (milliseconds) over which datapoints are aggregated before being sent. */
+    private long flushIntervalMs;
+
+    public static final long FLUSH_INTERVAL_MS_DEFAULT = 60 * 1000;
+
+    /** The maximum number of distinct metrics aggregated during a flush interval. */
+    private int maxMetrics;
+
+    public static final int MAX_METRICS_DEFAULT = 10000;
+
+    /** The maximum number of times a request that failed to be sent is retried. */
+    private int maxRetries;
+
+    public static final int MAX_RETRIES_DEFAULT = 3;
+
+    /** The time (milliseconds) before the first retry of a failed request. */
+    private long retryBackoffMs;
+
+    public static final long RETRY_BACKOFF_MS_DEFAULT = 200;
+
+    /** The number of threads of the publisher's own executor. */
+    private int maxConcurrency;
+
+    public static final int MAX_CONCURRENCY_DEFAULT = 4;
+
+    public MetricsPublisherConfig() {
+        flushIntervalMs = FLUSH_INTERVAL_MS_DEFAULT;
+        maxMetrics = MAX_METRICS_DEFAULT;
+        maxRetries = MAX_RETRIES_DEFAULT;
+        retryBackoffMs = RETRY_BACKOFF_MS_DEFAULT;
+        maxConcurrency = MAX_CONCURRENCY_DEFAULT;
+    }
+
+    /** copy constructor */
+    public MetricsPublisherConfig(MetricsPublisherConfig other) {
+        flushIntervalMs = other.flushIntervalMs;
+        maxMetrics = other.maxMetrics;
+        maxRetries = other.maxRetries;
+        retryBackoffMs = other.retryBackoffMs;
+        maxConcurrency = other.maxConcurrency;
+    }
+
+    @Override
+    public String toString() {
+        return "MetricsPublisherConfig [flushIntervalMs=" + flushIntervalMs
+                + ", maxMetrics=" + maxMetrics
+                + ", maxRetries=" + maxRetries
+                + ", retryBackoffMs=" + retryBackoffMs
+                + ", maxConcurrency=" + maxConcurrency + "]";
+    }
+
+    /**
+     * The time (milliseconds) over which the datapoints of each metric are
+     * aggregated into a statistic set before being sent. CloudWatch stores
+     * metrics with a resolution of one minute, the default interval.
+     */
+    public long getFlushIntervalMs() {
+        return flushIntervalMs;
+    }
+
+    /**
+     * The time (milliseconds) over which the datapoints of each metric are
+     * aggregated into a statistic set before being sent. CloudWatch stores
+     * metrics with a resolution of one minute, the default interval.
+     */
+    public void setFlushIntervalMs(long flushIntervalMs) {
+        this.flushIntervalMs = flushIntervalMs;
+    }
+
+    public MetricsPublisherConfig withFlushIntervalMs(long flushIntervalMs) {
+        setFlushIntervalMs(flushIntervalMs);
+        return this;
+    }
+
+    /**
+     * The maximum number of distinct metrics, by namespace, name, unit and
+     * dimensions, aggregated during a flush interval. The datapoints of
+     * further metrics are dropped, bounding the memory of the publisher.
+     */
+    public int getMaxMetrics() {
+        return maxMetrics;
+    }
+
+    /**
+     * The maximum number of distinct metrics, by namespace, name, unit and
+     * dimensions, aggregated during a flush interval. The datapoints of
+     * further metrics are dropped, bounding the memory of the publisher.
+     */
+    public void setMaxMetrics(int maxMetrics) {
+        this.maxMetrics = maxMetrics;
+    }
+
+    public MetricsPublisherConfig withMaxMetrics(int maxMetrics) {
+        setMaxMetrics(maxMetrics);
+        return this;
+    }
+
+    /**
+     * The maximum number of times a request that failed to be sent, because
+     * of throttling or a server error, is retried before its datapoints are
+     * dropped.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * The maximum number of times a request that failed to be sent, because
+     * of throttling or a server error, is retried before its datapoints are
+     * dropped.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public MetricsPublisherConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) before the first retry of a failed request,
+     * doubled for each further retry.
+     */
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    /**
+     * The time (milliseconds) before the first retry of a failed request,
+     * doubled for each further retry.
+     */
+    public void setRetryBackoffMs(long retryBackoffMs) {
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    public MetricsPublisherConfig withRetryBackoffMs(long retryBackoffMs) {
+        setRetryBackoffMs(retryBackoffMs);
+        return this;
+    }
+
+    /**
+     * The number of threads sending the PutMetricData requests of a flush
+     * concurrently, when the publisher uses its own executor.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * The number of threads sending the PutMetricData requests of a flush
+     * concurrently, when the publisher uses its own executor.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public MetricsPublisherConfig withMaxConcurrency(int maxConcurrency) {
+        setMaxConcurrency(maxConcurrency);
+        return this;
+    }
+
+    /**
+     * this method checks the config for validity. If the config is deemed to
+     * be invalid, an informative exception is thrown.
+     *
+     * @throws AmazonClientException
+     *             with a message explaining why the config was invalid
+     */
+    void validate() {
+        if (flushIntervalMs <= 0) {
+            throw new AmazonClientException("The flush interval must be positive");
+        }
+        if (maxMetrics <= 0) {
+            throw new AmazonClientException("The maximum metrics must be positive");
+        }
+        if (maxRetries < 0 || retryBackoffMs < 0) {
+            throw new AmazonClientException("The maximum retries and retry backoff may not be negative");
+        }
+        if (maxConcurrency <= 0) {
+            throw new AmazonClientException("The maximum concurrency must be positive");
+        }
+    }
+}
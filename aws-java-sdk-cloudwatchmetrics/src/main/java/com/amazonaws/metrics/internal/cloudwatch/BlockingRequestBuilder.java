@@ -43,6 +43,7 @@ import com.amazonaws.util.json.Jackson;
 class BlockingRequestBuilder {
     private static final String OS_METRIC_NAME = MachineMetric.getOSMetricName();
     private final MachineMetricFactory machineMetricFactory = new MachineMetricFactory();
+    private final LatencyPercentileFactory latencyPercentileFactory = new LatencyPercentileFactory();
     private final BlockingQueue<MetricDatum> queue;
     private final long timeoutNano;
 
@@ -145,6 +146,9 @@ class BlockingRequestBuilder {
         for (MetricDatum datum: machineMetricFactory.generateMetrics()) {
             summarize(datum, uniqueMetrics);
         }
+        for (MetricDatum datum: latencyPercentileFactory.generateMetrics()) {
+            summarize(datum, uniqueMetrics);
+        }
         List<PutMetricDataRequest> list = new ArrayList<PutMetricDataRequest>();
         List<MetricDatum> data = new ArrayList<MetricDatum>();
         for (MetricDatum m: uniqueMetrics.values()) {
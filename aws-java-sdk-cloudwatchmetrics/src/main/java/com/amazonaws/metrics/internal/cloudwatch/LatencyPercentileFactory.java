@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.metrics.LatencyHistogram;
+import com.amazonaws.metrics.internal.cloudwatch.spi.Dimensions;
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+
+/**
+ * Generates the percentiles of the latencies recorded in the AWS SDK latency
+ * histograms since the previous generation, which complement the statistic
+ * sets of the same latency metrics.
+ */
+class LatencyPercentileFactory {
+    private static final double[] PERCENTILES = { 50, 90, 99, 99.9 };
+    private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99", "p99.9" };
+    /** The snapshot of each histogram as of the previous generation. */
+    private final Map<LatencyHistogram, LatencyHistogram.Snapshot> previous =
+        new IdentityHashMap<LatencyHistogram, LatencyHistogram.Snapshot>();
+
+    /**
+     * Returns the percentile metrics of the latencies recorded since the last
+     * call, or an empty list if latency percentiles are not included.
+     */
+    List<MetricDatum> generateMetrics() {
+        if (!AwsSdkMetrics.isLatencyHistogramsEnabled()
+                || !AwsSdkMetrics.isLatencyPercentilesIncluded()) {
+            previous.clear();
+            return Collections.emptyList();
+        }
+        List<LatencyHistogram> histograms =
+            AwsSdkMetrics.getLatencyHistograms().getHistograms();
+        Map<LatencyHistogram, LatencyHistogram.Snapshot> current =
+            new IdentityHashMap<LatencyHistogram, LatencyHistogram.Snapshot>();
+        List<MetricDatum> list = new ArrayList<MetricDatum>();
+        for (LatencyHistogram h : histograms) {
+            LatencyHistogram.Snapshot snapshot = h.getSnapshot();
+            current.put(h, snapshot);
+            LatencyHistogram.Snapshot last = previous.get(h);
+            LatencyHistogram.Snapshot delta =
+                last == null ? snapshot : snapshot.since(last);
+            if (delta.getCount() == 0) {
+                continue;
+            }
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                list.add(new MetricDatum()
+                    .withMetricName(h.getServiceName())
+                    .withDimensions(
+                        new Dimension()
+                            .withName(Dimensions.MetricType.name())
+                            .withValue(h.getMetricType()),
+                        new Dimension()
+                            .withName(Dimensions.RequestType.name())
+                            .withValue(h.getRequestType()),
+                        new Dimension()
+                            .withName(Dimensions.Percentile.name())
+                            .withValue(PERCENTILE_NAMES[i]))
+                    .withUnit(StandardUnit.Milliseconds)
+                    .withValue(delta.getPercentile(PERCENTILES[i])));
+            }
+        }
+        // Forget the histograms that have since been cleared
+        previous.clear();
+        previous.putAll(current);
+        return list;
+    }
+}
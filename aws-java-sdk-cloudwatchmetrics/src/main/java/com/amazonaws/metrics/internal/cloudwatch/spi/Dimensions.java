@@ -38,5 +38,9 @@ public enum Dimensions {
      * JVM used for per-JVM level metrics with a single metric namespace.
      */
     JVM,
+    /**
+     * Percentile of a latency metric, such as p50, p99, etc.
+     */
+    Percentile,
     ;
 }
\ No newline at end of file
@@ -559,7 +559,8 @@ public abstract class AmazonWebServiceClient {
      */
     @Deprecated
     protected final ExecutionContext createExecutionContext() {
-        boolean isMetricsEnabled = isRMCEnabledAtClientOrSdkLevel() || isProfilingEnabled();
+        boolean isMetricsEnabled = isRMCEnabledAtClientOrSdkLevel()
+            || AwsSdkMetrics.isLatencyHistogramsEnabled() || isProfilingEnabled();
         return new ExecutionContext(requestHandler2s, isMetricsEnabled, this);
     }
 
@@ -570,14 +571,16 @@ public abstract class AmazonWebServiceClient {
 
     /**
      * Returns true if request metric collection is applicable to the given
-     * request; false otherwise.
+     * request, including for the latency histograms at the AWS SDK level;
+     * false otherwise.
      */
     protected final boolean isRequestMetricsEnabled(AmazonWebServiceRequest req) {
         RequestMetricCollector c = req.getRequestMetricCollector(); // request level collector
         if (c != null && c.isEnabled()) {
             return true;
         }
-        return isRMCEnabledAtClientOrSdkLevel();
+        return isRMCEnabledAtClientOrSdkLevel()
+            || AwsSdkMetrics.isLatencyHistogramsEnabled();
     }
 
     /**
@@ -688,6 +691,10 @@ public abstract class AmazonWebServiceClient {
             awsRequestMetrics.getTimingInfo().endTiming();
             RequestMetricCollector c = findRequestMetricCollector(request);
             c.collectMetrics(request, response);
+            if (AwsSdkMetrics.isLatencyHistogramsEnabled()) {
+                AwsSdkMetrics.getLatencyHistograms().record(
+                        request, awsRequestMetrics.getTimingInfo());
+            }
             awsRequestMetrics.log();
         }
     }
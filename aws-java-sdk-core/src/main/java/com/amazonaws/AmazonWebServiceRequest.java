@@ -23,6 +23,7 @@ import org.apache.http.annotation.NotThreadSafe;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.event.ProgressListener;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.HedgingPolicy;
 
 /**
  * Base class for all user facing web service requests.
@@ -51,6 +52,13 @@ public abstract class AmazonWebServiceRequest implements Cloneable {
      */
     private RequestMetricCollector requestMetricCollector;
 
+    /**
+     * A hedging policy used for this specific service request; or null if
+     * there is none. This policy takes precedence over the one specified at
+     * the client level.
+     */
+    private HedgingPolicy hedgingPolicy;
+
     /**
      * The optional credentials to use for this request - overrides the
      * default credentials set at the client level.
@@ -129,6 +137,36 @@ public abstract class AmazonWebServiceRequest implements Cloneable {
         return t;
     }
 
+    /**
+     * Returns a request level hedging policy; or null if not specified.
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Sets a request level hedging policy which takes precedence over the one
+     * at the client level. Unlike a client level policy, which only hedges GET
+     * and HEAD requests, a request level policy hedges this request whatever
+     * its HTTP method, so it must only be set on requests that are safe to
+     * send more than once.
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Specifies a request level hedging policy which takes precedence over the
+     * one at the client level.
+     *
+     * @see #setHedgingPolicy(HedgingPolicy)
+     */
+    public <T extends AmazonWebServiceRequest> T withHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        setHedgingPolicy(hedgingPolicy);
+        @SuppressWarnings("unchecked") T t = (T)this;
+        return t;
+    }
+
     /**
      * Sets the optional progress listener for receiving updates about the
      * progress of the request.
@@ -225,6 +263,7 @@ public abstract class AmazonWebServiceRequest implements Cloneable {
         target.setRequestCredentials(credentials);
         target.setGeneralProgressListener(progressListener);
         target.setRequestMetricCollector(requestMetricCollector);
+        target.setHedgingPolicy(hedgingPolicy);
         requestClientOptions.copyTo(target.getRequestClientOptions());
         return target;
     }
@@ -20,6 +20,7 @@ import org.apache.http.annotation.NotThreadSafe;
 
 import com.amazonaws.http.IdleConnectionReaper;
 import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.HedgingPolicy;
 import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.util.VersionInfoUtils;
 /**
@@ -79,6 +80,21 @@ public class ClientConfiguration {
      */
     public static final boolean DEFAULT_TCP_KEEP_ALIVE = false;
 
+    /**
+     * The default on whether to use the non-blocking HTTP transport.
+     */
+    public static final boolean DEFAULT_USE_NON_BLOCKING_TRANSPORT = false;
+
+    /**
+     * The default on whether to cache response metadata.
+     */
+    public static final boolean DEFAULT_CACHE_RESPONSE_METADATA = true;
+
+    /**
+     * The default number of entries in the response metadata cache.
+     */
+    public static final int DEFAULT_RESPONSE_METADATA_CACHE_SIZE = 50;
+
     /** The HTTP user agent header passed with all HTTP requests. */
     private String userAgent = DEFAULT_USER_AGENT;
 
@@ -195,7 +211,38 @@ public class ClientConfiguration {
      * the operating system (sysctl on Linux, and Registry values on Windows).
      */
     private boolean tcpKeepAlive = DEFAULT_TCP_KEEP_ALIVE;
-    
+
+    /**
+     * Optional whether to send requests through a non-blocking, event-loop
+     * based HTTP transport instead of one thread per in-flight request. This
+     * requires the optional <code>org.apache.httpcomponents:httpasyncclient</code>
+     * dependency to be on the classpath.
+     */
+    private boolean useNonBlockingTransport = DEFAULT_USE_NON_BLOCKING_TRANSPORT;
+
+    /**
+     * The number of I/O threads used by the non-blocking HTTP transport, or a
+     * non-positive value to use one thread per available processor.
+     */
+    private int nonBlockingIoThreadCount = -1;
+
+    /**
+     * Optional whether to keep the response metadata of recent requests for
+     * retrieval through the clients' getCachedResponseMetadata methods.
+     */
+    private boolean cacheResponseMetadata = DEFAULT_CACHE_RESPONSE_METADATA;
+
+    /**
+     * The maximum number of requests whose response metadata is kept.
+     */
+    private int responseMetadataCacheSize = DEFAULT_RESPONSE_METADATA_CACHE_SIZE;
+
+    /**
+     * Optional policy for sending duplicates of slow idempotent requests, or
+     * null if requests aren't hedged.
+     */
+    private HedgingPolicy hedgingPolicy;
+
     /**
      * Can be used to specify custom specific Apache HTTP client configurations.
      */
@@ -226,6 +273,11 @@ public class ClientConfiguration {
         this.socketReceiveBufferSizeHint = other.socketReceiveBufferSizeHint;
         this.socketSendBufferSizeHint    = other.socketSendBufferSizeHint;
         this.signerOverride              = other.signerOverride;
+        this.useNonBlockingTransport     = other.useNonBlockingTransport;
+        this.nonBlockingIoThreadCount    = other.nonBlockingIoThreadCount;
+        this.cacheResponseMetadata       = other.cacheResponseMetadata;
+        this.responseMetadataCacheSize   = other.responseMetadataCacheSize;
+        this.hedgingPolicy               = other.hedgingPolicy;
         this.apacheHttpClientConfig =
             new ApacheHttpClientConfig(other.apacheHttpClientConfig);
     }
@@ -1147,4 +1199,178 @@ public class ClientConfiguration {
     public ApacheHttpClientConfig getApacheHttpClientConfig() {
         return apacheHttpClientConfig;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns whether requests are sent through the non-blocking HTTP
+     * transport.
+     *
+     * @see #setUseNonBlockingTransport(boolean)
+     */
+    public boolean useNonBlockingTransport() {
+        return useNonBlockingTransport;
+    }
+
+    /**
+     * Sets whether requests should be sent through a non-blocking, event-loop
+     * based HTTP transport. When enabled, asynchronous clients that support it
+     * complete their futures from I/O callbacks instead of occupying a worker
+     * thread for the duration of each request, so the number of in-flight
+     * requests is bounded by {@link #getMaxConnections()} rather than by the
+     * size of a thread pool.
+     * <p>
+     * The non-blocking transport requires the optional
+     * <code>org.apache.httpcomponents:httpasyncclient</code> dependency to be
+     * on the classpath. Synchronous calls, and calls whose responses are
+     * streamed back to the caller, keep using the blocking transport.
+     *
+     * @param use
+     *            whether to use the non-blocking HTTP transport
+     */
+    public void setUseNonBlockingTransport(boolean use) {
+        this.useNonBlockingTransport = use;
+    }
+
+    /**
+     * Sets whether requests should be sent through a non-blocking, event-loop
+     * based HTTP transport.
+     *
+     * @param use
+     *            whether to use the non-blocking HTTP transport
+     *
+     * @return The updated ClientConfiguration object.
+     * @see #setUseNonBlockingTransport(boolean)
+     */
+    public ClientConfiguration withNonBlockingTransport(boolean use) {
+        setUseNonBlockingTransport(use);
+        return this;
+    }
+
+    /**
+     * Returns the number of I/O threads used by the non-blocking HTTP
+     * transport, or a non-positive value if one thread per available processor
+     * is used.
+     */
+    public int getNonBlockingIoThreadCount() {
+        return nonBlockingIoThreadCount;
+    }
+
+    /**
+     * Sets the number of I/O threads used by the non-blocking HTTP transport.
+     * A non-positive value, the default, uses one thread per available
+     * processor.
+     */
+    public void setNonBlockingIoThreadCount(int nonBlockingIoThreadCount) {
+        this.nonBlockingIoThreadCount = nonBlockingIoThreadCount;
+    }
+
+    /**
+     * Sets the number of I/O threads used by the non-blocking HTTP transport.
+     *
+     * @return The updated ClientConfiguration object.
+     * @see #setNonBlockingIoThreadCount(int)
+     */
+    public ClientConfiguration withNonBlockingIoThreadCount(int nonBlockingIoThreadCount) {
+        setNonBlockingIoThreadCount(nonBlockingIoThreadCount);
+        return this;
+    }
+
+    /**
+     * Returns whether the response metadata of recent requests is cached.
+     *
+     * @see #setCacheResponseMetadata(boolean)
+     */
+    public boolean getCacheResponseMetadata() {
+        return cacheResponseMetadata;
+    }
+
+    /**
+     * Sets whether the response metadata of recent requests should be cached,
+     * so that it can be retrieved through the clients'
+     * getCachedResponseMetadata methods. The cache is enabled by default;
+     * applications that never look at the cached metadata can disable it to
+     * save the bookkeeping done on every successful request.
+     *
+     * @param shouldCache
+     *            whether to cache the response metadata of recent requests
+     */
+    public void setCacheResponseMetadata(boolean shouldCache) {
+        this.cacheResponseMetadata = shouldCache;
+    }
+
+    /**
+     * Sets whether the response metadata of recent requests should be cached.
+     *
+     * @return The updated ClientConfiguration object.
+     * @see #setCacheResponseMetadata(boolean)
+     */
+    public ClientConfiguration withCacheResponseMetadata(boolean shouldCache) {
+        setCacheResponseMetadata(shouldCache);
+        return this;
+    }
+
+    /**
+     * Returns the maximum number of requests whose response metadata is
+     * cached.
+     */
+    public int getResponseMetadataCacheSize() {
+        return responseMetadataCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of requests whose response metadata is cached.
+     * Once the cache is full, the metadata of the oldest request is evicted.
+     *
+     * @param responseMetadataCacheSize
+     *            the maximum number of cached entries; must be positive
+     */
+    public void setResponseMetadataCacheSize(int responseMetadataCacheSize) {
+        this.responseMetadataCacheSize = responseMetadataCacheSize;
+    }
+
+    /**
+     * Sets the maximum number of requests whose response metadata is cached.
+     *
+     * @return The updated ClientConfiguration object.
+     * @see #setResponseMetadataCacheSize(int)
+     */
+    public ClientConfiguration withResponseMetadataCacheSize(int responseMetadataCacheSize) {
+        setResponseMetadataCacheSize(responseMetadataCacheSize);
+        return this;
+    }
+
+    /**
+     * Returns the policy for sending duplicates of slow idempotent requests,
+     * or null if requests aren't hedged.
+     */
+    public HedgingPolicy getHedgingPolicy() {
+        return hedgingPolicy;
+    }
+
+    /**
+     * Sets the policy for sending duplicates of slow idempotent requests. When
+     * a GET or HEAD request hasn't received a response after the policy's
+     * delay, a duplicate request is sent on another connection and the first
+     * response is used. Requests are not hedged by default.
+     * <p>
+     * Hedging only applies to requests sent through the blocking transport;
+     * see {@link #setUseNonBlockingTransport(boolean)}.
+     *
+     * @param hedgingPolicy
+     *            the hedging policy, or null to disable hedging
+     * @see AmazonWebServiceRequest#setHedgingPolicy(HedgingPolicy)
+     */
+    public void setHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        this.hedgingPolicy = hedgingPolicy;
+    }
+
+    /**
+     * Sets the policy for sending duplicates of slow idempotent requests.
+     *
+     * @return The updated ClientConfiguration object.
+     * @see #setHedgingPolicy(HedgingPolicy)
+     */
+    public ClientConfiguration withHedgingPolicy(HedgingPolicy hedgingPolicy) {
+        setHedgingPolicy(hedgingPolicy);
+        return this;
+    }
+}
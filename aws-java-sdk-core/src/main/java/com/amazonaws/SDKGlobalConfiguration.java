@@ -45,6 +45,21 @@ public class SDKGlobalConfiguration {
     public static final String DEFAULT_METRICS_SYSTEM_PROPERTY =
         "com.amazonaws.sdk.enableDefaultMetrics";
 
+    /**
+     * System property used when starting up the JVM to enable the latency
+     * histograms of the AWS SDK, from which the percentiles of the request
+     * latencies are available via JMX.
+     *
+     * <pre>
+     * Example:
+     *  -Dcom.amazonaws.sdk.enableLatencyHistograms
+     * </pre>
+     *
+     * @see com.amazonaws.metrics.AwsSdkMetrics#setLatencyHistogramsEnabled(boolean)
+     */
+    public static final String LATENCY_HISTOGRAMS_SYSTEM_PROPERTY =
+        "com.amazonaws.sdk.enableLatencyHistograms";
+
     /** System property name for the AWS access key ID */
     public static final String ACCESS_KEY_SYSTEM_PROPERTY = "aws.accessKeyId";
 
@@ -192,10 +192,13 @@ public class AWS4Signer extends AbstractAWSSigner implements
         request.addHeader(X_AMZ_DATE,
                 signerParams.getFormattedSigningDateTime());
 
-        String contentSha256 = calculateContentHash(request);
+        String contentSha256 = request.getHeaders().get(X_AMZ_CONTENT_SHA256);
+        if (!isPrecomputedContentHash(contentSha256)) {
+            contentSha256 = calculateContentHash(request);
 
-        if ("required".equals(request.getHeaders().get(X_AMZ_CONTENT_SHA256))) {
-            request.addHeader(X_AMZ_CONTENT_SHA256, contentSha256);
+            if ("required".equals(request.getHeaders().get(X_AMZ_CONTENT_SHA256))) {
+                request.addHeader(X_AMZ_CONTENT_SHA256, contentSha256);
+            }
         }
 
         final String canonicalRequest = createCanonicalRequest(request,
@@ -495,6 +498,30 @@ public class AWS4Signer extends AbstractAWSSigner implements
         request.addHeader(HOST, hostHeaderBuilder.toString());
     }
 
+    /**
+     * Returns true if the given "x-amz-content-sha256" header value is the
+     * hex-encoded SHA-256 hash of the payload, computed by the caller (for
+     * example while computing other checksums of the payload), in which case
+     * the payload isn't read again to sign the request.
+     * <p>
+     * Any 64-digit hex value is trusted as is: the signer doesn't check it
+     * against the payload, and a value that doesn't match the payload makes
+     * the service reject the request. Only the Glacier client sends such a
+     * value today, for the parts of multipart uploads hashed by
+     * ArchiveTransferManager.
+     */
+    private static boolean isPrecomputedContentHash(String headerValue) {
+        if (headerValue == null || headerValue.length() != 64) {
+            return false;
+        }
+        for (int i = 0; i < headerValue.length(); i++) {
+            if (Character.digit(headerValue.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Calculate the hash of the request's payload. Subclass could override this
      * method to provide different values for "x-amz-content-sha256" header or
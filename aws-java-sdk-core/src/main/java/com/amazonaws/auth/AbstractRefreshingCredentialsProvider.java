@@ -0,0 +1,428 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import java.lang.ref.WeakReference;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.Immutable;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Base class for credentials providers that vend temporary credentials, such
+ * as session credentials from the AWS Security Token Service, which must be
+ * reloaded before they expire.
+ * <p>
+ * Credentials are reloaded by at most one thread at a time. Once the current
+ * credentials are within the prefetch threshold of their expiration, they are
+ * reloaded on a shared background thread, and {@link #getCredentials()}
+ * continues to return the current credentials without blocking. Callers only
+ * block when no credentials have been loaded yet, or when the current
+ * credentials are within the stale threshold of their expiration; one of them
+ * then reloads the credentials while the others wait for its outcome. If a
+ * reload fails while the current credentials are still valid, the error is
+ * logged and the current credentials are used until they expire.
+ * <p>
+ * Credentials are only reloaded in the background if they have been used
+ * since they were last loaded, so that an idle provider doesn't keep making
+ * requests.
+ */
+@ThreadSafe
+public abstract class AbstractRefreshingCredentialsProvider implements AWSCredentialsProvider {
+
+    private static final Log LOG = LogFactory.getLog(AbstractRefreshingCredentialsProvider.class);
+
+    /**
+     * The delay (in milliseconds) after which a reload that failed while the
+     * current credentials were still valid is retried.
+     */
+    private static final long RETRY_DELAY_MILLIS = 10 * 1000;
+
+    /** Guards the loading of credentials. */
+    private final ReentrantLock refreshLock = new ReentrantLock();
+
+    /** True while a background reload requested by a caller is pending. */
+    private final AtomicBoolean isRefreshPending = new AtomicBoolean();
+
+    /** The currently cached credentials, or null if none have been loaded. */
+    private volatile CachedCredentials cached;
+
+    /** True if the cached credentials have been used since they were loaded. */
+    private volatile boolean isUsedSinceLoad;
+
+    private volatile long staleThresholdMillis;
+    private volatile long prefetchThresholdMillis;
+
+    /**
+     * @param staleThresholdMillis
+     *            the time before expiration (in milliseconds) from which
+     *            callers block until the credentials have been reloaded
+     * @param prefetchThresholdMillis
+     *            the time before expiration (in milliseconds) from which the
+     *            credentials are reloaded in the background; must not be less
+     *            than the stale threshold
+     */
+    protected AbstractRefreshingCredentialsProvider(long staleThresholdMillis,
+            long prefetchThresholdMillis) {
+        setRefreshThresholds(staleThresholdMillis, prefetchThresholdMillis);
+    }
+
+    /**
+     * Loads new credentials. Only called by one thread at a time.
+     *
+     * @return the new credentials and their expiration
+     * @throws AmazonClientException
+     *             if the credentials can't be loaded
+     */
+    protected abstract ExpiringCredentials loadCredentials();
+
+    @Override
+    public AWSCredentials getCredentials() {
+        CachedCredentials current = cached;
+        long now = System.currentTimeMillis();
+        if (current == null || now >= current.staleTime) {
+            current = reload(current);
+        } else if (now >= current.prefetchTime) {
+            refreshInBackground();
+        }
+        if (!isUsedSinceLoad) {
+            isUsedSinceLoad = true;
+        }
+        return current.credentials;
+    }
+
+    /**
+     * Reloads the credentials, blocking until they have been loaded. If
+     * another thread is already reloading them, waits for it instead.
+     */
+    @Override
+    public void refresh() {
+        reload(cached);
+    }
+
+    /**
+     * Changes the thresholds that determine when the credentials are
+     * reloaded, which also apply to the current credentials.
+     *
+     * @param staleThresholdMillis
+     *            the time before expiration (in milliseconds) from which
+     *            callers block until the credentials have been reloaded
+     * @param prefetchThresholdMillis
+     *            the time before expiration (in milliseconds) from which the
+     *            credentials are reloaded in the background; must not be less
+     *            than the stale threshold
+     */
+    protected final void setRefreshThresholds(long staleThresholdMillis,
+            long prefetchThresholdMillis) {
+        if (staleThresholdMillis < 0 || prefetchThresholdMillis < staleThresholdMillis) {
+            throw new IllegalArgumentException(
+                    "The prefetch threshold must not be less than the stale threshold, which must not be negative.");
+        }
+        refreshLock.lock();
+        try {
+            this.staleThresholdMillis = staleThresholdMillis;
+            this.prefetchThresholdMillis = prefetchThresholdMillis;
+            CachedCredentials current = cached;
+            if (current != null) {
+                cached = newCachedCredentials(current.credentials, current.expiration);
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Discards the current credentials, so that the next call to
+     * {@link #getCredentials()} blocks until new credentials have been
+     * loaded.
+     */
+    protected final void invalidate() {
+        cached = null;
+    }
+
+    /**
+     * Reloads the credentials on the background thread, unless a reload is
+     * already pending.
+     */
+    protected final void refreshInBackground() {
+        if (!isRefreshPending.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            LazyHolder.executor.execute(new RefreshTask(this, cached, false));
+        } catch (RejectedExecutionException e) {
+            isRefreshPending.set(false);
+        }
+    }
+
+    /**
+     * Returns the time (in milliseconds since the epoch) from which the given
+     * newly loaded credentials should be reloaded in the background. By
+     * default, the prefetch threshold before their expiration.
+     */
+    protected long getPrefetchTime(ExpiringCredentials credentials) {
+        Date expiration = credentials.getExpiration();
+        return expiration == null
+             ? Long.MAX_VALUE
+             : expiration.getTime() - prefetchThresholdMillis;
+    }
+
+    /**
+     * Returns true if the given current credentials, which haven't expired,
+     * can continue to be used after an attempt to reload them has failed. By
+     * default, always true.
+     */
+    protected boolean isUsableAfterFailedReload(AWSCredentials credentials) {
+        return true;
+    }
+
+    /**
+     * Loads new credentials unless another thread has reloaded them since
+     * <code>observed</code> was read, and returns the credentials to use.
+     */
+    private CachedCredentials reload(CachedCredentials observed) {
+        refreshLock.lock();
+        try {
+            CachedCredentials current = cached;
+            if (current != observed && current != null
+                    && System.currentTimeMillis() < current.staleTime) {
+                return current;
+            }
+            return load(current);
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    /**
+     * Loads and caches new credentials; if that fails, keeps the given
+     * current credentials while they're valid. Called with the lock held.
+     */
+    private CachedCredentials load(CachedCredentials current) {
+        CachedCredentials loaded;
+        try {
+            ExpiringCredentials credentials = loadCredentials();
+            if (credentials.isExpired()) {
+                throw new AmazonClientException("The credentials loaded by "
+                        + this + " expired at " + credentials.getExpiration());
+            }
+            Date expiration = credentials.getExpiration();
+            loaded = newCachedCredentials(credentials.getCredentials(),
+                    expiration == null ? Long.MAX_VALUE : expiration.getTime())
+                    .prefetchAt(getPrefetchTime(credentials));
+        } catch (RuntimeException e) {
+            long now = System.currentTimeMillis();
+            if (current == null || current.expiration <= now
+                    || !isUsableAfterFailedReload(current.credentials)) {
+                throw e;
+            }
+            LOG.warn("Unable to reload credentials; continuing to use the current credentials, which expire at "
+                    + new Date(current.expiration), e);
+            CachedCredentials retry = current.retryAt(now + RETRY_DELAY_MILLIS);
+            cached = retry;
+            schedule(retry);
+            return retry;
+        }
+        cached = loaded;
+        isUsedSinceLoad = false;
+        schedule(loaded);
+        return loaded;
+    }
+
+    /**
+     * Returns the given credentials to be cached until the given expiration
+     * time, or {@link Long#MAX_VALUE} if they don't expire.
+     */
+    private CachedCredentials newCachedCredentials(AWSCredentials credentials,
+            long expiration) {
+        if (expiration == Long.MAX_VALUE) {
+            return new CachedCredentials(credentials, Long.MAX_VALUE,
+                    Long.MAX_VALUE, Long.MAX_VALUE);
+        }
+        return new CachedCredentials(credentials, expiration,
+                expiration - staleThresholdMillis,
+                expiration - prefetchThresholdMillis);
+    }
+
+    /**
+     * Schedules the background reload of the given credentials at their
+     * prefetch time.
+     */
+    private void schedule(CachedCredentials credentials) {
+        if (credentials.prefetchTime == Long.MAX_VALUE) {
+            return;
+        }
+        long delay = Math.max(0, credentials.prefetchTime - System.currentTimeMillis());
+        try {
+            LazyHolder.executor.schedule(new RefreshTask(this, credentials, true),
+                    delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            LOG.debug("Unable to schedule the reload of credentials", e);
+        }
+    }
+
+    /**
+     * Called on the background thread to reload the given credentials, if
+     * they're still the current ones.
+     */
+    private void refreshScheduled(CachedCredentials observed, boolean isScheduled) {
+        try {
+            if (isScheduled && (cached != observed || !isUsedSinceLoad)) {
+                return;
+            }
+            reload(observed);
+        } catch (RuntimeException e) {
+            LOG.debug("Unable to reload credentials in the background", e);
+        } finally {
+            if (!isScheduled) {
+                isRefreshPending.set(false);
+            }
+        }
+    }
+
+    /**
+     * Credentials, and the time until which they can be used.
+     */
+    @Immutable
+    public static final class ExpiringCredentials {
+        private final AWSCredentials credentials;
+        private final Date expiration;
+
+        /**
+         * @param credentials
+         *            the credentials
+         * @param expiration
+         *            the time at which the credentials expire, or null if
+         *            they don't expire
+         */
+        public ExpiringCredentials(AWSCredentials credentials, Date expiration) {
+            if (credentials == null) {
+                throw new IllegalArgumentException("credentials must not be null");
+            }
+            this.credentials = credentials;
+            this.expiration = expiration == null ? null : new Date(expiration.getTime());
+        }
+
+        public AWSCredentials getCredentials() {
+            return credentials;
+        }
+
+        /**
+         * Returns the time at which the credentials expire, or null if they
+         * don't expire.
+         */
+        public Date getExpiration() {
+            return expiration == null ? null : new Date(expiration.getTime());
+        }
+
+        boolean isExpired() {
+            return expiration != null
+                && expiration.getTime() <= System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * The cached credentials, with the times (in milliseconds since the
+     * epoch) from which they're stale and should be prefetched.
+     */
+    @Immutable
+    private static final class CachedCredentials {
+        final AWSCredentials credentials;
+        final long expiration;
+        final long staleTime;
+        final long prefetchTime;
+
+        CachedCredentials(AWSCredentials credentials, long expiration,
+                long staleTime, long prefetchTime) {
+            this.credentials = credentials;
+            this.expiration = expiration;
+            this.staleTime = staleTime;
+            this.prefetchTime = prefetchTime;
+        }
+
+        /**
+         * Returns these credentials to be reloaded in the background at the
+         * given time, or when they become stale if that's earlier.
+         */
+        CachedCredentials prefetchAt(long time) {
+            return new CachedCredentials(credentials, expiration, staleTime,
+                    Math.min(time, staleTime));
+        }
+
+        /**
+         * Returns these credentials to be reloaded again at the given time,
+         * or at their expiration if that's earlier.
+         */
+        CachedCredentials retryAt(long time) {
+            long retryTime = Math.min(time, expiration);
+            return new CachedCredentials(credentials, expiration,
+                    Math.max(staleTime, retryTime), retryTime);
+        }
+    }
+
+    /**
+     * Reloads the credentials of a provider on the background thread.
+     * Scheduled reloads only hold a weak reference to the provider, so that
+     * they don't keep it from being garbage collected.
+     */
+    private static final class RefreshTask implements Runnable {
+        private final WeakReference<AbstractRefreshingCredentialsProvider> provider;
+        private final CachedCredentials observed;
+        private final boolean isScheduled;
+
+        RefreshTask(AbstractRefreshingCredentialsProvider provider,
+                CachedCredentials observed, boolean isScheduled) {
+            this.provider = new WeakReference<AbstractRefreshingCredentialsProvider>(provider);
+            this.observed = observed;
+            this.isScheduled = isScheduled;
+        }
+
+        @Override
+        public void run() {
+            AbstractRefreshingCredentialsProvider p = provider.get();
+            if (p != null) {
+                p.refreshScheduled(observed, isScheduled);
+            }
+        }
+    }
+
+    /**
+     * Used to avoid creating the background thread until credentials are
+     * first loaded.
+     */
+    private static final class LazyHolder {
+        /** A single thread for reloading the credentials of all providers. */
+        private static final ScheduledExecutorService executor =
+                Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setName("java-sdk-credentials-refresh");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+    }
+}
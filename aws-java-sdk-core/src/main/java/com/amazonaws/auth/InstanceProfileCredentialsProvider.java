@@ -16,9 +16,6 @@ package com.amazonaws.auth;
 
 import java.io.IOException;
 import java.util.Date;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -33,8 +30,11 @@ import com.fasterxml.jackson.databind.JsonNode;
 /**
  * Credentials provider implementation that loads credentials from the Amazon
  * EC2 Instance Metadata Service.
+ * <p>
+ * Credentials are reloaded in the background ahead of their expiration, and
+ * at least every hour; see {@link AbstractRefreshingCredentialsProvider}.
  */
-public class InstanceProfileCredentialsProvider implements AWSCredentialsProvider {
+public class InstanceProfileCredentialsProvider extends AbstractRefreshingCredentialsProvider {
 
     private static final Log LOG = LogFactory.getLog(InstanceProfileCredentialsProvider.class);
 
@@ -50,6 +50,13 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
      */
     private static final int EXPIRATION_THRESHOLD = 1000 * 60 * 15;
 
+    /**
+     * The threshold before credentials expire (in milliseconds) at which
+     * callers block until new credentials have been loaded, if the attempts
+     * to load them in the background haven't succeeded.
+     */
+    private static final int STALE_THRESHOLD = 1000 * 60 * 5;
+
     /** The name of the Json Object that contains the access key.*/
     private static final String ACCESS_KEY_ID = "AccessKeyId";
 
@@ -59,13 +66,6 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
     /** The name of the Json Object that contains the token.*/
     private static final String TOKEN = "Token";
 
-    /**
-     * The wait time, after which the background thread initiates a refresh to
-     * load latest credentials if needed.
-     */
-    private static final int ASYNC_REFRESH_INTERVAL_TIME_MINUTES= 1;
-
-
     /** The current instance profile credentials */
     protected volatile AWSCredentials credentials;
 
@@ -75,64 +75,46 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
     /** The time of the last attempt to check for new credentials */
     protected volatile Date lastInstanceProfileCheck;
 
-    /**
-     * The executor service used for refreshing the credentials in the
-     * background.
-     */
-    private volatile ScheduledExecutorService executor;
-
     public InstanceProfileCredentialsProvider() {
         this(false);
     }
 
     /**
-     * Spins up a new thread to refresh the credentials asynchronously if
+     * Loads the credentials in the background right away if
      * refreshCredentialsAsync is set to true, otherwise the credentials will be
-     * refreshed from the instance metadata service synchronously,
+     * loaded from the instance metadata service on first use. Either way, the
+     * credentials are then refreshed in the background.
      *
      * @param refreshCredentialsAsync
-     *            true if credentials needs to be refreshed asynchronously else
+     *            true if credentials needs to be loaded asynchronously else
      *            false.
      */
     public InstanceProfileCredentialsProvider(boolean refreshCredentialsAsync) {
+        super(STALE_THRESHOLD, EXPIRATION_THRESHOLD);
         if (refreshCredentialsAsync) {
-            executor = Executors.newScheduledThreadPool(1);
-            executor.scheduleWithFixedDelay(new Runnable() {
-                @Override
-                public void run() {
-                    try {
-                        getCredentials();
-                    } catch (AmazonClientException ace) {
-                        handleError(ace);
-                    } catch (RuntimeException re) {
-                        handleError(re);
-                    } catch (Error e) {
-                        handleError(e);
-                    }
-                }
-            }, 0, ASYNC_REFRESH_INTERVAL_TIME_MINUTES, TimeUnit.MINUTES);
+            refreshInBackground();
         }
     }
 
-    private void handleError(Throwable t) {
-        credentials = null;
-        LOG.error(t.getMessage(), t);
-    }
-
-    public AWSCredentials getCredentials() {
-        if (needsToLoadCredentials())
-            loadCredentials();
-        if (expired()) {
-            throw new AmazonClientException(
-                    "The credentials received from the Amazon EC2 metadata service have expired");
-        }
-        return credentials;
-    }
-
+    /**
+     * Discards the current credentials, so that they're reloaded from the
+     * instance metadata service when next requested.
+     */
+    @Override
     public void refresh() {
         credentials = null;
+        invalidate();
     }
 
+    /**
+     * Returns true if the current credentials are missing, within the
+     * expiration threshold, or haven't been checked for in the last hour.
+     *
+     * @deprecated The credentials are now reloaded in the background, as
+     *             scheduled by {@link #getPrefetchTime(ExpiringCredentials)};
+     *             this method is no longer called by the provider.
+     */
+    @Deprecated
     protected boolean needsToLoadCredentials() {
         if (credentials == null) return true;
 
@@ -174,9 +156,28 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
         return false;
     }
 
-    private synchronized void loadCredentials() {
-        if (!needsToLoadCredentials()) return;
+    /**
+     * Reloads the credentials within an hour of the last check, even if
+     * they're not close to expiring.
+     */
+    @Override
+    protected long getPrefetchTime(ExpiringCredentials loaded) {
+        return Math.min(super.getPrefetchTime(loaded),
+                lastInstanceProfileCheck.getTime() + REFRESH_THRESHOLD);
+    }
 
+    /**
+     * Only falls back to the current credentials if they're still set and
+     * haven't expired, as determined by {@link #credentials} and
+     * {@link #credentialsExpiration}.
+     */
+    @Override
+    protected boolean isUsableAfterFailedReload(AWSCredentials current) {
+        return credentials != null && !expired();
+    }
+
+    @Override
+    protected ExpiringCredentials loadCredentials() {
         JsonNode accessKey;
         JsonNode secretKey;
         JsonNode node;
@@ -224,6 +225,12 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
         } catch (IOException e) {
             handleError("Unable to load credentials from Amazon EC2 metadata service", e);
         }
+
+        if (expired()) {
+            throw new AmazonClientException(
+                    "The credentials received from the Amazon EC2 metadata service have expired");
+        }
+        return new ExpiringCredentials(credentials, credentialsExpiration);
     }
 
     /**
@@ -251,11 +258,4 @@ public class InstanceProfileCredentialsProvider implements AWSCredentialsProvide
     public String toString() {
         return getClass().getSimpleName();
     }
-
-    @Override
-    protected void finalize() throws Throwable {
-        if (executor != null) {
-            executor.shutdownNow();
-        }
-    }
 }
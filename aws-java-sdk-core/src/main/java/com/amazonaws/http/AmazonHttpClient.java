@@ -20,14 +20,19 @@ import static com.amazonaws.event.SDKProgressPublisher.publishRequestContentLeng
 import static com.amazonaws.event.SDKProgressPublisher.publishResponseContentLength;
 import static com.amazonaws.util.AWSRequestMetrics.Field.AWSErrorCode;
 import static com.amazonaws.util.AWSRequestMetrics.Field.AWSRequestID;
+import static com.amazonaws.util.AWSRequestMetrics.Field.CircuitBreakerRejectedCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.Exception;
+import static com.amazonaws.util.AWSRequestMetrics.Field.HedgeRequestCount;
+import static com.amazonaws.util.AWSRequestMetrics.Field.HedgeWinCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolAvailableCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolLeasedCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpClientPoolPendingCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.HttpRequestTime;
+import static com.amazonaws.util.AWSRequestMetrics.Field.RateLimitPauseTime;
 import static com.amazonaws.util.AWSRequestMetrics.Field.RedirectLocation;
 import static com.amazonaws.util.AWSRequestMetrics.Field.RequestCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.RequestSigningTime;
+import static com.amazonaws.util.AWSRequestMetrics.Field.RetryCapacityExceededCount;
 import static com.amazonaws.util.AWSRequestMetrics.Field.RetryPauseTime;
 import static com.amazonaws.util.AWSRequestMetrics.Field.ServiceEndpoint;
 import static com.amazonaws.util.AWSRequestMetrics.Field.ServiceName;
@@ -47,6 +52,9 @@ import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 
@@ -60,10 +68,13 @@ import org.apache.http.StatusLine;
 import org.apache.http.annotation.ThreadSafe;
 import org.apache.http.client.HttpClient;
 import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
 import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
 import org.apache.http.conn.ssl.SSLSocketFactory;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.pool.ConnPoolControl;
 import org.apache.http.pool.PoolStats;
 import org.apache.http.protocol.BasicHttpContext;
@@ -91,15 +102,22 @@ import com.amazonaws.handlers.CredentialsRequestHandler;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.http.conn.ssl.SdkTLSSocketFactory;
 import com.amazonaws.internal.CRC32MismatchException;
+import com.amazonaws.internal.FIFOCache;
 import com.amazonaws.internal.ReleasableInputStream;
 import com.amazonaws.internal.ResettableInputStream;
 import com.amazonaws.internal.SdkBufferedInputStream;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.retry.CircuitBreakerConfig;
+import com.amazonaws.retry.HedgingPolicy;
 import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.retry.RetryTokenBucketConfig;
 import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.retry.internal.AdaptiveRateLimiter;
 import com.amazonaws.retry.internal.AuthErrorRetryStrategy;
 import com.amazonaws.retry.internal.AuthRetryParameters;
+import com.amazonaws.retry.internal.CircuitBreaker;
+import com.amazonaws.retry.internal.RetryTokenBucket;
 import com.amazonaws.util.AWSRequestMetrics;
 import com.amazonaws.util.AWSRequestMetrics.Field;
 import com.amazonaws.util.CountingInputStream;
@@ -113,6 +131,15 @@ import com.amazonaws.util.UnreliableFilterInputStream;
 public class AmazonHttpClient {
     private static final String HEADER_USER_AGENT = "User-Agent";
 
+    /**
+     * The largest request payload that is buffered so that the request can be
+     * hedged; requests with larger payloads are never hedged.
+     */
+    private static final int MAX_HEDGED_CONTENT_LENGTH = 64 * 1024;
+
+    /** The maximum number of endpoint hosts each client keeps a circuit breaker for. */
+    private static final int MAX_CIRCUIT_BREAKERS = 64;
+
     /**
      * Logger providing detailed information on requests/responses. Users can
      * enable this logger to get access to AWS request IDs for responses,
@@ -149,8 +176,11 @@ public class AmazonHttpClient {
     /** Client configuration options, such as proxy settings, max retries, etc. */
     private final ClientConfiguration config;
 
-    /** Cache of metadata for recently executed requests for diagnostic purposes */
-    private final ResponseMetadataCache responseMetadataCache = new ResponseMetadataCache(50);
+    /**
+     * Cache of metadata for recently executed requests for diagnostic
+     * purposes; or null if caching is disabled in the client configuration.
+     */
+    private final ResponseMetadataCache responseMetadataCache;
 
     /**
      * A request metric collector used specifically for this http client; or
@@ -161,9 +191,36 @@ public class AmazonHttpClient {
      */
     private final RequestMetricCollector requestMetricCollector;
 
+    /**
+     * The retry token bucket, circuit breakers and rate limiter of the retry
+     * policy in use; replaced whenever the retry policy of the client
+     * configuration changes.
+     */
+    private volatile RetryControls retryControls;
+
     /** The time difference in seconds between this client and AWS. */
     private volatile int timeOffset = SDKGlobalConfiguration.getGlobalTimeOffset();
 
+    /**
+     * The non-blocking transport used by
+     * {@link #executeAsync(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext, FutureCallback)},
+     * which is created on first use, so that clients that never use it don't
+     * allocate its connection manager and I/O threads; or null if it hasn't
+     * been created yet. Guarded by {@link #lazyInitLock} when written.
+     */
+    private volatile AsyncHttpTransport asyncTransport;
+
+    /**
+     * Schedules and sends the hedges of requests, which is created the first
+     * time a request is hedged; or null if it hasn't been created yet.
+     * Guarded by {@link #lazyInitLock} when written.
+     */
+    private volatile ScheduledThreadPoolExecutor hedgeExecutor;
+
+    /** Guards the creation of the lazily created resources, and isShutdown. */
+    private final Object lazyInitLock = new Object();
+    private boolean isShutdown;
+
     /**
      * Constructs a new AWS client using the specified client configuration
      * options (ex: max retry attempts, proxy settings, etc).
@@ -204,6 +261,67 @@ public class AmazonHttpClient {
         this.config = config;
         this.httpClient = httpClient;
         this.requestMetricCollector = requestMetricCollector;
+        this.responseMetadataCache = config.getCacheResponseMetadata()
+                ? new ResponseMetadataCache(config.getResponseMetadataCacheSize())
+                : null;
+    }
+
+    /**
+     * Returns the non-blocking transport, creating it if this is its first
+     * use.
+     */
+    private AsyncHttpTransport getAsyncTransport() {
+        AsyncHttpTransport transport = asyncTransport;
+        if (transport != null) {
+            return transport;
+        }
+        synchronized (lazyInitLock) {
+            if (isShutdown) {
+                throw new IllegalStateException("The client has been shut down");
+            }
+            if (asyncTransport == null) {
+                asyncTransport = createAsyncTransport(config);
+            }
+            return asyncTransport;
+        }
+    }
+
+    /**
+     * Returns the executor that hedges are sent on, creating it if this is
+     * its first use, or null if the client has been shut down. It has at
+     * most one thread per pooled connection, as a hedge needs a connection
+     * too, and its threads exit when idle.
+     */
+    private ScheduledThreadPoolExecutor getHedgeExecutor() {
+        ScheduledThreadPoolExecutor executor = hedgeExecutor;
+        if (executor != null) {
+            return executor;
+        }
+        synchronized (lazyInitLock) {
+            if (isShutdown) {
+                return null;
+            }
+            if (hedgeExecutor == null) {
+                executor = new ScheduledThreadPoolExecutor(
+                        Math.max(1, config.getMaxConnections()),
+                        new AsyncHttpTransport.NamedThreadFactory("java-sdk-hedge"));
+                executor.setKeepAliveTime(60, TimeUnit.SECONDS);
+                executor.allowCoreThreadTimeOut(true);
+                executor.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+                hedgeExecutor = executor;
+            }
+            return hedgeExecutor;
+        }
+    }
+
+    private static AsyncHttpTransport createAsyncTransport(ClientConfiguration config) {
+        try {
+            return AsyncHttpTransport.create(config);
+        } catch (NoClassDefFoundError e) {
+            throw new AmazonClientException(
+                    "The non-blocking transport requires the "
+                    + "org.apache.httpcomponents:httpasyncclient library on the classpath", e);
+        }
     }
 
     /**
@@ -218,10 +336,11 @@ public class AmazonHttpClient {
      *            response metadata is desired.
      *
      * @return The response metadata for the specified request, otherwise null
-     *         if there is no response metadata available for the request.
+     *         if there is no response metadata available for the request, or
+     *         if response metadata caching is disabled.
      */
     public ResponseMetadata getResponseMetadataForRequest(AmazonWebServiceRequest request) {
-        return responseMetadataCache.get(request);
+        return responseMetadataCache == null ? null : responseMetadataCache.get(request);
     }
 
     /**
@@ -310,6 +429,72 @@ public class AmazonHttpClient {
         }
     }
 
+    /**
+     * Executes the request through the non-blocking transport, without
+     * blocking the calling thread or occupying any other thread while the
+     * request is in flight. Signing, retries (including their back-off
+     * pauses), request handlers and request metrics behave as they do for
+     * {@link #execute(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext)}.
+     * <p>
+     * The response is fully buffered before it is handed to the response
+     * handler, which runs, together with the callback, on one of the I/O
+     * threads of the transport; neither should block. The callback is
+     * notified before the returned future completes.
+     * <p>
+     * The non-blocking transport is created on the first call, rather than
+     * with the client, so that clients that have it enabled but never use it
+     * don't pay for its connection manager and I/O threads.
+     *
+     * @param request
+     *            The AmazonWebServices request to send to the remote server
+     * @param responseHandler
+     *            A response handler to accept a successful response from the
+     *            remote server; must not need the connection left open
+     * @param errorResponseHandler
+     *            A response handler to accept an unsuccessful response from the
+     *            remote server
+     * @param executionContext
+     *            Additional information about the context of this web service
+     *            call
+     * @param callback
+     *            Optional callback notified upon completion; or null.
+     *
+     * @return A future for the response of the request.
+     *
+     * @throws IllegalStateException
+     *             if the non-blocking transport has not been enabled via
+     *             {@link ClientConfiguration#setUseNonBlockingTransport(boolean)}
+     * @see #isNonBlockingTransportEnabled()
+     */
+    public <T> Future<Response<T>> executeAsync(Request<?> request,
+            HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            ExecutionContext executionContext,
+            FutureCallback<Response<T>> callback) {
+        if (executionContext == null)
+            throw new AmazonClientException("Internal SDK Error: No execution context parameter specified.");
+        if (!isNonBlockingTransportEnabled())
+            throw new IllegalStateException("The non-blocking transport is not enabled");
+        getAsyncTransport();
+        if (responseHandler.needsConnectionLeftOpen())
+            throw new IllegalArgumentException(
+                "Response handlers that need the connection left open are not supported by the non-blocking transport");
+        AsyncExecution<T> execution = new AsyncExecution<T>(request,
+                responseHandler, errorResponseHandler, executionContext,
+                callback);
+        execution.start();
+        return execution.future;
+    }
+
+    /**
+     * Returns true if this client has been configured to use the non-blocking
+     * transport, and therefore supports
+     * {@link #executeAsync(Request, HttpResponseHandler, HttpResponseHandler, ExecutionContext, FutureCallback)}.
+     */
+    public boolean isNonBlockingTransportEnabled() {
+        return config.useNonBlockingTransport();
+    }
+
     /**
      * Publishes the "request content length" event, and returns an input
      * stream, which will be made mark-and-resettable if possible, for progress
@@ -435,48 +620,25 @@ public class AmazonHttpClient {
         }
         final ExecOneRequestParams p = new ExecOneRequestParams();
         while (true) {
-            p.initPerRetry();
-            if (p.redirectedURI != null) {
-                /*
-                 * [scheme:][//authority][path][?query][#fragment]
-                 */
-                String scheme = p.redirectedURI.getScheme();
-                String beforeAuthority = scheme == null ? "" : scheme + "://";
-                String authority = p.redirectedURI.getAuthority();
-                String path = p.redirectedURI.getPath();
-
-                request.setEndpoint(URI.create(beforeAuthority + authority));
-                request.setResourcePath(path);
-            }
-            if (p.authRetryParam != null) {
-                request.setEndpoint(p.authRetryParam.getEndpointForRetry());
-            }
-            awsRequestMetrics.setCounter(RequestCount, p.requestCount);
-            if (p.isRetry()) {
-                request.setParameters(originalParameters);
-                request.setHeaders(originalHeaders);
-                request.setContent(originalContent);
-            }
+            beginAttempt(request, p, originalParameters, originalHeaders,
+                    originalContent, awsRequestMetrics);
             try {
                 Response<T> response = executeOneRequest(request, responseHandler,
                     errorResponseHandler, executionContext, awsRequestMetrics,
                     p);
-                if (response != null)
+                if (response != null) {
+                    releaseRetryCapacity(p);
                     return response;
-            } catch (IOException ioe) {
-                if (log.isInfoEnabled()) {
-                    log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
                 }
-                captureExceptionMetrics(ioe, awsRequestMetrics);
-                awsRequestMetrics.addProperty(AWSRequestID, null);
-                AmazonClientException ace = new AmazonClientException(
-                        "Unable to execute HTTP request: " + ioe.getMessage(),
-                        ioe);
+            } catch (IOException ioe) {
+                AmazonClientException ace = toClientException(ioe, awsRequestMetrics);
+                recordAttemptOutcome(request, ace);
                 if (!shouldRetry(request.getOriginalRequest(),
                                 p.apacheRequest,
                                 ace,
                                 p.requestCount,
-                                config.getRetryPolicy())) {
+                                config.getRetryPolicy())
+                        || !acquireRetryCapacity(ace, p, awsRequestMetrics)) {
                     throw lastReset(ace, request);
                 }
                 // Cache the retryable exception
@@ -513,6 +675,56 @@ public class AmazonHttpClient {
         } /* end while (true) */
     }
 
+    /**
+     * Prepares the request for the next attempt, taking into account any
+     * redirection or auth error retry from the previous attempt.
+     */
+    private void beginAttempt(final Request<?> request,
+            final ExecOneRequestParams p,
+            final Map<String, String> originalParameters,
+            final Map<String, String> originalHeaders,
+            final InputStream originalContent,
+            final AWSRequestMetrics awsRequestMetrics) {
+        p.initPerRetry();
+        if (p.redirectedURI != null) {
+            /*
+             * [scheme:][//authority][path][?query][#fragment]
+             */
+            String scheme = p.redirectedURI.getScheme();
+            String beforeAuthority = scheme == null ? "" : scheme + "://";
+            String authority = p.redirectedURI.getAuthority();
+            String path = p.redirectedURI.getPath();
+
+            request.setEndpoint(URI.create(beforeAuthority + authority));
+            request.setResourcePath(path);
+        }
+        if (p.authRetryParam != null) {
+            request.setEndpoint(p.authRetryParam.getEndpointForRetry());
+        }
+        awsRequestMetrics.setCounter(RequestCount, p.requestCount);
+        if (p.isRetry()) {
+            request.setParameters(originalParameters);
+            request.setHeaders(originalHeaders);
+            request.setContent(originalContent);
+        }
+    }
+
+    /**
+     * Logs and captures the metrics of an I/O failure, and returns it wrapped
+     * as a client exception.
+     */
+    private AmazonClientException toClientException(Exception ioe,
+            AWSRequestMetrics awsRequestMetrics) {
+        if (log.isInfoEnabled()) {
+            log.info("Unable to execute HTTP request: " + ioe.getMessage(), ioe);
+        }
+        captureExceptionMetrics(ioe, awsRequestMetrics);
+        awsRequestMetrics.addProperty(AWSRequestID, null);
+        return new AmazonClientException(
+                "Unable to execute HTTP request: " + ioe.getMessage(),
+                ioe);
+    }
+
     /**
      * Used to perform a last reset on the content input stream (if
      * mark-supported); this is so that, for backward compatibility reason, any
@@ -549,6 +761,7 @@ public class AmazonHttpClient {
         private URI signerURI;
         int requestCount; // monotonic increasing
         AmazonClientException retriedException; // last retryable exception
+        int retryTokensAcquired; // taken from the retry token bucket by all retries
 
         HttpRequestBase apacheRequest;
         org.apache.http.HttpResponse apacheResponse;
@@ -616,6 +829,340 @@ public class AmazonHttpClient {
         }
     }
 
+    /**
+     * The state kept by this client for the retry token bucket, circuit
+     * breakers and adaptive rate limiting of a retry policy.
+     */
+    private static final class RetryControls {
+        final RetryPolicy retryPolicy;
+        /** The retry token bucket; or null if the policy has none. */
+        final RetryTokenBucket retryTokenBucket;
+        /** The adaptive rate limiter; or null if the policy disables it. */
+        final AdaptiveRateLimiter rateLimiter;
+        private final CircuitBreakerConfig circuitBreakerConfig;
+        /**
+         * The circuit breakers by endpoint host. Bounded, as a client can be
+         * pointed at any number of endpoints over its lifetime; an evicted
+         * endpoint starts again with a closed circuit.
+         */
+        private final FIFOCache<CircuitBreaker> circuitBreakers =
+            new FIFOCache<CircuitBreaker>(MAX_CIRCUIT_BREAKERS);
+
+        RetryControls(RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            RetryTokenBucketConfig bucketConfig = retryPolicy.getRetryTokenBucketConfig();
+            this.retryTokenBucket = bucketConfig == null
+                ? null
+                : new RetryTokenBucket(bucketConfig);
+            this.rateLimiter = retryPolicy.isAdaptiveRateLimitingEnabled()
+                ? new AdaptiveRateLimiter()
+                : null;
+            this.circuitBreakerConfig = retryPolicy.getCircuitBreakerConfig();
+        }
+
+        /**
+         * Returns the circuit breaker of the given endpoint; or null if the
+         * policy has no circuit breakers.
+         */
+        CircuitBreaker circuitBreakerFor(URI endpoint) {
+            if (circuitBreakerConfig == null)
+                return null;
+            String host = endpoint.getHost();
+            CircuitBreaker circuitBreaker = circuitBreakers.get(host);
+            if (circuitBreaker == null) {
+                synchronized (circuitBreakers) {
+                    circuitBreaker = circuitBreakers.get(host);
+                    if (circuitBreaker == null) {
+                        circuitBreaker = new CircuitBreaker(circuitBreakerConfig);
+                        circuitBreakers.add(host, circuitBreaker);
+                    }
+                }
+            }
+            return circuitBreaker;
+        }
+    }
+
+    /**
+     * Future of a request executed through the non-blocking transport, which
+     * aborts the in-flight HTTP request upon cancellation.
+     */
+    private static final class ResponseFuture<T> extends BasicFuture<Response<T>> {
+        private volatile Future<?> inFlight;
+
+        ResponseFuture() {
+            super(null);
+        }
+
+        void setInFlight(Future<?> inFlight) {
+            this.inFlight = inFlight;
+            if (isCancelled())
+                inFlight.cancel(true);
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            Future<?> f = inFlight;
+            if (cancelled && f != null)
+                f.cancel(true);
+            return cancelled;
+        }
+    }
+
+    /**
+     * Drives the execution of a request through the non-blocking transport.
+     * Each step of an attempt runs on whichever thread completed the previous
+     * step: the caller's for the first attempt, an I/O thread after a
+     * response or failure, and the transport's scheduler after a back-off
+     * pause. The steps of an execution never run concurrently.
+     */
+    private final class AsyncExecution<T>
+            implements FutureCallback<org.apache.http.HttpResponse> {
+        private final Request<?> request;
+        private final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler;
+        private final HttpResponseHandler<AmazonServiceException> errorResponseHandler;
+        private final ExecutionContext executionContext;
+        private final FutureCallback<Response<T>> callback;
+        private final AWSRequestMetrics awsRequestMetrics;
+        private final ProgressListener listener;
+        private final ExecOneRequestParams p = new ExecOneRequestParams();
+        final ResponseFuture<T> future = new ResponseFuture<T>();
+
+        private List<RequestHandler2> requestHandler2s = Collections.emptyList();
+        private InputStream origContent;
+        private InputStream toBeClosed;
+        private Map<String, String> originalParameters;
+        private Map<String, String> originalHeaders;
+        private InputStream originalContent;
+
+        AsyncExecution(Request<?> request,
+                HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+                HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+                ExecutionContext executionContext,
+                FutureCallback<Response<T>> callback) {
+            this.request = request;
+            this.responseHandler = responseHandler;
+            this.errorResponseHandler = errorResponseHandler;
+            this.executionContext = executionContext;
+            this.callback = callback;
+            this.awsRequestMetrics = executionContext.getAwsRequestMetrics();
+            this.listener = request.getOriginalRequest().getGeneralProgressListener();
+        }
+
+        void start() {
+            origContent = request.getContent();
+            try {
+                requestHandler2s = requestHandler2s(request, executionContext);
+                Map<String, String> customHeaders =
+                    request.getOriginalRequest().getCustomRequestHeaders();
+                if (customHeaders != null) {
+                    request.getHeaders().putAll(customHeaders);
+                }
+                toBeClosed = beforeRequest(request); // for progress tracking
+                // make "notCloseable", so reset would work with retries
+                request.setContent(toBeClosed == null
+                    ? null
+                    : ReleasableInputStream.wrap(toBeClosed).disableClose());
+                publishProgress(listener, ProgressEventType.CLIENT_REQUEST_STARTED_EVENT);
+                awsRequestMetrics
+                    .addPropertyWith(ServiceName, request.getServiceName())
+                    .addPropertyWith(ServiceEndpoint, request.getEndpoint());
+                setUserAgent(request);
+                originalParameters = new LinkedHashMap<String, String>(request.getParameters());
+                originalHeaders = new HashMap<String, String>(request.getHeaders());
+                originalContent = request.getContent();
+                if (originalContent != null && originalContent.markSupported()) {
+                    final int readLimit = request.getOriginalRequest()
+                        .getRequestClientOptions().getReadLimit();
+                    originalContent.mark(readLimit);
+                }
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            nextAttempt();
+        }
+
+        private void nextAttempt() {
+            if (future.isCancelled()) {
+                cleanUp();
+                return;
+            }
+            try {
+                beginAttempt(request, p, originalParameters, originalHeaders,
+                        originalContent, awsRequestMetrics);
+                prepareHttpRequest(request, executionContext, awsRequestMetrics, p);
+                final boolean isRetry = p.isRetry();
+                long delay = 0;
+                if (isRetry) {
+                    publishProgress(listener, ProgressEventType.CLIENT_REQUEST_RETRY_EVENT);
+                    awsRequestMetrics.startEvent(RetryPauseTime);
+                    // don't pause if the retry was not due to a redirection
+                    // ie when retried exception is null
+                    if (p.retriedException != null)
+                        delay = delayBeforeNextRetry(request.getOriginalRequest(),
+                            p.retriedException, p.requestCount,
+                            config.getRetryPolicy());
+                }
+                final long rateLimitDelay = delayBeforeNextSend();
+                if (rateLimitDelay > 0)
+                    awsRequestMetrics.startEvent(RateLimitPauseTime);
+                delay = Math.max(delay, 0) + rateLimitDelay;
+                if (delay <= 0) {
+                    endPauses(isRetry, rateLimitDelay);
+                    send();
+                    return;
+                }
+                asyncTransport.schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        endPauses(isRetry, rateLimitDelay);
+                        send();
+                    }
+                }, delay);
+            } catch (IOException ioe) {
+                retryOrFail(ioe);
+            } catch (RuntimeException e) {
+                fail(lastReset(captureExceptionMetrics(e, awsRequestMetrics), request));
+            }
+        }
+
+        private void endPauses(boolean isRetry, long rateLimitDelay) {
+            if (isRetry)
+                awsRequestMetrics.endEvent(RetryPauseTime);
+            if (rateLimitDelay > 0)
+                awsRequestMetrics.endEvent(RateLimitPauseTime);
+        }
+
+        private void send() {
+            try {
+                checkCircuitBreaker(request, awsRequestMetrics);
+                captureConnectionPoolMetrics(asyncTransport.getConnPoolControl(), awsRequestMetrics);
+                HttpContext httpContext = newHttpContext(awsRequestMetrics);
+                p.resetBeforeHttpRequest();
+                publishProgress(listener, ProgressEventType.HTTP_REQUEST_STARTED_EVENT);
+                awsRequestMetrics.startEvent(HttpRequestTime);
+                future.setInFlight(asyncTransport.execute(p.apacheRequest, httpContext, this));
+            } catch (RuntimeException e) {
+                fail(lastReset(captureExceptionMetrics(e, awsRequestMetrics), request));
+            }
+        }
+
+        @Override
+        public void completed(org.apache.http.HttpResponse apacheResponse) {
+            awsRequestMetrics.endEvent(HttpRequestTime);
+            p.apacheResponse = apacheResponse;
+            Response<T> response;
+            try {
+                response = handleHttpResponse(request, responseHandler,
+                        errorResponseHandler, executionContext,
+                        awsRequestMetrics, p);
+            } catch (IOException ioe) {
+                retryOrFail(ioe);
+                return;
+            } catch (RuntimeException e) {
+                fail(lastReset(captureExceptionMetrics(e, awsRequestMetrics), request));
+                return;
+            } finally {
+                HttpEntity entity = apacheResponse.getEntity();
+                if (entity != null) {
+                    try {
+                        closeQuietly(entity.getContent(), log);
+                    } catch (IOException e) {
+                        log.warn("Cannot close the response content.", e);
+                    }
+                }
+            }
+            if (response != null) {
+                releaseRetryCapacity(p);
+                succeed(response);
+            } else {
+                nextAttempt();
+            }
+        }
+
+        @Override
+        public void failed(Exception ex) {
+            awsRequestMetrics.endEvent(HttpRequestTime);
+            if (ex instanceof RuntimeException) {
+                fail(lastReset(captureExceptionMetrics((RuntimeException) ex,
+                        awsRequestMetrics), request));
+            } else {
+                retryOrFail(ex);
+            }
+        }
+
+        @Override
+        public void cancelled() {
+            awsRequestMetrics.endEvent(HttpRequestTime);
+            fail(new AmazonClientException("The HTTP request has been cancelled"));
+        }
+
+        private void retryOrFail(Exception ioe) {
+            AmazonClientException ace = toClientException(ioe, awsRequestMetrics);
+            recordAttemptOutcome(request, ace);
+            if (!shouldRetry(request.getOriginalRequest(),
+                            p.apacheRequest,
+                            ace,
+                            p.requestCount,
+                            config.getRetryPolicy())
+                    || !acquireRetryCapacity(ace, p, awsRequestMetrics)) {
+                fail(lastReset(ace, request));
+                return;
+            }
+            // Cache the retryable exception
+            p.retriedException = ace;
+            nextAttempt();
+        }
+
+        private void succeed(Response<T> response) {
+            try {
+                publishProgress(listener, ProgressEventType.CLIENT_REQUEST_SUCCESS_EVENT);
+                TimingInfo timingInfo = awsRequestMetrics.getTimingInfo().endTiming();
+                afterResponse(request, requestHandler2s, response, timingInfo);
+            } catch (RuntimeException e) {
+                fail(e);
+                return;
+            }
+            cleanUp();
+            if (callback != null && !future.isDone()) {
+                try {
+                    callback.completed(response);
+                } catch (RuntimeException e) {
+                    log.warn("Response callback failed", e);
+                }
+            }
+            future.completed(response);
+        }
+
+        private void fail(Exception e) {
+            try {
+                if (e instanceof AmazonClientException) {
+                    publishProgress(listener, ProgressEventType.CLIENT_REQUEST_FAILED_EVENT);
+                    afterError(request, null, requestHandler2s, (AmazonClientException) e);
+                }
+            } catch (RuntimeException ex) {
+                log.warn("Request handler failed", ex);
+            } finally {
+                cleanUp();
+            }
+            if (callback != null && !future.isDone()) {
+                try {
+                    callback.failed(e);
+                } catch (RuntimeException ex) {
+                    log.warn("Response callback failed", ex);
+                }
+            }
+            future.failed(e);
+        }
+
+        private void cleanUp() {
+            // Always close so any progress tracking would get the final events propagated.
+            closeQuietly(toBeClosed, log);
+            request.setContent(origContent); // restore the original content
+        }
+    }
+
     /**
      * Returns the response from executing one http request; or null for retry.
      */
@@ -626,6 +1173,166 @@ public class AmazonHttpClient {
             final AWSRequestMetrics awsRequestMetrics,
             ExecOneRequestParams p)
             throws IOException {
+        prepareHttpRequest(request, execContext, awsRequestMetrics, p);
+        final AmazonWebServiceRequest awsreq = request.getOriginalRequest();
+        final ProgressListener listener = awsreq.getGeneralProgressListener();
+
+        if (p.isRetry()) {
+            publishProgress(listener, ProgressEventType.CLIENT_REQUEST_RETRY_EVENT);
+            // Notify the progress listener of the retry
+            awsRequestMetrics.startEvent(RetryPauseTime);
+            try {
+                // don't pause if the retry was not due to a redirection
+                // ie when retried exception is null
+                if (p.retriedException != null) {
+                    pauseBeforeNextRetry(request.getOriginalRequest(),
+                        p.retriedException, p.requestCount,
+                        config.getRetryPolicy());
+                }
+            } finally {
+                awsRequestMetrics.endEvent(RetryPauseTime);
+            }
+        }
+        pauseBeforeNextSend(awsRequestMetrics);
+        checkCircuitBreaker(request, awsRequestMetrics);
+        captureConnectionPoolMetrics(httpClient.getConnectionManager(), awsRequestMetrics);
+        HttpContext httpContext = newHttpContext(awsRequestMetrics);
+        p.resetBeforeHttpRequest();
+        publishProgress(listener, ProgressEventType.HTTP_REQUEST_STARTED_EVENT);
+        awsRequestMetrics.startEvent(HttpRequestTime);
+        try {
+            p.apacheResponse = executeHttpRequest(request, execContext,
+                    awsRequestMetrics, httpContext, p);
+        } finally {
+            awsRequestMetrics.endEvent(HttpRequestTime);
+        }
+        return handleHttpResponse(request, responseHandler,
+                errorResponseHandler, execContext, awsRequestMetrics, p);
+    }
+
+    /**
+     * Executes the Apache HTTP request of a single attempt, sending a hedge of
+     * it if a hedging policy applies to the request. If the hedge wins, it
+     * replaces the Apache HTTP request of the attempt.
+     */
+    private org.apache.http.HttpResponse executeHttpRequest(
+            final Request<?> request,
+            final ExecutionContext execContext,
+            final AWSRequestMetrics awsRequestMetrics,
+            final HttpContext httpContext,
+            ExecOneRequestParams p)
+            throws IOException {
+        final AmazonWebServiceRequest awsreq = request.getOriginalRequest();
+        final HedgingPolicy hedgingPolicy = findHedgingPolicy(request);
+        final HttpRequestBase hedge = hedgingPolicy == null
+                ? null
+                : newHedgeRequest(request, execContext, p);
+        final ScheduledThreadPoolExecutor executor = hedge == null
+                ? null
+                : getHedgeExecutor();
+        if (executor == null)
+            return httpClient.execute(p.apacheRequest, httpContext);
+        final HedgedHttpExchange exchange = new HedgedHttpExchange(httpClient,
+                executor, p.apacheRequest, hedge, hedgingPolicy.getHedgeDelay(awsreq));
+        final long startNano = System.nanoTime();
+        try {
+            org.apache.http.HttpResponse apacheResponse = exchange.execute(httpContext);
+            // When the hedge wins, this understates the latency of the
+            // original request, but still places it above the hedge delay.
+            hedgingPolicy.recordLatency(awsreq,
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNano));
+            return apacheResponse;
+        } finally {
+            p.apacheRequest = exchange.getWinningRequest();
+            if (exchange.isHedgeSent())
+                awsRequestMetrics.incrementCounter(HedgeRequestCount);
+            if (exchange.isHedgeWon())
+                awsRequestMetrics.incrementCounter(HedgeWinCount);
+        }
+    }
+
+    /**
+     * Returns the hedging policy that applies to the given request, or null if
+     * it should not be hedged. A request level policy applies whatever the
+     * HTTP method, as setting it vouches for the request being idempotent; a
+     * client level policy only applies to GET and HEAD requests.
+     */
+    private HedgingPolicy findHedgingPolicy(Request<?> request) {
+        HedgingPolicy hedgingPolicy = request.getOriginalRequest().getHedgingPolicy();
+        if (hedgingPolicy != null)
+            return hedgingPolicy;
+        HttpMethodName method = request.getHttpMethod();
+        if (method == HttpMethodName.GET || method == HttpMethodName.HEAD)
+            return config.getHedgingPolicy();
+        return null;
+    }
+
+    /**
+     * Returns a duplicate of the Apache HTTP request of the current attempt,
+     * or null if its content can't be duplicated. The content is buffered for
+     * the duplicate if it's small enough and can be re-read.
+     */
+    private HttpRequestBase newHedgeRequest(final Request<?> request,
+            final ExecutionContext execContext,
+            ExecOneRequestParams p)
+            throws IOException {
+        final InputStream content = request.getContent();
+        byte[] body = null;
+        if (content != null) {
+            long contentLength = contentLengthOf(request);
+            if (contentLength < 0
+                    || contentLength > MAX_HEDGED_CONTENT_LENGTH
+                    || !content.markSupported())
+                return null;
+            body = new byte[(int) contentLength];
+            try {
+                int offset = 0;
+                while (offset < body.length) {
+                    int read = content.read(body, offset, body.length - offset);
+                    if (read == -1)
+                        return null;
+                    offset += read;
+                }
+            } finally {
+                try {
+                    content.reset();
+                } catch (IOException ex) {
+                    throw new ResetException("Failed to reset the request input stream", ex);
+                }
+            }
+        }
+        HttpRequestBase hedge =
+            httpRequestFactory.createHttpRequest(request, config, execContext);
+        hedge.setURI(p.apacheRequest.getURI());
+        if (body != null && hedge instanceof HttpEntityEnclosingRequest)
+            ((HttpEntityEnclosingRequest) hedge).setEntity(new ByteArrayEntity(body));
+        return hedge;
+    }
+
+    /**
+     * Returns the value of the Content-Length header of the given request, or
+     * -1 if it's missing or invalid.
+     */
+    private static long contentLengthOf(Request<?> request) {
+        String contentLength = request.getHeaders().get("Content-Length");
+        if (contentLength == null)
+            return -1;
+        try {
+            return Long.parseLong(contentLength.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * Resets the request content, signs the request and creates the Apache
+     * HTTP request for the next attempt.
+     */
+    private void prepareHttpRequest(final Request<?> request,
+            final ExecutionContext execContext,
+            final AWSRequestMetrics awsRequestMetrics,
+            ExecOneRequestParams p)
+            throws IOException {
         // Reset the request input stream
         if (p.isRetry()) {
             InputStream requestInputStream = request.getContent();
@@ -642,7 +1349,6 @@ public class AmazonHttpClient {
         if (requestLog.isDebugEnabled())
             requestLog.debug("Sending Request: " + request);
         final AWSCredentials credentials = execContext.getCredentials();
-        final AmazonWebServiceRequest awsreq = request.getOriginalRequest();
         // Sign the request if a signer was provided
         p.newSigner(request, execContext);
         if (p.signer != null && credentials != null) {
@@ -656,41 +1362,37 @@ public class AmazonHttpClient {
             }
         }
         p.newApacheRequest(httpRequestFactory, request, config, execContext);
-        final ProgressListener listener = awsreq.getGeneralProgressListener();
+    }
 
-        if (p.isRetry()) {
-            publishProgress(listener, ProgressEventType.CLIENT_REQUEST_RETRY_EVENT);
-            // Notify the progress listener of the retry
-            awsRequestMetrics.startEvent(RetryPauseTime);
-            try {
-                // don't pause if the retry was not due to a redirection
-                // ie when retried exception is null
-                if (p.retriedException != null) {
-                    pauseBeforeNextRetry(request.getOriginalRequest(),
-                        p.retriedException, p.requestCount,
-                        config.getRetryPolicy());
-                }
-            } finally {
-                awsRequestMetrics.endEvent(RetryPauseTime);
-            }
-        }
-        captureConnectionPoolMetrics(httpClient.getConnectionManager(), awsRequestMetrics);
+    private HttpContext newHttpContext(AWSRequestMetrics awsRequestMetrics) {
         HttpContext httpContext = new BasicHttpContext();
         httpContext.setAttribute(
             AWSRequestMetrics.class.getSimpleName(),
             awsRequestMetrics);
-        p.resetBeforeHttpRequest();
-        publishProgress(listener, ProgressEventType.HTTP_REQUEST_STARTED_EVENT);
-        awsRequestMetrics.startEvent(HttpRequestTime);
-        try {
-            p.apacheResponse = httpClient.execute(p.apacheRequest, httpContext);
-        } finally {
-            awsRequestMetrics.endEvent(HttpRequestTime);
-        }
+        return httpContext;
+    }
+
+    /**
+     * Handles the HTTP response of a single attempt. Returns the unmarshalled
+     * response if the request succeeded, or null if it should be retried.
+     *
+     * @throws AmazonServiceException
+     *             if the service returned an error that should not be retried
+     */
+    private <T> Response<T> handleHttpResponse(final Request<?> request,
+            final HttpResponseHandler<AmazonWebServiceResponse<T>> responseHandler,
+            final HttpResponseHandler<AmazonServiceException> errorResponseHandler,
+            final ExecutionContext execContext,
+            final AWSRequestMetrics awsRequestMetrics,
+            ExecOneRequestParams p)
+            throws IOException {
+        final ProgressListener listener =
+            request.getOriginalRequest().getGeneralProgressListener();
         publishProgress(listener, ProgressEventType.HTTP_REQUEST_COMPLETED_EVENT);
         final StatusLine statusLine = p.apacheResponse.getStatusLine();
         final int statusCode = statusLine == null ? -1 : statusLine.getStatusCode();
         if (isRequestSuccessful(p.apacheResponse)) {
+            recordAttemptOutcome(request, null);
             awsRequestMetrics.addProperty(StatusCode, statusCode);
             /*
              * If we get back any 2xx status code, then we know we should
@@ -711,6 +1413,7 @@ public class AmazonHttpClient {
              * point the HTTP method to the redirected location, and let
              * the next retry deliver the request to the right location.
              */
+            recordAttemptOutcome(request, null);
             Header[] locationHeaders = p.apacheResponse.getHeaders("location");
             String redirectedLocation = locationHeaders[0].getValue();
             if (log.isDebugEnabled())
@@ -725,6 +1428,7 @@ public class AmazonHttpClient {
         p.leaveHttpConnectionOpen = errorResponseHandler.needsConnectionLeftOpen();
         final AmazonServiceException ase = handleErrorResponse(request,
                 errorResponseHandler, p.apacheRequest, p.apacheResponse);
+        recordAttemptOutcome(request, ase);
         awsRequestMetrics
             .addPropertyWith(AWSRequestID, ase.getRequestId())
             .addPropertyWith(AWSErrorCode, ase.getErrorCode())
@@ -736,11 +1440,12 @@ public class AmazonHttpClient {
             p.authRetryParam = authRetry.shouldRetryWithAuthParam(request, ase);
         }
         if (p.authRetryParam == null &&
-            !shouldRetry(request.getOriginalRequest(),
+            (!shouldRetry(request.getOriginalRequest(),
                 p.apacheRequest,
                 ase,
                 p.requestCount,
-                config.getRetryPolicy())) {
+                config.getRetryPolicy())
+            || !acquireRetryCapacity(ase, p, awsRequestMetrics))) {
             throw ase;
         }
         // Comment out for now. Ref: CR2662349
@@ -769,9 +1474,15 @@ public class AmazonHttpClient {
      */
     private void captureConnectionPoolMetrics(ClientConnectionManager connectionManager,
             AWSRequestMetrics awsRequestMetrics) {
-        if (awsRequestMetrics.isEnabled()
-                && connectionManager instanceof ConnPoolControl) {
-            ConnPoolControl<?> control = (ConnPoolControl<?>) connectionManager;
+        if (connectionManager instanceof ConnPoolControl) {
+            captureConnectionPoolMetrics((ConnPoolControl<?>) connectionManager,
+                    awsRequestMetrics);
+        }
+    }
+
+    private void captureConnectionPoolMetrics(ConnPoolControl<?> control,
+            AWSRequestMetrics awsRequestMetrics) {
+        if (awsRequestMetrics.isEnabled()) {
             PoolStats stats = control.getTotalStats();
             awsRequestMetrics
                 .withCounter(HttpClientPoolAvailableCount, stats.getAvailable())
@@ -841,6 +1552,15 @@ public class AmazonHttpClient {
     public void shutdown() {
         IdleConnectionReaper.removeConnectionManager(httpClient.getConnectionManager());
         httpClient.getConnectionManager().shutdown();
+        synchronized (lazyInitLock) {
+            isShutdown = true;
+            if (asyncTransport != null) {
+                asyncTransport.shutdown();
+            }
+            if (hedgeExecutor != null) {
+                hedgeExecutor.shutdownNow();
+            }
+        }
     }
 
     /**
@@ -986,7 +1706,9 @@ public class AmazonHttpClient {
                 throw new RuntimeException("Unable to unmarshall response metadata. Response Code: " +
                         httpResponse.getStatusCode() + ", Response Text: " + httpResponse.getStatusText());
 
-            responseMetadataCache.add(request.getOriginalRequest(), awsResponse.getResponseMetadata());
+            if (responseMetadataCache != null) {
+                responseMetadataCache.add(request.getOriginalRequest(), awsResponse.getResponseMetadata());
+            }
 
             if (requestLog.isDebugEnabled()) {
                 final StatusLine statusLine = apacheHttpResponse.getStatusLine();
@@ -1128,6 +1850,24 @@ public class AmazonHttpClient {
                                     AmazonClientException previousException,
                                     int requestCount,
                                     RetryPolicy retryPolicy) {
+        long delay = delayBeforeNextRetry(originalRequest, previousException,
+                requestCount, retryPolicy);
+        try {
+            Thread.sleep(delay);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Returns the delay in milliseconds before the next retry attempt, as
+     * determined by the back-off strategy of the given retry policy.
+     */
+    private long delayBeforeNextRetry(AmazonWebServiceRequest originalRequest,
+                                      AmazonClientException previousException,
+                                      int requestCount,
+                                      RetryPolicy retryPolicy) {
         final int retries = requestCount // including next attempt
                             - 1          // number of attempted requests
                             - 1;         // number of attempted retries
@@ -1139,12 +1879,135 @@ public class AmazonHttpClient {
             log.debug("Retriable error detected, " +
                     "will retry in " + delay + "ms, attempt number: " + retries);
         }
+        return delay;
+    }
+
+    /**
+     * Returns the retry controls of the retry policy currently configured,
+     * creating them if the retry policy has changed.
+     */
+    private RetryControls retryControls() {
+        RetryPolicy retryPolicy = config.getRetryPolicy();
+        RetryControls controls = retryControls;
+        if (controls == null || controls.retryPolicy != retryPolicy) {
+            controls = new RetryControls(retryPolicy);
+            retryControls = controls;
+        }
+        return controls;
+    }
+
+    /**
+     * Takes the tokens for retrying a failed request out of the retry token
+     * bucket, if the retry policy has one. Returns false if the bucket doesn't
+     * have enough tokens left, in which case the request must not be retried.
+     */
+    private boolean acquireRetryCapacity(AmazonClientException exception,
+            ExecOneRequestParams p, AWSRequestMetrics awsRequestMetrics) {
+        RetryTokenBucket bucket = retryControls().retryTokenBucket;
+        if (bucket == null)
+            return true;
+        RetryTokenBucketConfig bucketConfig = bucket.getConfig();
+        int cost = exception.getCause() instanceof IOException
+                 ? bucketConfig.getIoErrorRetryCost()
+                 : bucketConfig.getRetryCost();
+        if (!bucket.tryAcquire(cost)) {
+            awsRequestMetrics.incrementCounter(RetryCapacityExceededCount);
+            if (log.isDebugEnabled())
+                log.debug("Not retrying, the retry capacity of the client is exhausted");
+            return false;
+        }
+        p.retryTokensAcquired += cost;
+        return true;
+    }
 
+    /**
+     * Puts tokens back in the retry token bucket, if the retry policy has
+     * one, after a request has succeeded: the tokens taken by its retries, or
+     * the no-retry increment if it wasn't retried.
+     */
+    private void releaseRetryCapacity(ExecOneRequestParams p) {
+        RetryTokenBucket bucket = retryControls().retryTokenBucket;
+        if (bucket != null)
+            bucket.release(p.retryTokensAcquired > 0
+                    ? p.retryTokensAcquired
+                    : bucket.getConfig().getNoRetryIncrement());
+    }
+
+    /**
+     * Fails fast if the circuit breaker of the request's endpoint is open.
+     *
+     * @throws AmazonClientException
+     *             if the request must not be sent
+     */
+    private void checkCircuitBreaker(Request<?> request,
+            AWSRequestMetrics awsRequestMetrics) {
+        CircuitBreaker circuitBreaker =
+            retryControls().circuitBreakerFor(request.getEndpoint());
+        if (circuitBreaker != null && !circuitBreaker.allowRequest()) {
+            awsRequestMetrics.incrementCounter(CircuitBreakerRejectedCount);
+            throw new AmazonClientException("Unable to execute HTTP request: "
+                    + "the circuit breaker for " + request.getEndpoint()
+                    + " is open after too many failed requests");
+        }
+    }
+
+    /**
+     * Records the outcome of an attempt with the circuit breaker of the
+     * request's endpoint and with the adaptive rate limiter, if the retry
+     * policy has them.
+     *
+     * @param exception
+     *            The exception the attempt failed with, or null if it
+     *            received a successful or redirect response.
+     */
+    private void recordAttemptOutcome(Request<?> request,
+            AmazonClientException exception) {
+        RetryControls controls = retryControls();
+        AmazonServiceException ase = exception instanceof AmazonServiceException
+                ? (AmazonServiceException) exception
+                : null;
+        boolean isThrottled = RetryUtils.isThrottlingException(ase);
+        CircuitBreaker circuitBreaker =
+            controls.circuitBreakerFor(request.getEndpoint());
+        if (circuitBreaker != null) {
+            boolean isFailure = exception != null
+                    && (ase == null || isThrottled
+                        || ase.getStatusCode() >= HttpStatus.SC_INTERNAL_SERVER_ERROR);
+            if (isFailure)
+                circuitBreaker.onFailure();
+            else
+                circuitBreaker.onSuccess();
+        }
+        // Only responses tell anything about the rate accepted by the service
+        if (controls.rateLimiter != null && (exception == null || ase != null))
+            controls.rateLimiter.onResponse(isThrottled);
+    }
+
+    /**
+     * Returns the delay in milliseconds before the next attempt may be sent,
+     * as determined by the adaptive rate limiter of the retry policy, if any.
+     */
+    private long delayBeforeNextSend() {
+        AdaptiveRateLimiter rateLimiter = retryControls().rateLimiter;
+        return rateLimiter == null ? 0 : rateLimiter.acquire();
+    }
+
+    /**
+     * Waits until the next attempt may be sent, as determined by the adaptive
+     * rate limiter of the retry policy, if any.
+     */
+    private void pauseBeforeNextSend(AWSRequestMetrics awsRequestMetrics) {
+        long delay = delayBeforeNextSend();
+        if (delay <= 0)
+            return;
+        awsRequestMetrics.startEvent(RateLimitPauseTime);
         try {
             Thread.sleep(delay);
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
             throw new AmazonClientException(e.getMessage(), e);
+        } finally {
+            awsRequestMetrics.endEvent(RateLimitPauseTime);
         }
     }
 
@@ -0,0 +1,328 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import static com.amazonaws.SDKGlobalConfiguration.DISABLE_CERT_CHECKING_SYSTEM_PROPERTY;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManager;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.Header;
+import org.apache.http.HeaderElement;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.NTCredentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.entity.GzipDecompressingEntity;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.concurrent.FutureCallback;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.client.CloseableHttpAsyncClient;
+import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.impl.nio.conn.PoolingNHttpClientConnectionManager;
+import org.apache.http.impl.nio.reactor.DefaultConnectingIOReactor;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.conn.NoopIOSessionStrategy;
+import org.apache.http.nio.conn.SchemeIOSessionStrategy;
+import org.apache.http.nio.conn.ssl.SSLIOSessionStrategy;
+import org.apache.http.nio.reactor.IOReactorException;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.protocol.HttpContext;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * Non-blocking HTTP transport used by {@link AmazonHttpClient} when
+ * {@link ClientConfiguration#useNonBlockingTransport()} is enabled.
+ * <p>
+ * Requests are written and responses are read by a small, fixed number of
+ * event-loop threads (the Apache HttpAsyncClient I/O reactor) sharing their
+ * own connection pool, so the number of in-flight requests is no longer tied
+ * to the number of threads. Response entities are fully buffered before they
+ * are handed back, which makes this transport unsuitable for response
+ * handlers that stream the content after the call returns.
+ * <p>
+ * This class depends on the optional
+ * <code>org.apache.httpcomponents:httpasyncclient</code> artifact, and is only
+ * loaded when the non-blocking transport has been enabled.
+ */
+final class AsyncHttpTransport {
+    private static final Log log = LogFactory.getLog(AsyncHttpTransport.class);
+
+    /** The period between idle connection sweeps of the connection pool. */
+    private static final long IDLE_SWEEP_PERIOD_MILLISECONDS = 1000 * 60 * 1;
+
+    private final CloseableHttpAsyncClient httpAsyncClient;
+    private final PoolingNHttpClientConnectionManager connectionManager;
+
+    /**
+     * Used to delay retries without holding on to a thread, and to sweep idle
+     * connections from the pool.
+     */
+    private final ScheduledExecutorService scheduler;
+
+    private final boolean useGzip;
+
+    private AsyncHttpTransport(CloseableHttpAsyncClient httpAsyncClient,
+            PoolingNHttpClientConnectionManager connectionManager,
+            ScheduledExecutorService scheduler,
+            boolean useGzip) {
+        this.httpAsyncClient = httpAsyncClient;
+        this.connectionManager = connectionManager;
+        this.scheduler = scheduler;
+        this.useGzip = useGzip;
+    }
+
+    /**
+     * Creates and starts a new non-blocking transport configured from the
+     * given client configuration.
+     */
+    static AsyncHttpTransport create(ClientConfiguration config) {
+        final int ioThreadCount = config.getNonBlockingIoThreadCount() > 0
+                ? config.getNonBlockingIoThreadCount()
+                : Runtime.getRuntime().availableProcessors();
+        IOReactorConfig.Builder reactorConfig = IOReactorConfig.custom()
+                .setIoThreadCount(ioThreadCount)
+                .setConnectTimeout(config.getConnectionTimeout())
+                .setSoTimeout(config.getSocketTimeout())
+                .setTcpNoDelay(true)
+                .setSoKeepAlive(config.useTcpKeepAlive());
+        int socketSendBufferSizeHint = config.getSocketBufferSizeHints()[0];
+        int socketReceiveBufferSizeHint = config.getSocketBufferSizeHints()[1];
+        if (socketSendBufferSizeHint > 0)
+            reactorConfig.setSndBufSize(socketSendBufferSizeHint);
+        if (socketReceiveBufferSizeHint > 0)
+            reactorConfig.setRcvBufSize(socketReceiveBufferSizeHint);
+
+        final PoolingNHttpClientConnectionManager connectionManager;
+        try {
+            DefaultConnectingIOReactor ioReactor = new DefaultConnectingIOReactor(
+                    reactorConfig.build(), new NamedThreadFactory("java-sdk-nio-dispatcher"));
+            connectionManager = new PoolingNHttpClientConnectionManager(
+                    ioReactor, null, createSessionStrategyRegistry(config), null, null,
+                    config.getConnectionTTL(), TimeUnit.MILLISECONDS);
+        } catch (IOReactorException e) {
+            throw new AmazonClientException("Unable to create the non-blocking I/O reactor", e);
+        }
+        connectionManager.setDefaultMaxPerRoute(config.getMaxConnections());
+        connectionManager.setMaxTotal(config.getMaxConnections());
+
+        RequestConfig.Builder requestConfig = RequestConfig.custom()
+                .setConnectTimeout(config.getConnectionTimeout())
+                .setSocketTimeout(config.getSocketTimeout())
+                .setRedirectsEnabled(false);
+        if (config.getLocalAddress() != null) {
+            requestConfig.setLocalAddress(config.getLocalAddress());
+        }
+
+        HttpAsyncClientBuilder builder = HttpAsyncClientBuilder.create()
+                .setConnectionManager(connectionManager)
+                .setRedirectStrategy(new HttpClientFactory.NeverFollowRedirectStrategy())
+                .setThreadFactory(new NamedThreadFactory("java-sdk-nio-reactor"))
+                .disableCookieManagement();
+
+        String proxyHost = config.getProxyHost();
+        int proxyPort = config.getProxyPort();
+        if (proxyHost != null && proxyPort > 0) {
+            AmazonHttpClient.log.info("Configuring Proxy for the non-blocking transport. Proxy Host: "
+                    + proxyHost + " " + "Proxy Port: " + proxyPort);
+            HttpHost proxyHttpHost = new HttpHost(proxyHost, proxyPort);
+            requestConfig.setProxy(proxyHttpHost);
+
+            String proxyUsername = config.getProxyUsername();
+            String proxyPassword = config.getProxyPassword();
+            if (proxyUsername != null && proxyPassword != null) {
+                CredentialsProvider credentialsProvider = new BasicCredentialsProvider();
+                credentialsProvider.setCredentials(
+                        new AuthScope(proxyHost, proxyPort),
+                        new NTCredentials(proxyUsername, proxyPassword,
+                                config.getProxyWorkstation(), config.getProxyDomain()));
+                builder.setDefaultCredentialsProvider(credentialsProvider);
+            }
+            if (config.isPreemptiveBasicProxyAuth()) {
+                builder.addInterceptorFirst(new HttpClientFactory.PreemptiveProxyAuth(proxyHttpHost));
+            }
+        }
+        if (config.useGzip()) {
+            builder.addInterceptorLast(new HttpRequestInterceptor() {
+                public void process(final HttpRequest request,
+                        final HttpContext context) throws HttpException,
+                        IOException {
+                    if (!request.containsHeader("Accept-Encoding")) {
+                        request.addHeader("Accept-Encoding", "gzip");
+                    }
+                }
+            });
+        }
+        builder.setDefaultRequestConfig(requestConfig.build());
+
+        CloseableHttpAsyncClient httpAsyncClient = builder.build();
+        httpAsyncClient.start();
+
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(
+                1, new NamedThreadFactory("java-sdk-nio-scheduler"));
+        scheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        final AsyncHttpTransport transport = new AsyncHttpTransport(
+                httpAsyncClient, connectionManager, scheduler, config.useGzip());
+        if (config.useReaper()) {
+            scheduler.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    transport.closeIdleConnections();
+                }
+            }, IDLE_SWEEP_PERIOD_MILLISECONDS, IDLE_SWEEP_PERIOD_MILLISECONDS, TimeUnit.MILLISECONDS);
+        }
+        return transport;
+    }
+
+    private static Registry<SchemeIOSessionStrategy> createSessionStrategyRegistry(ClientConfiguration config) {
+        SSLIOSessionStrategy https;
+        try {
+            if (System.getProperty(DISABLE_CERT_CHECKING_SYSTEM_PROPERTY) != null) {
+                SSLContext context = SSLContext.getInstance("TLS");
+                context.init(null, new TrustManager[] { new HttpClientFactory.TrustingX509TrustManager() }, null);
+                https = new SSLIOSessionStrategy(context, SSLIOSessionStrategy.ALLOW_ALL_HOSTNAME_VERIFIER);
+            } else {
+                https = new SSLIOSessionStrategy(SSLContext.getDefault(),
+                        SSLIOSessionStrategy.STRICT_HOSTNAME_VERIFIER);
+            }
+        } catch (Exception e) {
+            throw new AmazonClientException("Unable to access default SSL context", e);
+        }
+        return RegistryBuilder.<SchemeIOSessionStrategy>create()
+                .register("http", NoopIOSessionStrategy.INSTANCE)
+                .register("https", https)
+                .build();
+    }
+
+    /**
+     * Sends the given request without blocking the calling thread. The
+     * callback is invoked on one of the I/O dispatcher threads once the
+     * response, including its content, has been fully received.
+     */
+    Future<HttpResponse> execute(HttpRequestBase request, HttpContext context,
+            final FutureCallback<HttpResponse> callback) {
+        return httpAsyncClient.execute(request, context, new FutureCallback<HttpResponse>() {
+            @Override
+            public void completed(HttpResponse response) {
+                if (useGzip) {
+                    decodeGzipContent(response);
+                }
+                callback.completed(response);
+            }
+
+            @Override
+            public void failed(Exception ex) {
+                callback.failed(ex);
+            }
+
+            @Override
+            public void cancelled() {
+                callback.cancelled();
+            }
+        });
+    }
+
+    /**
+     * Runs the given task after the specified delay, without holding on to a
+     * thread in the meantime.
+     */
+    void schedule(Runnable task, long delayMilliseconds) {
+        scheduler.schedule(task, delayMilliseconds, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Returns the connection pool of this transport for metrics purposes.
+     */
+    ConnPoolControl<?> getConnPoolControl() {
+        return connectionManager;
+    }
+
+    void closeIdleConnections() {
+        try {
+            connectionManager.closeExpiredConnections();
+            connectionManager.closeIdleConnections(60, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            log.warn("Unable to close idle connections", e);
+        }
+    }
+
+    /**
+     * Shuts down the I/O reactor, closing all pooled connections.
+     */
+    void shutdown() {
+        scheduler.shutdownNow();
+        try {
+            httpAsyncClient.close();
+        } catch (IOException e) {
+            log.debug("Unable to cleanly shut down the non-blocking transport", e);
+        }
+    }
+
+    private static void decodeGzipContent(HttpResponse response) {
+        HttpEntity entity = response.getEntity();
+        if (entity != null) {
+            Header ceheader = entity.getContentEncoding();
+            if (ceheader != null) {
+                HeaderElement[] codecs = ceheader.getElements();
+                for (int i = 0; i < codecs.length; i++) {
+                    if (codecs[i].getName().equalsIgnoreCase("gzip")) {
+                        response.setEntity(new GzipDecompressingEntity(entity));
+                        return;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Creates daemon threads with a recognizable name, so that an idle
+     * transport never prevents the JVM from exiting.
+     */
+    static final class NamedThreadFactory implements ThreadFactory {
+        private final String prefix;
+        private final AtomicInteger count = new AtomicInteger();
+
+        NamedThreadFactory(String prefix) {
+            this.prefix = prefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, prefix + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,236 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import java.io.IOException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpResponse;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+
+/**
+ * A single HTTP exchange that sends a duplicate (hedge) of the request if no
+ * response has been received after a delay. The original request is executed
+ * on the calling thread, and the hedge on the client's hedge executor; whichever
+ * receives a response first wins, and the other is aborted, which releases
+ * its connection.
+ * <p>
+ * If the original request fails while the hedge is in flight, the outcome of
+ * the hedge is awaited instead, so that a hedge can also mask a connection
+ * that fails; a hedge that fails is otherwise ignored.
+ *
+ * @see com.amazonaws.retry.HedgingPolicy
+ */
+@ThreadSafe
+class HedgedHttpExchange {
+    private static final Log log = LogFactory.getLog(HedgedHttpExchange.class);
+
+    private final HttpClient httpClient;
+    private final ScheduledThreadPoolExecutor executor;
+    private final HttpRequestBase request;
+    private final HttpRequestBase hedge;
+    private final long delayInMillis;
+
+    // All guarded by this
+    private HttpRequestBase winner;
+    private HttpResponse hedgeResponse;
+    private boolean isHedgeStarted;
+    private boolean isHedgeDone;
+    private boolean isRequestDone;
+
+    /**
+     * @param httpClient
+     *            the client used to execute both the request and the hedge
+     * @param executor
+     *            the executor the hedge is scheduled and executed on
+     * @param request
+     *            the original request
+     * @param hedge
+     *            a duplicate of the original request, with its own entity
+     * @param delayInMillis
+     *            the delay after which the hedge is sent
+     */
+    HedgedHttpExchange(HttpClient httpClient,
+            ScheduledThreadPoolExecutor executor, HttpRequestBase request,
+            HttpRequestBase hedge, long delayInMillis) {
+        this.httpClient = httpClient;
+        this.executor = executor;
+        this.request = request;
+        this.hedge = hedge;
+        this.delayInMillis = delayInMillis;
+    }
+
+    /**
+     * Executes the request, and the hedge if the request takes longer than
+     * the delay, and returns the first response received.
+     *
+     * @param context
+     *            the context of the original request; the hedge is executed
+     *            with a fresh context, as the request metrics kept in the
+     *            original context are not thread-safe
+     */
+    HttpResponse execute(HttpContext context) throws IOException {
+        Future<?> scheduledHedge;
+        try {
+            scheduledHedge = executor.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    executeHedge();
+                }
+            }, delayInMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            // The client is being shut down
+            scheduledHedge = null;
+        }
+        HttpResponse response;
+        try {
+            response = httpClient.execute(request, context);
+        } catch (IOException e) {
+            cancel(scheduledHedge);
+            HttpResponse hedged = awaitHedgeAfterFailure();
+            if (hedged == null)
+                throw e;
+            return hedged;
+        } catch (RuntimeException e) {
+            cancel(scheduledHedge);
+            HttpResponse hedged = awaitHedgeAfterFailure();
+            if (hedged == null)
+                throw e;
+            return hedged;
+        }
+        cancel(scheduledHedge);
+        boolean isWon;
+        boolean shouldAbortHedge;
+        synchronized (this) {
+            if (winner == null)
+                winner = request;
+            isWon = winner == request;
+            shouldAbortHedge = isWon && isHedgeStarted && !isHedgeDone;
+        }
+        if (shouldAbortHedge)
+            hedge.abort();
+        if (isWon)
+            return response;
+        // The hedge won just as the response arrived; release its connection
+        request.abort();
+        synchronized (this) {
+            return hedgeResponse;
+        }
+    }
+
+    /**
+     * Returns the request whose response was returned, or the original
+     * request if neither succeeded.
+     */
+    synchronized HttpRequestBase getWinningRequest() {
+        return winner == null ? request : winner;
+    }
+
+    /**
+     * Returns true if the hedge was sent.
+     */
+    synchronized boolean isHedgeSent() {
+        return isHedgeStarted;
+    }
+
+    /**
+     * Returns true if the response to the hedge was returned.
+     */
+    synchronized boolean isHedgeWon() {
+        return winner == hedge;
+    }
+
+    /**
+     * Cancels the hedge if it hasn't started yet, and removes it from the
+     * executor's queue; the executor doesn't remove cancelled tasks by
+     * itself before Java 7.
+     */
+    private void cancel(Future<?> scheduledHedge) {
+        if (scheduledHedge != null && scheduledHedge.cancel(false)
+                && scheduledHedge instanceof Runnable) {
+            executor.remove((Runnable) scheduledHedge);
+        }
+    }
+
+    private void executeHedge() {
+        synchronized (this) {
+            if (winner != null || isRequestDone)
+                return;
+            isHedgeStarted = true;
+        }
+        if (log.isDebugEnabled())
+            log.debug("No response after " + delayInMillis
+                    + " ms; sending a hedge of " + request.getRequestLine());
+        HttpResponse response = null;
+        try {
+            response = httpClient.execute(hedge, new BasicHttpContext());
+        } catch (IOException e) {
+            if (log.isDebugEnabled())
+                log.debug("Hedge of " + hedge.getRequestLine() + " failed", e);
+        } catch (RuntimeException e) {
+            if (log.isDebugEnabled())
+                log.debug("Hedge of " + hedge.getRequestLine() + " failed", e);
+        }
+        if (!hedgeDone(response)) {
+            hedge.abort();
+        }
+    }
+
+    /**
+     * Records the outcome of the hedge, and returns true if its response
+     * won.
+     */
+    private boolean hedgeDone(HttpResponse response) {
+        boolean isWon;
+        synchronized (this) {
+            isHedgeDone = true;
+            isWon = response != null && winner == null;
+            if (isWon) {
+                winner = hedge;
+                hedgeResponse = response;
+            }
+            notifyAll();
+        }
+        if (isWon)
+            request.abort();
+        return isWon;
+    }
+
+    /**
+     * Called when the original request has failed. Returns the response to
+     * the hedge if it won or is in flight and succeeds, or null otherwise.
+     */
+    private synchronized HttpResponse awaitHedgeAfterFailure() {
+        isRequestDone = true;
+        try {
+            while (winner == null && isHedgeStarted && !isHedgeDone)
+                wait();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            hedge.abort();
+            return null;
+        }
+        return winner == hedge ? hedgeResponse : null;
+    }
+}
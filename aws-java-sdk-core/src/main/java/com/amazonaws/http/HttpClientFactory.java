@@ -209,7 +209,7 @@ class HttpClientFactory {
     /**
      * Disable http redirect inside Apache HttpClient.
      */
-    private static final class NeverFollowRedirectStrategy implements RedirectStrategy {
+    static final class NeverFollowRedirectStrategy implements RedirectStrategy {
 
         @Override
         public boolean isRedirected(HttpRequest request, HttpResponse response,
@@ -284,7 +284,7 @@ class HttpClientFactory {
      * Simple implementation of X509TrustManager that trusts all certificates.
      * This class is only intended to be used for testing purposes.
      */
-    private static class TrustingX509TrustManager implements X509TrustManager {
+    static class TrustingX509TrustManager implements X509TrustManager {
         private static final X509Certificate[] X509_CERTIFICATES = new X509Certificate[0];
 
         public X509Certificate[] getAcceptedIssuers() {
@@ -306,7 +306,7 @@ class HttpClientFactory {
      * HttpRequestInterceptor implementation to set up pre-emptive
      * authentication against a defined basic proxy server.
      */
-    private static class PreemptiveProxyAuth implements HttpRequestInterceptor {
+    static class PreemptiveProxyAuth implements HttpRequestInterceptor {
         private final HttpHost proxyHost;
 
         public PreemptiveProxyAuth(HttpHost proxyHost) {
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * A target number of concurrent tasks, such as requests kept in flight, which
+ * adapts to the demand between one and a maximum.
+ */
+@ThreadSafe
+public final class AdaptiveTarget {
+    private final AtomicInteger target;
+
+    /**
+     * @param initialTarget
+     *            the initial target, at least 1
+     */
+    public AdaptiveTarget(final int initialTarget) {
+        if (initialTarget < 1) {
+            throw new IllegalArgumentException("initialTarget "
+                    + initialTarget + " must be at least 1");
+        }
+        target = new AtomicInteger(initialTarget);
+    }
+
+    /**
+     * Returns the current target.
+     */
+    public int get() {
+        return target.get();
+    }
+
+    /**
+     * Adjusts the target by the given delta, within one and the given
+     * maximum, and returns the new target. A maximum below one is taken as
+     * one.
+     */
+    public int adjust(final int delta, final int max) {
+        final int upperBound = Math.max(max, 1);
+        while (true) {
+            int current = target.get();
+            int adjusted = Math.max(1, Math.min(upperBound, current + delta));
+            if (adjusted == current || target.compareAndSet(current, adjusted)) {
+                return adjusted;
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.retry.RetryUtils;
+
+/**
+ * The threads and buffer accounting shared by the buffered publishers, which
+ * buffer what they are given and send it in batches in the background.
+ * <p>
+ * Batches are sent on an executor, either given or owned; a scheduler runs
+ * the periodic flushes and delays the retries. The items buffered and in
+ * flight are counted until they are sent or dropped, and their size is
+ * limited by a fair semaphore of buffer bytes.
+ */
+@ThreadSafe
+public final class BufferedPublisherSupport {
+
+    private static final Log log = LogFactory.getLog(BufferedPublisherSupport.class);
+
+    /** The minimum time (milliseconds) between two checks of a linger time. */
+    private static final long MIN_LINGER_CHECK_INTERVAL_MS = 5;
+
+    private final ExecutorService executor;
+    private final boolean isExecutorOwned;
+    private final ScheduledExecutorService scheduler;
+
+    /** The bytes that may still be buffered, of the maximum buffered bytes */
+    private final Semaphore availableBytes;
+    /** The number of items buffered or in flight */
+    private final AtomicLong outstandingCount = new AtomicLong();
+    /** Notified when there are no more outstanding items */
+    private final Object outstandingLock = new Object();
+
+    private volatile boolean isShutdown;
+
+    /**
+     * @param threadNamePrefix
+     *            the prefix of the names of the threads, such as
+     *            "logs-publisher-"
+     * @param executor
+     *            the executor sending the batches, which isn't shut down by
+     *            this object; or null to use an owned pool of daemon threads
+     * @param maxConcurrency
+     *            the number of threads of the owned pool
+     * @param maxBufferedBytes
+     *            the maximum size of the items buffered and in flight, or 0
+     *            if only their number is tracked
+     */
+    public BufferedPublisherSupport(String threadNamePrefix,
+            ExecutorService executor, int maxConcurrency, int maxBufferedBytes) {
+        this.isExecutorOwned = executor == null;
+        this.executor = isExecutorOwned
+                ? Executors.newFixedThreadPool(maxConcurrency,
+                        newThreadFactory(threadNamePrefix + "worker-"))
+                : executor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                newThreadFactory(threadNamePrefix + "scheduler-"));
+        this.availableBytes = new Semaphore(maxBufferedBytes, true);
+    }
+
+    /**
+     * Runs the given task every period (milliseconds) on the scheduler,
+     * logging rather than propagating its runtime exceptions, which would
+     * cancel it.
+     */
+    public void schedulePeriodically(final Runnable task, long periodMs) {
+        scheduler.scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    task.run();
+                } catch (RuntimeException e) {
+                    log.warn("Unable to run the periodic task of a buffered publisher", e);
+                }
+            }
+        }, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    /** Returns the executor sending the batches, given or owned. */
+    public ExecutorService getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Runs the given task on the executor.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException
+     *             if the executor is shut down or saturated
+     */
+    public void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Runs the given task on the scheduler after the given delay
+     * (milliseconds); the task should only hand work over to the executor.
+     *
+     * @throws java.util.concurrent.RejectedExecutionException
+     *             if the scheduler is shut down
+     */
+    public void schedule(Runnable task, long delayMs) {
+        scheduler.schedule(task, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Counts the given number of items as outstanding, reserving their buffer
+     * space if available without waiting; returns false otherwise.
+     */
+    public boolean tryReserve(int count, int bytes) {
+        if (!availableBytes.tryAcquire(bytes)) {
+            return false;
+        }
+        outstandingCount.addAndGet(count);
+        return true;
+    }
+
+    /**
+     * Counts the given number of items as outstanding, reserving their buffer
+     * space, waiting until it is available.
+     *
+     * @throws AmazonClientException
+     *             if the thread is interrupted while waiting
+     */
+    public void reserve(int count, int bytes) {
+        try {
+            availableBytes.acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Interrupted while waiting for buffer space", e);
+        }
+        outstandingCount.addAndGet(count);
+    }
+
+    /**
+     * Releases the buffer space of the given number of items, which were
+     * sent or dropped.
+     */
+    public void release(int count, long bytes) {
+        availableBytes.release((int) bytes);
+        if (outstandingCount.addAndGet(-count) == 0) {
+            synchronized (outstandingLock) {
+                outstandingLock.notifyAll();
+            }
+        }
+    }
+
+    /** Returns the number of items buffered or in flight. */
+    public long getOutstandingCount() {
+        return outstandingCount.get();
+    }
+
+    /**
+     * Waits until no items are outstanding.
+     *
+     * @throws AmazonClientException
+     *             if the thread is interrupted while waiting
+     */
+    public void awaitOutstanding() {
+        synchronized (outstandingLock) {
+            while (outstandingCount.get() > 0) {
+                try {
+                    outstandingLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new AmazonClientException("Interrupted while flushing the buffer", e);
+                }
+            }
+        }
+    }
+
+    public boolean isShutdown() {
+        return isShutdown;
+    }
+
+    /**
+     * Marks the publisher as shut down; it should then refuse new items, and
+     * send those outstanding before calling {@link #releaseThreads()}.
+     */
+    public void markShutdown() {
+        isShutdown = true;
+    }
+
+    /**
+     * Shuts down the scheduler, and the executor if owned.
+     */
+    public void releaseThreads() {
+        scheduler.shutdown();
+        if (isExecutorOwned) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the interval (milliseconds) at which to check whether buffered
+     * items have lingered for the given time.
+     */
+    public static long lingerCheckIntervalMs(long lingerMs) {
+        return Math.max(lingerMs / 4, MIN_LINGER_CHECK_INTERVAL_MS);
+    }
+
+    /**
+     * Returns the backoff (milliseconds) before the given retry, counted from
+     * 1: the initial backoff, doubled for each further retry, up to the given
+     * maximum.
+     */
+    public static long backoffMs(long initialBackoffMs, int retry, long maxBackoffMs) {
+        return Math.min(maxBackoffMs, initialBackoffMs << Math.min(Math.max(retry - 1, 0), 16));
+    }
+
+    /**
+     * Returns whether a batch which failed with the given exception is worth
+     * sending again: on throttling, server errors, and retryable client
+     * errors.
+     */
+    public static boolean isRetryable(AmazonClientException e) {
+        if (e instanceof AmazonServiceException) {
+            AmazonServiceException ase = (AmazonServiceException) e;
+            return ase.getStatusCode() >= 500 || RetryUtils.isThrottlingException(ase);
+        }
+        return e.isRetryable();
+    }
+
+    /** Returns a factory of daemon threads named with the given prefix. */
+    public static ThreadFactory newThreadFactory(final String namePrefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setName(namePrefix + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * A lock under which work queued by several threads, typically in concurrent
+ * queues, is drained by one thread at a time, without making the other
+ * threads wait: a thread finding the lock held leaves its work to the holder,
+ * which checks for work again once it releases the lock, so that no work is
+ * left behind.
+ */
+@ThreadSafe
+public final class DrainLock {
+
+    /**
+     * The work drained under a {@link DrainLock}.
+     *
+     * @param <T>
+     *            the type of what's left to do once the lock is released
+     */
+    public interface Drain<T> {
+        /**
+         * Returns true if there is work to drain. Called without holding the
+         * lock.
+         */
+        boolean hasWork();
+
+        /**
+         * Drains the work, holding the lock, and returns what's left to do
+         * once the lock is released.
+         */
+        T drain();
+
+        /**
+         * Completes the given result of {@link #drain()}, once the lock is
+         * released; for example signals the futures filled by the drain.
+         */
+        void afterDrain(T drained);
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * Drains the given work as long as there is some, unless another thread
+     * is already draining; returns without waiting in that case.
+     */
+    public <T> void drain(Drain<T> work) {
+        while (work.hasWork()) {
+            if (!lock.tryLock()) {
+                // the holder of the lock will check for work again once it
+                // releases it
+                return;
+            }
+            T drained;
+            try {
+                drained = work.drain();
+            } finally {
+                lock.unlock();
+            }
+            work.afterDrain(drained);
+        }
+    }
+
+    /**
+     * Acquires the lock, waiting for it if necessary; for work which must not
+     * be left to another thread.
+     */
+    public void lock() {
+        lock.lock();
+    }
+
+    /**
+     * Releases the lock acquired with {@link #lock()}.
+     */
+    public void unlock() {
+        lock.unlock();
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * A future completed by the buffered clients once the request it represents
+ * has succeeded or failed. It can't be cancelled. Subclasses can react to its
+ * completion, for example by calling a handler, by overriding
+ * {@link #onSuccess(Object)} and {@link #onFailure(Exception)}.
+ *
+ * @param <T>
+ *            the result type
+ */
+@ThreadSafe
+public class SettableFuture<T> implements Future<T> {
+    private T result;
+    private Exception exception;
+    private boolean done;
+
+    /**
+     * Completes this future with the given result, unless it is already
+     * done; returns true if it was completed by this call.
+     */
+    public boolean setSuccess(T result) {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.result = result;
+            done = true;
+            notifyAll();
+        }
+        onSuccess(result);
+        return true;
+    }
+
+    /**
+     * Completes this future with the given cause of failure, unless it is
+     * already done; returns true if it was completed by this call.
+     */
+    public boolean setFailure(Exception exception) {
+        synchronized (this) {
+            if (done) {
+                return false;
+            }
+            this.exception = exception;
+            done = true;
+            notifyAll();
+        }
+        onFailure(exception);
+        return true;
+    }
+
+    /**
+     * Called once this future has succeeded, on the thread completing it,
+     * without holding its lock. Does nothing by default.
+     */
+    protected void onSuccess(T result) {
+    }
+
+    /**
+     * Called once this future has failed, on the thread completing it,
+     * without holding its lock. Does nothing by default.
+     */
+    protected void onFailure(Exception exception) {
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        // not cancellable
+        return false;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        // not cancellable
+        return false;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return done;
+    }
+
+    @Override
+    public synchronized T get() throws InterruptedException, ExecutionException {
+        while (!done) {
+            wait();
+        }
+        return getResult();
+    }
+
+    @Override
+    public synchronized T get(long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        // not a deadline, which would overflow for very long timeouts
+        final long timeoutNanos = unit.toNanos(timeout);
+        final long startNanos = System.nanoTime();
+        long timeToWaitNanos = timeoutNanos;
+        while (!done) {
+            if (timeToWaitNanos <= 0) {
+                throw new TimeoutException("Timed out waiting for results after "
+                        + timeout + " " + unit);
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, timeToWaitNanos);
+            timeToWaitNanos = timeoutNanos - (System.nanoTime() - startNanos);
+        }
+        return getResult();
+    }
+
+    private T getResult() throws ExecutionException {
+        if (exception != null) {
+            throw new ExecutionException(exception);
+        }
+        // may be null, e.g. for Void futures
+        return result;
+    }
+}
@@ -15,6 +15,7 @@
 
 package com.amazonaws.metrics;
 import static com.amazonaws.SDKGlobalConfiguration.DEFAULT_METRICS_SYSTEM_PROPERTY;
+import static com.amazonaws.SDKGlobalConfiguration.LATENCY_HISTOGRAMS_SYSTEM_PROPERTY;
 
 import java.io.File;
 import java.io.FileNotFoundException;
@@ -115,6 +116,20 @@ public enum AwsSdkMetrics {
      */
     public static final String INCLUDE_PER_HOST_METRICS = "includePerHostMetrics";
 
+    /**
+     * Used to enable the latency histograms, and to upload the percentiles of
+     * the request latencies, when the AWS SDK default metrics is enabled.
+     * By default, latency percentiles are excluded.
+     * 
+     * <pre>
+     * Example:
+     *  -Dcom.amazonaws.sdk.enableDefaultMetrics=includeLatencyPercentiles
+     * </pre>
+     * 
+     * @see #setLatencyHistogramsEnabled(boolean)
+     */
+    public static final String INCLUDE_LATENCY_PERCENTILES = "includeLatencyPercentiles";
+
     /**
      * Used to specify an AWS credential property file.
      * By default, the {@link DefaultAWSCredentialsProviderChain} is used.
@@ -246,6 +261,18 @@ public enum AwsSdkMetrics {
      * false otherwise.
      */
     private static volatile boolean singleMetricNamespace;
+    /**
+     * True if the latencies of requests are to be recorded in histograms;
+     * false otherwise.
+     */
+    private static volatile boolean latencyHistogramsEnabled =
+        System.getProperty(LATENCY_HISTOGRAMS_SYSTEM_PROPERTY) != null;
+    /**
+     * True if the percentiles of the latency histograms are to be uploaded by
+     * the default metric collector; false otherwise.
+     */
+    private static volatile boolean latencyPercentilesIncluded;
+    private static final LatencyHistograms latencyHistograms = new LatencyHistograms();
 
     static {
         String defaultMetrics = System.getProperty(DEFAULT_METRICS_SYSTEM_PROPERTY);
@@ -255,6 +282,7 @@ public enum AwsSdkMetrics {
             boolean excludeMachineMetrics = false;
             boolean includePerHostMetrics = false;
             boolean useSingleMetricNamespace = false;
+            boolean includeLatencyPercentiles = false;
             for (String s: values) {
                 String part = s.trim();
                 if (!excludeMachineMetrics && EXCLUDE_MACHINE_METRICS.equals(part)) {
@@ -263,6 +291,8 @@ public enum AwsSdkMetrics {
                     includePerHostMetrics = true;
                 } else if (!useSingleMetricNamespace && USE_SINGLE_METRIC_NAMESPACE.equals(part)) {
                     useSingleMetricNamespace = true;
+                } else if (!includeLatencyPercentiles && INCLUDE_LATENCY_PERCENTILES.equals(part)) {
+                    includeLatencyPercentiles = true;
                 } else {
                     String[] pair = part.split("=");
                     if (pair.length == 2) {
@@ -301,6 +331,10 @@ public enum AwsSdkMetrics {
             machineMetricsExcluded = excludeMachineMetrics;
             perHostMetricsIncluded = includePerHostMetrics;
             singleMetricNamespace = useSingleMetricNamespace;
+            if (includeLatencyPercentiles) {
+                latencyHistogramsEnabled = true;
+                latencyPercentilesIncluded = true;
+            }
         }
     }
 
@@ -510,6 +544,57 @@ public enum AwsSdkMetrics {
         AwsSdkMetrics.singleMetricNamespace = singleMetricNamespace;
     }
 
+    /**
+     * Returns true if the latencies of requests are recorded in the
+     * {@link #getLatencyHistograms() latency histograms}; false otherwise.
+     */
+    public static boolean isLatencyHistogramsEnabled() {
+        return latencyHistogramsEnabled;
+    }
+
+    /**
+     * Used to set whether the latencies of requests are to be recorded in the
+     * {@link #getLatencyHistograms() latency histograms}. Doing so captures
+     * the request metrics of every request, even if no metric collector is in
+     * use.
+     * 
+     * @param latencyHistogramsEnabled
+     *            true if latencies are to be recorded; false otherwise.
+     */
+    public static void setLatencyHistogramsEnabled(boolean latencyHistogramsEnabled) {
+        AwsSdkMetrics.latencyHistogramsEnabled = latencyHistogramsEnabled;
+    }
+
+    /**
+     * Returns true if the percentiles of the latency histograms are to be
+     * uploaded by the default metric collector; false otherwise.
+     */
+    public static boolean isLatencyPercentilesIncluded() {
+        return latencyPercentilesIncluded;
+    }
+
+    /**
+     * Used to set whether the percentiles of the latency histograms are to be
+     * uploaded by the default metric collector. Percentiles are only
+     * available if the latency histograms are enabled.
+     * 
+     * @param includeLatencyPercentiles
+     *            true if latency percentiles are to be included; false
+     *            otherwise.
+     */
+    public static void setLatencyPercentilesIncluded(boolean includeLatencyPercentiles) {
+        AwsSdkMetrics.latencyPercentilesIncluded = includeLatencyPercentiles;
+    }
+
+    /**
+     * Returns the histograms of the latencies of the requests made by the AWS
+     * SDK, which are recorded while
+     * {@link #setLatencyHistogramsEnabled(boolean) enabled}.
+     */
+    public static LatencyHistograms getLatencyHistograms() {
+        return latencyHistograms;
+    }
+
     /**
      * Returns true if metrics at the AWS SDK level is enabled; false
      * if disabled.
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * A histogram of the latencies of one kind of event, such as the
+ * {@link com.amazonaws.util.AWSRequestMetrics.Field#ClientExecuteTime} of the
+ * GetItem requests to Amazon DynamoDB, from which percentiles can be derived.
+ * <p>
+ * Latencies are counted in microseconds in log-linear buckets: each power of
+ * two is divided into 32 buckets of equal width,
+ * so that any latency is reported to within about 3% of its value, up to
+ * {@link #MAX_TRACKABLE_MICROS}. Longer latencies are counted as the maximum.
+ * <p>
+ * Recording a latency is a single atomic increment, without locking or
+ * allocation, so that histograms can be left enabled in production. The
+ * counts are read via {@link #getSnapshot()}; two snapshots taken at
+ * different times give the histogram of the latencies recorded in between.
+ */
+@ThreadSafe
+public final class LatencyHistogram {
+    /**
+     * The largest latency, in microseconds, that is counted in its own
+     * bucket, and so reported within the bounded relative error of the
+     * histogram; longer latencies are counted as this value.
+     */
+    public static final long MAX_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private static final int SUB_BUCKET_BITS = 6;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int BUCKET_COUNT = indexOf(MAX_TRACKABLE_MICROS) + 1;
+
+    private final String serviceName;
+    private final String requestType;
+    private final String metricType;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+    /**
+     * @param serviceName
+     *            the name of the service, such as AmazonDynamoDBv2
+     * @param requestType
+     *            the type of request, such as GetItemRequest
+     * @param metricType
+     *            the type of latency, such as ClientExecuteTime
+     */
+    public LatencyHistogram(String serviceName, String requestType,
+            String metricType) {
+        this.serviceName = serviceName;
+        this.requestType = requestType;
+        this.metricType = metricType;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    public String getRequestType() {
+        return requestType;
+    }
+
+    public String getMetricType() {
+        return metricType;
+    }
+
+    /**
+     * Returns the name of this histogram, which is of the form
+     * <code>serviceName/requestType/metricType</code>.
+     */
+    public String getName() {
+        return serviceName + "/" + requestType + "/" + metricType;
+    }
+
+    /**
+     * Records a latency given in nanoseconds.
+     */
+    public void recordNanos(long nanos) {
+        recordMicros(TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    /**
+     * Records a latency given in microseconds.
+     */
+    public void recordMicros(long micros) {
+        long value = micros < 0 ? 0 : Math.min(micros, MAX_TRACKABLE_MICROS);
+        counts.incrementAndGet(indexOf(value));
+    }
+
+    /**
+     * Returns a copy of the current counts of this histogram.
+     */
+    public Snapshot getSnapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        for (int i = 0; i < copy.length; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy);
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " " + getSnapshot();
+    }
+
+    /**
+     * Returns the index of the bucket counting the given non-negative value.
+     * Values below {@link #SUB_BUCKET_COUNT} have a bucket each; above that,
+     * the bucket is selected by the top {@link #SUB_BUCKET_BITS} bits.
+     */
+    static int indexOf(long value) {
+        int shift = Math.max(0,
+                63 - Long.numberOfLeadingZeros(value) - (SUB_BUCKET_BITS - 1));
+        return (shift << (SUB_BUCKET_BITS - 1)) + (int) (value >>> shift);
+    }
+
+    /** Returns the lowest value counted in the bucket at the given index. */
+    static long lowestValueAt(int index) {
+        int shift = index < SUB_BUCKET_COUNT
+                  ? 0
+                  : (index >> (SUB_BUCKET_BITS - 1)) - 1;
+        return (long) (index - (shift << (SUB_BUCKET_BITS - 1))) << shift;
+    }
+
+    /** Returns the highest value counted in the bucket at the given index. */
+    static long highestValueAt(int index) {
+        return lowestValueAt(index + 1) - 1;
+    }
+
+    /**
+     * An immutable copy of the counts of a {@link LatencyHistogram}. All the
+     * latencies returned are in milliseconds, as for the other latency
+     * metrics of the SDK.
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long totalCount;
+
+        Snapshot(long[] counts) {
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            this.counts = counts;
+            this.totalCount = total;
+        }
+
+        /** Returns the number of latencies recorded. */
+        public long getCount() {
+            return totalCount;
+        }
+
+        /**
+         * Returns the latency in milliseconds that the given percentage of the
+         * recorded latencies are less than or equal to, or 0 if none were
+         * recorded.
+         *
+         * @param percentile
+         *            a percentage between 0 and 100, such as 99.9
+         */
+        public double getPercentile(double percentile) {
+            if (percentile < 0 || percentile > 100) {
+                throw new IllegalArgumentException(
+                        "The percentile must be between 0 and 100: " + percentile);
+            }
+            if (totalCount == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return toMillis(highestValueAt(i));
+                }
+            }
+            return getMax();
+        }
+
+        /**
+         * Returns the lowest latency recorded in milliseconds, or 0 if none
+         * were recorded.
+         */
+        public double getMin() {
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    return toMillis(lowestValueAt(i));
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the highest latency recorded in milliseconds, or 0 if none
+         * were recorded.
+         */
+        public double getMax() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] > 0) {
+                    return toMillis(highestValueAt(i));
+                }
+            }
+            return 0;
+        }
+
+        /**
+         * Returns the mean of the recorded latencies in milliseconds, or 0 if
+         * none were recorded.
+         */
+        public double getMean() {
+            if (totalCount == 0) {
+                return 0;
+            }
+            double sum = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] > 0) {
+                    sum += counts[i] * (lowestValueAt(i) + highestValueAt(i)) / 2.0;
+                }
+            }
+            return toMillis(sum / totalCount);
+        }
+
+        /**
+         * Returns a snapshot of the latencies recorded since the given earlier
+         * snapshot of the same histogram was taken.
+         */
+        public Snapshot since(Snapshot earlier) {
+            long[] delta = new long[counts.length];
+            for (int i = 0; i < delta.length; i++) {
+                delta[i] = Math.max(0, counts[i] - earlier.counts[i]);
+            }
+            return new Snapshot(delta);
+        }
+
+        @Override
+        public String toString() {
+            return "[count=" + getCount()
+                + ", min=" + getMin()
+                + ", p50=" + getPercentile(50)
+                + ", p90=" + getPercentile(90)
+                + ", p99=" + getPercentile(99)
+                + ", p99.9=" + getPercentile(99.9)
+                + ", max=" + getMax() + "]";
+        }
+
+        private static double toMillis(double micros) {
+            return micros / 1000;
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.Request;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+/**
+ * The {@link LatencyHistogram}s of the requests made by the AWS SDK, one for
+ * each service, request type and kind of latency captured in the request
+ * metrics, such as {@link Field#ClientExecuteTime} and
+ * {@link Field#HttpRequestTime}. Histograms are created as the latencies are
+ * first recorded.
+ * <p>
+ * Latencies are only recorded when enabled via
+ * {@link AwsSdkMetrics#setLatencyHistogramsEnabled(boolean)}.
+ */
+@ThreadSafe
+public final class LatencyHistograms {
+    /** The names of the request metrics that are latencies. */
+    private static final Set<String> LATENCY_FIELD_NAMES;
+
+    static {
+        Set<String> names = new HashSet<String>();
+        for (Field field : Field.values()) {
+            if (field.name().endsWith("Time")) {
+                names.add(field.name());
+            }
+        }
+        LATENCY_FIELD_NAMES = Collections.unmodifiableSet(names);
+    }
+
+    /** Histograms by service name, request type and metric type. */
+    private final ConcurrentMap<String, ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>>> histograms =
+        new ConcurrentHashMap<String, ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>>>();
+
+    LatencyHistograms() {
+    }
+
+    /**
+     * Records the latencies captured in the given timing info of a completed
+     * request. Used internally by the AWS SDK.
+     */
+    public void record(Request<?> request, TimingInfo timingInfo) {
+        Map<String, List<TimingInfo>> subMeasurements =
+            timingInfo.getSubMeasurementsByName();
+        String serviceName = request.getServiceName();
+        if (subMeasurements.isEmpty() || serviceName == null) {
+            return;
+        }
+        String requestType = null;
+        ConcurrentMap<String, LatencyHistogram> byMetricType = null;
+        for (Entry<String, List<TimingInfo>> entry : subMeasurements.entrySet()) {
+            if (!LATENCY_FIELD_NAMES.contains(entry.getKey())) {
+                continue;
+            }
+            if (byMetricType == null) {
+                requestType = request.getOriginalRequest().getClass().getSimpleName();
+                byMetricType = histogramsOf(serviceName, requestType);
+            }
+            LatencyHistogram histogram = byMetricType.get(entry.getKey());
+            if (histogram == null) {
+                histogram = getOrCreate(serviceName, requestType,
+                        entry.getKey(), byMetricType);
+            }
+            for (TimingInfo t : entry.getValue()) {
+                Long endTimeNano = t.getEndTimeNanoIfKnown();
+                if (endTimeNano != null) {
+                    histogram.recordNanos(endTimeNano.longValue() - t.getStartTimeNano());
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the histogram of the given service, request type and metric
+     * type, or null if no such latency has been recorded.
+     */
+    public LatencyHistogram getHistogram(String serviceName,
+            String requestType, String metricType) {
+        ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> byRequestType =
+            histograms.get(serviceName);
+        ConcurrentMap<String, LatencyHistogram> byMetricType =
+            byRequestType == null ? null : byRequestType.get(requestType);
+        return byMetricType == null ? null : byMetricType.get(metricType);
+    }
+
+    /**
+     * Returns the histogram with the given name, as returned by
+     * {@link LatencyHistogram#getName()}, or null if there is none.
+     */
+    public LatencyHistogram getHistogram(String name) {
+        String[] parts = name == null ? new String[0] : name.split("/");
+        return parts.length == 3
+             ? getHistogram(parts[0], parts[1], parts[2])
+             : null;
+    }
+
+    /**
+     * Returns all the histograms created so far.
+     */
+    public List<LatencyHistogram> getHistograms() {
+        List<LatencyHistogram> list = new ArrayList<LatencyHistogram>();
+        for (ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> byRequestType
+                : histograms.values()) {
+            for (ConcurrentMap<String, LatencyHistogram> byMetricType
+                    : byRequestType.values()) {
+                list.addAll(byMetricType.values());
+            }
+        }
+        return list;
+    }
+
+    /**
+     * Removes all the histograms.
+     */
+    public void clear() {
+        histograms.clear();
+    }
+
+    private ConcurrentMap<String, LatencyHistogram> histogramsOf(
+            String serviceName, String requestType) {
+        ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> byRequestType =
+            histograms.get(serviceName);
+        if (byRequestType == null) {
+            ConcurrentMap<String, ConcurrentMap<String, LatencyHistogram>> created =
+                new ConcurrentHashMap<String, ConcurrentMap<String, LatencyHistogram>>();
+            byRequestType = histograms.putIfAbsent(serviceName, created);
+            if (byRequestType == null) {
+                byRequestType = created;
+            }
+        }
+        ConcurrentMap<String, LatencyHistogram> byMetricType =
+            byRequestType.get(requestType);
+        if (byMetricType == null) {
+            ConcurrentMap<String, LatencyHistogram> created =
+                new ConcurrentHashMap<String, LatencyHistogram>();
+            byMetricType = byRequestType.putIfAbsent(requestType, created);
+            if (byMetricType == null) {
+                byMetricType = created;
+            }
+        }
+        return byMetricType;
+    }
+
+    private static LatencyHistogram getOrCreate(String serviceName,
+            String requestType, String metricType,
+            ConcurrentMap<String, LatencyHistogram> byMetricType) {
+        LatencyHistogram created =
+            new LatencyHistogram(serviceName, requestType, metricType);
+        LatencyHistogram existing = byMetricType.putIfAbsent(metricType, created);
+        return existing == null ? created : existing;
+    }
+}
@@ -16,6 +16,8 @@ package com.amazonaws.metrics;
 
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
 
 import com.amazonaws.regions.Regions;
 
@@ -144,4 +146,47 @@ public class MetricAdmin implements MetricAdminMBean {
     public void setSingleMetricNamespace(boolean singleMetricNamespace) {
         AwsSdkMetrics.setSingleMetricNamespace(singleMetricNamespace);
     }
+    @Override
+    public boolean isLatencyHistogramsEnabled() {
+        return AwsSdkMetrics.isLatencyHistogramsEnabled();
+    }
+    @Override
+    public void setLatencyHistogramsEnabled(boolean latencyHistogramsEnabled) {
+        AwsSdkMetrics.setLatencyHistogramsEnabled(latencyHistogramsEnabled);
+    }
+    @Override
+    public boolean isLatencyPercentilesIncluded() {
+        return AwsSdkMetrics.isLatencyPercentilesIncluded();
+    }
+    @Override
+    public void setLatencyPercentilesIncluded(boolean includeLatencyPercentiles) {
+        AwsSdkMetrics.setLatencyPercentilesIncluded(includeLatencyPercentiles);
+    }
+    @Override
+    public String[] getLatencyHistogramNames() {
+        List<LatencyHistogram> histograms =
+            AwsSdkMetrics.getLatencyHistograms().getHistograms();
+        String[] names = new String[histograms.size()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = histograms.get(i).getName();
+        }
+        Arrays.sort(names);
+        return names;
+    }
+    @Override
+    public String getLatencySummary(String histogramName) {
+        LatencyHistogram h =
+            AwsSdkMetrics.getLatencyHistograms().getHistogram(histogramName);
+        return h == null ? null : h.getSnapshot().toString();
+    }
+    @Override
+    public double getLatencyPercentile(String histogramName, double percentile) {
+        LatencyHistogram h =
+            AwsSdkMetrics.getLatencyHistograms().getHistogram(histogramName);
+        return h == null ? 0 : h.getSnapshot().getPercentile(percentile);
+    }
+    @Override
+    public void clearLatencyHistograms() {
+        AwsSdkMetrics.getLatencyHistograms().clear();
+    }
 }
\ No newline at end of file
@@ -184,4 +184,52 @@ public interface MetricAdminMBean {
      * Used to set whether a single metric name space is to be used.
      */
     public void setSingleMetricNamespace(boolean singleMetricNamespace);
-}
\ No newline at end of file
+
+    /**
+     * Returns true if the latencies of requests are recorded in histograms;
+     * false otherwise.
+     */
+    public boolean isLatencyHistogramsEnabled();
+
+    /**
+     * Used to set whether the latencies of requests are to be recorded in
+     * histograms.
+     */
+    public void setLatencyHistogramsEnabled(boolean latencyHistogramsEnabled);
+
+    /**
+     * Returns true if latency percentiles are to be uploaded by the default
+     * AWS SDK metric collector; false otherwise.
+     */
+    public boolean isLatencyPercentilesIncluded();
+
+    /**
+     * Used to set whether latency percentiles are to be uploaded by the
+     * default AWS SDK metric collector.
+     */
+    public void setLatencyPercentilesIncluded(boolean includeLatencyPercentiles);
+
+    /**
+     * Returns the names of the latency histograms, each of the form
+     * <code>serviceName/requestType/metricType</code>.
+     */
+    public String[] getLatencyHistogramNames();
+
+    /**
+     * Returns a summary of the given latency histogram, including its count,
+     * minimum, maximum and common percentiles in milliseconds; or null if
+     * there is no such histogram.
+     */
+    public String getLatencySummary(String histogramName);
+
+    /**
+     * Returns the given percentile, between 0 and 100, of the given latency
+     * histogram in milliseconds; or 0 if there is no such histogram.
+     */
+    public double getLatencyPercentile(String histogramName, double percentile);
+
+    /**
+     * Removes all the latency histograms.
+     */
+    public void clearLatencyHistograms();
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import org.apache.http.annotation.Immutable;
+
+/**
+ * Configuration of the per-endpoint circuit breaker of a {@link RetryPolicy}.
+ * A service client keeps a circuit breaker for each endpoint it sends
+ * requests to, which counts the attempts that fail with a server error, a
+ * throttling error or an I/O error. Once the share of failed attempts within
+ * a time window crosses the threshold, the circuit opens, and requests to the
+ * endpoint fail fast with an {@link com.amazonaws.AmazonClientException}
+ * without being sent. After the open duration, a single probe attempt is let
+ * through; the circuit closes again if it succeeds, and stays open for
+ * another open duration otherwise.
+ * <p>
+ * This class is immutable, therefore safe to be shared by multiple retry
+ * policies.
+ *
+ * @see RetryPolicy#withCircuitBreaker(CircuitBreakerConfig)
+ */
+@Immutable
+public final class CircuitBreakerConfig {
+
+    /** Default share of failed attempts at which the circuit opens. */
+    public static final double DEFAULT_FAILURE_RATE_THRESHOLD = 0.5;
+
+    /**
+     * Default minimum number of attempts within a time window before the
+     * circuit can open.
+     */
+    public static final int DEFAULT_MINIMUM_REQUEST_COUNT = 20;
+
+    /** Default length of the time window over which attempts are counted. */
+    public static final long DEFAULT_WINDOW_IN_MILLIS = 10 * 1000;
+
+    /** Default time the circuit stays open before a probe is let through. */
+    public static final long DEFAULT_OPEN_DURATION_IN_MILLIS = 5 * 1000;
+
+    private final double failureRateThreshold;
+    private final int minimumRequestCount;
+    private final long windowInMillis;
+    private final long openDurationInMillis;
+
+    /**
+     * Constructs a new circuit breaker configuration with the default
+     * settings.
+     */
+    public CircuitBreakerConfig() {
+        this(DEFAULT_FAILURE_RATE_THRESHOLD,
+             DEFAULT_MINIMUM_REQUEST_COUNT,
+             DEFAULT_WINDOW_IN_MILLIS,
+             DEFAULT_OPEN_DURATION_IN_MILLIS);
+    }
+
+    /**
+     * Constructs a new circuit breaker configuration.
+     *
+     * @param failureRateThreshold
+     *            The share of failed attempts, greater than 0 and at most 1,
+     *            at which the circuit opens.
+     * @param minimumRequestCount
+     *            The minimum number of attempts within a time window before
+     *            the circuit can open.
+     * @param windowInMillis
+     *            The length of the time window over which attempts are
+     *            counted.
+     * @param openDurationInMillis
+     *            The time the circuit stays open before a probe attempt is
+     *            let through.
+     */
+    public CircuitBreakerConfig(double failureRateThreshold,
+                                int minimumRequestCount,
+                                long windowInMillis,
+                                long openDurationInMillis) {
+        if (failureRateThreshold <= 0 || failureRateThreshold > 1) {
+            throw new IllegalArgumentException("Please provide a failure rate threshold between 0 and 1.");
+        }
+        if (minimumRequestCount <= 0 || windowInMillis <= 0 || openDurationInMillis <= 0) {
+            throw new IllegalArgumentException("Please provide positive values for the request count, window and open duration.");
+        }
+        this.failureRateThreshold = failureRateThreshold;
+        this.minimumRequestCount = minimumRequestCount;
+        this.windowInMillis = windowInMillis;
+        this.openDurationInMillis = openDurationInMillis;
+    }
+
+    /**
+     * Returns the share of failed attempts at which the circuit opens.
+     */
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    /**
+     * Returns the minimum number of attempts within a time window before the
+     * circuit can open.
+     */
+    public int getMinimumRequestCount() {
+        return minimumRequestCount;
+    }
+
+    /**
+     * Returns the length of the time window over which attempts are counted.
+     */
+    public long getWindowInMillis() {
+        return windowInMillis;
+    }
+
+    /**
+     * Returns the time the circuit stays open before a probe attempt is let
+     * through.
+     */
+    public long getOpenDurationInMillis() {
+        return openDurationInMillis;
+    }
+}
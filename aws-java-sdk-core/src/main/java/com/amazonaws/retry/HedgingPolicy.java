@@ -0,0 +1,191 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.ClientConfiguration;
+
+/**
+ * Hedging policy that can be configured on a service client using
+ * {@link ClientConfiguration}, or on an individual request using
+ * {@link AmazonWebServiceRequest#setHedgingPolicy(HedgingPolicy)}. When a
+ * request to which the policy applies hasn't received a response after the
+ * hedge delay, a duplicate of it is sent on another pooled connection; the
+ * first response to arrive is used, and the other request is aborted. This
+ * cuts the tail latency caused by the occasional slow connection or server,
+ * at the cost of sending some requests twice.
+ * <p>
+ * A policy configured on a client only hedges idempotent GET and HEAD
+ * requests. A policy configured on a request hedges that request whatever
+ * its HTTP method, so it can be used for reads sent with POST, such as
+ * DynamoDB's GetItem; only set it on requests that are safe to send twice.
+ * Requests with a payload are only hedged when the payload is small enough
+ * to be buffered.
+ * <p>
+ * The hedge delay is either fixed, or derived from a percentile of the
+ * latencies recently observed for the same type of request. This class is
+ * thread-safe, and can be shared by multiple clients; latencies are tracked
+ * per request type across all of them.
+ *
+ * @see ClientConfiguration#setHedgingPolicy(HedgingPolicy)
+ */
+@ThreadSafe
+public final class HedgingPolicy {
+
+    /** The number of recent latencies kept per request type. */
+    private static final int MAX_SAMPLES = 1024;
+
+    /**
+     * The number of latencies that must have been observed for a request type
+     * before the delay is derived from them, and the number of latencies after
+     * which the derived delay is refreshed.
+     */
+    private static final int SAMPLES_PER_REFRESH = 64;
+
+    /** The fixed delay, or the minimum delay when derived from latencies. */
+    private final long delayInMillis;
+
+    /** The latency percentile used as the delay, or 0 for a fixed delay. */
+    private final double latencyPercentile;
+
+    private final ConcurrentMap<Class<?>, LatencyTracker> latencyTrackers =
+            new ConcurrentHashMap<Class<?>, LatencyTracker>();
+
+    /**
+     * Constructs a new hedging policy that sends a duplicate of a request
+     * once it has been outstanding for a fixed delay.
+     *
+     * @param delayInMillis
+     *            the delay, in milliseconds, before a duplicate request is
+     *            sent; must not be negative
+     */
+    public HedgingPolicy(long delayInMillis) {
+        this(0, delayInMillis);
+    }
+
+    /**
+     * Constructs a new hedging policy that sends a duplicate of a request
+     * once it has been outstanding for longer than the given percentile of the
+     * latencies recently observed for requests of the same type, which keeps
+     * the share of hedged requests at about <code>100 - percentile</code>
+     * percent.
+     *
+     * @param latencyPercentile
+     *            the latency percentile to wait for, greater than 0 and less
+     *            than 100, such as 95 or 99
+     * @param minDelayInMillis
+     *            the minimum delay, in milliseconds, before a duplicate
+     *            request is sent, which is also used until enough latencies
+     *            have been observed; must not be negative
+     */
+    public HedgingPolicy(double latencyPercentile, long minDelayInMillis) {
+        if (latencyPercentile < 0 || latencyPercentile >= 100) {
+            throw new IllegalArgumentException(
+                    "Please provide a latency percentile between 0 and 100.");
+        }
+        if (minDelayInMillis < 0) {
+            throw new IllegalArgumentException(
+                    "Please provide a non-negative hedge delay.");
+        }
+        this.latencyPercentile = latencyPercentile;
+        this.delayInMillis = minDelayInMillis;
+    }
+
+    /**
+     * Returns the fixed delay, or the minimum delay if the delay is derived
+     * from observed latencies, in milliseconds.
+     */
+    public long getDelayInMillis() {
+        return delayInMillis;
+    }
+
+    /**
+     * Returns the latency percentile used as the delay, or 0 if the delay is
+     * fixed.
+     */
+    public double getLatencyPercentile() {
+        return latencyPercentile;
+    }
+
+    /**
+     * Returns the delay, in milliseconds, after which a duplicate of the given
+     * request should be sent.
+     */
+    public long getHedgeDelay(AmazonWebServiceRequest originalRequest) {
+        if (latencyPercentile == 0) {
+            return delayInMillis;
+        }
+        LatencyTracker tracker = latencyTrackers.get(originalRequest.getClass());
+        return tracker == null
+             ? delayInMillis
+             : Math.max(delayInMillis, tracker.percentile);
+    }
+
+    /**
+     * Records the time, in milliseconds, that a request took to receive its
+     * response. Called by the HTTP client for every hedgeable request; has no
+     * effect if the delay is fixed.
+     */
+    public void recordLatency(AmazonWebServiceRequest originalRequest, long latencyInMillis) {
+        if (latencyPercentile == 0) {
+            return;
+        }
+        Class<?> requestType = originalRequest.getClass();
+        LatencyTracker tracker = latencyTrackers.get(requestType);
+        if (tracker == null) {
+            LatencyTracker newTracker = new LatencyTracker();
+            tracker = latencyTrackers.putIfAbsent(requestType, newTracker);
+            if (tracker == null) {
+                tracker = newTracker;
+            }
+        }
+        tracker.record(latencyInMillis, latencyPercentile);
+    }
+
+    /**
+     * The recent latencies of one request type, kept in a ring written
+     * without locking. The percentile is recomputed from a sorted copy of the
+     * ring every {@link HedgingPolicy#SAMPLES_PER_REFRESH} samples; until the
+     * first refresh it's 0, so the minimum delay applies.
+     */
+    private static final class LatencyTracker {
+        private final AtomicLongArray samples = new AtomicLongArray(MAX_SAMPLES);
+        private final AtomicLong count = new AtomicLong();
+        private volatile long percentile;
+
+        void record(long latencyInMillis, double latencyPercentile) {
+            long n = count.getAndIncrement();
+            samples.set((int) (n % MAX_SAMPLES), latencyInMillis);
+            if ((n + 1) % SAMPLES_PER_REFRESH == 0) {
+                int size = (int) Math.min(n + 1, MAX_SAMPLES);
+                long[] sorted = new long[size];
+                for (int i = 0; i < size; i++) {
+                    sorted[i] = samples.get(i);
+                }
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(latencyPercentile / 100 * size) - 1;
+                percentile = sorted[Math.max(0, Math.min(index, size - 1))];
+            }
+        }
+    }
+}
@@ -54,6 +54,24 @@ public final class RetryPolicy {
      */
     private final boolean honorMaxErrorRetryInClientConfig;
 
+    /**
+     * Configuration of the retry token bucket of each client, or null if
+     * retries are only limited per request.
+     */
+    private final RetryTokenBucketConfig retryTokenBucketConfig;
+
+    /**
+     * Configuration of the per-endpoint circuit breakers of each client, or
+     * null if requests never fail fast.
+     */
+    private final CircuitBreakerConfig circuitBreakerConfig;
+
+    /**
+     * Whether each client slows down its sending rate when requests are
+     * throttled.
+     */
+    private final boolean adaptiveRateLimitingEnabled;
+
     /**
      * Constructs a new retry policy. See {@link PredefinedRetryPolicies} for
      * some pre-defined policy components, and also the default policies used by
@@ -79,6 +97,17 @@ public final class RetryPolicy {
                        BackoffStrategy backoffStrategy,
                        int maxErrorRetry,
                        boolean honorMaxErrorRetryInClientConfig) {
+        this(retryCondition, backoffStrategy, maxErrorRetry,
+             honorMaxErrorRetryInClientConfig, null, null, false);
+    }
+
+    private RetryPolicy(RetryCondition retryCondition,
+                        BackoffStrategy backoffStrategy,
+                        int maxErrorRetry,
+                        boolean honorMaxErrorRetryInClientConfig,
+                        RetryTokenBucketConfig retryTokenBucketConfig,
+                        CircuitBreakerConfig circuitBreakerConfig,
+                        boolean adaptiveRateLimitingEnabled) {
         if (retryCondition == null) {
             retryCondition = PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION;
         }
@@ -93,8 +122,64 @@ public final class RetryPolicy {
         this.backoffStrategy = backoffStrategy;
         this.maxErrorRetry = maxErrorRetry;
         this.honorMaxErrorRetryInClientConfig = honorMaxErrorRetryInClientConfig;
+        this.retryTokenBucketConfig = retryTokenBucketConfig;
+        this.circuitBreakerConfig = circuitBreakerConfig;
+        this.adaptiveRateLimitingEnabled = adaptiveRateLimitingEnabled;
     };
 
+    /**
+     * Returns a copy of this retry policy that limits the retries of each
+     * client with a retry token bucket. Retries take tokens out of the bucket
+     * and successful requests put some back; once the bucket is empty, failed
+     * requests are not retried. The predefined policies have no token bucket,
+     * so it has to be added to them, for example with
+     * {@code PredefinedRetryPolicies.DEFAULT.withRetryTokenBucket(RetryTokenBucketConfig.DEFAULT)}.
+     *
+     * @param retryTokenBucketConfig
+     *            The configuration of the token bucket, or null to only limit
+     *            the retries of each request.
+     * @return A new retry policy with the given token bucket configuration.
+     */
+    public RetryPolicy withRetryTokenBucket(RetryTokenBucketConfig retryTokenBucketConfig) {
+        return new RetryPolicy(retryCondition, backoffStrategy, maxErrorRetry,
+                honorMaxErrorRetryInClientConfig, retryTokenBucketConfig,
+                circuitBreakerConfig, adaptiveRateLimitingEnabled);
+    }
+
+    /**
+     * Returns a copy of this retry policy that keeps a circuit breaker for
+     * each endpoint, which makes requests to an endpoint fail fast while too
+     * many of the recent attempts to it have failed.
+     *
+     * @param circuitBreakerConfig
+     *            The configuration of the circuit breakers, or null to never
+     *            fail fast.
+     * @return A new retry policy with the given circuit breaker configuration.
+     */
+    public RetryPolicy withCircuitBreaker(CircuitBreakerConfig circuitBreakerConfig) {
+        return new RetryPolicy(retryCondition, backoffStrategy, maxErrorRetry,
+                honorMaxErrorRetryInClientConfig, retryTokenBucketConfig,
+                circuitBreakerConfig, adaptiveRateLimitingEnabled);
+    }
+
+    /**
+     * Returns a copy of this retry policy that enables or disables adaptive
+     * rate limiting. Once a request of a client is throttled, the client
+     * limits the rate at which it sends requests, including retries: the rate
+     * is cut whenever a request is throttled, and grows back while requests
+     * succeed. Requests wait for their turn before being sent.
+     *
+     * @param adaptiveRateLimitingEnabled
+     *            Whether the sending rate of each client adapts to throttling.
+     * @return A new retry policy with adaptive rate limiting enabled or
+     *         disabled.
+     */
+    public RetryPolicy withAdaptiveRateLimiting(boolean adaptiveRateLimitingEnabled) {
+        return new RetryPolicy(retryCondition, backoffStrategy, maxErrorRetry,
+                honorMaxErrorRetryInClientConfig, retryTokenBucketConfig,
+                circuitBreakerConfig, adaptiveRateLimitingEnabled);
+    }
+
     /**
      * Returns the retry condition included in this retry policy.
      * 
@@ -133,6 +218,39 @@ public final class RetryPolicy {
     public boolean isMaxErrorRetryInClientConfigHonored() {
         return honorMaxErrorRetryInClientConfig;
     }
+
+    /**
+     * Returns the configuration of the retry token bucket of each client.
+     *
+     * @return The configuration of the retry token bucket, or null if retries
+     *         are only limited per request.
+     * @see #withRetryTokenBucket(RetryTokenBucketConfig)
+     */
+    public RetryTokenBucketConfig getRetryTokenBucketConfig() {
+        return retryTokenBucketConfig;
+    }
+
+    /**
+     * Returns the configuration of the per-endpoint circuit breakers of each
+     * client.
+     *
+     * @return The configuration of the circuit breakers, or null if requests
+     *         never fail fast.
+     * @see #withCircuitBreaker(CircuitBreakerConfig)
+     */
+    public CircuitBreakerConfig getCircuitBreakerConfig() {
+        return circuitBreakerConfig;
+    }
+
+    /**
+     * Returns whether the sending rate of each client adapts to throttling.
+     *
+     * @return Whether adaptive rate limiting is enabled.
+     * @see #withAdaptiveRateLimiting(boolean)
+     */
+    public boolean isAdaptiveRateLimitingEnabled() {
+        return adaptiveRateLimitingEnabled;
+    }
     
     /**
      * The hook for providing custom condition on whether a failed request
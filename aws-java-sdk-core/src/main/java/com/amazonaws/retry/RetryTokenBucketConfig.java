@@ -0,0 +1,128 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import org.apache.http.annotation.Immutable;
+
+/**
+ * Configuration of the retry token bucket of a {@link RetryPolicy}, which
+ * bounds the number of retries a service client sends when many requests fail
+ * at once. Each client has its own bucket, shared by all its requests: every
+ * retry takes tokens out of the bucket, and every successful request puts
+ * some back. Once the bucket is empty, failed requests are no longer retried
+ * until enough requests have succeeded again, so that a client doesn't
+ * multiply its load on a service that is throttling or failing most of its
+ * requests.
+ * <p>
+ * This class is immutable, therefore safe to be shared by multiple retry
+ * policies.
+ *
+ * @see RetryPolicy#withRetryTokenBucket(RetryTokenBucketConfig)
+ */
+@Immutable
+public final class RetryTokenBucketConfig {
+
+    /** Default number of tokens in a full bucket. */
+    public static final int DEFAULT_CAPACITY = 500;
+
+    /** Default number of tokens taken by a retry. */
+    public static final int DEFAULT_RETRY_COST = 5;
+
+    /**
+     * Default number of tokens taken by the retry of a request that failed
+     * with an I/O error, such as a connection timeout.
+     */
+    public static final int DEFAULT_IO_ERROR_RETRY_COST = 10;
+
+    /**
+     * Default number of tokens put back by a request that succeeded without
+     * being retried.
+     */
+    public static final int DEFAULT_NO_RETRY_INCREMENT = 1;
+
+    /** Token bucket configuration with the default settings. */
+    public static final RetryTokenBucketConfig DEFAULT = new RetryTokenBucketConfig(
+            DEFAULT_CAPACITY,
+            DEFAULT_RETRY_COST,
+            DEFAULT_IO_ERROR_RETRY_COST,
+            DEFAULT_NO_RETRY_INCREMENT);
+
+    private final int capacity;
+    private final int retryCost;
+    private final int ioErrorRetryCost;
+    private final int noRetryIncrement;
+
+    /**
+     * Constructs a new token bucket configuration. A request that succeeds
+     * after being retried puts back the tokens taken by its retries.
+     *
+     * @param capacity
+     *            The number of tokens in a full bucket; a client starts with
+     *            a full bucket.
+     * @param retryCost
+     *            The number of tokens taken by a retry.
+     * @param ioErrorRetryCost
+     *            The number of tokens taken by the retry of a request that
+     *            failed with an I/O error, such as a connection timeout.
+     * @param noRetryIncrement
+     *            The number of tokens put back by a request that succeeded
+     *            without being retried.
+     */
+    public RetryTokenBucketConfig(int capacity,
+                                  int retryCost,
+                                  int ioErrorRetryCost,
+                                  int noRetryIncrement) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Please provide a positive value for capacity.");
+        }
+        if (retryCost < 0 || ioErrorRetryCost < 0 || noRetryIncrement < 0) {
+            throw new IllegalArgumentException("Please provide non-negative token costs and increments.");
+        }
+        this.capacity = capacity;
+        this.retryCost = retryCost;
+        this.ioErrorRetryCost = ioErrorRetryCost;
+        this.noRetryIncrement = noRetryIncrement;
+    }
+
+    /**
+     * Returns the number of tokens in a full bucket.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Returns the number of tokens taken by a retry.
+     */
+    public int getRetryCost() {
+        return retryCost;
+    }
+
+    /**
+     * Returns the number of tokens taken by the retry of a request that
+     * failed with an I/O error.
+     */
+    public int getIoErrorRetryCost() {
+        return ioErrorRetryCost;
+    }
+
+    /**
+     * Returns the number of tokens put back by a request that succeeded
+     * without being retried.
+     */
+    public int getNoRetryIncrement() {
+        return noRetryIncrement;
+    }
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry.internal;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * The adaptive rate limiter of a single client, which limits the rate at
+ * which the client sends requests once some of them are throttled.
+ * <p>
+ * The sending rate is a token bucket whose fill rate follows a CUBIC curve,
+ * as used for TCP congestion control: whenever a request is throttled, the
+ * rate drops to a fraction of the rate measured at the time; while requests
+ * succeed, it grows back towards that rate, slowly at first, then faster once
+ * it's been a while since the last throttling error. The fill rate never
+ * exceeds twice the measured sending rate, so that an idle client doesn't
+ * build up an unbounded allowance.
+ * <p>
+ * For internal use only.
+ */
+@ThreadSafe
+public class AdaptiveRateLimiter {
+
+    /** The factor by which the rate drops when a request is throttled. */
+    private static final double BETA = 0.7;
+
+    /** Controls how fast the rate grows back after a throttling error. */
+    private static final double SCALE_CONSTANT = 0.4;
+
+    /** Weight of the latest measurement in the smoothed sending rate. */
+    private static final double SMOOTHING = 0.8;
+
+    /** The minimum fill rate, in requests per second. */
+    private static final double MIN_FILL_RATE = 0.5;
+
+    /** The minimum capacity of the token bucket. */
+    private static final double MIN_CAPACITY = 1;
+
+    // All guarded by this
+    private boolean enabled;
+    private double fillRate = MIN_FILL_RATE;
+    private double maxCapacity = MIN_CAPACITY;
+    private double currentCapacity;
+    private double lastRefillTime = now();
+    private double measuredSendRate;
+    private double lastSendRateBucket = Math.floor(now());
+    private long requestCount;
+    private double lastMaxRate;
+    private double lastThrottleTime = now();
+    private double timeWindow;
+
+    /**
+     * Reserves a slot for sending a request, and returns the time in
+     * milliseconds to wait for it. Always returns 0 until a request has been
+     * throttled.
+     */
+    public synchronized long acquire() {
+        if (!enabled) {
+            return 0;
+        }
+        refill(now());
+        currentCapacity -= 1;
+        if (currentCapacity >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-currentCapacity / fillRate * 1000);
+    }
+
+    /**
+     * Records the response to a request, and adapts the sending rate
+     * accordingly.
+     *
+     * @param isThrottled
+     *            whether the request was throttled
+     */
+    public synchronized void onResponse(boolean isThrottled) {
+        double now = now();
+        updateMeasuredRate(now);
+        double calculatedRate;
+        if (isThrottled) {
+            double rateToUse = enabled
+                    ? Math.min(measuredSendRate, fillRate)
+                    : measuredSendRate;
+            lastMaxRate = rateToUse;
+            timeWindow = Math.cbrt(lastMaxRate * (1 - BETA) / SCALE_CONSTANT);
+            lastThrottleTime = now;
+            calculatedRate = rateToUse * BETA;
+            enabled = true;
+        } else {
+            double t = now - lastThrottleTime - timeWindow;
+            calculatedRate = SCALE_CONSTANT * t * t * t + lastMaxRate;
+        }
+        updateFillRate(Math.min(calculatedRate, 2 * measuredSendRate), now);
+    }
+
+    /**
+     * Returns the current fill rate of the token bucket, in requests per
+     * second; meaningful only once a request has been throttled.
+     */
+    public synchronized double getFillRate() {
+        return fillRate;
+    }
+
+    private void refill(double now) {
+        currentCapacity = Math.min(maxCapacity,
+                currentCapacity + (now - lastRefillTime) * fillRate);
+        lastRefillTime = now;
+    }
+
+    private void updateFillRate(double newRate, double now) {
+        refill(now);
+        fillRate = Math.max(newRate, MIN_FILL_RATE);
+        maxCapacity = Math.max(newRate, MIN_CAPACITY);
+        currentCapacity = Math.min(currentCapacity, maxCapacity);
+    }
+
+    /**
+     * Measures the sending rate over half-second buckets.
+     */
+    private void updateMeasuredRate(double now) {
+        double timeBucket = Math.floor(now * 2) / 2;
+        requestCount++;
+        if (timeBucket > lastSendRateBucket) {
+            double currentRate = requestCount / (timeBucket - lastSendRateBucket);
+            measuredSendRate = currentRate * SMOOTHING
+                    + measuredSendRate * (1 - SMOOTHING);
+            requestCount = 0;
+            lastSendRateBucket = timeBucket;
+        }
+    }
+
+    /** Returns the current time in seconds. */
+    private static double now() {
+        return System.nanoTime() / 1e9;
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry.internal;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.retry.CircuitBreakerConfig;
+
+/**
+ * The circuit breaker of a single endpoint of a client.
+ * <p>
+ * For internal use only.
+ *
+ * @see CircuitBreakerConfig
+ */
+@ThreadSafe
+public class CircuitBreaker {
+
+    private enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final CircuitBreakerConfig config;
+
+    // All guarded by this
+    private State state = State.CLOSED;
+    private long windowStartNanos = System.nanoTime();
+    private int requestCount;
+    private int failureCount;
+    /** When the circuit last opened, or when the probe was let through. */
+    private long stateChangeNanos;
+
+    public CircuitBreaker(CircuitBreakerConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Returns true if an attempt may be sent to the endpoint; false if the
+     * circuit is open and the attempt should fail fast. When the open
+     * duration has elapsed, a single probe attempt is let through; another
+     * one is only let through if the probe's outcome hasn't been recorded
+     * within the open duration.
+     */
+    public synchronized boolean allowRequest() {
+        if (state == State.CLOSED) {
+            return true;
+        }
+        long now = System.nanoTime();
+        if (elapsedMillis(stateChangeNanos, now) < config.getOpenDurationInMillis()) {
+            return false;
+        }
+        state = State.HALF_OPEN;
+        stateChangeNanos = now;
+        return true;
+    }
+
+    /**
+     * Records an attempt that received a response other than a server or
+     * throttling error. Closes the circuit if the attempt was the probe.
+     */
+    public synchronized void onSuccess() {
+        if (state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            resetWindow(System.nanoTime());
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        countAttempt(false);
+    }
+
+    /**
+     * Records an attempt that failed with a server, throttling or I/O error.
+     */
+    public synchronized void onFailure() {
+        long now = System.nanoTime();
+        if (state == State.HALF_OPEN) {
+            open(now);
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+        countAttempt(true);
+        if (requestCount >= config.getMinimumRequestCount()
+                && failureCount >= requestCount * config.getFailureRateThreshold()) {
+            open(now);
+        }
+    }
+
+    /**
+     * Returns true if requests to the endpoint currently fail fast.
+     */
+    public synchronized boolean isOpen() {
+        return state != State.CLOSED;
+    }
+
+    private void countAttempt(boolean isFailure) {
+        long now = System.nanoTime();
+        if (elapsedMillis(windowStartNanos, now) >= config.getWindowInMillis()) {
+            resetWindow(now);
+        }
+        requestCount++;
+        if (isFailure) {
+            failureCount++;
+        }
+    }
+
+    private void open(long now) {
+        state = State.OPEN;
+        stateChangeNanos = now;
+    }
+
+    private void resetWindow(long now) {
+        windowStartNanos = now;
+        requestCount = 0;
+        failureCount = 0;
+    }
+
+    private static long elapsedMillis(long startNanos, long endNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(endNanos - startNanos);
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry.internal;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.retry.RetryTokenBucketConfig;
+
+/**
+ * The retry token bucket of a single client, shared by all its requests.
+ * <p>
+ * For internal use only.
+ *
+ * @see RetryTokenBucketConfig
+ */
+@ThreadSafe
+public class RetryTokenBucket {
+
+    private final RetryTokenBucketConfig config;
+    private final AtomicInteger availableTokens;
+
+    public RetryTokenBucket(RetryTokenBucketConfig config) {
+        this.config = config;
+        this.availableTokens = new AtomicInteger(config.getCapacity());
+    }
+
+    /**
+     * Returns the configuration of this bucket.
+     */
+    public RetryTokenBucketConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * Returns the number of tokens currently in this bucket.
+     */
+    public int getAvailableTokens() {
+        return availableTokens.get();
+    }
+
+    /**
+     * Takes the given number of tokens out of this bucket if it has that
+     * many, and returns true; or returns false, leaving the bucket unchanged.
+     */
+    public boolean tryAcquire(int tokens) {
+        int current;
+        do {
+            current = availableTokens.get();
+            if (current < tokens) {
+                return false;
+            }
+        } while (!availableTokens.compareAndSet(current, current - tokens));
+        return true;
+    }
+
+    /**
+     * Puts the given number of tokens back in this bucket, up to its
+     * capacity.
+     */
+    public void release(int tokens) {
+        int current, next;
+        do {
+            current = availableTokens.get();
+            next = Math.min(config.getCapacity(), current + tokens);
+        } while (current != next && !availableTokens.compareAndSet(current, next));
+    }
+}
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.transform;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.util.json.JSONWriter;
+import com.amazonaws.util.json.JsonGeneratorWriter;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * Holds the JSON body of a request while it's being marshalled. JSON
+ * marshallers write to the {@link JSONWriter} returned by
+ * {@link #getJsonWriter()}, which encodes UTF-8 directly into a byte buffer
+ * through a Jackson generator; the finished buffer is then handed to the
+ * request as its content without any further copies.
+ * <p>
+ * Jackson recycles its internal encoding buffers per thread, so the only
+ * allocation that scales with the payload is the buffer that becomes the
+ * request content. Instances are not thread safe and are intended to be used
+ * for a single request.
+ */
+public class JsonRequestContent {
+
+    /** Shared, thread safe factory; also owns Jackson's buffer recycling. */
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    /** Initial size of the content buffer; most request bodies are small. */
+    private static final int INITIAL_BUFFER_SIZE = 512;
+
+    private final ContentBuffer buffer = new ContentBuffer();
+    private final JsonGenerator generator;
+    private final JSONWriter jsonWriter;
+    private boolean closed;
+
+    public JsonRequestContent() {
+        try {
+            generator = jsonFactory.createGenerator(buffer, JsonEncoding.UTF8);
+        } catch (IOException e) {
+            throw new AmazonClientException("Unable to create JSON generator", e);
+        }
+        jsonWriter = new JsonGeneratorWriter(generator);
+    }
+
+    /**
+     * Returns the writer marshallers should write the request body to.
+     */
+    public JSONWriter getJsonWriter() {
+        return jsonWriter;
+    }
+
+    /**
+     * Returns a repeatable input stream over the marshalled JSON. The stream
+     * supports mark/reset, so it can be replayed on retries. No more content
+     * can be written once this method has been called.
+     */
+    public InputStream toInputStream() {
+        close();
+        return new ByteArrayInputStream(buffer.array(), 0, buffer.size());
+    }
+
+    /**
+     * Returns the length in bytes of the marshalled JSON. No more content can
+     * be written once this method has been called.
+     */
+    public int getContentLength() {
+        close();
+        return buffer.size();
+    }
+
+    private void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            generator.close();
+        } catch (IOException e) {
+            throw new AmazonClientException("Unable to marshall request to JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Exposes the backing array so it can be wrapped without being copied.
+     */
+    private static final class ContentBuffer extends ByteArrayOutputStream {
+        ContentBuffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        byte[] array() {
+            return buf;
+        }
+    }
+}
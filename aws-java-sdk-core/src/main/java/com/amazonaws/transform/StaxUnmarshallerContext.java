@@ -20,6 +20,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLStreamConstants;
@@ -41,7 +42,17 @@ public class StaxUnmarshallerContext {
     private final XMLEventReader eventReader;
 
     public final Stack<String> stack = new Stack<String>();
-    private String stackString = "";
+
+    /**
+     * The path of the current document position (ex: "/a/b/@c"), maintained
+     * incrementally as elements are entered and left instead of being rebuilt
+     * from the stack on every event.
+     */
+    private final StringBuilder stackString = new StringBuilder();
+
+    /** The length of stackString at each element depth, used to pop elements. */
+    private int[] pathLengths = new int[16];
+    private int depth;
 
     private Map<String, String> metadata = new HashMap<String, String>();
     private List<MetadataExpression> metadataExpressions = new ArrayList<MetadataExpression>();
@@ -102,14 +113,26 @@ public class StaxUnmarshallerContext {
             return attribute.getValue();
         }
 
-        StringBuilder sb = new StringBuilder();
+        /*
+         * Most elements contain a single characters event, so only fall back
+         * to concatenating when the parser splits up the element's text.
+         */
+        String text = "";
+        StringBuilder sb = null;
         while (true) {
             XMLEvent event = eventReader.peek();
             if (event.getEventType() == XMLStreamConstants.CHARACTERS) {
                 eventReader.nextEvent();
-                sb.append(event.asCharacters().getData());
+                String data = event.asCharacters().getData();
+                if (sb != null) {
+                    sb.append(data);
+                } else if (text.length() == 0) {
+                    text = data;
+                } else {
+                    sb = new StringBuilder(text).append(data);
+                }
             } else if (event.getEventType() == XMLStreamConstants.END_ELEMENT) {
-                return sb.toString();
+                return sb == null ? text : sb.toString();
             } else {
                 throw new RuntimeException("Encountered unexpected event: " + event.toString());
             }
@@ -124,7 +147,7 @@ public class StaxUnmarshallerContext {
      *         document being parsed.
      */
     public int getCurrentDepth() {
-        return stack.size();
+        return depth;
     }
 
     /**
@@ -138,7 +161,7 @@ public class StaxUnmarshallerContext {
      */
     public boolean testExpression(String expression) {
         if (expression.equals(".")) return true;
-        return stackString.endsWith(expression);
+        return pathEndsWith(expression, 0);
     }
 
     /**
@@ -158,17 +181,8 @@ public class StaxUnmarshallerContext {
     public boolean testExpression(String expression, int startingStackDepth) {
         if (expression.equals(".")) return true;
 
-        int index = -1;
-        while ((index = expression.indexOf("/", index + 1)) > -1) {
-            // Don't consider attributes a new depth level
-            if (expression.charAt(index + 1) != '@') {
-                startingStackDepth++;
-            }
-        }
-
-
-        return (startingStackDepth == getCurrentDepth()
-                && stackString.endsWith("/" + expression));
+        return (startingStackDepth + PathExpression.depthOf(expression) == depth
+                && pathEndsWith(expression, 1));
     }
 
     /**
@@ -203,13 +217,13 @@ public class StaxUnmarshallerContext {
 
         updateContext(currentEvent);
 
-        if (eventReader.hasNext()) {
-            XMLEvent nextEvent = eventReader.peek();
-            if (nextEvent != null && nextEvent.isCharacters()) {
-                for (MetadataExpression metadataExpression : metadataExpressions) {
-                    if (testExpression(metadataExpression.expression, metadataExpression.targetDepth)) {
-                        metadata.put(metadataExpression.key, nextEvent.asCharacters().getData());
-                    }
+        for (int i = 0; i < metadataExpressions.size(); i++) {
+            MetadataExpression metadataExpression = metadataExpressions.get(i);
+            if (testExpression(metadataExpression.expression, metadataExpression.targetDepth)
+                    && eventReader.hasNext()) {
+                XMLEvent nextEvent = eventReader.peek();
+                if (nextEvent != null && nextEvent.isCharacters()) {
+                    metadata.put(metadataExpression.key, nextEvent.asCharacters().getData());
                 }
             }
         }
@@ -267,26 +281,104 @@ public class StaxUnmarshallerContext {
         }
     }
 
+    /**
+     * Pre-computed form of a psuedo-xpath expression. Expressions come from
+     * string constants in the generated unmarshallers, so they are compiled
+     * once and shared by every context instead of being rescanned on every
+     * call to {@link #testExpression(String, int)}.
+     */
+    private static final class PathExpression {
+        /** Upper bound on cached expressions, in case callers build them dynamically. */
+        private static final int MAX_CACHED_EXPRESSIONS = 8192;
+
+        private static final Map<String, Integer> DEPTHS =
+                new ConcurrentHashMap<String, Integer>();
+
+        /**
+         * Returns the number of element levels the specified expression
+         * spans below the depth it starts matching at.
+         */
+        static int depthOf(String expression) {
+            Integer depth = DEPTHS.get(expression);
+            if (depth == null) {
+                depth = computeDepth(expression);
+                if (DEPTHS.size() < MAX_CACHED_EXPRESSIONS) {
+                    DEPTHS.put(expression, depth);
+                }
+            }
+            return depth;
+        }
+
+        private static int computeDepth(String expression) {
+            int depth = 0;
+            int index = -1;
+            while ((index = expression.indexOf('/', index + 1)) > -1) {
+                // Don't consider attributes a new depth level
+                if (index + 1 >= expression.length()
+                        || expression.charAt(index + 1) != '@') {
+                    depth++;
+                }
+            }
+            return depth;
+        }
+    }
+
+    /**
+     * Returns true if the current path ends with the specified expression.
+     * If anchored is non-zero, the expression must also be preceded by a path
+     * separator, which is equivalent to matching "/" + expression without
+     * allocating the concatenated string.
+     */
+    private boolean pathEndsWith(String expression, int anchored) {
+        int length = expression.length();
+        int offset = stackString.length() - length;
+        if (offset - anchored < 0) return false;
+        if (anchored != 0 && stackString.charAt(offset - 1) != '/') return false;
+
+        for (int i = 0; i < length; i++) {
+            if (stackString.charAt(offset + i) != expression.charAt(i)) return false;
+        }
+        return true;
+    }
+
     private void updateContext(XMLEvent event) {
         if (event == null) return;
 
         if (event.isEndElement()) {
             stack.pop();
-            stackString = "";
-            for (String s : stack) {
-                stackString += "/" + s;
-            }
+            depth--;
+            stackString.setLength(pathLengths[depth]);
         } else if (event.isStartElement()) {
-            stack.push(event.asStartElement().getName().getLocalPart());
-            stackString += "/" + event.asStartElement().getName().getLocalPart();
+            String localPart = event.asStartElement().getName().getLocalPart();
+            // Drop the suffix of any attribute of the parent element we just read
+            trimToCurrentElement();
+            if (depth == pathLengths.length) {
+                int[] grown = new int[depth * 2];
+                System.arraycopy(pathLengths, 0, grown, 0, depth);
+                pathLengths = grown;
+            }
+            pathLengths[depth++] = stackString.length();
+            stack.push(localPart);
+            stackString.append('/').append(localPart);
         } else if (event.isAttribute()) {
             Attribute attribute = (Attribute)event;
-            stackString = "";
-            for (String s : stack) {
-                stackString += "/" + s;
-            }
-            stackString += "/@" + attribute.getName().getLocalPart();
+            trimToCurrentElement();
+            stackString.append("/@").append(attribute.getName().getLocalPart());
+        }
+    }
+
+    /**
+     * Truncates the current path to the innermost element, removing any
+     * attribute suffix that was appended while reading that element's
+     * attributes.
+     */
+    private void trimToCurrentElement() {
+        if (depth == 0) {
+            stackString.setLength(0);
+            return;
         }
+        int elementEnd = pathLengths[depth - 1] + 1 + stack.peek().length();
+        stackString.setLength(elementEnd);
     }
 
 }
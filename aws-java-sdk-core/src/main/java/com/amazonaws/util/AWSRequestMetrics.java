@@ -130,6 +130,41 @@ public class AWSRequestMetrics {
          * /apidocs/org/apache/http/pool/PoolStats.html
          */
         HttpClientPoolPendingCount,
+        /**
+         * Number of duplicate requests sent to AWS because the original
+         * request was slow to respond.
+         *
+         * @see com.amazonaws.retry.HedgingPolicy
+         */
+        HedgeRequestCount,
+        /**
+         * Number of duplicate requests whose response was used in place of
+         * the response to the original request.
+         *
+         * @see com.amazonaws.retry.HedgingPolicy
+         */
+        HedgeWinCount,
+        /**
+         * Number of retries not sent because the retry token bucket of the
+         * client was empty.
+         *
+         * @see com.amazonaws.retry.RetryTokenBucketConfig
+         */
+        RetryCapacityExceededCount,
+        /**
+         * Number of requests that failed fast because the circuit breaker of
+         * their endpoint was open.
+         *
+         * @see com.amazonaws.retry.CircuitBreakerConfig
+         */
+        CircuitBreakerRejectedCount,
+        /**
+         * Number of milliseconds a request waited for the adaptive rate
+         * limiter of the client before being sent.
+         *
+         * @see com.amazonaws.retry.RetryPolicy#withAdaptiveRateLimiting(boolean)
+         */
+        RateLimitPauseTime,
         RetryPauseTime,
 //      S3DownloadThroughput, // migrated to S3RequestMetric in the S3 clint library
 //      S3UploadThroughput,   // migrated to S3RequestMetric in the S3 clint library
@@ -14,8 +14,8 @@
  */
 package com.amazonaws.util;
 
-import java.util.LinkedHashMap;
-import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import com.amazonaws.ResponseMetadata;
 
@@ -23,10 +23,16 @@ import com.amazonaws.ResponseMetadata;
  * Cache of response metadata for recently executed requests for diagnostic
  * purposes. This cache has a max size and as entries are added, the oldest
  * entry is aged out once the max size has been reached.
+ * <p>
+ * Every successful request adds an entry, from whichever thread executed it,
+ * so entries are kept in a fixed-size ring that is written without locking.
+ * Lookups are rare and simply scan the ring from the newest entry back.
  */
 public class ResponseMetadataCache {
-    private final InternalCache internalCache;
+    private final AtomicReferenceArray<Entry> entries;
 
+    /** The number of entries ever added; the next one goes at this index modulo the size. */
+    private final AtomicLong addedCount = new AtomicLong();
 
     /**
      * Creates a new cache that will contain, at most the specified number of
@@ -36,7 +42,10 @@ public class ResponseMetadataCache {
      *            The maximum size of this cache.
      */
     public ResponseMetadataCache(int maxEntries) {
-        internalCache = new InternalCache(maxEntries);
+        if (maxEntries <= 0) {
+            throw new IllegalArgumentException("maxEntries must be positive");
+        }
+        entries = new AtomicReferenceArray<Entry>(maxEntries);
     }
 
     /**
@@ -48,9 +57,20 @@ public class ResponseMetadataCache {
      * @param metadata
      *            The metadata for this entry.
      */
-    public synchronized void add(Object obj, ResponseMetadata metadata) {
+    public void add(Object obj, ResponseMetadata metadata) {
         if (obj == null) return;
-        internalCache.put(System.identityHashCode(obj), metadata);
+        long index = addedCount.getAndIncrement();
+        int slot = (int) (index % entries.length());
+        Entry entry = new Entry(index, System.identityHashCode(obj), metadata);
+        Entry current;
+        do {
+            current = entries.get(slot);
+            if (current != null && current.index > index) {
+                // A thread that added later than this one has already
+                // reused the slot, so this entry is evicted as it's added.
+                return;
+            }
+        } while (!entries.compareAndSet(slot, current, entry));
     }
 
     /**
@@ -68,26 +88,29 @@ public class ResponseMetadataCache {
         // on all platforms, but should be reasonable enough to use
         // for a few requests at a time.  We can always easily move
         // to our own unique IDs if needed.
-        return internalCache.get(System.identityHashCode(obj));
+        int key = System.identityHashCode(obj);
+        int size = entries.length();
+        long newest = addedCount.get() - 1;
+        for (long index = newest; index >= 0 && index > newest - size; index--) {
+            Entry entry = entries.get((int) (index % size));
+            // Skip slots that a concurrent add has claimed but not yet
+            // overwritten, which still hold an evicted entry.
+            if (entry != null && entry.index == index && entry.key == key) {
+                return entry.metadata;
+            }
+        }
+        return null;
     }
 
+    private static final class Entry {
+        private final long index;
+        private final int key;
+        private final ResponseMetadata metadata;
 
-    /**
-     * Simple implementation of LinkedHashMap that overrides the
-     * <code>removeEldestEntry</code> method to turn LinkedHashMap into a
-     * LRU(ish) cache that automatically evicts old entries.
-     */
-    private static final class InternalCache extends LinkedHashMap<Integer, ResponseMetadata> {
-        private int maxSize;
-
-        public InternalCache(int maxSize) {
-            super(maxSize);
-            this.maxSize = maxSize;
-        }
-
-        @Override
-        protected boolean removeEldestEntry(Entry eldest) {
-            return size() > maxSize;
+        Entry(long index, int key, ResponseMetadata metadata) {
+            this.index = index;
+            this.key = key;
+            this.metadata = metadata;
         }
     }
 }
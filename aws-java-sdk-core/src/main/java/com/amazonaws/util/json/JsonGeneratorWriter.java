@@ -0,0 +1,188 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util.json;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+import com.amazonaws.util.DateUtils;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+/**
+ * A {@link JSONWriter} that writes through a Jackson {@link JsonGenerator}
+ * instead of a character stream, so that marshallers written against
+ * JSONWriter can encode UTF-8 JSON directly into a byte sink.
+ * <p>
+ * The output is identical to that of JSONWriter: numbers and dates are
+ * rendered the same way, and binary values are written as base64 strings.
+ * Callers are responsible for flushing and closing the underlying generator.
+ */
+public class JsonGeneratorWriter extends JSONWriter {
+
+    private final JsonGenerator generator;
+
+    /**
+     * Constructs a new writer that emits JSON to the specified generator.
+     *
+     * @param generator
+     *            The Jackson generator to write to.
+     */
+    public JsonGeneratorWriter(JsonGenerator generator) {
+        super(null);
+        this.generator = generator;
+    }
+
+    /**
+     * Returns the generator this writer emits JSON to.
+     */
+    public JsonGenerator getGenerator() {
+        return generator;
+    }
+
+    @Override
+    public JSONWriter array() throws JSONException {
+        try {
+            generator.writeStartArray();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public JSONWriter endArray() throws JSONException {
+        try {
+            generator.writeEndArray();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public JSONWriter object() throws JSONException {
+        try {
+            generator.writeStartObject();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public JSONWriter endObject() throws JSONException {
+        try {
+            generator.writeEndObject();
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public JSONWriter key(String s) throws JSONException {
+        if (s == null) {
+            throw new JSONException("Null key.");
+        }
+        try {
+            generator.writeFieldName(s);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public JSONWriter value(boolean b) throws JSONException {
+        try {
+            generator.writeBoolean(b);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public JSONWriter value(double d) throws JSONException {
+        return this.value(Double.valueOf(d));
+    }
+
+    @Override
+    public JSONWriter value(long l) throws JSONException {
+        try {
+            generator.writeNumber(l);
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public JSONWriter value(Date date) throws JSONException {
+        if (date == null) {
+            throw new JSONException("Null pointer");
+        }
+        try {
+            generator.writeNumber(DateUtils.formatServiceSpecificDate(date));
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public JSONWriter value(ByteBuffer b) throws JSONException {
+        try {
+            if (b.hasArray()) {
+                // Encode straight from the backing array without copying it
+                generator.writeBinary(b.array(), b.arrayOffset() + b.position(), b.remaining());
+            } else {
+                b.mark();
+                byte[] bytes = new byte[b.remaining()];
+                b.get(bytes, 0, bytes.length);
+                b.reset();
+                generator.writeBinary(bytes);
+            }
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+
+    @Override
+    public JSONWriter value(Object o) throws JSONException {
+        try {
+            if (o == null || JSONObject.NULL.equals(o)) {
+                generator.writeNull();
+            } else if (o instanceof Number) {
+                generator.writeNumber(JSONObject.numberToString((Number)o));
+            } else if (o instanceof Boolean) {
+                generator.writeBoolean((Boolean)o);
+            } else if (o instanceof JSONObject || o instanceof JSONArray
+                    || o instanceof Map || o instanceof Collection
+                    || o.getClass().isArray()) {
+                generator.writeRawValue(JSONObject.valueToString(o));
+            } else {
+                generator.writeString(o.toString());
+            }
+        } catch (IOException e) {
+            throw new JSONException(e);
+        }
+        return this;
+    }
+}
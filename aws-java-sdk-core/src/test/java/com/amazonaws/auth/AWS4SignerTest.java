@@ -24,6 +24,8 @@ import static org.junit.Assert.assertNull;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -120,6 +122,33 @@ public class AWS4SignerTest {
                 request.getHeaders().get("Authorization"));
     }
 
+    @Test
+    public void testPrecomputedContentHash() throws Exception {
+        AWSCredentials credentials = new BasicAWSCredentials("access", "secret");
+        Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        signer.setOverrideDate(c.getTime());
+
+        Request<?> request = generateBasicRequest();
+        request.addHeader("x-amz-content-sha256", "required");
+        signer.sign(request, credentials);
+        String contentSha256 = request.getHeaders().get("x-amz-content-sha256");
+        String expected = request.getHeaders().get("Authorization");
+
+        // The payload isn't read when its hash is given
+        request = generateBasicRequest();
+        request.setContent(new InputStream() {
+            @Override
+            public int read() throws IOException {
+                throw new IOException("The payload shouldn't be read");
+            }
+        });
+        request.addHeader("x-amz-content-sha256", contentSha256);
+        signer.sign(request, credentials);
+        assertEquals(expected, request.getHeaders().get("Authorization"));
+    }
+
     /**
      * Tests that if passed anonymous credentials, signer will not generate a signature
      */
@@ -0,0 +1,164 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+
+/** Tests for the reloading of credentials by the refreshing credentials provider. */
+public class AbstractRefreshingCredentialsProviderTest {
+
+    private static final long ONE_MINUTE = 1000L * 60;
+
+    /**
+     * Loads credentials that expire after a configurable time, and counts the
+     * loads.
+     */
+    private static class TestProvider extends AbstractRefreshingCredentialsProvider {
+        final AtomicInteger loads = new AtomicInteger();
+        volatile long lifetime = ONE_MINUTE * 60;
+        volatile long loadTime;
+        volatile boolean isFailing;
+
+        TestProvider() {
+            super(ONE_MINUTE, ONE_MINUTE * 5);
+        }
+
+        @Override
+        protected ExpiringCredentials loadCredentials() {
+            loads.incrementAndGet();
+            try {
+                Thread.sleep(loadTime);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (isFailing) {
+                throw new AmazonClientException("Unable to load credentials");
+            }
+            return new ExpiringCredentials(new BasicAWSCredentials("foo", "bar"),
+                    new Date(System.currentTimeMillis() + lifetime));
+        }
+    }
+
+    @Test
+    public void testConcurrentCallersLoadOnce() throws Exception {
+        final TestProvider provider = new TestProvider();
+        provider.loadTime = 200;
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<AWSCredentials> results = new ArrayList<AWSCredentials>();
+        List<Thread> threads = new ArrayList<Thread>();
+        for (int i = 0; i < 10; i++) {
+            Thread t = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    AWSCredentials credentials = provider.getCredentials();
+                    synchronized (results) {
+                        results.add(credentials);
+                    }
+                }
+            };
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertEquals(1, provider.loads.get());
+        assertEquals(10, results.size());
+        for (AWSCredentials credentials : results) {
+            assertSame(results.get(0), credentials);
+        }
+    }
+
+    @Test
+    public void testPrefetchDoesNotBlockCallers() throws Exception {
+        TestProvider provider = new TestProvider();
+        // The first credentials enter the prefetch threshold shortly after loading
+        provider.lifetime = ONE_MINUTE * 5 + 200;
+        AWSCredentials first = provider.getCredentials();
+        provider.lifetime = ONE_MINUTE * 60;
+        provider.loadTime = 1000;
+        Thread.sleep(400);
+
+        long start = System.currentTimeMillis();
+        assertSame(first, provider.getCredentials());
+        assertSame(first, provider.getCredentials());
+        long elapsed = System.currentTimeMillis() - start;
+        if (elapsed >= 500) {
+            fail("Callers were blocked by the background reload for " + elapsed + " ms");
+        }
+
+        long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(5);
+        AWSCredentials reloaded = first;
+        while (reloaded == first && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+            reloaded = provider.getCredentials();
+        }
+        assertNotSame(first, reloaded);
+        assertEquals(2, provider.loads.get());
+    }
+
+    @Test
+    public void testFailedReloadFallsBackToValidCredentials() {
+        TestProvider provider = new TestProvider();
+        AWSCredentials first = provider.getCredentials();
+
+        provider.isFailing = true;
+        provider.refresh();
+        assertSame(first, provider.getCredentials());
+        assertEquals(2, provider.loads.get());
+    }
+
+    @Test
+    public void testFailedLoadWithoutCredentials() {
+        TestProvider provider = new TestProvider();
+        provider.isFailing = true;
+        try {
+            provider.getCredentials();
+            fail("Expected an AmazonClientException, but wasn't thrown");
+        } catch (AmazonClientException expected) {
+        }
+    }
+
+    @Test
+    public void testExpiredCredentialsAreRejected() {
+        TestProvider provider = new TestProvider();
+        provider.lifetime = -ONE_MINUTE;
+        try {
+            provider.getCredentials();
+            fail("Expected an AmazonClientException, but wasn't thrown");
+        } catch (AmazonClientException expected) {
+        }
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.amazonaws.auth.AbstractRefreshingCredentialsProvider.ExpiringCredentials;
+
+/**
+ * Tests when the InstanceProfileCredentialsProvider schedules the reload of
+ * its credentials in the background.
+ */
+public class InstanceProfileCredentialsProviderPrefetchTest {
+
+    /** One minute (in milliseconds) */
+    private static final long ONE_MINUTE = 1000L * 60;
+
+    private final AWSCredentials credentials = new BasicAWSCredentials("foo", "bar");
+
+    private final InstanceProfileCredentialsProvider provider = new InstanceProfileCredentialsProvider();
+
+    private long prefetchTime(long expiresInMs, long checkedAgoMs) {
+        provider.lastInstanceProfileCheck = new Date(System.currentTimeMillis() - checkedAgoMs);
+        return provider.getPrefetchTime(new ExpiringCredentials(credentials,
+                new Date(System.currentTimeMillis() + expiresInMs)));
+    }
+
+    @Test
+    public void testNoReloadWhileRecentAndFarFromExpiring() {
+        assertTrue(prefetchTime(ONE_MINUTE * 60 * 24, 0) > System.currentTimeMillis());
+    }
+
+    @Test
+    public void testReloadAnHourAfterTheLastCheck() {
+        assertTrue(prefetchTime(ONE_MINUTE * 16, ONE_MINUTE * 61) <= System.currentTimeMillis());
+    }
+
+    @Test
+    public void testReloadCloseToExpiring() {
+        assertTrue(prefetchTime(ONE_MINUTE * 14, 0) <= System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.http.concurrent.FutureCallback;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.Response;
+import com.amazonaws.retry.PredefinedRetryPolicies;
+import com.amazonaws.retry.RetryPolicy;
+import com.amazonaws.util.IOUtils;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class AmazonHttpClientAsyncTest {
+
+    private HttpServer server;
+    private AmazonHttpClient client;
+    private final AtomicInteger requestCount = new AtomicInteger();
+    private volatile int failuresBeforeSuccess;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                IOUtils.toByteArray(exchange.getRequestBody());
+                int count = requestCount.incrementAndGet();
+                byte[] body = ("attempt-" + count).getBytes("UTF-8");
+                int status = count <= failuresBeforeSuccess ? 500 : 200;
+                exchange.sendResponseHeaders(status, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+
+        ClientConfiguration config = new ClientConfiguration()
+            .withNonBlockingTransport(true)
+            .withNonBlockingIoThreadCount(1)
+            .withRetryPolicy(new RetryPolicy(
+                    PredefinedRetryPolicies.DEFAULT_RETRY_CONDITION,
+                    new RetryPolicy.BackoffStrategy() {
+                        @Override
+                        public long delayBeforeNextRetry(
+                                com.amazonaws.AmazonWebServiceRequest originalRequest,
+                                com.amazonaws.AmazonClientException exception,
+                                int retriesAttempted) {
+                            return 10;
+                        }
+                    },
+                    3, false));
+        client = new AmazonHttpClient(config);
+    }
+
+    @After
+    public void tearDown() {
+        client.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void testNonBlockingTransportEnabled() {
+        Assert.assertTrue(client.isNonBlockingTransportEnabled());
+        Assert.assertFalse(new AmazonHttpClient(new ClientConfiguration())
+                .isNonBlockingTransportEnabled());
+    }
+
+    @Test
+    public void testTransportNotCreatedAfterShutdown() {
+        AmazonHttpClient unused = new AmazonHttpClient(
+                new ClientConfiguration().withNonBlockingTransport(true));
+        unused.shutdown();
+        try {
+            unused.executeAsync(newRequest(), new StringResponseHandler(),
+                    new StatusCodeErrorHandler(), new ExecutionContext(true), null);
+            Assert.fail("Expected an IllegalStateException");
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void testSuccessfulRequest() throws Exception {
+        final AtomicReference<String> fromCallback = new AtomicReference<String>();
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new StatusCodeErrorHandler(),
+                new ExecutionContext(true),
+                new FutureCallback<Response<String>>() {
+                    public void completed(Response<String> result) {
+                        fromCallback.set(result.getAwsResponse());
+                    }
+                    public void failed(Exception ex) {}
+                    public void cancelled() {}
+                });
+
+        Response<String> response = future.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("attempt-1", response.getAwsResponse());
+        Assert.assertEquals("attempt-1", fromCallback.get());
+        Assert.assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    public void testRetriesServerErrors() throws Exception {
+        failuresBeforeSuccess = 2;
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new StatusCodeErrorHandler(),
+                new ExecutionContext(true), null);
+
+        Response<String> response = future.get(10, TimeUnit.SECONDS);
+        Assert.assertEquals("attempt-3", response.getAwsResponse());
+        Assert.assertEquals(3, requestCount.get());
+    }
+
+    @Test
+    public void testFailsAfterMaxErrorRetry() throws Exception {
+        failuresBeforeSuccess = Integer.MAX_VALUE;
+        Future<Response<String>> future = client.executeAsync(newRequest(),
+                new StringResponseHandler(), new StatusCodeErrorHandler(),
+                new ExecutionContext(true), null);
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected the request to fail");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof AmazonServiceException);
+            Assert.assertEquals(500, ((AmazonServiceException) e.getCause()).getStatusCode());
+        }
+        // the initial attempt plus three retries
+        Assert.assertEquals(4, requestCount.get());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRequiresNonBlockingTransport() {
+        new AmazonHttpClient(new ClientConfiguration()).executeAsync(
+                newRequest(), new StringResponseHandler(),
+                new StatusCodeErrorHandler(), new ExecutionContext(), null);
+    }
+
+    private Request<?> newRequest() {
+        Request<?> request = new DefaultRequest<Object>("testsvc");
+        request.setHttpMethod(HttpMethodName.GET);
+        request.setEndpoint(URI.create("http://localhost:" + server.getAddress().getPort()));
+        return request;
+    }
+
+    private static class StringResponseHandler
+            implements HttpResponseHandler<AmazonWebServiceResponse<String>> {
+        @Override
+        public AmazonWebServiceResponse<String> handle(HttpResponse response) throws Exception {
+            AmazonWebServiceResponse<String> awsResponse = new AmazonWebServiceResponse<String>();
+            awsResponse.setResult(IOUtils.toString(response.getContent()));
+            return awsResponse;
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+
+    private static class StatusCodeErrorHandler
+            implements HttpResponseHandler<AmazonServiceException> {
+        @Override
+        public AmazonServiceException handle(HttpResponse response) throws Exception {
+            AmazonServiceException ase = new AmazonServiceException("Server error");
+            ase.setStatusCode(response.getStatusCode());
+            ase.setErrorType(AmazonServiceException.ErrorType.Service);
+            return ase;
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+}
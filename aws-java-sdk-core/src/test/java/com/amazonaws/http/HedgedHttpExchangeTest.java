@@ -0,0 +1,162 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.http.HttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.util.EntityUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+public class HedgedHttpExchangeTest {
+
+    private static final long HEDGE_DELAY_MILLIS = 100;
+
+    private HttpServer server;
+    private CloseableHttpClient httpClient;
+    private ScheduledThreadPoolExecutor executor;
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    /** How long the first request stalls before it is answered. */
+    private volatile long firstRequestStallMillis;
+    /** Whether each request is answered by closing the connection. */
+    private volatile boolean isFailing;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                int count = requestCount.incrementAndGet();
+                if (count == 1 && firstRequestStallMillis > 0) {
+                    try {
+                        Thread.sleep(firstRequestStallMillis);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                if (isFailing) {
+                    exchange.close();
+                    return;
+                }
+                byte[] body = ("attempt-" + count).getBytes("UTF-8");
+                exchange.sendResponseHeaders(200, body.length);
+                OutputStream os = exchange.getResponseBody();
+                os.write(body);
+                os.close();
+            }
+        });
+        server.start();
+
+        PoolingHttpClientConnectionManager connectionManager =
+                new PoolingHttpClientConnectionManager();
+        connectionManager.setDefaultMaxPerRoute(10);
+        httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .disableAutomaticRetries()
+                .build();
+        executor = new ScheduledThreadPoolExecutor(2);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        executor.shutdownNow();
+        httpClient.close();
+        server.stop(0);
+    }
+
+    @Test
+    public void testFastResponseIsNotHedged() throws Exception {
+        // Long enough for the response to always arrive first
+        HedgedHttpExchange exchange = new HedgedHttpExchange(httpClient,
+                executor, newRequest(), newRequest(), 60000);
+        HttpResponse response = exchange.execute(new BasicHttpContext());
+
+        Assert.assertEquals("attempt-1", EntityUtils.toString(response.getEntity()));
+        Assert.assertFalse(exchange.isHedgeSent());
+        Assert.assertFalse(exchange.isHedgeWon());
+        // The cancelled hedge doesn't stay queued until its delay
+        Assert.assertEquals(0, executor.getQueue().size());
+        Assert.assertEquals(1, requestCount.get());
+    }
+
+    @Test
+    public void testFirstResponseWinsAndLoserIsAborted() throws Exception {
+        firstRequestStallMillis = 2000;
+        HttpGet request = newRequest();
+        HttpGet hedge = newRequest();
+        HedgedHttpExchange exchange = new HedgedHttpExchange(httpClient,
+                executor, request, hedge, HEDGE_DELAY_MILLIS);
+
+        long start = System.nanoTime();
+        HttpResponse response = exchange.execute(new BasicHttpContext());
+        long elapsedMillis = (System.nanoTime() - start) / 1000000;
+
+        Assert.assertEquals("attempt-2", EntityUtils.toString(response.getEntity()));
+        Assert.assertTrue(elapsedMillis < firstRequestStallMillis);
+        Assert.assertTrue(exchange.isHedgeSent());
+        Assert.assertTrue(exchange.isHedgeWon());
+        Assert.assertSame(hedge, exchange.getWinningRequest());
+        Assert.assertTrue(request.isAborted());
+        Assert.assertFalse(hedge.isAborted());
+    }
+
+    @Test
+    public void testBothAttemptsFail() throws Exception {
+        firstRequestStallMillis = HEDGE_DELAY_MILLIS * 3;
+        isFailing = true;
+        HedgedHttpExchange exchange = newExchange();
+        try {
+            exchange.execute(new BasicHttpContext());
+            Assert.fail("Expected an IOException");
+        } catch (IOException expected) {
+        }
+        Assert.assertEquals(2, requestCount.get());
+        Assert.assertTrue(exchange.isHedgeSent());
+        Assert.assertFalse(exchange.isHedgeWon());
+    }
+
+    private HedgedHttpExchange newExchange() {
+        return new HedgedHttpExchange(httpClient, executor, newRequest(),
+                newRequest(), HEDGE_DELAY_MILLIS);
+    }
+
+    private HttpGet newRequest() {
+        return new HttpGet("http://localhost:" + server.getAddress().getPort() + "/");
+    }
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Test;
+
+public class AdaptiveTargetTest {
+
+    @Test
+    public void testAdjustWithinBounds() {
+        AdaptiveTarget target = new AdaptiveTarget(1);
+        assertEquals(2, target.adjust(1, 3));
+        assertEquals(3, target.adjust(1, 3));
+        // grows no further than the maximum
+        assertEquals(3, target.adjust(1, 3));
+        assertEquals(2, target.adjust(-1, 3));
+        assertEquals(1, target.adjust(-1, 3));
+        // shrinks no further than one
+        assertEquals(1, target.adjust(-1, 3));
+        assertEquals(1, target.get());
+    }
+
+    @Test
+    public void testLoweredMaximumCapsTheTarget() {
+        AdaptiveTarget target = new AdaptiveTarget(5);
+        assertEquals(2, target.adjust(1, 2));
+        // a maximum below one still allows one
+        assertEquals(1, target.adjust(0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInitialTargetMustBePositive() {
+        new AdaptiveTarget(0);
+    }
+
+    @Test
+    public void testConcurrentAdjustments() throws InterruptedException {
+        final int max = 1000;
+        final AdaptiveTarget target = new AdaptiveTarget(1);
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < 100; j++) {
+                        target.adjust(1, max);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // no adjustment is lost
+        assertEquals(801, target.get());
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+
+public class BufferedPublisherSupportTest {
+
+    private final BufferedPublisherSupport support =
+            new BufferedPublisherSupport("test-publisher-", null, 1, 100);
+
+    @After
+    public void tearDown() {
+        support.releaseThreads();
+    }
+
+    @Test
+    public void testReserveAndRelease() {
+        assertTrue(support.tryReserve(2, 60));
+        assertFalse(support.tryReserve(1, 60));
+        assertEquals(2, support.getOutstandingCount());
+        support.release(2, 60);
+        assertEquals(0, support.getOutstandingCount());
+        assertTrue(support.tryReserve(1, 100));
+    }
+
+    @Test
+    public void testAwaitOutstanding() throws InterruptedException {
+        support.reserve(1, 10);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread waiter = new Thread() {
+            @Override
+            public void run() {
+                support.awaitOutstanding();
+                done.countDown();
+            }
+        };
+        waiter.start();
+        assertFalse(done.await(50, TimeUnit.MILLISECONDS));
+        support.release(1, 10);
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPeriodicTaskSurvivesExceptions() throws InterruptedException {
+        final CountDownLatch runs = new CountDownLatch(3);
+        support.schedulePeriodically(new Runnable() {
+            @Override
+            public void run() {
+                runs.countDown();
+                throw new RuntimeException("expected");
+            }
+        }, 5);
+        assertTrue(runs.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testBackoff() {
+        assertEquals(100, BufferedPublisherSupport.backoffMs(100, 1, 1000));
+        assertEquals(400, BufferedPublisherSupport.backoffMs(100, 3, 1000));
+        assertEquals(1000, BufferedPublisherSupport.backoffMs(100, 50, 1000));
+    }
+
+    @Test
+    public void testIsRetryable() {
+        AmazonServiceException throttled = new AmazonServiceException("slow down");
+        throttled.setErrorCode("ThrottlingException");
+        throttled.setStatusCode(400);
+        assertTrue(BufferedPublisherSupport.isRetryable(throttled));
+
+        AmazonServiceException serverError = new AmazonServiceException("oops");
+        serverError.setStatusCode(503);
+        assertTrue(BufferedPublisherSupport.isRetryable(serverError));
+
+        AmazonServiceException invalid = new AmazonServiceException("invalid");
+        invalid.setErrorCode("InvalidParameterValue");
+        invalid.setStatusCode(400);
+        assertFalse(BufferedPublisherSupport.isRetryable(invalid));
+
+        assertTrue(BufferedPublisherSupport.isRetryable(new AmazonClientException("io")));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class DrainLockTest {
+
+    /** Drains a queue of integers, summing them after the lock is released. */
+    private static class SummingDrain implements DrainLock.Drain<List<Integer>> {
+        final Queue<Integer> queue = new ConcurrentLinkedQueue<Integer>();
+        final AtomicInteger sum = new AtomicInteger();
+        final AtomicInteger drainers = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+
+        @Override
+        public boolean hasWork() {
+            return !queue.isEmpty();
+        }
+
+        @Override
+        public List<Integer> drain() {
+            if (drainers.incrementAndGet() > 1) {
+                overlapped.set(true);
+            }
+            List<Integer> drained = new ArrayList<Integer>();
+            Integer value;
+            while ((value = queue.poll()) != null) {
+                drained.add(value);
+            }
+            drainers.decrementAndGet();
+            return drained;
+        }
+
+        @Override
+        public void afterDrain(List<Integer> drained) {
+            for (Integer value : drained) {
+                sum.addAndGet(value);
+            }
+        }
+    }
+
+    @Test
+    public void testDrainsQueuedWork() {
+        DrainLock lock = new DrainLock();
+        SummingDrain drain = new SummingDrain();
+        drain.queue.add(1);
+        drain.queue.add(2);
+        lock.drain(drain);
+        assertTrue(drain.queue.isEmpty());
+        assertEquals(3, drain.sum.get());
+    }
+
+    @Test
+    public void testReturnsWithoutWaitingWhileLockIsHeld() throws InterruptedException {
+        final DrainLock lock = new DrainLock();
+        final SummingDrain drain = new SummingDrain();
+        drain.queue.add(1);
+        lock.lock();
+        try {
+            Thread other = new Thread() {
+                @Override
+                public void run() {
+                    lock.drain(drain);
+                }
+            };
+            other.start();
+            other.join(TimeUnit.SECONDS.toMillis(10));
+            assertFalse(other.isAlive());
+            // the work is left to the holder of the lock
+            assertEquals(1, drain.queue.size());
+        } finally {
+            lock.unlock();
+        }
+        lock.drain(drain);
+        assertEquals(1, drain.sum.get());
+    }
+
+    @Test
+    public void testHolderDrainsWorkQueuedMeanwhile() throws InterruptedException {
+        final DrainLock lock = new DrainLock();
+        final CountDownLatch draining = new CountDownLatch(1);
+        final CountDownLatch queued = new CountDownLatch(1);
+        final AtomicInteger sum = new AtomicInteger();
+        final Queue<Integer> queue = new ConcurrentLinkedQueue<Integer>();
+        final DrainLock.Drain<Integer> drain = new DrainLock.Drain<Integer>() {
+            @Override
+            public boolean hasWork() {
+                return !queue.isEmpty();
+            }
+
+            @Override
+            public Integer drain() {
+                Integer value = queue.poll();
+                if (value == 1) {
+                    // let the other thread queue its work and give up
+                    draining.countDown();
+                    try {
+                        queued.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return value;
+            }
+
+            @Override
+            public void afterDrain(Integer value) {
+                sum.addAndGet(value);
+            }
+        };
+        queue.add(1);
+        Thread holder = new Thread() {
+            @Override
+            public void run() {
+                lock.drain(drain);
+            }
+        };
+        holder.start();
+        assertTrue(draining.await(10, TimeUnit.SECONDS));
+        queue.add(2);
+        lock.drain(drain);
+        queued.countDown();
+        holder.join(TimeUnit.SECONDS.toMillis(10));
+        assertTrue(queue.isEmpty());
+        assertEquals(3, sum.get());
+    }
+
+    @Test
+    public void testNoWorkLeftBehindUnderContention() throws InterruptedException {
+        final DrainLock lock = new DrainLock();
+        final SummingDrain drain = new SummingDrain();
+        final int threadCount = 8;
+        final int perThread = 10000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < perThread; j++) {
+                        drain.queue.add(1);
+                        lock.drain(drain);
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertFalse(drain.overlapped.get());
+        assertTrue(drain.queue.isEmpty());
+        assertEquals(threadCount * perThread, drain.sum.get());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class SettableFutureTest {
+
+    /** Counts the completion callbacks. */
+    private static class CountingFuture extends SettableFuture<String> {
+        final AtomicInteger successes = new AtomicInteger();
+        final AtomicInteger failures = new AtomicInteger();
+
+        @Override
+        protected void onSuccess(String result) {
+            assertFalse(Thread.holdsLock(this));
+            successes.incrementAndGet();
+        }
+
+        @Override
+        protected void onFailure(Exception exception) {
+            failures.incrementAndGet();
+        }
+    }
+
+    @Test
+    public void testCompletesOnce() throws Exception {
+        CountingFuture future = new CountingFuture();
+        assertFalse(future.isDone());
+        assertTrue(future.setSuccess("result"));
+        assertFalse(future.setSuccess("other"));
+        assertFalse(future.setFailure(new RuntimeException()));
+        assertTrue(future.isDone());
+        assertEquals("result", future.get());
+        assertEquals(1, future.successes.get());
+        assertEquals(0, future.failures.get());
+        assertFalse(future.cancel(true));
+        assertFalse(future.isCancelled());
+    }
+
+    @Test
+    public void testFailure() throws InterruptedException {
+        CountingFuture future = new CountingFuture();
+        RuntimeException cause = new RuntimeException();
+        assertTrue(future.setFailure(cause));
+        try {
+            future.get(1, TimeUnit.SECONDS);
+            fail("Expected an ExecutionException");
+        } catch (ExecutionException e) {
+            assertSame(cause, e.getCause());
+        } catch (TimeoutException e) {
+            fail("The future is done");
+        }
+        assertEquals(1, future.failures.get());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void testGetTimesOut() throws Exception {
+        new SettableFuture<String>().get(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void testVeryLongTimeoutDoesNotOverflow() throws Exception {
+        final SettableFuture<String> future = new SettableFuture<String>();
+        new Thread() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                future.setSuccess("late");
+            }
+        }.start();
+        assertEquals("late", future.get(Long.MAX_VALUE, TimeUnit.MILLISECONDS));
+    }
+}
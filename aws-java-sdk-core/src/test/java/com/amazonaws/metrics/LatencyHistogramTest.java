@@ -0,0 +1,138 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+public class LatencyHistogramTest {
+    private static class TestRequest extends AmazonWebServiceRequest {
+    }
+
+    @Test
+    public void testBucketBoundaries() {
+        for (long value = 0; value < 1L << 20; value++) {
+            int index = LatencyHistogram.indexOf(value);
+            assertTrue(LatencyHistogram.lowestValueAt(index) <= value);
+            assertTrue(LatencyHistogram.highestValueAt(index) >= value);
+        }
+        long max = LatencyHistogram.MAX_TRACKABLE_MICROS;
+        int index = LatencyHistogram.indexOf(max);
+        assertTrue(LatencyHistogram.lowestValueAt(index) <= max);
+        assertTrue(LatencyHistogram.highestValueAt(index) >= max);
+    }
+
+    @Test
+    public void testPercentilesWithinPrecision() {
+        LatencyHistogram h = new LatencyHistogram("Service", "TestRequest", "Latency");
+        Random random = new Random(42);
+        List<Long> values = new ArrayList<Long>();
+        for (int i = 0; i < 100000; i++) {
+            // Mostly around 20 ms, with a long tail up to 2 seconds
+            long micros = i % 100 == 0
+                        ? 20000 + random.nextInt(2000000)
+                        : 15000 + random.nextInt(10000);
+            values.add(micros);
+            h.recordMicros(micros);
+        }
+        Collections.sort(values);
+        LatencyHistogram.Snapshot s = h.getSnapshot();
+        assertEquals(values.size(), s.getCount());
+        for (double p : new double[] {50, 90, 99, 99.9, 100}) {
+            long exact = values.get((int) Math.ceil(p / 100 * values.size()) - 1);
+            double expected = exact / 1000.0;
+            assertEquals("p" + p, expected, s.getPercentile(p), expected * 0.04);
+        }
+        assertEquals(values.get(0) / 1000.0, s.getMin(), 0.5);
+        assertEquals(s.getPercentile(100), s.getMax(), 0);
+    }
+
+    @Test
+    public void testSnapshotSince() {
+        LatencyHistogram h = new LatencyHistogram("Service", "TestRequest", "Latency");
+        for (int i = 0; i < 100; i++) {
+            h.recordNanos(1000000);
+        }
+        LatencyHistogram.Snapshot first = h.getSnapshot();
+        for (int i = 0; i < 10; i++) {
+            h.recordNanos(500000000);
+        }
+        LatencyHistogram.Snapshot delta = h.getSnapshot().since(first);
+        assertEquals(10, delta.getCount());
+        assertEquals(500, delta.getPercentile(50), 500 * 0.04);
+        assertEquals(500, delta.getMin(), 500 * 0.04);
+    }
+
+    @Test
+    public void testEmptyAndOutOfRange() {
+        LatencyHistogram h = new LatencyHistogram("Service", "TestRequest", "Latency");
+        assertEquals(0, h.getSnapshot().getPercentile(99), 0);
+        assertEquals(0, h.getSnapshot().getMean(), 0);
+        h.recordMicros(-5);
+        h.recordMicros(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot s = h.getSnapshot();
+        assertEquals(2, s.getCount());
+        assertEquals(0, s.getMin(), 0);
+        double maxMillis = LatencyHistogram.MAX_TRACKABLE_MICROS / 1000.0;
+        assertEquals(maxMillis, s.getMax(), maxMillis * 0.04);
+    }
+
+    @Test
+    public void testRecordRequestTimings() {
+        LatencyHistograms histograms = new LatencyHistograms();
+        DefaultRequest<TestRequest> request =
+            new DefaultRequest<TestRequest>(new TestRequest(), "TestService");
+        TimingInfo timingInfo = TimingInfo.startTimingFullSupport(0);
+        timingInfo.addSubMeasurement(Field.HttpRequestTime.name(),
+                TimingInfo.unmodifiableTimingInfo(0, 5000000L));
+        timingInfo.addSubMeasurement(Field.HttpRequestTime.name(),
+                TimingInfo.unmodifiableTimingInfo(0, 7000000L));
+        timingInfo.addSubMeasurement(Field.ClientExecuteTime.name(),
+                TimingInfo.unmodifiableTimingInfo(0, 20000000L));
+        timingInfo.addSubMeasurement(Field.ClientExecuteTime.name(),
+                TimingInfo.unmodifiableTimingInfo(0, null));
+        timingInfo.addSubMeasurement("NotALatency",
+                TimingInfo.unmodifiableTimingInfo(0, 1000000L));
+        histograms.record(request, timingInfo);
+
+        String requestType = "TestRequest";
+        LatencyHistogram http = histograms.getHistogram(
+                "TestService", requestType, Field.HttpRequestTime.name());
+        assertNotNull(http);
+        assertEquals(2, http.getSnapshot().getCount());
+        assertEquals(7, http.getSnapshot().getMax(), 7 * 0.04);
+
+        LatencyHistogram client = histograms.getHistogram(
+                "TestService/" + requestType + "/" + Field.ClientExecuteTime.name());
+        assertNotNull(client);
+        assertEquals(1, client.getSnapshot().getCount());
+        assertNull(histograms.getHistogram("TestService", requestType, "NotALatency"));
+        assertEquals(2, histograms.getHistograms().size());
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonWebServiceRequest;
+
+/** Tests for the hedge delays computed by the hedging policy. */
+public class HedgingPolicyTest {
+
+    private static class ReadRequest extends AmazonWebServiceRequest {}
+
+    @Test
+    public void testFixedDelay() {
+        HedgingPolicy policy = new HedgingPolicy(25);
+        for (int i = 0; i < 1000; i++) {
+            policy.recordLatency(AmazonWebServiceRequest.NOOP, 1000);
+        }
+        assertEquals(25, policy.getHedgeDelay(AmazonWebServiceRequest.NOOP));
+    }
+
+    @Test
+    public void testMinDelayUntilEnoughSamples() {
+        HedgingPolicy policy = new HedgingPolicy(95, 10);
+        for (int i = 0; i < 63; i++) {
+            policy.recordLatency(AmazonWebServiceRequest.NOOP, 500);
+        }
+        assertEquals(10, policy.getHedgeDelay(AmazonWebServiceRequest.NOOP));
+        policy.recordLatency(AmazonWebServiceRequest.NOOP, 500);
+        assertEquals(500, policy.getHedgeDelay(AmazonWebServiceRequest.NOOP));
+    }
+
+    @Test
+    public void testPercentilePerRequestType() {
+        HedgingPolicy policy = new HedgingPolicy(90, 1);
+        for (int i = 1; i <= 1024; i++) {
+            policy.recordLatency(AmazonWebServiceRequest.NOOP, i % 100 + 1);
+        }
+        assertEquals(90, policy.getHedgeDelay(AmazonWebServiceRequest.NOOP));
+        // Latencies of other request types don't affect the delay
+        assertEquals(1, policy.getHedgeDelay(new ReadRequest()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInvalidPercentile() {
+        new HedgingPolicy(100, 10);
+    }
+}
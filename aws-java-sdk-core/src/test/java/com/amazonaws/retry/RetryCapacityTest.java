@@ -0,0 +1,95 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.AmazonHttpClient;
+import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.util.AWSRequestMetrics;
+
+/**
+ * Tests that the retry token bucket and the circuit breakers of a retry
+ * policy limit the requests sent by a client.
+ */
+public class RetryCapacityTest extends RetryPolicyTestBase {
+
+    private static final RetryPolicy NO_BACKOFF_POLICY = new RetryPolicy(
+            null, new ContextDataCollectionBackoffStrategy(), 5, false);
+
+    @Before
+    public void resetClientConfiguration() {
+        clientConfiguration = new ClientConfiguration();
+        testedClient = new AmazonHttpClient(clientConfiguration);
+        injectMockHttpClient(testedClient, new ReturnServiceErrorHttpClient(500, "fake 500 service error"));
+    }
+
+    @Test
+    public void testRetryTokenBucketLimitsRetries() {
+        clientConfiguration.setRetryPolicy(NO_BACKOFF_POLICY
+                .withRetryTokenBucket(new RetryTokenBucketConfig(10, 5, 10, 1)));
+
+        // Two retries empty the bucket
+        ExecutionContext context = executeFailingRequest();
+        Assert.assertEquals(3, counterOf(context, AWSRequestMetrics.Field.RequestCount));
+        Assert.assertEquals(1, counterOf(context, AWSRequestMetrics.Field.RetryCapacityExceededCount));
+
+        // No retry until requests succeed again
+        context = executeFailingRequest();
+        Assert.assertEquals(1, counterOf(context, AWSRequestMetrics.Field.RequestCount));
+    }
+
+    @Test
+    public void testCircuitBreakerFailsFast() {
+        clientConfiguration.setRetryPolicy(new RetryPolicy(null, null, 0, false)
+                .withCircuitBreaker(new CircuitBreakerConfig(0.5, 4, 60 * 1000, 60 * 1000)));
+        for (int i = 0; i < 4; i++) {
+            executeFailingRequest();
+        }
+        ExecutionContext context = new ExecutionContext(true);
+        try {
+            testedClient.execute(getSampleRequestWithRepeatableContent(originalRequest),
+                                 null,
+                                 errorResponseHandler,
+                                 context);
+            Assert.fail("AmazonClientException is expected.");
+        } catch (AmazonServiceException ase) {
+            Assert.fail("The request should not have been sent.");
+        } catch (AmazonClientException ace) {}
+        Assert.assertEquals(1, counterOf(context, AWSRequestMetrics.Field.CircuitBreakerRejectedCount));
+    }
+
+    private static ExecutionContext executeFailingRequest() {
+        ExecutionContext context = new ExecutionContext(true);
+        try {
+            testedClient.execute(getSampleRequestWithRepeatableContent(originalRequest),
+                                 null,
+                                 errorResponseHandler,
+                                 context);
+            Assert.fail("AmazonServiceException is expected.");
+        } catch (AmazonServiceException ase) {}
+        return context;
+    }
+
+    private static int counterOf(ExecutionContext context, AWSRequestMetrics.Field field) {
+        Number counter = context.getAwsRequestMetrics().getTimingInfo().getCounter(field.toString());
+        return counter == null ? 0 : counter.intValue();
+    }
+}
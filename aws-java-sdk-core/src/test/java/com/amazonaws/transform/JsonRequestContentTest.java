@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.transform;
+
+import static org.junit.Assert.*;
+
+import java.io.InputStream;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.Date;
+
+import org.junit.Test;
+
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.json.JSONWriter;
+
+public class JsonRequestContentTest {
+
+    private static void writeSample(JSONWriter jsonWriter) throws Exception {
+        jsonWriter.object();
+        jsonWriter.key("TableName").value("table \"quoted\" é中\n");
+        jsonWriter.key("Count").value(42L);
+        jsonWriter.key("Ratio").value(1.0d);
+        jsonWriter.key("Big").value(Double.valueOf(1.5e20));
+        jsonWriter.key("Flag").value(true);
+        jsonWriter.key("Boxed").value(Boolean.FALSE);
+        jsonWriter.key("When").value(new Date(1420070400123L));
+        jsonWriter.key("Blob").value(ByteBuffer.wrap("binary data".getBytes("UTF-8")));
+        ByteBuffer sliced = ByteBuffer.wrap("xxpartialxx".getBytes("UTF-8"));
+        sliced.position(2);
+        sliced.limit(9);
+        jsonWriter.key("Sliced").value(sliced.slice());
+        jsonWriter.key("Direct").value(ByteBuffer.allocateDirect(3));
+        jsonWriter.key("List");
+        jsonWriter.array();
+        jsonWriter.object().key("S").value("a").endObject();
+        jsonWriter.value(7);
+        jsonWriter.endArray();
+        jsonWriter.endObject();
+    }
+
+    @Test
+    public void testOutputMatchesJSONWriter() throws Exception {
+        StringWriter stringWriter = new StringWriter();
+        writeSample(new JSONWriter(stringWriter));
+        String expected = stringWriter.toString();
+
+        JsonRequestContent content = new JsonRequestContent();
+        writeSample(content.getJsonWriter());
+
+        byte[] expectedBytes = expected.getBytes("UTF-8");
+        assertEquals(expectedBytes.length, content.getContentLength());
+        assertEquals(expected, IOUtils.toString(content.toInputStream()));
+    }
+
+    @Test
+    public void testContentIsRepeatable() throws Exception {
+        JsonRequestContent content = new JsonRequestContent();
+        content.getJsonWriter().object().key("k").value("v").endObject();
+
+        InputStream in = content.toInputStream();
+        assertTrue(in.markSupported());
+        in.mark(-1);
+        assertEquals("{\"k\":\"v\"}", IOUtils.toString(in));
+        in.reset();
+        assertEquals("{\"k\":\"v\"}", IOUtils.toString(in));
+    }
+
+    @Test
+    public void testLargePayload() throws Exception {
+        StringWriter stringWriter = new StringWriter();
+        JSONWriter expectedWriter = new JSONWriter(stringWriter);
+        JsonRequestContent content = new JsonRequestContent();
+        JSONWriter jsonWriter = content.getJsonWriter();
+
+        expectedWriter.array();
+        jsonWriter.array();
+        for (int i = 0; i < 10000; i++) {
+            expectedWriter.value("item-" + i);
+            jsonWriter.value("item-" + i);
+        }
+        expectedWriter.endArray();
+        jsonWriter.endArray();
+
+        assertEquals(stringWriter.toString(), IOUtils.toString(content.toInputStream()));
+    }
+}
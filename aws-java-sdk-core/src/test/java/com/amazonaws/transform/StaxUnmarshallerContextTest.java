@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.transform;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.events.XMLEvent;
+
+import org.junit.Test;
+
+public class StaxUnmarshallerContextTest {
+
+    private static final String RESPONSE =
+            "<DescribeResponse>"
+            + "<requestId>req-1</requestId>"
+            + "<reservationSet>"
+            + "<item><instanceId>i-1</instanceId>"
+            + "<tagSet><item key=\"Name\" type=\"t\"><value>a &amp; b</value></item></tagSet>"
+            + "</item>"
+            + "<item><instanceId>i-2</instanceId></item>"
+            + "</reservationSet>"
+            + "</DescribeResponse>";
+
+    private static StaxUnmarshallerContext newContext(String xml) throws Exception {
+        return new StaxUnmarshallerContext(XMLInputFactory.newInstance()
+                .createXMLEventReader(new StringReader(xml)));
+    }
+
+    @Test
+    public void testExpressionsMatchAtDepth() throws Exception {
+        StaxUnmarshallerContext context = newContext(RESPONSE);
+        List<String> instanceIds = new ArrayList<String>();
+        List<String> attributes = new ArrayList<String>();
+        List<String> values = new ArrayList<String>();
+
+        while (true) {
+            XMLEvent event = context.nextEvent();
+            if (event.isEndDocument()) break;
+            if (event.isAttribute() || event.isStartElement()) {
+                if (context.testExpression("reservationSet/item/instanceId", 2)) {
+                    instanceIds.add(context.readText());
+                } else if (context.testExpression("tagSet/item/@key", 4)) {
+                    attributes.add(context.readText());
+                } else if (context.testExpression("item/value", 5)) {
+                    values.add(context.readText());
+                }
+                // Wrong starting depth must never match
+                assertFalse(context.testExpression("item/instanceId", 1));
+            }
+        }
+
+        assertEquals(2, instanceIds.size());
+        assertEquals("i-1", instanceIds.get(0));
+        assertEquals("i-2", instanceIds.get(1));
+        assertEquals(1, attributes.size());
+        assertEquals("Name", attributes.get(0));
+        assertEquals(1, values.size());
+        assertEquals("a & b", values.get(0));
+        assertEquals(0, context.getCurrentDepth());
+    }
+
+    @Test
+    public void testPathAfterAttributes() throws Exception {
+        StaxUnmarshallerContext context = newContext(
+                "<a x=\"1\"><b><c>v</c></b></a>");
+        boolean matched = false;
+        while (true) {
+            XMLEvent event = context.nextEvent();
+            if (event.isEndDocument()) break;
+            if (event.isStartElement() && context.testExpression("a/b/c", 1)) {
+                assertTrue(context.testExpression("/a/b/c"));
+                assertEquals(3, context.getCurrentDepth());
+                assertEquals("c", context.stack.peek());
+                matched = true;
+            }
+        }
+        assertTrue(matched);
+    }
+
+    @Test
+    public void testMetadataExpressions() throws Exception {
+        StaxUnmarshallerContext context = newContext(RESPONSE);
+        context.registerMetadataExpression("requestId", 2, "AWS_REQUEST_ID");
+        context.registerMetadataExpression("instanceId", 2, "NOT_MATCHED");
+        while (!context.nextEvent().isEndDocument());
+
+        assertEquals("req-1", context.getMetadata().get("AWS_REQUEST_ID"));
+        assertNull(context.getMetadata().get("NOT_MATCHED"));
+    }
+
+    @Test
+    public void testDeeplyNestedDocument() throws Exception {
+        StringBuilder xml = new StringBuilder();
+        int levels = 40;
+        for (int i = 0; i < levels; i++) xml.append("<e").append(i).append('>');
+        xml.append("leaf");
+        for (int i = levels - 1; i >= 0; i--) xml.append("</e").append(i).append('>');
+
+        StaxUnmarshallerContext context = newContext(xml.toString());
+        String leaf = null;
+        while (true) {
+            XMLEvent event = context.nextEvent();
+            if (event.isEndDocument()) break;
+            if (event.isStartElement() && context.testExpression("e38/e39", levels - 1)) {
+                leaf = context.readText();
+            }
+        }
+        assertEquals("leaf", leaf);
+    }
+}
@@ -20,9 +20,17 @@ package com.amazonaws.util;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Random;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.junit.Test;
 
@@ -64,6 +72,68 @@ public class ResponseMetadataCacheTest {
         assertEquals(metadata4, cache.get(key4));
     }
 
+    /** Tests that re-adding a key makes its newest metadata visible. */
+    @Test
+    public void testReAddReturnsNewestMetadata() {
+        ResponseMetadataCache cache = new ResponseMetadataCache(3);
+
+        AmazonWebServiceRequest key = new TestRequest();
+        ResponseMetadata metadata1 = newResponseMetadata();
+        ResponseMetadata metadata2 = newResponseMetadata();
+
+        cache.add(key, metadata1);
+        cache.add(key, metadata2);
+        assertSame(metadata2, cache.get(key));
+        assertNull(cache.get(new TestRequest()));
+    }
+
+    /**
+     * Tests that no entry is lost when many threads add entries at once.
+     */
+    @Test
+    public void testConcurrentAdds() throws Exception {
+        final int threads = 16;
+        final int addsPerThread = 100;
+        final ResponseMetadataCache cache = new ResponseMetadataCache(threads * addsPerThread);
+        final Map<Object, ResponseMetadata> added =
+                new ConcurrentHashMap<Object, ResponseMetadata>();
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<Future<?>>();
+            for (int i = 0; i < threads; i++) {
+                futures.add(executor.submit(new Runnable() {
+                    @Override
+                    public void run() {
+                        for (int j = 0; j < addsPerThread; j++) {
+                            AmazonWebServiceRequest key = new TestRequest();
+                            ResponseMetadata metadata = newResponseMetadata();
+                            added.put(key, metadata);
+                            cache.add(key, metadata);
+                        }
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // Keys are compared by identity hash code, so skip the (rare) keys
+        // that share theirs with another key.
+        Map<Integer, Integer> hashCounts = new HashMap<Integer, Integer>();
+        for (Object key : added.keySet()) {
+            Integer count = hashCounts.get(System.identityHashCode(key));
+            hashCounts.put(System.identityHashCode(key), count == null ? 1 : count + 1);
+        }
+        for (Map.Entry<Object, ResponseMetadata> entry : added.entrySet()) {
+            if (hashCounts.get(System.identityHashCode(entry.getKey())) == 1) {
+                assertSame(entry.getValue(), cache.get(entry.getKey()));
+            }
+        }
+    }
+
     private class TestRequest extends AmazonWebServiceRequest {}
 
     private ResponseMetadata newResponseMetadata() {
@@ -28,12 +28,17 @@ import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 
 import com.amazonaws.services.dynamodbv2.model.*;
+import com.amazonaws.services.dynamodbv2.model.transform.*;
 
 /**
  * Asynchronous client for accessing AmazonDynamoDBv2.
  * All asynchronous calls made using this client are non-blocking. Callers could either
  * process the result and handle the exceptions in the worker thread by providing a callback handler
  * when making the call, or use the returned Future object to check the result of the call in the calling thread.
+ * When the client is configured to use the non-blocking transport (see
+ * {@link ClientConfiguration#setUseNonBlockingTransport(boolean)}), requests are sent through an
+ * event-loop based HTTP transport and their futures are completed from I/O callbacks, without occupying
+ * a thread of the executor service while the request is in flight.
  * Amazon DynamoDB <p>
  * <b>Overview</b>
  * </p>
@@ -472,6 +477,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<ScanResult> scanAsync(final ScanRequest scanRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(scanRequest, new ScanRequestMarshaller(),
+                    new ScanResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<ScanResult>() {
             public ScanResult call() throws Exception {
                 return scan(scanRequest);
@@ -530,6 +539,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final ScanRequest scanRequest,
             final AsyncHandler<ScanRequest, ScanResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(scanRequest, new ScanRequestMarshaller(),
+                    new ScanResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<ScanResult>() {
             public ScanResult call() throws Exception {
               ScanResult result;
@@ -591,6 +604,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<UpdateTableResult> updateTableAsync(final UpdateTableRequest updateTableRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(updateTableRequest, new UpdateTableRequestMarshaller(),
+                    new UpdateTableResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<UpdateTableResult>() {
             public UpdateTableResult call() throws Exception {
                 return updateTable(updateTableRequest);
@@ -650,6 +667,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final UpdateTableRequest updateTableRequest,
             final AsyncHandler<UpdateTableRequest, UpdateTableResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(updateTableRequest, new UpdateTableRequestMarshaller(),
+                    new UpdateTableResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<UpdateTableResult>() {
             public UpdateTableResult call() throws Exception {
               UpdateTableResult result;
@@ -706,6 +727,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<DeleteTableResult> deleteTableAsync(final DeleteTableRequest deleteTableRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(deleteTableRequest, new DeleteTableRequestMarshaller(),
+                    new DeleteTableResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<DeleteTableResult>() {
             public DeleteTableResult call() throws Exception {
                 return deleteTable(deleteTableRequest);
@@ -760,6 +785,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final DeleteTableRequest deleteTableRequest,
             final AsyncHandler<DeleteTableRequest, DeleteTableResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(deleteTableRequest, new DeleteTableRequestMarshaller(),
+                    new DeleteTableResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<DeleteTableResult>() {
             public DeleteTableResult call() throws Exception {
               DeleteTableResult result;
@@ -894,6 +923,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<BatchWriteItemResult> batchWriteItemAsync(final BatchWriteItemRequest batchWriteItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(batchWriteItemRequest, new BatchWriteItemRequestMarshaller(),
+                    new BatchWriteItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<BatchWriteItemResult>() {
             public BatchWriteItemResult call() throws Exception {
                 return batchWriteItem(batchWriteItemRequest);
@@ -1026,6 +1059,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final BatchWriteItemRequest batchWriteItemRequest,
             final AsyncHandler<BatchWriteItemRequest, BatchWriteItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(batchWriteItemRequest, new BatchWriteItemRequestMarshaller(),
+                    new BatchWriteItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<BatchWriteItemResult>() {
             public BatchWriteItemResult call() throws Exception {
               BatchWriteItemResult result;
@@ -1073,6 +1110,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<DescribeTableResult> describeTableAsync(final DescribeTableRequest describeTableRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(describeTableRequest, new DescribeTableRequestMarshaller(),
+                    new DescribeTableResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<DescribeTableResult>() {
             public DescribeTableResult call() throws Exception {
                 return describeTable(describeTableRequest);
@@ -1118,6 +1159,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final DescribeTableRequest describeTableRequest,
             final AsyncHandler<DescribeTableRequest, DescribeTableResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(describeTableRequest, new DescribeTableRequestMarshaller(),
+                    new DescribeTableResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<DescribeTableResult>() {
             public DescribeTableResult call() throws Exception {
               DescribeTableResult result;
@@ -1164,6 +1209,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<GetItemResult> getItemAsync(final GetItemRequest getItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(getItemRequest, new GetItemRequestMarshaller(),
+                    new GetItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<GetItemResult>() {
             public GetItemResult call() throws Exception {
                 return getItem(getItemRequest);
@@ -1208,6 +1257,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final GetItemRequest getItemRequest,
             final AsyncHandler<GetItemRequest, GetItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(getItemRequest, new GetItemRequestMarshaller(),
+                    new GetItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<GetItemResult>() {
             public GetItemResult call() throws Exception {
               GetItemResult result;
@@ -1262,6 +1315,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<DeleteItemResult> deleteItemAsync(final DeleteItemRequest deleteItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(deleteItemRequest, new DeleteItemRequestMarshaller(),
+                    new DeleteItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<DeleteItemResult>() {
             public DeleteItemResult call() throws Exception {
                 return deleteItem(deleteItemRequest);
@@ -1314,6 +1371,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final DeleteItemRequest deleteItemRequest,
             final AsyncHandler<DeleteItemRequest, DeleteItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(deleteItemRequest, new DeleteItemRequestMarshaller(),
+                    new DeleteItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<DeleteItemResult>() {
             public DeleteItemResult call() throws Exception {
               DeleteItemResult result;
@@ -1372,6 +1433,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<CreateTableResult> createTableAsync(final CreateTableRequest createTableRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(createTableRequest, new CreateTableRequestMarshaller(),
+                    new CreateTableResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<CreateTableResult>() {
             public CreateTableResult call() throws Exception {
                 return createTable(createTableRequest);
@@ -1428,6 +1493,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final CreateTableRequest createTableRequest,
             final AsyncHandler<CreateTableRequest, CreateTableResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(createTableRequest, new CreateTableRequestMarshaller(),
+                    new CreateTableResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<CreateTableResult>() {
             public CreateTableResult call() throws Exception {
               CreateTableResult result;
@@ -1491,6 +1560,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<QueryResult> queryAsync(final QueryRequest queryRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(queryRequest, new QueryRequestMarshaller(),
+                    new QueryResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<QueryResult>() {
             public QueryResult call() throws Exception {
                 return query(queryRequest);
@@ -1552,6 +1625,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final QueryRequest queryRequest,
             final AsyncHandler<QueryRequest, QueryResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(queryRequest, new QueryRequestMarshaller(),
+                    new QueryResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<QueryResult>() {
             public QueryResult call() throws Exception {
               QueryResult result;
@@ -1622,6 +1699,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<PutItemResult> putItemAsync(final PutItemRequest putItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(putItemRequest, new PutItemRequestMarshaller(),
+                    new PutItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<PutItemResult>() {
             public PutItemResult call() throws Exception {
                 return putItem(putItemRequest);
@@ -1690,6 +1771,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final PutItemRequest putItemRequest,
             final AsyncHandler<PutItemRequest, PutItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(putItemRequest, new PutItemRequestMarshaller(),
+                    new PutItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<PutItemResult>() {
             public PutItemResult call() throws Exception {
               PutItemResult result;
@@ -1729,6 +1814,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<ListTablesResult> listTablesAsync(final ListTablesRequest listTablesRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(listTablesRequest, new ListTablesRequestMarshaller(),
+                    new ListTablesResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<ListTablesResult>() {
             public ListTablesResult call() throws Exception {
                 return listTables(listTablesRequest);
@@ -1766,6 +1855,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final ListTablesRequest listTablesRequest,
             final AsyncHandler<ListTablesRequest, ListTablesResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(listTablesRequest, new ListTablesRequestMarshaller(),
+                    new ListTablesResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<ListTablesResult>() {
             public ListTablesResult call() throws Exception {
               ListTablesResult result;
@@ -1813,6 +1906,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<UpdateItemResult> updateItemAsync(final UpdateItemRequest updateItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(updateItemRequest, new UpdateItemRequestMarshaller(),
+                    new UpdateItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<UpdateItemResult>() {
             public UpdateItemResult call() throws Exception {
                 return updateItem(updateItemRequest);
@@ -1858,6 +1955,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final UpdateItemRequest updateItemRequest,
             final AsyncHandler<UpdateItemRequest, UpdateItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(updateItemRequest, new UpdateItemRequestMarshaller(),
+                    new UpdateItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<UpdateItemResult>() {
             public UpdateItemResult call() throws Exception {
               UpdateItemResult result;
@@ -1957,6 +2058,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
      */
     public Future<BatchGetItemResult> batchGetItemAsync(final BatchGetItemRequest batchGetItemRequest) 
             throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(batchGetItemRequest, new BatchGetItemRequestMarshaller(),
+                    new BatchGetItemResultJsonUnmarshaller(), null);
+        }
         return executorService.submit(new Callable<BatchGetItemResult>() {
             public BatchGetItemResult call() throws Exception {
                 return batchGetItem(batchGetItemRequest);
@@ -2054,6 +2159,10 @@ public class AmazonDynamoDBAsyncClient extends AmazonDynamoDBClient
             final BatchGetItemRequest batchGetItemRequest,
             final AsyncHandler<BatchGetItemRequest, BatchGetItemResult> asyncHandler)
                     throws AmazonServiceException, AmazonClientException {
+        if (client.isNonBlockingTransportEnabled()) {
+            return invokeAsync(batchGetItemRequest, new BatchGetItemRequestMarshaller(),
+                    new BatchGetItemResultJsonUnmarshaller(), asyncHandler);
+        }
         return executorService.submit(new Callable<BatchGetItemResult>() {
             public BatchGetItemResult call() throws Exception {
               BatchGetItemResult result;
@@ -16,8 +16,12 @@ package com.amazonaws.services.dynamodbv2;
 
 import java.net.*;
 import java.util.*;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.*;
+import org.apache.http.concurrent.BasicFuture;
+import org.apache.http.concurrent.FutureCallback;
 
 import com.amazonaws.*;
 import com.amazonaws.regions.*;
@@ -3117,6 +3121,97 @@ public class AmazonDynamoDBClient extends AmazonWebServiceClient implements Amaz
     private <X, Y extends AmazonWebServiceRequest> Response<X> invoke(Request<Y> request,
             HttpResponseHandler<AmazonWebServiceResponse<X>> responseHandler,
             ExecutionContext executionContext) {
+        setUpExecution(request, executionContext);
+        JsonErrorResponseHandler errorResponseHandler = new JsonErrorResponseHandler(jsonErrorUnmarshallers);
+        Response<X> result = client.execute(request, responseHandler,
+                errorResponseHandler, executionContext);
+        return result;
+    }
+
+    /**
+     * Marshalls the given request and executes it through the non-blocking
+     * transport of the http client, so that no thread is held while the
+     * request is in flight. The async handler, if any, is notified from the
+     * thread completing the request, before the returned future completes.
+     *
+     * @see ClientConfiguration#setUseNonBlockingTransport(boolean)
+     */
+    <X, Y extends AmazonWebServiceRequest> Future<X> invokeAsync(final Y originalRequest,
+            Marshaller<Request<Y>, Y> marshaller,
+            Unmarshaller<X, JsonUnmarshallerContext> unmarshaller,
+            final AsyncHandler<Y, X> asyncHandler) {
+        final ExecutionContext executionContext = createExecutionContext(originalRequest);
+        final AWSRequestMetrics awsRequestMetrics = executionContext.getAwsRequestMetrics();
+        awsRequestMetrics.startEvent(Field.ClientExecuteTime);
+        final AtomicReference<Future<?>> inFlight = new AtomicReference<Future<?>>();
+        final BasicFuture<X> future = new BasicFuture<X>(null) {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                boolean cancelled = super.cancel(mayInterruptIfRunning);
+                Future<?> f = inFlight.get();
+                if (cancelled && f != null) f.cancel(true);
+                return cancelled;
+            }
+        };
+        Request<Y> request = null;
+        try {
+            awsRequestMetrics.startEvent(Field.RequestMarshallTime);
+            try {
+                request = marshaller.marshall(super.beforeMarshalling(originalRequest));
+                // Binds the request metrics to the current request.
+                request.setAWSRequestMetrics(awsRequestMetrics);
+            } finally {
+                awsRequestMetrics.endEvent(Field.RequestMarshallTime);
+            }
+            setUpExecution(request, executionContext);
+
+            final Request<Y> marshalledRequest = request;
+            Future<Response<X>> f = client.executeAsync(request,
+                    new JsonResponseHandler<X>(unmarshaller),
+                    new JsonErrorResponseHandler(jsonErrorUnmarshallers),
+                    executionContext, new FutureCallback<Response<X>>() {
+                public void completed(Response<X> response) {
+                    endClientExecution(awsRequestMetrics, marshalledRequest, response, LOGGING_AWS_REQUEST_METRIC);
+                    X result = response.getAwsResponse();
+                    if (asyncHandler != null) {
+                        try {
+                            asyncHandler.onSuccess(originalRequest, result);
+                        } catch (RuntimeException e) {
+                            future.failed(e);
+                            return;
+                        }
+                    }
+                    future.completed(result);
+                }
+
+                public void failed(Exception ex) {
+                    endClientExecution(awsRequestMetrics, marshalledRequest, null, LOGGING_AWS_REQUEST_METRIC);
+                    try {
+                        if (asyncHandler != null) asyncHandler.onError(ex);
+                    } finally {
+                        future.failed(ex);
+                    }
+                }
+
+                public void cancelled() {
+                    endClientExecution(awsRequestMetrics, marshalledRequest, null, LOGGING_AWS_REQUEST_METRIC);
+                    future.cancel();
+                }
+            });
+            inFlight.set(f);
+            if (future.isCancelled()) f.cancel(true);
+        } catch (Exception e) {
+            endClientExecution(awsRequestMetrics, request, null, LOGGING_AWS_REQUEST_METRIC);
+            try {
+                if (asyncHandler != null) asyncHandler.onError(e);
+            } finally {
+                future.failed(e);
+            }
+        }
+        return future;
+    }
+
+    private void setUpExecution(Request<?> request, ExecutionContext executionContext) {
         request.setEndpoint(endpoint);
         request.setTimeOffset(timeOffset);
 
@@ -3135,10 +3230,6 @@ public class AmazonDynamoDBClient extends AmazonWebServiceClient implements Amaz
         }
 
         executionContext.setCredentials(credentials);
-        JsonErrorResponseHandler errorResponseHandler = new JsonErrorResponseHandler(jsonErrorUnmarshallers);
-        Response<X> result = client.execute(request, responseHandler,
-                errorResponseHandler, executionContext);
-        return result;
     }
 }
         
\ No newline at end of file
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Runs the batch requests of a single batch operation concurrently, keeping
+ * at most a given number of them in flight. Results are handed back to the
+ * thread submitting the requests as they complete, so callers can consume
+ * them without synchronization and without holding on to all of them.
+ */
+class BatchExecution<T> {
+
+    private final int parallelism;
+    private final ExecutorService executorService;
+    private final boolean isExecutorServiceOwned;
+    private final CompletionService<T> completionService;
+    private final List<Future<T>> pending = new LinkedList<Future<T>>();
+
+    /**
+     * @param executorService
+     *            the executor service to run the requests on, or null to use
+     *            a thread pool owned by this execution
+     * @param parallelism
+     *            the maximum number of requests in flight at once
+     */
+    BatchExecution(ExecutorService executorService, int parallelism) {
+        this.parallelism = parallelism;
+        this.isExecutorServiceOwned = executorService == null;
+        this.executorService = isExecutorServiceOwned
+                ? Executors.newFixedThreadPool(parallelism)
+                : executorService;
+        this.completionService = new ExecutorCompletionService<T>(this.executorService);
+    }
+
+    /**
+     * Submits a request, first waiting for an earlier one to complete if the
+     * maximum number of requests are already in flight. Returns the results
+     * of the requests that have completed since the last call.
+     */
+    List<T> submit(Callable<T> request) {
+        List<T> completed = new ArrayList<T>();
+        if (pending.size() >= parallelism) {
+            completed.add(take());
+        }
+        Future<T> future;
+        while ((future = completionService.poll()) != null) {
+            completed.add(resultOf(future));
+        }
+        pending.add(completionService.submit(request));
+        return completed;
+    }
+
+    /**
+     * Waits for all the requests in flight, and returns their results.
+     */
+    List<T> awaitAll() {
+        List<T> completed = new ArrayList<T>();
+        while (!pending.isEmpty()) {
+            completed.add(take());
+        }
+        return completed;
+    }
+
+    /**
+     * Cancels any requests still in flight, and shuts down the thread pool if
+     * it's owned by this execution.
+     */
+    void shutdown() {
+        for (Future<T> future : pending) {
+            future.cancel(true);
+        }
+        pending.clear();
+        if (isExecutorServiceOwned) {
+            executorService.shutdownNow();
+        }
+    }
+
+    private T take() {
+        try {
+            return resultOf(completionService.take());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
+    private T resultOf(Future<T> future) {
+        pending.remove(future);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new AmazonClientException(cause.getMessage(), cause);
+        }
+    }
+}
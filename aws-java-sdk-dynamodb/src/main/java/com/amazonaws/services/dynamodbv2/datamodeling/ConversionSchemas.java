@@ -23,12 +23,15 @@ import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -211,6 +214,17 @@ public final class ConversionSchemas {
         private final DynamoDBReflector reflector;
         private final S3ClientCache s3cc;
 
+        /*
+         * The resolved conversion of each mapped property, keyed by its
+         * getter, and the list of them for each mapped class. Converting an
+         * object walks its class's list instead of looking up attribute
+         * names, setters and (un)marshallers for every property every time.
+         */
+        private final ConcurrentMap<Method, PropertyConverter> propertyConverters =
+                new ConcurrentHashMap<Method, PropertyConverter>();
+        private final ConcurrentMap<Class<?>, List<PropertyConverter>> classConverters =
+                new ConcurrentHashMap<Class<?>, List<PropertyConverter>>();
+
         public StandardItemConverter(
                 MarshallerSet marshallerSet,
                 UnmarshallerSet unmarshallerSet,
@@ -225,8 +239,9 @@ public final class ConversionSchemas {
 
         @Override
         public DynamoDBMapperFieldModel getFieldModel(Method getter) {
-            String attributeName = reflector.getAttributeName(getter);
-            ArgumentMarshaller marshaller = getMarshaller(getter);
+            PropertyConverter property = getPropertyConverter(getter);
+            String attributeName = property.attributeName;
+            ArgumentMarshaller marshaller = property.getMarshaller();
 
             DynamoDBAttributeType attributeType = null;
             if (marshaller instanceof StringAttributeMarshaller) {
@@ -262,7 +277,8 @@ public final class ConversionSchemas {
                 return null;
             }
 
-            ArgumentMarshaller marshaller = getMarshaller(getter);
+            ArgumentMarshaller marshaller =
+                    getPropertyConverter(getter).getMarshaller();
             return marshaller.marshall(object);
         }
 
@@ -276,15 +292,15 @@ public final class ConversionSchemas {
             Map<String, AttributeValue> result =
                     new HashMap<String, AttributeValue>();
 
-            for (Method getter : reflector.getRelevantGetters(clazz)) {
+            for (PropertyConverter property : getPropertyConverters(clazz)) {
                 Object getterResult =
-                        ReflectionUtils.safeInvoke(getter, object);
+                        ReflectionUtils.safeInvoke(property.getter, object);
 
                 if (getterResult != null) {
-                    AttributeValue value = convert(getter, getterResult);
+                    AttributeValue value =
+                            property.getMarshaller().marshall(getterResult);
                     if (value != null) {
-                        String name = reflector.getAttributeName(getter);
-                        result.put(name, value);
+                        result.put(property.attributeName, value);
                     }
                 }
             }
@@ -292,6 +308,36 @@ public final class ConversionSchemas {
             return result;
         }
 
+        private PropertyConverter getPropertyConverter(Method getter) {
+            PropertyConverter property = propertyConverters.get(getter);
+            if (property == null) {
+                property = new PropertyConverter(getter);
+                PropertyConverter existing =
+                        propertyConverters.putIfAbsent(getter, property);
+                if (existing != null) {
+                    property = existing;
+                }
+            }
+            return property;
+        }
+
+        private List<PropertyConverter> getPropertyConverters(Class<?> clazz) {
+            List<PropertyConverter> properties = classConverters.get(clazz);
+            if (properties == null) {
+                Collection<Method> getters = reflector.getRelevantGetters(clazz);
+                properties = new ArrayList<PropertyConverter>(getters.size());
+                for (Method getter : getters) {
+                    properties.add(getPropertyConverter(getter));
+                }
+                List<PropertyConverter> existing =
+                        classConverters.putIfAbsent(clazz, properties);
+                if (existing != null) {
+                    properties = existing;
+                }
+            }
+            return properties;
+        }
+
         private ArgumentMarshaller getMarshaller(Method getter) {
             ArgumentMarshaller marshaller =
                     marshallerSet.getMarshaller(getter);
@@ -422,11 +468,10 @@ public final class ConversionSchemas {
                 return result;
             }
 
-            for (Method m : reflector.getRelevantGetters(clazz)) {
-                String attributeName = reflector.getAttributeName(m);
-                AttributeValue av = value.get(attributeName);
+            for (PropertyConverter property : getPropertyConverters(clazz)) {
+                AttributeValue av = value.get(property.attributeName);
                 if (av != null) {
-                    setValue(result, m, av);
+                    setValue(result, property, av);
                 }
             }
 
@@ -435,14 +480,12 @@ public final class ConversionSchemas {
 
         private void setValue(
                 Object target,
-                Method getter,
+                PropertyConverter property,
                 AttributeValue value) {
 
-            Method setter = reflector.getSetter(getter);
-            ArgumentUnmarshaller unmarshaller =
-                    getUnmarshaller(getter, setter);
-
-            Object unmarshalled = unmarshall(unmarshaller, setter, value);
+            Method setter = property.getSetter();
+            Object unmarshalled =
+                    unmarshall(property.getUnmarshaller(), setter, value);
             ReflectionUtils.safeInvoke(setter, target, unmarshalled);
         }
 
@@ -635,6 +678,55 @@ public final class ConversionSchemas {
             }
         }
 
+        /**
+         * The conversion of a single mapped property. The attribute name is
+         * resolved up front; the setter and (un)marshallers are resolved the
+         * first time they're needed, so that a property which is never set or
+         * never non-null doesn't fail until it is. Racing threads resolve the
+         * same values, so the lazy fields need no locking.
+         */
+        private final class PropertyConverter {
+
+            private final Method getter;
+            private final String attributeName;
+
+            private volatile ArgumentMarshaller marshaller;
+            private volatile Method setter;
+            private volatile ArgumentUnmarshaller unmarshaller;
+
+            PropertyConverter(Method getter) {
+                this.getter = getter;
+                this.attributeName = reflector.getAttributeName(getter);
+            }
+
+            ArgumentMarshaller getMarshaller() {
+                ArgumentMarshaller result = marshaller;
+                if (result == null) {
+                    result = StandardItemConverter.this.getMarshaller(getter);
+                    marshaller = result;
+                }
+                return result;
+            }
+
+            Method getSetter() {
+                Method result = setter;
+                if (result == null) {
+                    result = reflector.getSetter(getter);
+                    setter = result;
+                }
+                return result;
+            }
+
+            ArgumentUnmarshaller getUnmarshaller() {
+                ArgumentUnmarshaller result = unmarshaller;
+                if (result == null) {
+                    result = StandardItemConverter.this.getUnmarshaller(
+                            getter, getSetter());
+                    unmarshaller = result;
+                }
+                return result;
+            }
+        }
     }
 
     static interface MarshallerSet {
@@ -1311,11 +1403,11 @@ public final class ConversionSchemas {
 
     static class CachingMarshallerSet implements MarshallerSet {
 
-        private final Map<Method, ArgumentMarshaller> cache =
-                new HashMap<Method, ArgumentMarshaller>();
+        private final ConcurrentMap<Method, ArgumentMarshaller> cache =
+                new ConcurrentHashMap<Method, ArgumentMarshaller>();
 
-        private final Map<Type, ArgumentMarshaller> memberCache =
-                new HashMap<Type, ArgumentMarshaller>();
+        private final ConcurrentMap<Type, ArgumentMarshaller> memberCache =
+                new ConcurrentHashMap<Type, ArgumentMarshaller>();
 
         private final MarshallerSet wrapped;
 
@@ -1325,40 +1417,34 @@ public final class ConversionSchemas {
 
         @Override
         public ArgumentMarshaller getMarshaller(Method getter) {
-            synchronized (cache) {
-                ArgumentMarshaller marshaler = cache.get(getter);
-                if (marshaler != null) {
-                    return marshaler;
-                }
-
-                marshaler = wrapped.getMarshaller(getter);
-                cache.put(getter, marshaler);
+            ArgumentMarshaller marshaler = cache.get(getter);
+            if (marshaler != null) {
                 return marshaler;
             }
+
+            marshaler = wrapped.getMarshaller(getter);
+            return cache(cache, getter, marshaler);
         }
 
         @Override
         public ArgumentMarshaller getMemberMarshaller(Type memberType) {
-            synchronized (memberCache) {
-                ArgumentMarshaller marshaller = memberCache.get(memberType);
-                if (marshaller != null) {
-                    return marshaller;
-                }
-
-                marshaller = wrapped.getMemberMarshaller(memberType);
-                memberCache.put(memberType, marshaller);
+            ArgumentMarshaller marshaller = memberCache.get(memberType);
+            if (marshaller != null) {
                 return marshaller;
             }
+
+            marshaller = wrapped.getMemberMarshaller(memberType);
+            return cache(memberCache, memberType, marshaller);
         }
     }
 
     static class CachingUnmarshallerSet implements UnmarshallerSet {
 
-        private final Map<Method, ArgumentUnmarshaller> cache =
-                new HashMap<Method, ArgumentUnmarshaller>();
+        private final ConcurrentMap<Method, ArgumentUnmarshaller> cache =
+                new ConcurrentHashMap<Method, ArgumentUnmarshaller>();
 
-        private final Map<Type, ArgumentUnmarshaller> memberCache =
-                new HashMap<Type, ArgumentUnmarshaller>();
+        private final ConcurrentMap<Type, ArgumentUnmarshaller> memberCache =
+                new ConcurrentHashMap<Type, ArgumentUnmarshaller>();
 
         private final UnmarshallerSet wrapped;
 
@@ -1371,31 +1457,37 @@ public final class ConversionSchemas {
                 Method getter,
                 Method setter) {
 
-            synchronized (cache) {
-                ArgumentUnmarshaller unmarshaler = cache.get(getter);
-                if (unmarshaler != null) {
-                    return unmarshaler;
-                }
-
-                unmarshaler = wrapped.getUnmarshaller(getter, setter);
-                cache.put(getter, unmarshaler);
+            ArgumentUnmarshaller unmarshaler = cache.get(getter);
+            if (unmarshaler != null) {
                 return unmarshaler;
             }
+
+            unmarshaler = wrapped.getUnmarshaller(getter, setter);
+            return cache(cache, getter, unmarshaler);
         }
 
         @Override
         public ArgumentUnmarshaller getMemberUnmarshaller(Type memberType) {
-            synchronized (memberCache) {
-                ArgumentUnmarshaller unmarshaller = memberCache.get(memberType);
-                if (unmarshaller != null) {
-                    return unmarshaller;
-                }
-
-                unmarshaller = wrapped.getMemberUnmarshaller(memberType);
-                memberCache.put(memberType, unmarshaller);
+            ArgumentUnmarshaller unmarshaller = memberCache.get(memberType);
+            if (unmarshaller != null) {
                 return unmarshaller;
             }
+
+            unmarshaller = wrapped.getMemberUnmarshaller(memberType);
+            return cache(memberCache, memberType, unmarshaller);
+        }
+    }
+
+    /**
+     * Caches the value given unless another thread already has, and returns
+     * the cached value. Null values are returned without being cached.
+     */
+    private static <K, V> V cache(ConcurrentMap<K, V> cache, K key, V value) {
+        if (value == null) {
+            return null;
         }
+        V existing = cache.putIfAbsent(key, value);
+        return existing == null ? value : existing;
     }
 
     ConversionSchemas() {
@@ -26,9 +26,11 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Random;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -177,6 +179,15 @@ public class DynamoDBMapper {
     private final DynamoDBTableSchemaParser schemaParser = new DynamoDBTableSchemaParser();
     private final VersionIncrementor incrementor = new VersionIncrementor();
 
+    /*
+     * Item converters cache what they learn about each mapped class, so the
+     * mapper keeps one per built-in conversion schema rather than creating a
+     * new one for every operation. Custom schemas are still asked for a new
+     * converter every time, as they may not expect it to be reused.
+     */
+    private final ConcurrentMap<ConversionSchema, ItemConverter> converters =
+            new ConcurrentHashMap<ConversionSchema, ItemConverter>();
+
     private final AttributeTransformer transformer;
 
     /** The max back off time for batch write */
@@ -1471,11 +1482,54 @@ public class DynamoDBMapper {
      *            of the config parameter.
      * @return A list of failed batches which includes the unprocessed items and
      *         the exceptions causing the failure.
+     *
+     * @see DynamoDBMapper#batchWrite(List, List, DynamoDBMapperConfig, FailedBatchHandler)
      */
     public List<FailedBatch> batchWrite(List<? extends Object> objectsToWrite, List<? extends Object> objectsToDelete, DynamoDBMapperConfig config) {
-        config = mergeConfig(config);
+        final List<FailedBatch> totalFailedBatches = new LinkedList<FailedBatch>();
+        batchWrite(objectsToWrite, objectsToDelete, config, new FailedBatchHandler() {
+            @Override
+            public void handle(FailedBatch failedBatch) {
+                totalFailedBatches.add(failedBatch);
+            }
+        });
+        return totalFailedBatches;
+    }
 
-        List<FailedBatch> totalFailedBatches = new LinkedList<FailedBatch>();
+    /**
+     * Saves and deletes the objects given using one or more calls to the
+     * {@link AmazonDynamoDB#batchWriteItem(BatchWriteItemRequest)} API, and
+     * passes each failed batch to the given handler as soon as it fails
+     * rather than collecting them in a list.
+     * <p>
+     * Up to {@link DynamoDBMapperConfig#getBatchParallelism()} batches are
+     * written concurrently, on the configured
+     * {@link DynamoDBMapperConfig#getBatchExecutorService()} if any. Items
+     * left unprocessed by DynamoDB are retried with a backoff that adapts to
+     * the throttling of each table. The handler is always called on the
+     * thread calling this method.
+     *
+     * @param objectsToWrite
+     *            A list of objects to save to DynamoDB. <b>No version checks
+     *            are performed</b>.
+     * @param objectsToDelete
+     *            A list of objects to delete from DynamoDB. <b>No version
+     *            checks are performed</b>.
+     * @param config
+     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getBatchParallelism()} and
+     *            {@link DynamoDBMapperConfig#getBatchExecutorService()} are
+     *            considered; this method <b>always acts as if
+     *            SaveBehavior.CLOBBER was specified</b>.
+     * @param failedBatchHandler
+     *            The handler of the failed batches, which include the
+     *            unprocessed items and the exceptions causing the failure.
+     *
+     * @see DynamoDBMapper#batchWrite(List, List, DynamoDBMapperConfig)
+     */
+    public void batchWrite(List<? extends Object> objectsToWrite, List<? extends Object> objectsToDelete,
+            DynamoDBMapperConfig config, FailedBatchHandler failedBatchHandler) {
+        config = mergeConfig(config);
 
         HashMap<String, List<WriteRequest>> requestItems = new HashMap<String, List<WriteRequest>>();
 
@@ -1537,70 +1591,99 @@ public class DynamoDBMapper {
         }
 
         // Break into chunks of 25 items and make service requests to DynamoDB
-        while ( !requestItems.isEmpty() ) {
+        final PerTableBackoff backoff = new PerTableBackoff(MAX_BACKOFF_IN_MILLISECONDS);
+        final int parallelism = getBatchParallelism(config);
+        if ( parallelism <= 1 ) {
+            while ( !requestItems.isEmpty() ) {
+                handleFailedBatches(writeOneBatch(nextWriteBatch(requestItems), backoff),
+                        failedBatchHandler);
+            }
+        } else {
+            BatchExecution<List<FailedBatch>> execution =
+                    new BatchExecution<List<FailedBatch>>(config.getBatchExecutorService(), parallelism);
+            try {
+                while ( !requestItems.isEmpty() ) {
+                    final Map<String, List<WriteRequest>> batch = nextWriteBatch(requestItems);
+                    for ( List<FailedBatch> failedBatches : execution.submit(new Callable<List<FailedBatch>>() {
+                        @Override
+                        public List<FailedBatch> call() {
+                            return writeOneBatch(batch, backoff);
+                        }
+                    }) ) {
+                        handleFailedBatches(failedBatches, failedBatchHandler);
+                    }
+                }
+                for ( List<FailedBatch> failedBatches : execution.awaitAll() ) {
+                    handleFailedBatches(failedBatches, failedBatchHandler);
+                }
+            } finally {
+                execution.shutdown();
+            }
+        }
 
-            HashMap<String, List<WriteRequest>> batch =
-                    new HashMap<String, List<WriteRequest>>();
+        // Once the entire batch is processed, update assigned keys in memory
+        for ( ValueUpdate update : inMemoryUpdates ) {
+            update.apply();
+        }
+    }
 
-            int i = 0;
+    /**
+     * Removes the next batch of up to 25 write requests from the given
+     * requests, grouped by table.
+     */
+    private Map<String, List<WriteRequest>> nextWriteBatch(Map<String, List<WriteRequest>> requestItems) {
+        HashMap<String, List<WriteRequest>> batch =
+                new HashMap<String, List<WriteRequest>>();
 
-            Iterator<Entry<String, List<WriteRequest>>> tableIter = requestItems.entrySet().iterator();
-            while ( tableIter.hasNext() && i < MAX_ITEMS_PER_BATCH ) {
+        int i = 0;
 
-                Entry<String, List<WriteRequest>> tableRequest = tableIter.next();
+        Iterator<Entry<String, List<WriteRequest>>> tableIter = requestItems.entrySet().iterator();
+        while ( tableIter.hasNext() && i < MAX_ITEMS_PER_BATCH ) {
 
-                batch.put(tableRequest.getKey(), new LinkedList<WriteRequest>());
-                Iterator<WriteRequest> writeRequestIter = tableRequest.getValue().iterator();
+            Entry<String, List<WriteRequest>> tableRequest = tableIter.next();
 
-                while ( writeRequestIter.hasNext() && i++ < MAX_ITEMS_PER_BATCH ) {
-                    WriteRequest writeRequest = writeRequestIter.next();
-                    batch.get(tableRequest.getKey()).add(writeRequest);
-                    writeRequestIter.remove();
-                }
+            batch.put(tableRequest.getKey(), new LinkedList<WriteRequest>());
+            Iterator<WriteRequest> writeRequestIter = tableRequest.getValue().iterator();
 
-                // If we've processed all the write requests for this table,
-                // remove it from the parent iterator.
-                if ( !writeRequestIter.hasNext() ) {
-                    tableIter.remove();
-                }
+            while ( writeRequestIter.hasNext() && i++ < MAX_ITEMS_PER_BATCH ) {
+                WriteRequest writeRequest = writeRequestIter.next();
+                batch.get(tableRequest.getKey()).add(writeRequest);
+                writeRequestIter.remove();
             }
 
-            List<FailedBatch> failedBatches = writeOneBatch(batch);
-            if (failedBatches != null) {
-                totalFailedBatches.addAll(failedBatches);
-
-                // If contains throttling exception, we do a backoff
-                if (containsThrottlingException(failedBatches)) {
-                    try {
-                        Thread.sleep(1000 * 2);
-                    } catch (InterruptedException e) {
-                        Thread.currentThread().interrupt();
-                        throw new AmazonClientException(e.getMessage(), e);
-                    }
-                }
+            // If we've processed all the write requests for this table,
+            // remove it from the parent iterator.
+            if ( !writeRequestIter.hasNext() ) {
+                tableIter.remove();
             }
         }
+        return batch;
+    }
 
-
-
-        // Once the entire batch is processed, update assigned keys in memory
-        for ( ValueUpdate update : inMemoryUpdates ) {
-            update.apply();
+    private static void handleFailedBatches(List<FailedBatch> failedBatches, FailedBatchHandler failedBatchHandler) {
+        for ( FailedBatch failedBatch : failedBatches ) {
+            failedBatchHandler.handle(failedBatch);
         }
+    }
 
-        return totalFailedBatches;
+    /**
+     * Returns the number of batch requests to keep in flight at once.
+     */
+    private static int getBatchParallelism(DynamoDBMapperConfig config) {
+        Integer parallelism = config.getBatchParallelism();
+        return parallelism == null ? 1 : parallelism;
     }
 
     /**
      * Process one batch of requests(max 25). It will divide the batch if
      * receives request too large exception(the total size of the request is beyond 1M).
      */
-    private List<FailedBatch> writeOneBatch(Map<String, List<WriteRequest>> batch) {
+    private List<FailedBatch> writeOneBatch(Map<String, List<WriteRequest>> batch, PerTableBackoff backoff) {
 
         List<FailedBatch> failedBatches = new LinkedList<FailedBatch>();
         Map<String, List<WriteRequest>> firstHalfBatch = new HashMap<String, List<WriteRequest>>();
         Map<String, List<WriteRequest>> secondHalfBatch = new HashMap<String, List<WriteRequest>>();
-        FailedBatch failedBatch = callUntilCompletion(batch);
+        FailedBatch failedBatch = callUntilCompletion(batch, backoff);
 
         if (failedBatch != null) {
             // If the exception is request entity too large, we divide the batch
@@ -1616,8 +1699,8 @@ public class DynamoDBMapper {
                     failedBatches.add(failedBatch);
                 } else {
                     divideBatch(batch, firstHalfBatch, secondHalfBatch);
-                    failedBatches.addAll(writeOneBatch(firstHalfBatch));
-                    failedBatches.addAll(writeOneBatch(secondHalfBatch));
+                    failedBatches.addAll(writeOneBatch(firstHalfBatch, backoff));
+                    failedBatches.addAll(writeOneBatch(secondHalfBatch, backoff));
                 }
 
             } else {
@@ -1628,20 +1711,6 @@ public class DynamoDBMapper {
         return failedBatches;
     }
 
-    /**
-     * Check whether there are throttling exception in the failed batches.
-     */
-    private boolean containsThrottlingException (List<FailedBatch> failedBatches) {
-        for (FailedBatch failedBatch : failedBatches) {
-           Exception e = failedBatch.getException();
-            if (e instanceof AmazonServiceException
-                    && RetryUtils.isThrottlingException((AmazonServiceException) e)) {
-                return true;
-            }
-        }
-        return false;
-    }
-
     /**
      * Divide the batch of objects to save into two smaller batches. Each contains half of the elements.
      */
@@ -1678,32 +1747,54 @@ public class DynamoDBMapper {
 
     /**
      * Continue trying to process the batch until it finishes or an exception
-     * occurs.
+     * occurs. Unprocessed items and throttling errors slow down further
+     * requests to the affected tables.
      */
 
-    private FailedBatch callUntilCompletion(Map<String, List<WriteRequest>> batch) {
+    private FailedBatch callUntilCompletion(Map<String, List<WriteRequest>> batch, PerTableBackoff backoff) {
         BatchWriteItemResult result = null;
-        int retries = 0;
-        FailedBatch failedBatch = null;
         while (true) {
+            backoff.pause(batch.keySet());
             try {
                 result = db.batchWriteItem(applyBatchOperationUserAgent(
                         new BatchWriteItemRequest().withRequestItems(batch)));
             } catch (Exception e) {
-                failedBatch = new FailedBatch();
+                if (e instanceof AmazonServiceException
+                        && RetryUtils.isThrottlingException((AmazonServiceException) e)) {
+                    backoff.onThrottled(batch.keySet());
+                }
+                FailedBatch failedBatch = new FailedBatch();
                 failedBatch.setUnprocessedItems(batch);
                 failedBatch.setException(e);
                 return failedBatch;
             }
-            retries++;
-            batch = result.getUnprocessedItems();
-            if (batch.size() > 0) {
-                pauseExponentially(retries);
-            } else {
-                break;
+            Map<String, List<WriteRequest>> unprocessedItems = result.getUnprocessedItems();
+            if (unprocessedItems == null || unprocessedItems.isEmpty()) {
+                backoff.onProcessed(batch.keySet());
+                return null;
+            }
+            for (Entry<String, List<WriteRequest>> entry : batch.entrySet()) {
+                List<WriteRequest> unprocessed = unprocessedItems.get(entry.getKey());
+                onBatchResponse(backoff, entry.getKey(), entry.getValue().size(),
+                        unprocessed == null ? 0 : unprocessed.size());
             }
+            batch = unprocessedItems;
+        }
+    }
+
+    /**
+     * Adapts the backoff of a table to the outcome of a batch request.
+     */
+    private static void onBatchResponse(PerTableBackoff backoff, String tableName,
+            int requested, int unprocessed) {
+        Set<String> table = Collections.singleton(tableName);
+        if (unprocessed == 0) {
+            backoff.onProcessed(table);
+        } else if (unprocessed < requested) {
+            backoff.onPartiallyProcessed(table);
+        } else {
+            backoff.onThrottled(table);
         }
-        return failedBatch;
     }
 
     /**
@@ -1728,8 +1819,10 @@ public class DynamoDBMapper {
      *            Key objects, corresponding to the class to fetch, with their
      *            primary key values set.
      * @param config
-     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()} and
-     *            {@link DynamoDBMapperConfig#getConsistentReads()} are
+     *            Only {@link DynamoDBMapperConfig#getTableNameOverride()},
+     *            {@link DynamoDBMapperConfig#getConsistentReads()},
+     *            {@link DynamoDBMapperConfig#getBatchParallelism()} and
+     *            {@link DynamoDBMapperConfig#getBatchExecutorService()} are
      *            considered.
      *
      * @return A map of the loaded objects. Each key in the map is the name of a
@@ -1752,36 +1845,92 @@ public class DynamoDBMapper {
         int count = 0;
 
         ItemConverter converter = getConverter(config);
+        PerTableBackoff backoff = new PerTableBackoff(MAX_BACKOFF_IN_MILLISECONDS);
+        int parallelism = getBatchParallelism(config);
+        BatchExecution<Map<String, List<Object>>> execution = parallelism <= 1 ? null
+                : new BatchExecution<Map<String, List<Object>>>(config.getBatchExecutorService(), parallelism);
+        try {
+            for ( Object keyObject : itemsToGet ) {
+                Class<?> clazz = keyObject.getClass();
 
-        for ( Object keyObject : itemsToGet ) {
-            Class<?> clazz = keyObject.getClass();
+                String tableName = getTableName(clazz, keyObject, config);
+                classesByTableName.put(tableName, clazz);
 
-            String tableName = getTableName(clazz, keyObject, config);
-            classesByTableName.put(tableName, clazz);
+                if ( !requestItems.containsKey(tableName) ) {
+                    requestItems.put(
+                            tableName,
+                            new KeysAndAttributes().withConsistentRead(consistentReads).withKeys(
+                                    new LinkedList<Map<String, AttributeValue>>()));
+                }
 
-            if ( !requestItems.containsKey(tableName) ) {
-                requestItems.put(
-                        tableName,
-                        new KeysAndAttributes().withConsistentRead(consistentReads).withKeys(
-                                new LinkedList<Map<String, AttributeValue>>()));
+                requestItems.get(tableName).getKeys().add(
+                        getKey(converter, keyObject));
+
+                // Reach the maximum number which can be handled in a single batchGet
+                if ( ++count == 100 ) {
+                    submitBatchGetRequest(execution, classesByTableName, requestItems, resultSet, config, converter, backoff);
+                    requestItems = new HashMap<String, KeysAndAttributes>();
+                    count = 0;
+                }
             }
 
-            requestItems.get(tableName).getKeys().add(
-                    getKey(converter, keyObject));
+            if ( count > 0 ) {
+                submitBatchGetRequest(execution, classesByTableName, requestItems, resultSet, config, converter, backoff);
+            }
 
-            // Reach the maximum number which can be handled in a single batchGet
-            if ( ++count == 100 ) {
-                processBatchGetRequest(classesByTableName, requestItems, resultSet, config, converter);
-                requestItems.clear();
-                count = 0;
+            if ( execution != null ) {
+                for ( Map<String, List<Object>> results : execution.awaitAll() ) {
+                    mergeBatchGetResults(resultSet, results);
+                }
+            }
+        } finally {
+            if ( execution != null ) {
+                execution.shutdown();
             }
         }
 
-        if ( count > 0 ) {
-            processBatchGetRequest(classesByTableName, requestItems, resultSet, config, converter);
+        return resultSet;
+    }
+
+    /**
+     * Sends a batch get request, either on this thread or concurrently if an
+     * execution is given, and merges the results completed so far into the
+     * given result set.
+     */
+    private void submitBatchGetRequest(
+            BatchExecution<Map<String, List<Object>>> execution,
+            Map<String, Class<?>> classesByTableName,
+            final Map<String, KeysAndAttributes> requestItems,
+            Map<String, List<Object>> resultSet,
+            final DynamoDBMapperConfig config,
+            final ItemConverter converter,
+            final PerTableBackoff backoff) {
+
+        if ( execution == null ) {
+            mergeBatchGetResults(resultSet, processBatchGetRequest(
+                    classesByTableName, requestItems, config, converter, backoff));
+            return;
+        }
+        final Map<String, Class<?>> classes = new HashMap<String, Class<?>>(classesByTableName);
+        for ( Map<String, List<Object>> results : execution.submit(new Callable<Map<String, List<Object>>>() {
+            @Override
+            public Map<String, List<Object>> call() {
+                return processBatchGetRequest(classes, requestItems, config, converter, backoff);
+            }
+        }) ) {
+            mergeBatchGetResults(resultSet, results);
         }
+    }
 
-        return resultSet;
+    private static void mergeBatchGetResults(Map<String, List<Object>> resultSet, Map<String, List<Object>> results) {
+        for ( Entry<String, List<Object>> entry : results.entrySet() ) {
+            List<Object> objects = resultSet.get(entry.getKey());
+            if ( objects == null ) {
+                resultSet.put(entry.getKey(), entry.getValue());
+            } else {
+                objects.addAll(entry.getValue());
+            }
+        }
     }
 
     /**
@@ -1839,13 +1988,16 @@ public class DynamoDBMapper {
 
     /**
      * @param config never null
+     * @return the loaded objects, by table name
      */
-    private void processBatchGetRequest(
+    private Map<String, List<Object>> processBatchGetRequest(
             final Map<String, Class<?>> classesByTableName,
             final Map<String, KeysAndAttributes> requestItems,
-            final Map<String, List<Object>> resultSet,
             final DynamoDBMapperConfig config,
-            final ItemConverter converter) {
+            final ItemConverter converter,
+            final PerTableBackoff backoff) {
+
+        final Map<String, List<Object>> resultSet = new HashMap<String, List<Object>>();
 
         BatchGetItemResult batchGetItemResult = null;
         BatchGetItemRequest batchGetItemRequest = new BatchGetItemRequest()
@@ -1859,22 +2011,29 @@ public class DynamoDBMapper {
             if ( batchGetItemResult != null ) {
                 retries++;
 
-                if (noOfItemsInOriginalRequest == batchGetItemResult
-                        .getUnprocessedKeys().size()){
-                    pauseExponentially(retries);
-                    if (retries > BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS) {
-                        throw new AmazonClientException(
-                                "Batch Get Item request to server hasn't received any data. "
-                                + "Please try again later.");
-                    }
+                Set<String> unprocessedTables = batchGetItemResult.getUnprocessedKeys().keySet();
+                backoff.pause(unprocessedTables);
+                if (noOfItemsInOriginalRequest == unprocessedTables.size()
+                        && retries > BATCH_GET_MAX_RETRY_COUNT_ALL_KEYS) {
+                    throw new AmazonClientException(
+                            "Batch Get Item request to server hasn't received any data. "
+                            + "Please try again later.");
                 }
 
                 batchGetItemRequest.setRequestItems(
                         batchGetItemResult.getUnprocessedKeys());
+            } else {
+                backoff.pause(requestItems.keySet());
             }
 
             batchGetItemResult = db.batchGetItem(
                     applyBatchOperationUserAgent(batchGetItemRequest));
+            for ( Entry<String, KeysAndAttributes> entry : batchGetItemRequest.getRequestItems().entrySet() ) {
+                KeysAndAttributes unprocessed = batchGetItemResult.getUnprocessedKeys() == null
+                        ? null : batchGetItemResult.getUnprocessedKeys().get(entry.getKey());
+                onBatchResponse(backoff, entry.getKey(), entry.getValue().getKeys().size(),
+                        unprocessed == null ? 0 : unprocessed.getKeys().size());
+            }
 
             Map<String, List<Map<String, AttributeValue>>> responses = batchGetItemResult.getResponses();
             for ( String tableName : responses.keySet() ) {
@@ -1898,6 +2057,7 @@ public class DynamoDBMapper {
             // To see whether there are unprocessed keys.
         } while ( batchGetItemResult.getUnprocessedKeys() != null && batchGetItemResult.getUnprocessedKeys().size() > 0 );
 
+        return resultSet;
     }
 
     private final class ValueUpdate {
@@ -2027,13 +2187,17 @@ public class DynamoDBMapper {
 
     /**
      * Scans through an Amazon DynamoDB table on logically partitioned segments
-     * in parallel. This method will create a thread pool of the specified size,
-     * and each thread will issue scan requests for its assigned segment,
-     * following the returned continuation token, until the end of its segment.
-     * Callers should be responsible for setting the appropriate number of total
-     * segments. More scan segments would result in better performance but more
-     * consumed capacity of the table. The results are returned in one
-     * unmodifiable list of instantiated objects. The table to scan is
+     * in parallel. Scan requests for each segment are issued on the
+     * {@link DynamoDBMapperConfig#getBatchExecutorService()} if one is
+     * configured, or else on a thread pool created for this scan, following
+     * the returned continuation token, until the end of the segment. Each
+     * segment requests its next page only once its previous page has been
+     * handed to the returned list, and pages are handed over as soon as they
+     * arrive rather than one round of all segments at a time. Callers should
+     * be responsible for setting the appropriate number of total segments.
+     * More scan segments would result in better performance but more consumed
+     * capacity of the table. The results are returned in one unmodifiable
+     * list of instantiated objects. The table to scan is
      * determined by looking at the annotations on the specified class, which
      * declares where to store the object data in Amazon DynamoDB, and the scan
      * expression parameter allows the caller to filter results and control how
@@ -2044,7 +2208,10 @@ public class DynamoDBMapper {
      * UnsupportedOperationException.
      * <p>
      * You can specify the pagination loading strategy for this parallel scan operation.
-     * By default, the list returned is lazily loaded when possible.
+     * By default, the list returned is lazily loaded when possible. With
+     * {@link PaginationLoadingStrategy#ITERATION_ONLY}, items are streamed
+     * through the list's iterator without being retained, so even a scan of
+     * the entire table runs in memory bounded by the number of segments.
      *
      * @param <T>
      *            The type of the objects being returned.
@@ -2070,7 +2237,8 @@ public class DynamoDBMapper {
 
         // Create hard copies of the original scan request with difference segment number.
         List<ScanRequest> parallelScanRequests = createParallelScanRequestsFromExpression(clazz, scanExpression, totalSegments, config);
-        ParallelScanTask parallelScanTask = new ParallelScanTask(this, db, parallelScanRequests);
+        ParallelScanTask parallelScanTask =
+                new ParallelScanTask(db, parallelScanRequests, config.getBatchExecutorService());
 
         return new PaginatedParallelScanList<T>(this, clazz, db, parallelScanTask, config.getPaginationLoadingStrategy(), config);
     }
@@ -2869,31 +3037,25 @@ public class DynamoDBMapper {
 
     private ItemConverter getConverter(DynamoDBMapperConfig config) {
         ConversionSchema schema = config.getConversionSchema();
+        boolean isBuiltIn = schema == ConversionSchemas.V1
+                || schema == ConversionSchemas.V2_COMPATIBLE
+                || schema == ConversionSchemas.V2;
+
+        ItemConverter converter = isBuiltIn ? converters.get(schema) : null;
+        if (converter != null) {
+            return converter;
+        }
 
         ConversionSchema.Dependencies params = new ConversionSchema.Dependencies()
                 .with(DynamoDBReflector.class, reflector)
                 .with(S3ClientCache.class, s3cc);
 
-        return schema.getConverter(params);
-    }
-
-    private void pauseExponentially(int retries) {
-        if (retries == 0) {
-            return;
-        }
-
-        Random random = new Random();
-        long delay = 0;
-        long scaleFactor = 500 + random.nextInt(100);
-        delay = (long) (Math.pow(2, retries) * scaleFactor);
-        delay = Math.min(delay, MAX_BACKOFF_IN_MILLISECONDS);
-
-        try {
-            Thread.sleep(delay);
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            throw new AmazonClientException(e.getMessage(), e);
+        converter = schema.getConverter(params);
+        if (!isBuiltIn) {
+            return converter;
         }
+        ItemConverter existing = converters.putIfAbsent(schema, converter);
+        return existing == null ? converter : existing;
     }
 
     /**
@@ -2984,6 +3146,20 @@ public class DynamoDBMapper {
 
     }
 
+    /**
+     * Receives the failed batches of a batch write operation as they fail.
+     *
+     * @see DynamoDBMapper#batchWrite(List, List, DynamoDBMapperConfig, FailedBatchHandler)
+     */
+    public static interface FailedBatchHandler {
+
+        /**
+         * Handles a batch that couldn't be written, which includes the
+         * unprocessed items and the exception causing the failure.
+         */
+        void handle(FailedBatch failedBatch);
+    }
+
     /**
      * Returns the underlying {@link S3ClientCache} for accessing S3.
      */
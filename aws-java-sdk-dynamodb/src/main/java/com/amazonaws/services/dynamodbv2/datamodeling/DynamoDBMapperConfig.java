@@ -14,6 +14,8 @@
  */
 package com.amazonaws.services.dynamodbv2.datamodeling;
 
+import java.util.concurrent.ExecutorService;
+
 import com.amazonaws.metrics.RequestMetricCollector;
 
 /**
@@ -50,6 +52,8 @@ public class DynamoDBMapperConfig {
         private PaginationLoadingStrategy paginationLoadingStrategy;
         private RequestMetricCollector requestMetricCollector;
         private ConversionSchema conversionSchema;
+        private Integer batchParallelism;
+        private ExecutorService batchExecutorService;
 
         /**
          * Creates a new builder initialized with the {@link #DEFAULT} values.
@@ -63,6 +67,8 @@ public class DynamoDBMapperConfig {
             paginationLoadingStrategy = DEFAULT.getPaginationLoadingStrategy();
             requestMetricCollector = DEFAULT.getRequestMetricCollector();
             conversionSchema = DEFAULT.getConversionSchema();
+            batchParallelism = DEFAULT.getBatchParallelism();
+            batchExecutorService = DEFAULT.getBatchExecutorService();
         }
 
         /**
@@ -260,6 +266,60 @@ public class DynamoDBMapperConfig {
         }
 
 
+        /**
+         * @return the currently-configured batch parallelism
+         */
+        public Integer getBatchParallelism() {
+            return batchParallelism;
+        }
+
+        /**
+         * @param value the maximum number of batch requests a single batch
+         *            operation keeps in flight at once
+         */
+        public void setBatchParallelism(Integer value) {
+            batchParallelism = value;
+        }
+
+        /**
+         * @param value the maximum number of batch requests a single batch
+         *            operation keeps in flight at once
+         * @return this builder
+         */
+        public Builder withBatchParallelism(Integer value) {
+            setBatchParallelism(value);
+            return this;
+        }
+
+
+        /**
+         * @return the currently-configured batch executor service
+         */
+        public ExecutorService getBatchExecutorService() {
+            return batchExecutorService;
+        }
+
+        /**
+         * @param value the executor service used to send the concurrent
+         *            requests of batch operations and parallel scans, or null
+         *            to use a temporary one per operation
+         */
+        public void setBatchExecutorService(ExecutorService value) {
+            batchExecutorService = value;
+        }
+
+        /**
+         * @param value the executor service used to send the concurrent
+         *            requests of batch operations and parallel scans, or null
+         *            to use a temporary one per operation
+         * @return this builder
+         */
+        public Builder withBatchExecutorService(ExecutorService value) {
+            setBatchExecutorService(value);
+            return this;
+        }
+
+
         /**
          * Builds a new {@code DynamoDBMapperConfig} object.
          *
@@ -274,7 +334,9 @@ public class DynamoDBMapperConfig {
                     objectTableNameResolver,
                     paginationLoadingStrategy,
                     requestMetricCollector,
-                    conversionSchema);
+                    conversionSchema,
+                    batchParallelism,
+                    batchExecutorService);
         }
     }
 
@@ -514,6 +576,8 @@ public class DynamoDBMapperConfig {
     private final PaginationLoadingStrategy paginationLoadingStrategy;
     private final RequestMetricCollector requestMetricCollector;
     private final ConversionSchema conversionSchema;
+    private final Integer batchParallelism;
+    private final ExecutorService batchExecutorService;
 
     /**
      * Legacy constructor, using default PaginationLoadingStrategy
@@ -596,6 +660,30 @@ public class DynamoDBMapperConfig {
             RequestMetricCollector requestMetricCollector,
             ConversionSchema conversionSchema) {
 
+        this(saveBehavior,
+                consistentReads,
+                tableNameOverride,
+                tableNameResolver,
+                objectTableNameResolver,
+                paginationLoadingStrategy,
+                requestMetricCollector,
+                conversionSchema,
+                null,
+                null);
+    }
+
+    private DynamoDBMapperConfig(
+            SaveBehavior saveBehavior,
+            ConsistentReads consistentReads,
+            TableNameOverride tableNameOverride,
+            TableNameResolver tableNameResolver,
+            ObjectTableNameResolver objectTableNameResolver,
+            PaginationLoadingStrategy paginationLoadingStrategy,
+            RequestMetricCollector requestMetricCollector,
+            ConversionSchema conversionSchema,
+            Integer batchParallelism,
+            ExecutorService batchExecutorService) {
+
         this.saveBehavior = saveBehavior;
         this.consistentReads = consistentReads;
         this.tableNameOverride = tableNameOverride;
@@ -604,6 +692,8 @@ public class DynamoDBMapperConfig {
         this.paginationLoadingStrategy = paginationLoadingStrategy;
         this.requestMetricCollector = requestMetricCollector;
         this.conversionSchema = conversionSchema;
+        this.batchParallelism = batchParallelism;
+        this.batchExecutorService = batchExecutorService;
     }
 
     /**
@@ -702,6 +792,8 @@ public class DynamoDBMapperConfig {
                     defaults.getPaginationLoadingStrategy();
             this.requestMetricCollector = defaults.getRequestMetricCollector();
             this.conversionSchema = defaults.getConversionSchema();
+            this.batchParallelism = defaults.getBatchParallelism();
+            this.batchExecutorService = defaults.getBatchExecutorService();
 
         } else {
 
@@ -739,6 +831,15 @@ public class DynamoDBMapperConfig {
                     ? defaults.getConversionSchema()
                     : overrides.getConversionSchema();
 
+            this.batchParallelism = (overrides.getBatchParallelism() == null)
+                    ? defaults.getBatchParallelism()
+                    : overrides.getBatchParallelism();
+
+            this.batchExecutorService =
+                    (overrides.getBatchExecutorService() == null)
+                    ? defaults.getBatchExecutorService()
+                    : overrides.getBatchExecutorService();
+
         }
     }
 
@@ -815,6 +916,28 @@ public class DynamoDBMapperConfig {
         return conversionSchema;
     }
 
+    /**
+     * Returns the maximum number of batch requests that a single batch
+     * operation, such as {@link DynamoDBMapper#batchWrite} or
+     * {@link DynamoDBMapper#batchLoad}, keeps in flight at once. The default
+     * of 1 sends the batches one after another.
+     */
+    public Integer getBatchParallelism() {
+        return batchParallelism;
+    }
+
+    /**
+     * Returns the executor service used to send the concurrent requests of
+     * batch operations (when the batch parallelism is greater than 1) and of
+     * parallel scans, or null if each such operation should use a temporary
+     * thread pool of its own. Sharing one bounded executor service caps the
+     * number of threads used by all of them together. The executor service
+     * is never shut down by the mapper.
+     */
+    public ExecutorService getBatchExecutorService() {
+        return batchExecutorService;
+    }
+
     /**
      * Default configuration uses UPDATE behavior for saves and EVENTUALly
      * consistent reads, with no table name override and lazy-loading strategy.
@@ -827,5 +950,7 @@ public class DynamoDBMapperConfig {
             null, // ObjectTableNameResolver
             PaginationLoadingStrategy.LAZY_LOADING,
             null,  // RequestMetricCollector
-            ConversionSchemas.DEFAULT);
+            ConversionSchemas.DEFAULT,
+            1,     // batch parallelism
+            null); // batch ExecutorService
 }
@@ -15,16 +15,13 @@
 package com.amazonaws.services.dynamodbv2.datamodeling;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.ReadLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock.WriteLock;
-
-import org.apache.http.annotation.GuardedBy;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Reflection assistant for {@link DynamoDBMapper}
@@ -33,40 +30,49 @@ class DynamoDBReflector {
 
     /*
      * Several caches for performance. Collectively, they can make this class
-     * over twice as fast.
+     * over twice as fast. They are consulted on every save and load, so they
+     * are lock-free; two threads racing to fill in the same entry compute
+     * the same value, and the first one to be stored wins.
+     */
+    private final ConcurrentMap<Class<?>, Collection<Method>> getterCache =
+            new ConcurrentHashMap<Class<?>, Collection<Method>>();
+    private final ConcurrentMap<Class<?>, Collection<Method>> primaryKeyGettersCache =
+            new ConcurrentHashMap<Class<?>, Collection<Method>>();
+    private final ConcurrentMap<Class<?>, Method> primaryHashKeyGetterCache =
+            new ConcurrentHashMap<Class<?>, Method>();
+
+    /*
+     * Classes without a range key map to an empty collection, since a
+     * ConcurrentMap can't hold null values.
      */
-    private final Map<Class<?>, Collection<Method>> getterCache = new HashMap<Class<?>, Collection<Method>>();
-    private final Map<Class<?>, Method> primaryHashKeyGetterCache = new HashMap<Class<?>, Method>();
-    private final Map<Class<?>, Method> primaryRangeKeyGetterCache = new HashMap<Class<?>, Method>();
+    private final ConcurrentMap<Class<?>, Collection<Method>> primaryRangeKeyGetterCache =
+            new ConcurrentHashMap<Class<?>, Collection<Method>>();
 
     /*
      * All caches keyed by a Method use the getter for a particular mapped
      * property
      */
-    private final Map<Method, Method> setterCache = new HashMap<Method, Method>();
-
-    @GuardedBy("readWriteLockAttrName")
-    private final Map<Method, String> attributeNameCache = new HashMap<Method, String>();
-
-    private final Map<Method, Boolean> versionAttributeGetterCache = new HashMap<Method, Boolean>();
-    private final Map<Method, Boolean> autoGeneratedKeyGetterCache = new HashMap<Method, Boolean>();
-
-    private final ReentrantReadWriteLock readWriteLockAttrName = new ReentrantReadWriteLock();
-    private final ReadLock readLockAttrName = readWriteLockAttrName.readLock();
-    private final WriteLock writeLockAttrName = readWriteLockAttrName.writeLock();
+    private final ConcurrentMap<Method, Method> setterCache =
+            new ConcurrentHashMap<Method, Method>();
+    private final ConcurrentMap<Method, String> attributeNameCache =
+            new ConcurrentHashMap<Method, String>();
+    private final ConcurrentMap<Method, Boolean> versionAttributeGetterCache =
+            new ConcurrentHashMap<Method, Boolean>();
+    private final ConcurrentMap<Method, Boolean> autoGeneratedKeyGetterCache =
+            new ConcurrentHashMap<Method, Boolean>();
 
     /**
      * Returns the set of getter methods which are relevant when marshalling or
      * unmarshalling an object.
      */
     Collection<Method> getRelevantGetters(Class<?> clazz) {
-        synchronized (getterCache) {
-            if ( !getterCache.containsKey(clazz) ) {
-                List<Method> relevantGetters = findRelevantGetters(clazz);
-                getterCache.put(clazz, relevantGetters);
-            }
-            return getterCache.get(clazz);
+        Collection<Method> relevantGetters = getterCache.get(clazz);
+        if ( relevantGetters == null ) {
+            relevantGetters = Collections.unmodifiableList(
+                    new ArrayList<Method>(findRelevantGetters(clazz)));
+            relevantGetters = cache(getterCache, clazz, relevantGetters);
         }
+        return relevantGetters;
     }
 
     static List<Method> findRelevantGetters(Class<?> clazz) {
@@ -103,38 +109,38 @@ class DynamoDBReflector {
      * given, or null if the class doesn't have one.
      */
     <T> Method getPrimaryRangeKeyGetter(Class<T> clazz) {
-        synchronized (primaryRangeKeyGetterCache) {
-            if ( !primaryRangeKeyGetterCache.containsKey(clazz) ) {
-                Method rangeKeyMethod = null;
-                for ( Method method : getRelevantGetters(clazz) ) {
-                    if ( method.getParameterTypes().length == 0
-                            && ReflectionUtils.getterOrFieldHasAnnotation(method, DynamoDBRangeKey.class)) {
-                        rangeKeyMethod = method;
-                        break;
-                    }
+        Collection<Method> rangeKeyGetter = primaryRangeKeyGetterCache.get(clazz);
+        if ( rangeKeyGetter == null ) {
+            rangeKeyGetter = Collections.emptyList();
+            for ( Method method : getRelevantGetters(clazz) ) {
+                if ( method.getParameterTypes().length == 0
+                        && ReflectionUtils.getterOrFieldHasAnnotation(method, DynamoDBRangeKey.class)) {
+                    rangeKeyGetter = Collections.singletonList(method);
+                    break;
                 }
-                primaryRangeKeyGetterCache.put(clazz, rangeKeyMethod);
             }
-            return primaryRangeKeyGetterCache.get(clazz);
+            rangeKeyGetter = cache(primaryRangeKeyGetterCache, clazz, rangeKeyGetter);
         }
+        return rangeKeyGetter.isEmpty() ? null : rangeKeyGetter.iterator().next();
     }
 
     /**
      * Returns all annotated {@link DynamoDBHashKey} and
-     * {@link DynamoDBRangeKey} getters for the class given, throwing an
-     * exception if there isn't one.
-     *
-     * TODO: caching
+     * {@link DynamoDBRangeKey} getters for the class given.
      */
     <T> Collection<Method> getPrimaryKeyGetters(Class<T> clazz) {
-        List<Method> keyGetters = new LinkedList<Method>();
-        for (Method getter : getRelevantGetters(clazz)) {
-            if (ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class)
-                    || ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class)) {
-                keyGetters.add(getter);
+        Collection<Method> keyGetters = primaryKeyGettersCache.get(clazz);
+        if ( keyGetters == null ) {
+            List<Method> getters = new ArrayList<Method>();
+            for (Method getter : getRelevantGetters(clazz)) {
+                if (ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class)
+                        || ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class)) {
+                    getters.add(getter);
+                }
             }
+            keyGetters = cache(primaryKeyGettersCache, clazz,
+                    Collections.unmodifiableList(getters));
         }
-
         return keyGetters;
     }
 
@@ -144,18 +150,15 @@ class DynamoDBReflector {
      * throwing an exception if there isn't one.
      */
     <T> Method getPrimaryHashKeyGetter(Class<T> clazz) {
-        Method hashKeyMethod;
-        synchronized (primaryHashKeyGetterCache) {
-            if ( !primaryHashKeyGetterCache.containsKey(clazz) ) {
-                for ( Method method : getRelevantGetters(clazz) ) {
-                    if ( method.getParameterTypes().length == 0
-                            && ReflectionUtils.getterOrFieldHasAnnotation(method, DynamoDBHashKey.class)) {
-                        primaryHashKeyGetterCache.put(clazz, method);
-                        break;
-                    }
+        Method hashKeyMethod = primaryHashKeyGetterCache.get(clazz);
+        if ( hashKeyMethod == null ) {
+            for ( Method method : getRelevantGetters(clazz) ) {
+                if ( method.getParameterTypes().length == 0
+                        && ReflectionUtils.getterOrFieldHasAnnotation(method, DynamoDBHashKey.class)) {
+                    hashKeyMethod = cache(primaryHashKeyGetterCache, clazz, method);
+                    break;
                 }
             }
-            hashKeyMethod = primaryHashKeyGetterCache.get(clazz);
         }
 
         if ( hashKeyMethod == null ) {
@@ -180,13 +183,7 @@ class DynamoDBReflector {
      * Returns the attribute name corresponding to the given getter method.
      */
     String getAttributeName(Method getter) {
-        String attributeName;
-        readLockAttrName.lock();
-        try {
-            attributeName = attributeNameCache.get(getter);
-        } finally {
-            readLockAttrName.unlock();
-        }
+        String attributeName = attributeNameCache.get(getter);
         if ( attributeName != null )
             return attributeName;
         DynamoDBHashKey hashKeyAnnotation = ReflectionUtils.getAnnotationFromGetterOrField(getter, DynamoDBHashKey.class);
@@ -232,13 +229,7 @@ class DynamoDBReflector {
     }
 
     private String cacheAttributeName(Method getter, String attributeName) {
-        writeLockAttrName.lock();
-        try {
-            attributeNameCache.put(getter, attributeName);
-        } finally {
-            writeLockAttrName.unlock();
-        }
-        return attributeName;
+        return cache(attributeNameCache, getter, attributeName);
     }
 
     /**
@@ -246,24 +237,22 @@ class DynamoDBReflector {
      * setter exists.
      */
     Method getSetter(Method getter) {
-        synchronized (setterCache) {
-            if ( !setterCache.containsKey(getter) ) {
-                String fieldName = ReflectionUtils.getFieldNameByGetter(getter, false);
-                String setterName = "set" + fieldName;
-                Method setter = null;
-                try {
-                    setter = getter.getDeclaringClass().getMethod(setterName, getter.getReturnType());
-                } catch ( NoSuchMethodException e ) {
-                    throw new DynamoDBMappingException("Expected a public, one-argument method called " + setterName
-                            + " on class " + getter.getDeclaringClass(), e);
-                } catch ( SecurityException e ) {
-                    throw new DynamoDBMappingException("No access to public, one-argument method called " + setterName
-                            + " on class " + getter.getDeclaringClass(), e);
-                }
-                setterCache.put(getter, setter);
+        Method setter = setterCache.get(getter);
+        if ( setter == null ) {
+            String fieldName = ReflectionUtils.getFieldNameByGetter(getter, false);
+            String setterName = "set" + fieldName;
+            try {
+                setter = getter.getDeclaringClass().getMethod(setterName, getter.getReturnType());
+            } catch ( NoSuchMethodException e ) {
+                throw new DynamoDBMappingException("Expected a public, one-argument method called " + setterName
+                        + " on class " + getter.getDeclaringClass(), e);
+            } catch ( SecurityException e ) {
+                throw new DynamoDBMappingException("No access to public, one-argument method called " + setterName
+                        + " on class " + getter.getDeclaringClass(), e);
             }
-            return setterCache.get(getter);
+            setter = cache(setterCache, getter, setter);
         }
+        return setter;
     }
 
     /**
@@ -271,31 +260,40 @@ class DynamoDBReflector {
      * version attribute.
      */
     boolean isVersionAttributeGetter(Method getter) {
-        synchronized (versionAttributeGetterCache) {
-            if ( !versionAttributeGetterCache.containsKey(getter) ) {
-                versionAttributeGetterCache.put(
-                        getter,
-                        getter.getName().startsWith("get") && getter.getParameterTypes().length == 0
-                                && ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBVersionAttribute.class));
-            }
-            return versionAttributeGetterCache.get(getter);
+        Boolean isVersionAttributeGetter = versionAttributeGetterCache.get(getter);
+        if ( isVersionAttributeGetter == null ) {
+            isVersionAttributeGetter = cache(
+                    versionAttributeGetterCache,
+                    getter,
+                    getter.getName().startsWith("get") && getter.getParameterTypes().length == 0
+                            && ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBVersionAttribute.class));
         }
+        return isVersionAttributeGetter;
     }
 
     /**
      * Returns whether the method given is an assignable key getter.
      */
     boolean isAssignableKey(Method getter) {
-        synchronized (autoGeneratedKeyGetterCache) {
-            if ( !autoGeneratedKeyGetterCache.containsKey(getter) ) {
-                autoGeneratedKeyGetterCache.put(
-                        getter,
-                        ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBAutoGeneratedKey.class)
-                                && ( ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class) ||
-                                     ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class)));
-            }
-            return autoGeneratedKeyGetterCache.get(getter);
+        Boolean isAssignableKey = autoGeneratedKeyGetterCache.get(getter);
+        if ( isAssignableKey == null ) {
+            isAssignableKey = cache(
+                    autoGeneratedKeyGetterCache,
+                    getter,
+                    ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBAutoGeneratedKey.class)
+                            && ( ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBHashKey.class) ||
+                                 ReflectionUtils.getterOrFieldHasAnnotation(getter, DynamoDBRangeKey.class)));
         }
+        return isAssignableKey;
+    }
+
+    /**
+     * Stores the value given in the cache unless another thread got there
+     * first, and returns whichever value ends up cached.
+     */
+    private static <K, V> V cache(ConcurrentMap<K, V> cache, K key, V value) {
+        V existing = cache.putIfAbsent(key, value);
+        return existing == null ? value : existing;
     }
 
     /**
@@ -22,6 +22,7 @@ import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperFieldModel.DynamoDBAttributeType;
 import com.amazonaws.services.dynamodbv2.model.AttributeDefinition;
@@ -40,7 +41,7 @@ import com.amazonaws.services.dynamodbv2.model.ProjectionType;
 class DynamoDBTableSchemaParser {
 
     private final Map<Class<?>, TableIndexesInfo> tableIndexesInfoCache =
-            new HashMap<Class<?>, TableIndexesInfo>();
+            new ConcurrentHashMap<Class<?>, TableIndexesInfo>();
 
     /**
      * Parse the given POJO class and return the CreateTableRequest for the
@@ -106,6 +107,12 @@ class DynamoDBTableSchemaParser {
     }
 
     TableIndexesInfo parseTableIndexes(final Class<?> clazz, final DynamoDBReflector reflector) {
+        // Queries look up the indexes of their class every time, so don't
+        // make them contend for the lock once the class has been parsed.
+        TableIndexesInfo cached = tableIndexesInfoCache.get(clazz);
+        if ( cached != null ) {
+            return cached;
+        }
         synchronized(tableIndexesInfoCache) {
             if ( !tableIndexesInfoCache.containsKey(clazz) ) {
                 TableIndexesInfo tableIndexInfo = new TableIndexesInfo();
@@ -26,7 +26,8 @@ import com.amazonaws.services.dynamodbv2.model.ScanResult;
  * in AWS DynamoDB. Paginated results are loaded on demand when the user
  * executes an operation that requires them. Some operations, such as size(),
  * must fetch the entire list, but results are lazily fetched page by page when
- * possible.
+ * possible. Pages are added to the list in the order the segment scans
+ * return them.
  * <p>
  * This is an unmodifiable list, so callers should not invoke any operations
  * that modify this list, otherwise they will throw an
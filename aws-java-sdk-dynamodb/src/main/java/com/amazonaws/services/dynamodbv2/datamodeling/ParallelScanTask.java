@@ -14,18 +14,18 @@
  */
 package com.amazonaws.services.dynamodbv2.datamodeling;
 
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.amazonaws.services.dynamodbv2.model.ScanRequest;
 import com.amazonaws.services.dynamodbv2.model.ScanResult;
 
@@ -39,233 +39,167 @@ public class ParallelScanTask {
     private final int totalSegments;
 
     /**
-     * Cache all the future tasks, so that we can extract the exception when
-     * we see failed segment scan.
+     * Receives each page of results as soon as the scan of its segment
+     * returns. The next page of a segment is only requested once its
+     * previous page has been taken from here, so at most one page per
+     * segment is ever held in memory, however large the table is.
      */
-    private final List<Future<ScanResult>> segmentScanFutureTasks;
+    private final BlockingQueue<SegmentScanResult> completedPages =
+            new LinkedBlockingQueue<SegmentScanResult>();
 
-    /**
-     * Cache all the most recent ScanResult on each segment.
-     */
-    private final List<ScanResult> segmentScanResults;
-
-    /**
-     * The current state of the scan on each segment.
-     * Used as the monitor for synchronization.
-     */
-    private final List<SegmentScanState> segmentScanStates;
+    private final ExecutorService executorService;
 
-    private ExecutorService executorService;
+    private final boolean isExecutorServiceOwned;
 
     private final AmazonDynamoDB dynamo;
 
+    /** Whether the first page of every segment has been requested. */
+    private boolean started;
+
+    /** The number of segments whose next page is being scanned or waiting in completedPages. */
+    private int segmentsInFlight;
+
+    /** The failure of the first segment scan to fail, rethrown on every later call. */
+    private AmazonClientException failure;
+
     @Deprecated
     public ParallelScanTask(DynamoDBMapper mapper, AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests) {
         this(dynamo, parallelScanRequests);
     }
 
     ParallelScanTask(AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests) {
+        this(dynamo, parallelScanRequests, null);
+    }
+
+    /**
+     * @param executorService
+     *            the executor service to scan the segments on, or null to
+     *            use a thread pool owned by this task, which is shut down
+     *            once the scan finishes
+     */
+    ParallelScanTask(AmazonDynamoDB dynamo, List<ScanRequest> parallelScanRequests,
+            ExecutorService executorService) {
         this.dynamo = dynamo;
         this.parallelScanRequests = parallelScanRequests;
         this.totalSegments = parallelScanRequests.size();
-        executorService = Executors.newCachedThreadPool();
-
-        // Create synchronized views of the list to guarantee any changes are visible across all threads.
-        segmentScanFutureTasks = Collections.synchronizedList(new ArrayList<Future<ScanResult>>(totalSegments));
-        segmentScanResults = Collections.synchronizedList(new ArrayList<ScanResult>(totalSegments));
-        segmentScanStates = Collections.synchronizedList(new ArrayList<SegmentScanState>(totalSegments));
-
-        initSegmentScanStates();
+        this.isExecutorServiceOwned = executorService == null;
+        this.executorService = isExecutorServiceOwned
+                ? Executors.newCachedThreadPool()
+                : executorService;
     }
 
     String getTableName() {
         return parallelScanRequests.get(0).getTableName();
     }
 
-    public boolean isAllSegmentScanFinished() {
-        synchronized(segmentScanStates) {
-            for (int segment = 0; segment < totalSegments; segment++) {
-                if (segmentScanStates.get(segment) != SegmentScanState.SegmentScanCompleted)
-                    return false;
-            }
-            // Shut down if all data have been scanned and loaded.
-            executorService.shutdown();
-            return true;
-        }
+    public synchronized boolean isAllSegmentScanFinished() {
+        return started && segmentsInFlight == 0 && failure == null;
     }
 
-    public List<ScanResult> getNextBatchOfScanResults() throws AmazonClientException {
-        /**
-         * Kick-off all the parallel scan tasks.
-         */
-        startScanNextPages();
-        /**
-         * Wait till all the tasks have finished.
-         */
-        synchronized(segmentScanStates) {
-            while (segmentScanStates.contains(SegmentScanState.Waiting)
-                    || segmentScanStates.contains(SegmentScanState.Scanning)) {
-                try {
-                    segmentScanStates.wait();
-                } catch (InterruptedException ie) {
-                    throw new AmazonClientException("Parallel scan interrupted by other thread.", ie);
-                }
+    /**
+     * Returns the pages of results that the segment scans have returned
+     * since the last call, waiting for at least one if none have. Requests
+     * the next page of each of those segments before returning, so the scan
+     * continues while the caller processes the results. Returns an empty
+     * list once all the segments have been scanned.
+     */
+    public synchronized List<ScanResult> getNextBatchOfScanResults() throws AmazonClientException {
+        if (failure != null) {
+            throw failure;
+        }
+        if (!started) {
+            started = true;
+            for (int segment = 0; segment < totalSegments; segment++) {
+                startScanNextPage(segment, null);
             }
-            /**
-             *  Keep the lock on segmentScanStates until all the cached results are marshaled and returned.
-             */
-            return marshalParallelScanResults();
         }
 
-    }
-
-    private void startScanNextPages() {
-        for (int segment = 0; segment < totalSegments; segment++) {
-            final int currentSegment = segment;
-            final SegmentScanState currentSegmentState = segmentScanStates.get(currentSegment);
-            /**
-             * Assert: Should never see any task in state of "Scanning" when starting a new batch.
-             */
-            if (currentSegmentState == SegmentScanState.Scanning){
-                throw new AmazonClientException("Should never see a 'Scanning' state when starting parallel scans.");
+        List<ScanResult> scanResults = new LinkedList<ScanResult>();
+        if (segmentsInFlight == 0) {
+            return scanResults;
+        }
+        SegmentScanResult page = takeCompletedPage();
+        do {
+            segmentsInFlight--;
+            if (page.exception != null) {
+                failure = toClientException(page.segment, page.exception);
+                shutdownOwnedExecutorService();
+                throw failure;
             }
-            /**
-             * Skip any failed or completed segment, and clear the corresponding cached result.
-             */
-            else if (currentSegmentState == SegmentScanState.Failed
-                    || currentSegmentState == SegmentScanState.SegmentScanCompleted) {
-                segmentScanResults.set(currentSegment, null);
-                continue;
-            }
-            /**
-             * Otherwise, submit a new future task and save it in segmentScanFutureTasks.
-             */
-            else {
-                // Update the state to "Scanning" and notify any waiting thread.
-                synchronized(segmentScanStates) {
-                    segmentScanStates.set(currentSegment, SegmentScanState.Scanning);
-                    segmentScanStates.notifyAll();
-                }
-                Future<ScanResult> futureTask = executorService.submit(new Callable<ScanResult>() {
-                    @Override
-                    public ScanResult call() throws Exception {
-                        try {
-                            if (currentSegmentState == SegmentScanState.HasNextPage) {
-                                return scanNextPageOfSegment(currentSegment, true);
-                            }
-                            else if (currentSegmentState == SegmentScanState.Waiting) {
-                                return scanNextPageOfSegment(currentSegment, false);
-                            }
-                            else {
-                                throw new AmazonClientException("Should not start a new future task");
-                            }
-                        } catch (Exception e) {
-                            synchronized(segmentScanStates) {
-                                segmentScanStates.set(currentSegment, SegmentScanState.Failed);
-                                segmentScanStates.notifyAll();
-                            }
-                            throw e;
-                        }
-                    }
-                });
-                // Cache the future task (for getting the Exceptions in the working thread).
-                segmentScanFutureTasks.set(currentSegment, futureTask);
+            scanResults.add(page.result);
+            Map<String, AttributeValue> lastEvaluatedKey = page.result.getLastEvaluatedKey();
+            if (lastEvaluatedKey != null) {
+                startScanNextPage(page.segment, lastEvaluatedKey);
             }
+        } while ((page = completedPages.poll()) != null);
+
+        if (segmentsInFlight == 0) {
+            // Shut down if all data have been scanned.
+            shutdownOwnedExecutorService();
         }
+        return scanResults;
     }
 
-    private List<ScanResult> marshalParallelScanResults() {
-        List<ScanResult> scanResults = new LinkedList<ScanResult>();
-        for (int segment = 0; segment < totalSegments; segment++) {
-            SegmentScanState currentSegmentState = segmentScanStates.get(segment);
-            /**
-             * Rethrow the exception from any failed segment scan.
-             */
-            if (currentSegmentState == SegmentScanState.Failed) {
-                try {
-                    segmentScanFutureTasks.get(segment).get();
-                    throw new AmazonClientException("No Exception found in the failed scan task.");
-                } catch (ExecutionException ee) {
-                    if ( ee.getCause() instanceof AmazonClientException) {
-                        throw (AmazonClientException) (ee.getCause());
-                    } else {
-                        throw new AmazonClientException("Internal error during the scan on segment #" + segment + ".",
-                                ee.getCause());
+    private void startScanNextPage(final int segment, Map<String, AttributeValue> exclusiveStartKey) {
+        final ScanRequest segmentScanRequest = parallelScanRequests.get(segment);
+        segmentScanRequest.setExclusiveStartKey(exclusiveStartKey);
+        try {
+            executorService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        ScanResult scanResult = dynamo.scan(DynamoDBMapper.applyUserAgent(segmentScanRequest));
+                        completedPages.add(new SegmentScanResult(segment, scanResult, null));
+                    } catch (Exception e) {
+                        completedPages.add(new SegmentScanResult(segment, null, e));
                     }
-                } catch (Exception e) {
-                    throw new AmazonClientException("Error during the scan on segment #" + segment + ".", e);
                 }
-            }
-            /**
-             * Get the ScanResult from cache if the segment scan has finished.
-             */
-            else if (currentSegmentState == SegmentScanState.HasNextPage
-                    || currentSegmentState == SegmentScanState.SegmentScanCompleted) {
-                ScanResult scanResult = segmentScanResults.get(segment);
-                scanResults.add(scanResult);
-            }
-            else if (currentSegmentState == SegmentScanState.Waiting
-                    || currentSegmentState == SegmentScanState.Scanning){
-                throw new AmazonClientException("Should never see a 'Scanning' or 'Waiting' state when marshalling parallel scan results.");
-            }
+            });
+        } catch (RejectedExecutionException ree) {
+            // Most likely the executor service has been shut down
+            failure = new AmazonClientException("Unable to start the scan on segment #"
+                    + segment + ".", ree);
+            shutdownOwnedExecutorService();
+            throw failure;
         }
-        return scanResults;
+        // Only counted once submitted, so a rejected page isn't waited for
+        segmentsInFlight++;
     }
 
-    private ScanResult scanNextPageOfSegment(int currentSegment, boolean checkLastEvaluatedKey) {
-        ScanRequest segmentScanRequest = parallelScanRequests.get(currentSegment);
-        if (checkLastEvaluatedKey) {
-            ScanResult lastScanResult = segmentScanResults.get(currentSegment);
-            segmentScanRequest.setExclusiveStartKey(lastScanResult.getLastEvaluatedKey());
-        } else {
-            segmentScanRequest.setExclusiveStartKey(null);
+    private SegmentScanResult takeCompletedPage() {
+        try {
+            return completedPages.take();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException("Parallel scan interrupted by other thread.", ie);
         }
-        ScanResult scanResult = dynamo.scan(DynamoDBMapper.applyUserAgent(segmentScanRequest));
-
-        /**
-         * Cache the scan result in segmentScanResults.
-         * We should never try to get these scan results by calling get() on the cached future tasks.
-         */
-        segmentScanResults.set(currentSegment, scanResult);
+    }
 
-        /**
-         * Update the state and notify any waiting thread.
-         */
-        synchronized(segmentScanStates) {
-            if (null == scanResult.getLastEvaluatedKey())
-                segmentScanStates.set(currentSegment, SegmentScanState.SegmentScanCompleted);
-            else
-                segmentScanStates.set(currentSegment, SegmentScanState.HasNextPage);
-            segmentScanStates.notifyAll();
+    private static AmazonClientException toClientException(int segment, Exception e) {
+        if (e instanceof AmazonClientException) {
+            return (AmazonClientException) e;
         }
-        return scanResult;
+        return new AmazonClientException("Internal error during the scan on segment #" + segment + ".", e);
     }
 
-    private void initSegmentScanStates() {
-        for (int segment = 0; segment < totalSegments; segment++) {
-            segmentScanFutureTasks.add(null);
-            segmentScanResults.add(null);
-            segmentScanStates.add(SegmentScanState.Waiting);
+    private void shutdownOwnedExecutorService() {
+        if (isExecutorServiceOwned) {
+            executorService.shutdown();
         }
     }
 
     /**
-     * Enumeration of the possible states of the scan on a segment.
+     * The outcome of scanning one page of a segment.
      */
-    private static enum SegmentScanState {
-        /** The scan on the segment is waiting for resources to execute and has not started yet. */
-        Waiting,
-
-        /** The scan is in process, and hasn't finished yet. */
-        Scanning,
-
-        /** The scan has already failed. */
-        Failed,
-
-        /** The scan on the current page has finished, but there are more pages in the segment to be scanned. */
-        HasNextPage,
-
-        /** The scan on the whole segment has completed. */
-        SegmentScanCompleted,
+    private static final class SegmentScanResult {
+        private final int segment;
+        private final ScanResult result;
+        private final Exception exception;
+
+        SegmentScanResult(int segment, ScanResult result, Exception exception) {
+            this.segment = segment;
+            this.result = result;
+            this.exception = exception;
+        }
     }
 }
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2011-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.dynamodbv2.datamodeling;
+
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * Adaptive backoff shared by the batch requests of a single batch operation.
+ * Each table has its own delay, which doubles whenever a request is throttled
+ * or makes no progress on the table's items, stays put while only some of
+ * them are processed, and halves once all of them are. Requests wait for the
+ * largest delay of the tables they touch, so a throttled table slows down
+ * only the batches that write to or read from it.
+ */
+class PerTableBackoff {
+
+    /** The delay after the first throttled request for a table. */
+    static final long INITIAL_DELAY_IN_MILLISECONDS = 100;
+
+    private final long maxDelayInMillis;
+    private final ConcurrentMap<String, AtomicLong> delays =
+            new ConcurrentHashMap<String, AtomicLong>();
+    private final Random random = new Random();
+
+    PerTableBackoff(long maxDelayInMillis) {
+        this.maxDelayInMillis = maxDelayInMillis;
+    }
+
+    /**
+     * Waits for the current delay of the given tables, if any, with jitter.
+     */
+    void pause(Collection<String> tableNames) {
+        long delay = 0;
+        for (String tableName : tableNames) {
+            delay = Math.max(delay, delayOf(tableName).get());
+        }
+        if (delay == 0) {
+            return;
+        }
+        long jitter;
+        synchronized (random) {
+            jitter = (long) (random.nextDouble() * (delay / 2));
+        }
+        try {
+            Thread.sleep(delay / 2 + jitter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AmazonClientException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Increases the delay of the given tables.
+     */
+    void onThrottled(Collection<String> tableNames) {
+        for (String tableName : tableNames) {
+            AtomicLong delay = delayOf(tableName);
+            long current, next;
+            do {
+                current = delay.get();
+                next = current == 0
+                     ? INITIAL_DELAY_IN_MILLISECONDS
+                     : Math.min(current * 2, maxDelayInMillis);
+            } while (!delay.compareAndSet(current, next));
+        }
+    }
+
+    /**
+     * Starts backing off the given tables if they aren't already.
+     */
+    void onPartiallyProcessed(Collection<String> tableNames) {
+        for (String tableName : tableNames) {
+            delayOf(tableName).compareAndSet(0, INITIAL_DELAY_IN_MILLISECONDS);
+        }
+    }
+
+    /**
+     * Decreases the delay of the given tables.
+     */
+    void onProcessed(Collection<String> tableNames) {
+        for (String tableName : tableNames) {
+            AtomicLong delay = delays.get(tableName);
+            if (delay == null) continue;
+            long current, next;
+            do {
+                current = delay.get();
+                next = current / 2 < INITIAL_DELAY_IN_MILLISECONDS ? 0 : current / 2;
+            } while (current != 0 && !delay.compareAndSet(current, next));
+        }
+    }
+
+    private AtomicLong delayOf(String tableName) {
+        AtomicLong delay = delays.get(tableName);
+        if (delay == null) {
+            AtomicLong newDelay = new AtomicLong();
+            delay = delays.putIfAbsent(tableName, newDelay);
+            if (delay == null) delay = newDelay;
+        }
+        return delay;
+    }
+}
@@ -16,16 +16,16 @@ package com.amazonaws.services.dynamodbv2.datamodeling;
 
 import java.lang.reflect.Method;
 import java.math.BigInteger;
-import java.util.HashMap;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
  * Helper class for incrementing version attributes.
  */
 class VersionIncrementor {
 
-    private final Map<Method, Incrementor> cache =
-            new HashMap<Method, Incrementor>();
+    private final ConcurrentMap<Method, Incrementor> cache =
+            new ConcurrentHashMap<Method, Incrementor>();
 
     /**
      * Increments a version attribute.
@@ -40,38 +40,36 @@ class VersionIncrementor {
     }
 
     private Incrementor getIncrementor(Method getter) {
-        synchronized (cache) {
-            Incrementor result = cache.get(getter);
-            if (result != null) {
-                return result;
-            }
+        Incrementor result = cache.get(getter);
+        if (result != null) {
+            return result;
+        }
 
-            Class<?> returnType = getter.getReturnType();
-            if (matches(returnType, BigInteger.class)) {
-                result = BIG_INTEGER;
+        Class<?> returnType = getter.getReturnType();
+        if (matches(returnType, BigInteger.class)) {
+            result = BIG_INTEGER;
 
-            } else if (matches(returnType, Long.class, long.class)) {
-                result = LONG;
+        } else if (matches(returnType, Long.class, long.class)) {
+            result = LONG;
 
-            } else if (matches(returnType, Integer.class, int.class)) {
-                result = INTEGER;
+        } else if (matches(returnType, Integer.class, int.class)) {
+            result = INTEGER;
 
-            } else if (matches(returnType, Short.class, short.class)) {
-                result = SHORT;
+        } else if (matches(returnType, Short.class, short.class)) {
+            result = SHORT;
 
-            } else if (matches(returnType, Byte.class, byte.class)) {
-                result = BYTE;
+        } else if (matches(returnType, Byte.class, byte.class)) {
+            result = BYTE;
 
-            } else {
-                throw new DynamoDBMappingException(
-                        "Unsupported parameter type for "
-                        + DynamoDBVersionAttribute.class + ": " + returnType
-                        + ". Must be a whole-number type.");
-            }
-
-            cache.put(getter, result);
-            return result;
+        } else {
+            throw new DynamoDBMappingException(
+                    "Unsupported parameter type for "
+                    + DynamoDBVersionAttribute.class + ": " + returnType
+                    + ". Must be a whole-number type.");
         }
+
+        cache.put(getter, result);
+        return result;
     }
 
     private static boolean matches(Class<?> needle, Class<?>... haystack) {
@@ -40,8 +40,12 @@ public class GlacierRequestHandler extends AbstractRequestHandler {
 
         request.addHeader("x-amz-glacier-version", "2012-06-01");
 
-        //  "x-amz-content-sha256" header is required for sig v4 for some streaming operations
-        request.addHeader("x-amz-content-sha256", "required");
+        //  "x-amz-content-sha256" header is required for sig v4 for some streaming operations,
+        //  unless the hash of an uploaded part was already computed by ArchiveTransferManager
+        if (!(request.getOriginalRequest() instanceof UploadMultipartPartRequest
+                && isSha256Hex(request.getHeaders().get("x-amz-content-sha256")))) {
+            request.addHeader("x-amz-content-sha256", "required");
+        }
 
         if (request.getOriginalRequest() instanceof UploadArchiveRequest) {
            String contentLength = request.getHeaders().remove("x-amz-content-length");
@@ -75,6 +79,10 @@ public class GlacierRequestHandler extends AbstractRequestHandler {
         }
     }
 
+    private static boolean isSha256Hex(String value) {
+        return value != null && value.matches("[0-9a-fA-F]{64}");
+    }
+
 	private boolean startsWithUserId(Request<?> request) {
 		for (String parameter : PARAMETERS)
 			if (request.getResourcePath().startsWith("/" + parameter)) {
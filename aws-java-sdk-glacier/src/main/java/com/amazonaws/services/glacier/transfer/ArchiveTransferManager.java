@@ -27,9 +27,25 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -39,9 +55,12 @@ import com.amazonaws.AmazonServiceException;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
+import com.amazonaws.event.DeliveryMode;
+import com.amazonaws.event.ProgressEvent;
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListener;
 import com.amazonaws.internal.ResettableInputStream;
+import com.amazonaws.internal.SdkDigestInputStream;
 import com.amazonaws.internal.StaticCredentialsProvider;
 import com.amazonaws.services.glacier.AmazonGlacier;
 import com.amazonaws.services.glacier.AmazonGlacierClient;
@@ -59,6 +78,9 @@ import com.amazonaws.services.glacier.model.InitiateJobResult;
 import com.amazonaws.services.glacier.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.glacier.model.InitiateMultipartUploadResult;
 import com.amazonaws.services.glacier.model.JobParameters;
+import com.amazonaws.services.glacier.model.ListPartsRequest;
+import com.amazonaws.services.glacier.model.ListPartsResult;
+import com.amazonaws.services.glacier.model.PartListElement;
 import com.amazonaws.services.glacier.model.UploadArchiveRequest;
 import com.amazonaws.services.glacier.model.UploadArchiveResult;
 import com.amazonaws.services.glacier.model.UploadMultipartPartRequest;
@@ -87,6 +109,18 @@ public class ArchiveTransferManager {
     /** Default retry time when downloading in multiple chunks using range retrieval */
     private static final int DEFAULT_MAX_RETRIES = 3;
 
+    /** The default number of parts of a multipart upload uploaded concurrently. */
+    private static final int DEFAULT_UPLOAD_CONCURRENCY = 4;
+
+    /** The default number of chunks of a job output downloaded concurrently. */
+    private static final int DEFAULT_DOWNLOAD_CONCURRENCY = 4;
+
+    /** The size, in bytes, of the buffer used to hash the parts of an upload. */
+    private static final int HASHING_BUFFER_SIZE = 1024 * 16;
+
+    /** The header holding the SHA-256 hash of the payload used to sign requests. */
+    private static final String CONTENT_SHA256_HEADER = "x-amz-content-sha256";
+
     /** Glacier client used for making all requests. */
     private final AmazonGlacier glacier;
 
@@ -98,6 +132,15 @@ public class ArchiveTransferManager {
 
     private final AmazonSNSClient sns;
 
+    /** The executor for the parts of transfers, or null to use a new thread pool per transfer. */
+    private ExecutorService executorService;
+
+    /** The maximum number of parts of a multipart upload uploaded concurrently. */
+    private int uploadConcurrency = DEFAULT_UPLOAD_CONCURRENCY;
+
+    /** The maximum number of chunks of a job output downloaded concurrently. */
+    private int downloadConcurrency = DEFAULT_DOWNLOAD_CONCURRENCY;
+
     private static final Log log = LogFactory.getLog(ArchiveTransferManager.class);
 
     /**
@@ -277,6 +320,15 @@ public class ArchiveTransferManager {
      * encountered while streaming the data to Amazon Glacier. You can also add
      * an optional progress listener for receiving updates about the upload
      * status.
+     * <p>
+     * The parts of a multipart upload are uploaded concurrently (see
+     * {@link #setUploadConcurrency(int)}). If the progress listener is a
+     * {@link GlacierProgressListener}, it receives the state needed to resume
+     * the upload with
+     * {@link #resumeUpload(PersistableArchiveUpload, ProgressListener)}, and
+     * the upload isn't aborted if it fails. The progress events of the parts
+     * are delivered to the progress listener from several threads, but one
+     * at a time.
      *
      * @param accountId
      *            The ID for the account which owns the Glacier vault being
@@ -317,6 +369,129 @@ public class ArchiveTransferManager {
         }
     }
 
+    /**
+     * Resumes a multipart upload started by this class which failed, using the
+     * state passed to a {@link GlacierProgressListener} when the upload was
+     * initiated. The parts already uploaded are listed and skipped, and the
+     * remaining parts are uploaded. If the upload fails again, it isn't
+     * aborted, so it can be resumed again; or aborted with
+     * {@link AmazonGlacier#abortMultipartUpload(AbortMultipartUploadRequest)}.
+     * The upload can't be resumed if the length or the last modified time of
+     * the file changed since the upload was initiated.
+     *
+     * @param persistableUpload
+     *            The state of the upload to resume.
+     * @param progressListener
+     *            The optional progress listener for receiving updates about
+     *            the upload status.
+     *
+     * @return The result of the upload, including the archive ID needed to
+     *         access the upload later.
+     *
+     * @throws AmazonServiceException
+     *             If any problems were encountered while communicating with
+     *             AWS.
+     * @throws AmazonClientException
+     *             If any problems were encountered inside the AWS SDK for Java
+     *             client code in making requests or processing responses from
+     *             AWS.
+     */
+    public UploadResult resumeUpload(PersistableArchiveUpload persistableUpload,
+            ProgressListener progressListener) throws AmazonServiceException,
+            AmazonClientException {
+        File file = new File(persistableUpload.getFile());
+        publishProgress(progressListener, ProgressEventType.TRANSFER_PREPARING_EVENT);
+        Map<Long, byte[]> uploadedParts;
+        try {
+            if (!file.isFile()) {
+                throw new AmazonClientException("Unable to find file '"
+                        + file.getAbsolutePath() + "'");
+            }
+            if (file.length() != persistableUpload.getFileLength()
+                    || file.lastModified() != persistableUpload.getLastModified()) {
+                throw new AmazonClientException("Unable to resume the upload: file '"
+                        + file.getAbsolutePath()
+                        + "' was modified since the upload was initiated");
+            }
+            uploadedParts = listUploadedParts(persistableUpload);
+        } catch (Throwable t) {
+            publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
+            throw failure(t);
+        }
+        return uploadParts(persistableUpload, file, uploadedParts, false,
+                progressListener);
+    }
+
+    /**
+     * Sets the executor on which the parts of multipart uploads are uploaded,
+     * and the chunks of job outputs are downloaded. The executor isn't shut
+     * down by this class. When no executor is set, a new thread pool of
+     * {@link #getUploadConcurrency()} or {@link #getDownloadConcurrency()}
+     * threads is used for each transfer.
+     *
+     * @param executorService
+     *            The executor for the parts of transfers, or null.
+     */
+    public void setExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+    }
+
+    /**
+     * Returns the executor on which the parts of multipart uploads are
+     * uploaded and the chunks of job outputs are downloaded, or null if a new
+     * thread pool is used for each transfer.
+     */
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    /**
+     * Sets the maximum number of parts of a multipart upload that are
+     * uploaded concurrently. Each part being uploaded is read from its file
+     * as it is sent, so this doesn't affect the memory used. Defaults to 4.
+     *
+     * @param uploadConcurrency
+     *            The maximum number of parts uploaded concurrently.
+     */
+    public void setUploadConcurrency(int uploadConcurrency) {
+        if (uploadConcurrency <= 0) {
+            throw new IllegalArgumentException("The upload concurrency must be positive");
+        }
+        this.uploadConcurrency = uploadConcurrency;
+    }
+
+    /**
+     * Returns the maximum number of parts of a multipart upload that are
+     * uploaded concurrently.
+     */
+    public int getUploadConcurrency() {
+        return uploadConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of chunks of a job output that are downloaded
+     * concurrently, each using its own connection. Each chunk being
+     * downloaded is written to its file as it is received, so this doesn't
+     * affect the memory used. Defaults to 4.
+     *
+     * @param downloadConcurrency
+     *            The maximum number of chunks downloaded concurrently.
+     */
+    public void setDownloadConcurrency(int downloadConcurrency) {
+        if (downloadConcurrency <= 0) {
+            throw new IllegalArgumentException("The download concurrency must be positive");
+        }
+        this.downloadConcurrency = downloadConcurrency;
+    }
+
+    /**
+     * Returns the maximum number of chunks of a job output that are
+     * downloaded concurrently.
+     */
+    public int getDownloadConcurrency() {
+        return downloadConcurrency;
+    }
+
     /**
      * Downloads an archive from Amazon Glacier in the specified vault for the
      * current user's account, and saves it to the specified file. Amazon
@@ -460,8 +635,9 @@ public class ArchiveTransferManager {
      * Downloads the job output for the specified job (which must be ready to
      * download already, and must be a complete archive retrieval, not a partial
      * range retrieval), into the specified file. This method will request
-     * individual chunks of the data, one at a time, in order to handle any
-     * transient errors along the way.
+     * individual chunks of the data, several at a time (see
+     * {@link #setDownloadConcurrency(int)}), in order to handle any transient
+     * errors along the way.
      *
      * @param accountId
      *            The account ID containing the job output to download (or null
@@ -482,9 +658,12 @@ public class ArchiveTransferManager {
      * Downloads the job output for the specified job (which must be ready to
      * download already, and must be a complete archive retrieval, not a partial
      * range retrieval), into the specified file. This method will request
-     * individual chunks of the data, one at a time, in order to handle any
-     * transient errors along the way. You can also add an optional progress
-     * listener for receiving updates about the download status.
+     * individual chunks of the data, several at a time (see
+     * {@link #setDownloadConcurrency(int)}), in order to handle any transient
+     * errors along the way. You can also add an optional progress
+     * listener for receiving updates about the download status. The progress
+     * events of the chunks are delivered to the listener from several
+     * threads, but one at a time.
      *
      * @param accountId
      *            The account ID containing the job output to download (or null
@@ -502,10 +681,9 @@ public class ArchiveTransferManager {
      */
     public void downloadJobOutput(String accountId, String vaultName,
             String jobId, File file, ProgressListener progressListener) {
+        progressListener = serialized(progressListener);
         long archiveSize = 0;
         long chunkSize = DEFAULT_DOWNLOAD_CHUNK_SIZE;
-        long currentPosition = 0;
-        long endPosition = 0;
 
         RandomAccessFile output = null;
         String customizedChunkSize = null;
@@ -533,22 +711,23 @@ public class ArchiveTransferManager {
 
         try {
             publishProgress(progressListener, ProgressEventType.TRANSFER_STARTED_EVENT);
-            while (currentPosition < archiveSize) {
-                if (currentPosition + chunkSize > archiveSize) {
-                    endPosition = archiveSize - 1;
-                } else {
-                    endPosition = currentPosition + chunkSize - 1;
-                }
-    
-                // Download the chunk
-                try {
-                    downloadOneChunk(accountId, vaultName, jobId, output,
-                            currentPosition, endPosition, progressListener);
-                } catch (Throwable t) {
-                    publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
-                    throw failure(t);
+            List<DownloadChunkCallable> chunks = new ArrayList<DownloadChunkCallable>();
+            for (long currentPosition = 0; currentPosition < archiveSize; currentPosition += chunkSize) {
+                long endPosition = Math.min(currentPosition + chunkSize, archiveSize) - 1;
+                chunks.add(new DownloadChunkCallable(accountId, vaultName,
+                        jobId, output.getChannel(), currentPosition,
+                        endPosition, progressListener));
+            }
+
+            // Download the chunks, each writing at its own position
+            try {
+                executeConcurrently(chunks, downloadConcurrency);
+            } catch (Throwable t) {
+                if (t instanceof InterruptedException) {
+                    Thread.currentThread().interrupt();
                 }
-                currentPosition += chunkSize;
+                publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
+                throw failure(t);
             }
             publishProgress(progressListener, ProgressEventType.TRANSFER_COMPLETED_EVENT);
         } finally {
@@ -568,11 +747,12 @@ public class ArchiveTransferManager {
     }
 
     /**
-     * Download one chunk from Amazon Glacier. It will do the retry if any
-     * errors are encountered while streaming the data from Amazon Glacier.
+     * Download one chunk from Amazon Glacier into its range of the output
+     * file. It will do the retry if any errors are encountered while
+     * streaming the data from Amazon Glacier.
      */
     private void downloadOneChunk(String accountId, String vaultName,
-            String jobId, RandomAccessFile output, long currentPosition,
+            String jobId, FileChannel output, long currentPosition,
             long endPosition, ProgressListener progressListener) {
         final long chunkSize = endPosition - currentPosition + 1;
         TreeHashInputStream input = null;
@@ -589,7 +769,7 @@ public class ArchiveTransferManager {
                 GetJobOutputResult jobOutputResult = glacier.getJobOutput(req);
                 try {
                     input = new TreeHashInputStream(new BufferedInputStream(jobOutputResult.getBody()));
-                    appendToFile(output, input);
+                    writeToFile(output, currentPosition, input);
                 } catch (NoSuchAlgorithmException e) {
                     throw failure(e, "Unable to compute hash for data integrity");
                 } finally {
@@ -614,7 +794,8 @@ public class ArchiveTransferManager {
                 return;
                 // We will retry IO exception
             } catch (IOException ioe) {
-                if (retries < DEFAULT_MAX_RETRIES) {
+                // Stop retrying once the download has been cancelled
+                if (retries < DEFAULT_MAX_RETRIES && !Thread.currentThread().isInterrupted()) {
                     retries++;
                     if (log.isDebugEnabled()) {
                         log.debug(retries
@@ -624,11 +805,6 @@ public class ArchiveTransferManager {
                                 + currentPosition + " endPosition="
                                 + endPosition);
                     }
-                    try {
-                        output.seek(currentPosition);
-                    } catch (IOException e) {
-                        throw new AmazonClientException("Unable to download the archive: " + ioe.getMessage(), e);
-                    }
                 } else {
                     throw new AmazonClientException("Unable to download the archive: " + ioe.getMessage(), ioe);
                 }
@@ -637,19 +813,49 @@ public class ArchiveTransferManager {
     }
 
     /**
-     * Writes the data from the given input stream to the given output stream.
+     * Writes the data from the given input stream to the given file channel,
+     * starting at the given position.
      */
-    private void appendToFile(RandomAccessFile output, InputStream input)
+    private void writeToFile(FileChannel output, long position, InputStream input)
             throws IOException {
         byte[] buffer = new byte[1024 * 1024];
         int bytesRead = 0;
-        do {
-            bytesRead = input.read(buffer);
-            if (bytesRead < 0)
-                break;
-            output.write(buffer, 0, bytesRead);
-        } while (bytesRead > 0);
-        return;
+        while ((bytesRead = input.read(buffer)) != -1) {
+            ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, bytesRead);
+            while (bytes.hasRemaining()) {
+                position += output.write(bytes, position);
+            }
+        }
+    }
+
+    /** Downloads one chunk of a job output on the executor. */
+    private final class DownloadChunkCallable implements Callable<Void> {
+        private final String accountId;
+        private final String vaultName;
+        private final String jobId;
+        private final FileChannel output;
+        private final long currentPosition;
+        private final long endPosition;
+        private final ProgressListener progressListener;
+
+        DownloadChunkCallable(String accountId, String vaultName,
+                String jobId, FileChannel output, long currentPosition,
+                long endPosition, ProgressListener progressListener) {
+            this.accountId = accountId;
+            this.vaultName = vaultName;
+            this.jobId = jobId;
+            this.output = output;
+            this.currentPosition = currentPosition;
+            this.endPosition = endPosition;
+            this.progressListener = progressListener;
+        }
+
+        @Override
+        public Void call() {
+            downloadOneChunk(accountId, vaultName, jobId, output,
+                    currentPosition, endPosition, progressListener);
+            return null;
+        }
     }
 
     /**
@@ -677,7 +883,10 @@ public class ArchiveTransferManager {
     private UploadResult uploadInMultipleParts(final String accountId,
             final String vaultName, final String archiveDescription,
             final File file, ProgressListener progressListener) {
-        final long partSize = calculatePartSize(file.length());
+        // Captured before the upload, to detect changes on resume
+        final long lastModified = file.lastModified();
+        final long fileLength = file.length();
+        final long partSize = calculatePartSize(fileLength);
         String partSizeString = Long.toString(partSize);
 
         publishProgress(progressListener, ProgressEventType.TRANSFER_PREPARING_EVENT);
@@ -693,61 +902,87 @@ public class ArchiveTransferManager {
             publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
             throw failure(t);
         }
+
+        PersistableArchiveUpload persistableUpload = new PersistableArchiveUpload(
+                accountId, vaultName, archiveDescription,
+                file.getAbsolutePath(), fileLength, lastModified, uploadId,
+                partSize);
+        // A failed upload is only kept if it can be resumed
+        boolean isResumable = progressListener instanceof GlacierProgressListener;
+        if (isResumable) {
+            try {
+                ((GlacierProgressListener) progressListener).onPersistableUpload(persistableUpload);
+            } catch (RuntimeException e) {
+                log.warn("Exception thrown by the progress listener", e);
+            }
+        }
+        return uploadParts(persistableUpload, file,
+                Collections.<Long, byte[]>emptyMap(), !isResumable,
+                progressListener);
+    }
+
+    /**
+     * Returns the tree hashes of the parts of the given multipart upload that
+     * were already uploaded, by the offset of the part in the archive.
+     */
+    private Map<Long, byte[]> listUploadedParts(PersistableArchiveUpload persistableUpload) {
+        Map<Long, byte[]> uploadedParts = new HashMap<Long, byte[]>();
+        String marker = null;
+        do {
+            ListPartsResult listPartsResult = glacier.listParts(new ListPartsRequest(
+                    persistableUpload.getAccountId(),
+                    persistableUpload.getVaultName(),
+                    persistableUpload.getUploadId())
+                .withMarker(marker));
+            for (PartListElement part : listPartsResult.getParts()) {
+                String range = part.getRangeInBytes();
+                long position = Long.parseLong(range.substring(0, range.indexOf('-')));
+                uploadedParts.put(position, BinaryUtils.fromHex(part.getSHA256TreeHash()));
+            }
+            marker = listPartsResult.getMarker();
+        } while (marker != null);
+        return uploadedParts;
+    }
+
+    /**
+     * Uploads the parts of the given multipart upload that aren't already
+     * uploaded, at most {@link #getUploadConcurrency()} parts at a time, and
+     * completes the upload.
+     */
+    private UploadResult uploadParts(PersistableArchiveUpload persistableUpload,
+            File file, Map<Long, byte[]> uploadedParts, boolean abortOnFailure,
+            ProgressListener progressListener) {
+        final String accountId = persistableUpload.getAccountId();
+        final String vaultName = persistableUpload.getVaultName();
+        final String uploadId = persistableUpload.getUploadId();
+        final long partSize = persistableUpload.getPartSize();
+        final long fileLength = persistableUpload.getFileLength();
+        progressListener = serialized(progressListener);
+        final int numParts = (int) ((fileLength + partSize - 1) / partSize);
+
         publishProgress(progressListener, ProgressEventType.TRANSFER_STARTED_EVENT);
-        final String fileNotFoundMsg = "Unable to find file '"
-                + file.getAbsolutePath() + "'";
         try {
-            List<byte[]> binaryChecksums = new LinkedList<byte[]>();
-
-            long currentPosition = 0;
-            while (currentPosition < file.length()) {
-                long length = partSize;
-                if (currentPosition + partSize > file.length()) {
-                    length = file.length() - currentPosition;
+            byte[][] binaryChecksums = new byte[numParts][];
+            List<Integer> partsToUpload = new ArrayList<Integer>();
+            List<UploadPartCallable> uploads = new ArrayList<UploadPartCallable>();
+            for (int part = 0; part < numParts; part++) {
+                long position = part * partSize;
+                binaryChecksums[part] = uploadedParts.get(position);
+                if (binaryChecksums[part] == null) {
+                    long length = Math.min(partSize, fileLength - position);
+                    partsToUpload.add(part);
+                    uploads.add(new UploadPartCallable(accountId, vaultName,
+                            uploadId, file, position, length, progressListener));
                 }
+            }
+            List<byte[]> uploadedChecksums = executeConcurrently(uploads, uploadConcurrency);
+            for (int i = 0; i < partsToUpload.size(); i++) {
+                binaryChecksums[partsToUpload.get(i)] = uploadedChecksums.get(i);
+            }
 
-                Exception failedException = null;
-                boolean completed = false;
-                int tries = 0;
-                    while (!completed && tries < 5){
-                        tries++;
-                        InputSubstream inputSubStream = null;
-                        try {
-                            inputSubStream = new InputSubstream(
-                                    newResettableInputStream(file, fileNotFoundMsg)
-                                        .disableClose(), // requires explicit release
-                                    currentPosition, length, true);
-                            String checksum = TreeHashGenerator.calculateTreeHash(inputSubStream);
-                            byte[] binaryChecksum = BinaryUtils.fromHex(checksum);
-                            inputSubStream.reset();
-                            UploadMultipartPartRequest req = new UploadMultipartPartRequest()
-                                .withAccountId(accountId)
-                                .withChecksum(checksum)
-                                .withBody(inputSubStream)
-                                .withRange("bytes " + currentPosition + "-" + (currentPosition + length - 1) + "/*")
-                                .withUploadId(uploadId)
-                                .withVaultName(vaultName)
-                                .withGeneralProgressListener(progressListener)
-                                ;
-                            
-                            glacier.uploadMultipartPart(req);
-                            completed = true;
-                            binaryChecksums.add(binaryChecksum);
-                        } catch (Exception e){
-                            failedException = e;
-                        } finally {
-                            // We opened the file underneath; so need to release it
-                            release(inputSubStream, log);
-                        }
-                    } // end inner while
-                if (!completed && failedException!=null)
-                    throw failedException;
-                currentPosition += partSize;
-            } // end outer while
-
-            String checksum = TreeHashGenerator.calculateTreeHash(binaryChecksums);
-
-            String archiveSize = Long.toString(file.length());
+            String checksum = TreeHashGenerator.calculateTreeHash(Arrays.asList(binaryChecksums));
+
+            String archiveSize = Long.toString(fileLength);
             CompleteMultipartUploadResult completeMultipartUploadResult =
                 glacier.completeMultipartUpload(new CompleteMultipartUploadRequest()
                     .withAccountId(accountId)
@@ -760,12 +995,204 @@ public class ArchiveTransferManager {
             publishProgress(progressListener, ProgressEventType.TRANSFER_COMPLETED_EVENT);
             return new UploadResult(artifactId);
         } catch (Throwable t) {
+            if (t instanceof InterruptedException) {
+                Thread.currentThread().interrupt();
+            }
             publishProgress(progressListener, ProgressEventType.TRANSFER_FAILED_EVENT);
-            glacier.abortMultipartUpload(new AbortMultipartUploadRequest(accountId, vaultName, uploadId));
+            if (abortOnFailure) {
+                glacier.abortMultipartUpload(new AbortMultipartUploadRequest(accountId, vaultName, uploadId));
+            }
             throw failure(t, "Unable to finish the upload");
         }
     }
 
+    /**
+     * Uploads one part of a multipart upload, retrying up to five times, and
+     * returns its binary tree hash. The part is read once to compute both its
+     * tree hash and the payload hash used to sign the request, and once more
+     * as it is sent.
+     */
+    private byte[] uploadPart(String accountId, String vaultName,
+            String uploadId, File file, long position, long length,
+            ProgressListener progressListener) throws Exception {
+        final String fileNotFoundMsg = "Unable to find file '"
+                + file.getAbsolutePath() + "'";
+        Exception failedException = null;
+        int tries = 0;
+        while (tries < 5) {
+            tries++;
+            InputSubstream inputSubStream = null;
+            try {
+                inputSubStream = new InputSubstream(
+                        newResettableInputStream(file, fileNotFoundMsg)
+                            .disableClose(), // requires explicit release
+                        position, length, true);
+                MessageDigest payloadDigest = MessageDigest.getInstance("SHA-256");
+                TreeHashInputStream treeHashInputStream = new TreeHashInputStream(
+                        new SdkDigestInputStream(inputSubStream, payloadDigest));
+                byte[] buffer = new byte[HASHING_BUFFER_SIZE];
+                while (treeHashInputStream.read(buffer) != -1);
+                // closing is required to compute the tree hash
+                treeHashInputStream.close();
+                String checksum = treeHashInputStream.getTreeHash();
+                inputSubStream.reset();
+                UploadMultipartPartRequest req = new UploadMultipartPartRequest()
+                    .withAccountId(accountId)
+                    .withChecksum(checksum)
+                    .withBody(inputSubStream)
+                    .withRange("bytes " + position + "-" + (position + length - 1) + "/*")
+                    .withUploadId(uploadId)
+                    .withVaultName(vaultName)
+                    .withGeneralProgressListener(progressListener)
+                    ;
+                // Spares the signer another read of the part
+                req.putCustomRequestHeader(CONTENT_SHA256_HEADER,
+                        BinaryUtils.toHex(payloadDigest.digest()));
+
+                glacier.uploadMultipartPart(req);
+                return BinaryUtils.fromHex(checksum);
+            } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    throw e;
+                }
+                failedException = e;
+            } finally {
+                // We opened the file underneath; so need to release it
+                release(inputSubStream, log);
+            }
+        }
+        throw failedException;
+    }
+
+    /** Uploads one part of a multipart upload on the executor. */
+    private final class UploadPartCallable implements Callable<byte[]> {
+        private final String accountId;
+        private final String vaultName;
+        private final String uploadId;
+        private final File file;
+        private final long position;
+        private final long length;
+        private final ProgressListener progressListener;
+
+        UploadPartCallable(String accountId, String vaultName,
+                String uploadId, File file, long position, long length,
+                ProgressListener progressListener) {
+            this.accountId = accountId;
+            this.vaultName = vaultName;
+            this.uploadId = uploadId;
+            this.file = file;
+            this.position = position;
+            this.length = length;
+            this.progressListener = progressListener;
+        }
+
+        @Override
+        public byte[] call() throws Exception {
+            return uploadPart(accountId, vaultName, uploadId, file, position,
+                    length, progressListener);
+        }
+    }
+
+    /**
+     * Executes the given tasks, at most the given number at a time, and
+     * returns their results in order. On the first failure, the remaining
+     * tasks are cancelled and the cause of the failure is thrown.
+     */
+    private <T> List<T> executeConcurrently(List<? extends Callable<T>> tasks,
+            int concurrency) throws Throwable {
+        List<T> results = new ArrayList<T>(Collections.<T>nCopies(tasks.size(), null));
+        if (tasks.isEmpty()) {
+            return results;
+        }
+        ExecutorService executor = executorService == null
+                ? createDefaultExecutorService(Math.min(concurrency, tasks.size()))
+                : executorService;
+        CompletionService<T> completionService = new ExecutorCompletionService<T>(executor);
+        Map<Future<T>, Integer> tasksInFlight = new HashMap<Future<T>, Integer>();
+        int nextTask = 0;
+        try {
+            while (nextTask < tasks.size() || !tasksInFlight.isEmpty()) {
+                while (nextTask < tasks.size() && tasksInFlight.size() < concurrency) {
+                    tasksInFlight.put(completionService.submit(tasks.get(nextTask)), nextTask);
+                    nextTask++;
+                }
+                Future<T> future = completionService.take();
+                int index = tasksInFlight.remove(future);
+                try {
+                    results.set(index, future.get());
+                } catch (ExecutionException e) {
+                    throw e.getCause();
+                }
+            }
+            return results;
+        } finally {
+            // Stop the remaining tasks on failure
+            for (Future<T> future : tasksInFlight.keySet()) {
+                future.cancel(true);
+            }
+            if (executor != executorService) {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    /**
+     * Returns a listener that passes the events to the given listener one at
+     * a time, since the parts of a transfer report their progress from
+     * several threads.
+     */
+    private static ProgressListener serialized(ProgressListener listener) {
+        if (listener == null || listener == ProgressListener.NOOP
+                || listener instanceof SerializedProgressListener) {
+            return listener;
+        }
+        return new SerializedProgressListener(listener);
+    }
+
+    /**
+     * Passes the events to the wrapped listener one at a time, with the same
+     * delivery mode as the wrapped listener.
+     */
+    private static final class SerializedProgressListener
+            implements ProgressListener, DeliveryMode {
+        private final ProgressListener listener;
+        private final boolean syncCallSafe;
+
+        SerializedProgressListener(ProgressListener listener) {
+            this.listener = listener;
+            this.syncCallSafe = DeliveryMode.Check.isSyncCallSafe(listener);
+        }
+
+        @Override
+        public synchronized void progressChanged(ProgressEvent progressEvent) {
+            listener.progressChanged(progressEvent);
+        }
+
+        @Override
+        public boolean isSyncCallSafe() {
+            return syncCallSafe;
+        }
+    }
+
+    /**
+     * Returns a new thread pool of daemon threads for the parts of a single
+     * transfer.
+     */
+    private static ExecutorService createDefaultExecutorService(int numThreads) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger(1);
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setName("glacier-transfer-worker-" + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        return Executors.newFixedThreadPool(numThreads, threadFactory);
+    }
+
     private UploadResult uploadInSinglePart(final String accountId,
             final String vaultName, final String archiveDescription,
             final File file, ProgressListener progressListener) {
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2012-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.glacier.transfer;
+
+import com.amazonaws.event.ProgressListener;
+
+/**
+ * Glacier specific listener interface for archive transfer progress events.
+ */
+public interface GlacierProgressListener extends ProgressListener {
+    /**
+     * Called once a multipart archive upload has been initiated by
+     * {@link ArchiveTransferManager}, with the information needed to resume
+     * the upload should it fail. When the progress listener of an upload
+     * implements this interface, a failed multipart upload is not aborted, so
+     * that the parts already uploaded can be reused by
+     * {@link ArchiveTransferManager#resumeUpload(PersistableArchiveUpload, ProgressListener)}.
+     * <p>
+     * This method is called on the uploading thread, so implementations
+     * should not block.
+     *
+     * @param persistableUpload
+     *            A non null opaque token used to resume the upload.
+     */
+    public void onPersistableUpload(PersistableArchiveUpload persistableUpload);
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2012-2015 Amazon Technologies, Inc.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at:
+ *
+ *    http://aws.amazon.com/apache2.0
+ *
+ * This file is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES
+ * OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.amazonaws.services.glacier.transfer;
+
+import static com.amazonaws.util.StringUtils.UTF8;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import com.amazonaws.util.json.Jackson;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * An opaque token that holds the state of a multipart archive upload started
+ * by {@link ArchiveTransferManager}, which can be used to resume the upload
+ * with {@link ArchiveTransferManager#resumeUpload(PersistableArchiveUpload, com.amazonaws.event.ProgressListener)},
+ * and can be serialized/deserialized for persistence purposes.
+ *
+ * @see GlacierProgressListener
+ */
+public final class PersistableArchiveUpload {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /** The ID for the account which owns the vault. */
+    @JsonProperty
+    private final String accountId;
+
+    /** The name of the vault the archive is uploaded to. */
+    @JsonProperty
+    private final String vaultName;
+
+    /** The description of the archive. */
+    @JsonProperty
+    private final String archiveDescription;
+
+    /** The file to upload. */
+    @JsonProperty
+    private final String file;
+
+    /** The length of the file when the upload was initiated. */
+    @JsonProperty
+    private final long fileLength;
+
+    /** The last modified time of the file when the upload was initiated. */
+    @JsonProperty
+    private final long lastModified;
+
+    /** The multipart upload id associated with this upload. */
+    @JsonProperty
+    private final String uploadId;
+
+    /** The part size of the multipart upload. */
+    @JsonProperty
+    private final long partSize;
+
+    public PersistableArchiveUpload() {
+        this(null, null, null, null, -1, -1, null, -1);
+    }
+
+    public PersistableArchiveUpload(
+            @JsonProperty(value = "accountId") String accountId,
+            @JsonProperty(value = "vaultName") String vaultName,
+            @JsonProperty(value = "archiveDescription") String archiveDescription,
+            @JsonProperty(value = "file") String file,
+            @JsonProperty(value = "fileLength") long fileLength,
+            @JsonProperty(value = "lastModified") long lastModified,
+            @JsonProperty(value = "uploadId") String uploadId,
+            @JsonProperty(value = "partSize") long partSize) {
+        this.accountId = accountId;
+        this.vaultName = vaultName;
+        this.archiveDescription = archiveDescription;
+        this.file = file;
+        this.fileLength = fileLength;
+        this.lastModified = lastModified;
+        this.uploadId = uploadId;
+        this.partSize = partSize;
+    }
+
+    /**
+     * Returns the ID for the account which owns the vault.
+     */
+    String getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * Returns the name of the vault.
+     */
+    String getVaultName() {
+        return vaultName;
+    }
+
+    /**
+     * Returns the description of the archive.
+     */
+    String getArchiveDescription() {
+        return archiveDescription;
+    }
+
+    /**
+     * Returns the absolute path of the file to upload.
+     */
+    String getFile() {
+        return file;
+    }
+
+    /**
+     * Returns the length of the file when the upload was initiated.
+     */
+    long getFileLength() {
+        return fileLength;
+    }
+
+    /**
+     * Returns the last modified time of the file when the upload was
+     * initiated.
+     */
+    long getLastModified() {
+        return lastModified;
+    }
+
+    /**
+     * Returns the multipart upload id.
+     */
+    String getUploadId() {
+        return uploadId;
+    }
+
+    /**
+     * Returns the part size of the multipart upload.
+     */
+    long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Returns the serialized representation of the upload state.
+     */
+    public String serialize() {
+        return Jackson.toJsonString(this);
+    }
+
+    /**
+     * Writes the serialized representation of the upload state to the given
+     * <code>OutputStream</code>. Caller of this method should explicitly close
+     * the <code>OutputStream</code>.
+     */
+    public void serialize(OutputStream out) throws IOException {
+        out.write(Jackson.toJsonString(this).getBytes(UTF8));
+        out.flush();
+    }
+
+    /**
+     * Returns the deserialized upload state of the given serialized
+     * representation. Caller of this method should explicitly close the
+     * <code>InputStream</code>.
+     */
+    public static PersistableArchiveUpload deserializeFrom(InputStream in) {
+        try {
+            return MAPPER.readValue(in, PersistableArchiveUpload.class);
+        } catch (Exception e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+
+    /**
+     * Returns the deserialized upload state of the given serialized
+     * representation.
+     */
+    public static PersistableArchiveUpload deserializeFrom(String serialized) {
+        if (serialized == null)
+            return null;
+        ByteArrayInputStream byteStream = new ByteArrayInputStream(
+                serialized.getBytes(UTF8));
+        try {
+            return deserializeFrom(byteStream);
+        } finally {
+            try { byteStream.close(); } catch (IOException ioe) { }
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.internal.BufferedPublisherSupport;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+import com.amazonaws.util.VersionInfoUtils;
+
+/**
+ * AmazonKinesisBufferedConsumer reads the records of all the shards of an
+ * Amazon Kinesis stream, and passes them to a {@link KinesisRecordProcessor}.
+ * <br>
+ *
+ * Rather than alternating between fetching and processing, the consumer
+ * fetches the next batch of records of a shard while the current one is
+ * processed, so that the latency of GetRecords calls is hidden behind the
+ * processing. The shards are read and processed concurrently on a bounded
+ * executor, the batches of each shard one at a time and in order. <br>
+ *
+ * The consumer renews expired shard iterators, and backs off when the
+ * throughput of a shard is exceeded. When a shard is closed by resharding,
+ * its child shards are read from their start once all its records are
+ * processed. When reading from {@link ShardIteratorType#LATEST}, the shards
+ * closed before the consumer started are skipped, and their open
+ * descendants read from the latest record. The progress
+ * and lag of each shard are reported by {@link #getShardStatuses()}; the last
+ * processed sequence numbers can be passed to {@link #start(Map)} to resume
+ * reading after a restart. A shard on which the record processor fails is no
+ * longer read, and the failure is reported by its status. <br>
+ *
+ * AmazonKinesisBufferedConsumer is thread-safe.<br>
+ */
+@ThreadSafe
+public class AmazonKinesisBufferedConsumer {
+
+    public static final String USER_AGENT = AmazonKinesisBufferedConsumer.class.getSimpleName() + "/" + VersionInfoUtils.getVersion();
+
+    private static final Log log = LogFactory.getLog(AmazonKinesisBufferedConsumer.class);
+
+    /** The time (milliseconds) before the shards are described again after a failure. */
+    private static final long SHARD_REFRESH_RETRY_MS = 10 * 1000;
+
+    private final AmazonKinesis kinesis;
+    private final String streamName;
+    private final KinesisRecordProcessor processor;
+    private final KinesisConsumerConfig config;
+    private final ExecutorService executor;
+    private final boolean isExecutorOwned;
+    /** Delays the fetches, which then run on the executor */
+    private final ScheduledExecutorService scheduler;
+
+    private final ConcurrentMap<String, ShardConsumer> shardConsumers =
+            new ConcurrentHashMap<String, ShardConsumer>();
+    /** Guarded by this */
+    private Map<String, String> startingSequenceNumbers;
+    /** The closed shards not read since they have no new records; guarded by this */
+    private final Set<String> skippedShardIds = new HashSet<String>();
+
+    private volatile boolean isShutdown;
+
+    public AmazonKinesisBufferedConsumer(AmazonKinesis kinesis,
+            String streamName, KinesisRecordProcessor processor) {
+        this(kinesis, streamName, processor, new KinesisConsumerConfig());
+    }
+
+    public AmazonKinesisBufferedConsumer(AmazonKinesis kinesis,
+            String streamName, KinesisRecordProcessor processor,
+            KinesisConsumerConfig config) {
+        this(kinesis, streamName, processor, config, null);
+    }
+
+    /**
+     * Constructs a consumer which fetches and processes the records on the
+     * given executor, which isn't shut down by this consumer. If the executor
+     * is null, the consumer uses its own pool of
+     * {@link KinesisConsumerConfig#getMaxConcurrency()} threads.
+     */
+    public AmazonKinesisBufferedConsumer(AmazonKinesis kinesis,
+            String streamName, KinesisRecordProcessor processor,
+            KinesisConsumerConfig config, ExecutorService executor) {
+        config.validate();
+        this.kinesis = kinesis;
+        this.streamName = streamName;
+        this.processor = processor;
+        this.config = new KinesisConsumerConfig(config);
+        this.isExecutorOwned = executor == null;
+        this.executor = isExecutorOwned
+                ? Executors.newFixedThreadPool(config.getMaxConcurrency(),
+                        BufferedPublisherSupport.newThreadFactory("kinesis-consumer-worker-"))
+                : executor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(
+                BufferedPublisherSupport.newThreadFactory("kinesis-consumer-scheduler-"));
+    }
+
+    /**
+     * Starts reading the shards of the stream from the initial position of
+     * the configuration.
+     *
+     * @throws AmazonClientException
+     *             if the stream can't be described
+     */
+    public void start() {
+        start(Collections.<String, String>emptyMap());
+    }
+
+    /**
+     * Starts reading the shards of the stream, after the given sequence
+     * numbers for the shards they are mapped to, and from the initial
+     * position of the configuration for the other shards.
+     *
+     * @param startingSequenceNumbers
+     *            the sequence numbers of the last records processed, by shard
+     *            id, as reported by
+     *            {@link KinesisShardStatus#getLastProcessedSequenceNumber()}
+     * @throws AmazonClientException
+     *             if the stream can't be described
+     */
+    public void start(Map<String, String> startingSequenceNumbers) {
+        synchronized (this) {
+            if (this.startingSequenceNumbers != null) {
+                throw new IllegalStateException("The consumer has already been started");
+            }
+            this.startingSequenceNumbers = new LinkedHashMap<String, String>(startingSequenceNumbers);
+        }
+        refreshShards();
+    }
+
+    /**
+     * Stops fetching and processing records, and releases the threads of
+     * this consumer; the batches being processed are completed in the
+     * background. The Kinesis client isn't shut down.
+     */
+    public void shutdown() {
+        isShutdown = true;
+        scheduler.shutdownNow();
+        if (isExecutorOwned) {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns the progress and lag of the shards being read, or read until
+     * their end, by shard id.
+     */
+    public Map<String, KinesisShardStatus> getShardStatuses() {
+        Map<String, KinesisShardStatus> statuses = new LinkedHashMap<String, KinesisShardStatus>();
+        for (ShardConsumer shardConsumer : shardConsumers.values()) {
+            statuses.put(shardConsumer.shardId, shardConsumer.getStatus());
+        }
+        return statuses;
+    }
+
+    /**
+     * Returns the largest estimate of how far (milliseconds) the consumer is
+     * behind the latest record, over the shards still being read.
+     */
+    public long getMillisBehindLatest() {
+        long millisBehindLatest = 0;
+        for (ShardConsumer shardConsumer : shardConsumers.values()) {
+            KinesisShardStatus status = shardConsumer.getStatus();
+            if (!status.isEnded()) {
+                millisBehindLatest = Math.max(millisBehindLatest, status.getMillisBehindLatest());
+            }
+        }
+        return millisBehindLatest;
+    }
+
+    AmazonKinesis getKinesis() {
+        return kinesis;
+    }
+
+    String getStreamName() {
+        return streamName;
+    }
+
+    boolean isShutdown() {
+        return isShutdown;
+    }
+
+    void execute(Runnable task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (!isShutdown) {
+                throw e;
+            }
+        }
+    }
+
+    /** Runs the given task on the executor after the given delay. */
+    void schedule(final Runnable task, long delayMs) {
+        try {
+            scheduler.schedule(new Runnable() {
+                @Override
+                public void run() {
+                    execute(task);
+                }
+            }, delayMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            if (!isShutdown) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Describes the stream again once a shard has ended, to start reading
+     * its child shards.
+     */
+    void onShardEnded(ShardConsumer shardConsumer) {
+        execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    refreshShards();
+                } catch (AmazonClientException e) {
+                    log.warn("Unable to describe stream " + streamName
+                            + "; retrying in " + SHARD_REFRESH_RETRY_MS + " ms", e);
+                    schedule(this, SHARD_REFRESH_RETRY_MS);
+                }
+            }
+        });
+    }
+
+    /**
+     * Starts reading the shards that aren't being read, once their parents,
+     * if read by this consumer, have ended. When reading from
+     * {@link ShardIteratorType#LATEST}, the shards already closed have no
+     * new records and are skipped.
+     */
+    private synchronized void refreshShards() {
+        if (isShutdown) {
+            return;
+        }
+        List<Shard> shards = ShardMap.describeShards(kinesis, streamName, USER_AGENT);
+        Set<String> shardIds = new HashSet<String>();
+        for (Shard shard : shards) {
+            shardIds.add(shard.getShardId());
+        }
+        skipClosedShards(shards, shardIds);
+        for (Shard shard : shards) {
+            if (shardConsumers.containsKey(shard.getShardId())
+                    || skippedShardIds.contains(shard.getShardId())
+                    || !isEnded(shard.getParentShardId(), shardIds)
+                    || !isEnded(shard.getAdjacentParentShardId(), shardIds)) {
+                continue;
+            }
+            String startingSequenceNumber = startingSequenceNumbers.get(shard.getShardId());
+            String iteratorType;
+            if (startingSequenceNumber != null) {
+                iteratorType = ShardIteratorType.AFTER_SEQUENCE_NUMBER.toString();
+            } else if (isRead(shard.getParentShardId(), shardIds)
+                    || isRead(shard.getAdjacentParentShardId(), shardIds)) {
+                // Created by resharding while the parent was read
+                iteratorType = ShardIteratorType.TRIM_HORIZON.toString();
+            } else {
+                iteratorType = config.getInitialPosition();
+            }
+            ShardConsumer shardConsumer = new ShardConsumer(this, config, processor,
+                    shard.getShardId(), iteratorType, startingSequenceNumber);
+            shardConsumers.put(shard.getShardId(), shardConsumer);
+            shardConsumer.start();
+        }
+    }
+
+    /**
+     * Adds to the skipped shards the closed shards that would be read from
+     * {@link ShardIteratorType#LATEST}: those without a starting sequence
+     * number whose parents, if any, are skipped too. Repeated until no more
+     * shards are skipped, since the parents may follow their children.
+     */
+    private void skipClosedShards(List<Shard> shards, Set<String> shardIds) {
+        if (!ShardIteratorType.LATEST.toString().equals(config.getInitialPosition())) {
+            return;
+        }
+        boolean isSkipping = true;
+        while (isSkipping) {
+            isSkipping = false;
+            for (Shard shard : shards) {
+                String shardId = shard.getShardId();
+                if (isClosed(shard)
+                        && !shardConsumers.containsKey(shardId)
+                        && !skippedShardIds.contains(shardId)
+                        && !startingSequenceNumbers.containsKey(shardId)
+                        && !isRead(shard.getParentShardId(), shardIds)
+                        && !isRead(shard.getAdjacentParentShardId(), shardIds)) {
+                    skippedShardIds.add(shardId);
+                    isSkipping = true;
+                }
+            }
+        }
+    }
+
+    private static boolean isClosed(Shard shard) {
+        return shard.getSequenceNumberRange() != null
+                && shard.getSequenceNumberRange().getEndingSequenceNumber() != null;
+    }
+
+    /**
+     * Returns whether the given parent shard is in the stream and read, or to
+     * be read, by this consumer, in which case its children are read from
+     * their start.
+     */
+    private boolean isRead(String parentShardId, Set<String> shardIds) {
+        return parentShardId != null
+                && shardIds.contains(parentShardId)
+                && !skippedShardIds.contains(parentShardId);
+    }
+
+    /**
+     * Returns whether the given parent shard has been read until its end, or
+     * needn't be read since it is skipped or no longer in the stream.
+     */
+    private boolean isEnded(String parentShardId, Set<String> shardIds) {
+        if (!isRead(parentShardId, shardIds)) {
+            return true;
+        }
+        ShardConsumer parent = shardConsumers.get(parentShardId);
+        return parent != null && parent.isEnded();
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.internal.BufferedPublisherSupport;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.PutRecordRequest;
+import com.amazonaws.services.kinesis.model.PutRecordResult;
+import com.amazonaws.util.VersionInfoUtils;
+
+/**
+ * AmazonKinesisBufferedProducer puts records to Amazon Kinesis streams in
+ * batches. <br>
+ *
+ * Rather than putting each record in its own PutRecord call, the producer
+ * buffers the records of each stream, and puts them in PutRecords calls of up
+ * to 500 records and 5 MB, as soon as a batch is full, or once the oldest
+ * buffered record has waited for the configurable linger time (default=100ms)
+ * for other records. Batching greatly reduces the number of calls made, and
+ * increases the throughput of each producing thread, at the cost of some
+ * latency for individual records. <br>
+ *
+ * Records that fail to be put, for example because their shard is throttled,
+ * are retried with a backoff, without retrying the records of the same batch
+ * that were put. The producer can also aggregate small records predicted, from
+ * the hash key ranges of the shards, to map to the same shard into larger
+ * Kinesis records, in the format deaggregated by the Kinesis Client Library;
+ * see {@link KinesisProducerConfig#setAggregationEnabled(boolean)}. <br>
+ *
+ * The records buffered and in flight are limited in size; once the limit is
+ * reached, adding a record blocks until enough records have been put. Records
+ * are not guaranteed to be put in the order they were added, even those with
+ * the same partition key, since batches are put concurrently and failed
+ * records are retried; use {@link AmazonKinesis#putRecord(PutRecordRequest)}
+ * with a sequence number for ordering when order matters. <br>
+ *
+ * AmazonKinesisBufferedProducer is thread-safe.<br>
+ */
+@ThreadSafe
+public class AmazonKinesisBufferedProducer {
+
+    public static final String USER_AGENT = AmazonKinesisBufferedProducer.class.getSimpleName() + "/" + VersionInfoUtils.getVersion();
+
+    private final AmazonKinesis kinesis;
+    private final KinesisProducerConfig config;
+    /** Counts the records added whose futures aren't done */
+    private final BufferedPublisherSupport support;
+
+    private final ConcurrentMap<String, StreamBuffer> streamBuffers =
+            new ConcurrentHashMap<String, StreamBuffer>();
+
+    public AmazonKinesisBufferedProducer(AmazonKinesis kinesis) {
+        this(kinesis, new KinesisProducerConfig());
+    }
+
+    public AmazonKinesisBufferedProducer(AmazonKinesis kinesis, KinesisProducerConfig config) {
+        this(kinesis, config, null);
+    }
+
+    /**
+     * Constructs a producer which puts the batches of records, and runs the
+     * callbacks, on the given executor, which isn't shut down by this
+     * producer. If the executor is null, the producer uses its own pool of
+     * {@link KinesisProducerConfig#getMaxConcurrentBatches()} threads.
+     */
+    public AmazonKinesisBufferedProducer(AmazonKinesis kinesis,
+            KinesisProducerConfig config, ExecutorService executor) {
+        config.validate();
+        this.kinesis = kinesis;
+        this.config = new KinesisProducerConfig(config);
+        this.support = new BufferedPublisherSupport("kinesis-producer-", executor,
+                config.getMaxConcurrentBatches(), (int) config.getMaxBufferedBytes());
+        support.schedulePeriodically(new Runnable() {
+            @Override
+            public void run() {
+                flushLingeringRecords();
+            }
+        }, BufferedPublisherSupport.lingerCheckIntervalMs(config.getLingerMs()));
+    }
+
+    /**
+     * Adds a record to be put to its stream, and returns the future of its
+     * result. Blocks if the maximum size of the buffered records is reached.
+     *
+     * @throws AmazonClientException
+     *             if the record is invalid, if the producer has been shut
+     *             down, if the thread is interrupted while blocked, or if the
+     *             buffer is full and the method is called from the handler
+     *             of another record
+     */
+    public Future<PutRecordResult> putRecordAsync(PutRecordRequest putRecordRequest) {
+        return putRecordAsync(putRecordRequest, null);
+    }
+
+    /**
+     * Adds a record to be put to its stream, and returns the future of its
+     * result; the given handler, if any, is called once the record is put or
+     * has failed. Blocks if the maximum size of the buffered records is
+     * reached.
+     * <p>
+     * A handler may add records, but it doesn't block when the buffer is
+     * full: it fails instead, since the handlers run on the threads that put
+     * the buffered records, and blocking them could prevent the buffer space
+     * from ever being released.
+     *
+     * @throws AmazonClientException
+     *             if the record is invalid, if the producer has been shut
+     *             down, if the thread is interrupted while blocked, or if the
+     *             buffer is full and the method is called from the handler
+     *             of another record
+     */
+    public Future<PutRecordResult> putRecordAsync(PutRecordRequest putRecordRequest,
+            AsyncHandler<PutRecordRequest, PutRecordResult> asyncHandler) {
+        if (support.isShutdown()) {
+            throw new AmazonClientException("The producer has been shut down");
+        }
+        if (putRecordRequest.getStreamName() == null || putRecordRequest.getPartitionKey() == null) {
+            throw new AmazonClientException("The stream name and partition key must be specified");
+        }
+        if (putRecordRequest.getSequenceNumberForOrdering() != null) {
+            throw new AmazonClientException("Sequence numbers for ordering aren't supported by "
+                    + "the buffered producer; use AmazonKinesis.putRecord instead");
+        }
+        ProducerFuture<PutRecordRequest, PutRecordResult> future =
+                new ProducerFuture<PutRecordRequest, PutRecordResult>(putRecordRequest, asyncHandler,
+                        support.getExecutor());
+        UserRecord userRecord = new UserRecord(putRecordRequest, future);
+        if (userRecord.getSize() > KinesisProducerConfig.SERVICE_MAX_RECORD_BYTES) {
+            throw new AmazonClientException("The size of the record data and partition key, "
+                    + userRecord.getSize() + " bytes, exceeds the maximum of "
+                    + KinesisProducerConfig.SERVICE_MAX_RECORD_BYTES);
+        }
+
+        if (!support.tryReserve(1, userRecord.getSize())) {
+            if (ProducerFuture.isCallingHandler()) {
+                throw new AmazonClientException("The buffer is full; records "
+                        + "added from a handler can't wait for buffer space");
+            }
+            // Send what can be sent, rather than wait for the linger time
+            flush();
+            support.reserve(1, userRecord.getSize());
+        }
+        getStreamBuffer(putRecordRequest.getStreamName()).add(userRecord);
+        return future;
+    }
+
+    /**
+     * Sends all the buffered records, without waiting for them to be put.
+     */
+    public void flush() {
+        for (StreamBuffer streamBuffer : streamBuffers.values()) {
+            streamBuffer.flush();
+        }
+    }
+
+    /**
+     * Sends all the buffered records, and waits until all the records added
+     * so far have been put or have failed.
+     *
+     * @throws AmazonClientException
+     *             if the thread is interrupted while waiting
+     */
+    public void flushSync() {
+        flush();
+        support.awaitOutstanding();
+    }
+
+    /**
+     * Returns the number of records added whose futures aren't done.
+     */
+    public long getOutstandingRecordsCount() {
+        return support.getOutstandingCount();
+    }
+
+    /**
+     * Puts all the buffered records, waiting for them, and releases the
+     * threads of this producer. The Kinesis client isn't shut down.
+     */
+    public void shutdown() {
+        support.markShutdown();
+        try {
+            flushSync();
+        } finally {
+            support.releaseThreads();
+        }
+    }
+
+    AmazonKinesis getKinesis() {
+        return kinesis;
+    }
+
+    BufferedPublisherSupport getSupport() {
+        return support;
+    }
+
+    /**
+     * Completes the future of the given record with either its result or
+     * the cause of its failure, and releases its buffer space.
+     */
+    void complete(UserRecord userRecord, PutRecordResult result, Exception cause) {
+        if (cause == null) {
+            userRecord.future.setSuccess(result);
+        } else {
+            userRecord.future.setFailure(cause);
+        }
+        support.release(1, userRecord.getSize());
+    }
+
+    private StreamBuffer getStreamBuffer(String streamName) {
+        StreamBuffer streamBuffer = streamBuffers.get(streamName);
+        if (streamBuffer == null) {
+            streamBuffer = new StreamBuffer(this, config, streamName);
+            StreamBuffer existing = streamBuffers.putIfAbsent(streamName, streamBuffer);
+            if (existing != null) {
+                streamBuffer = existing;
+            }
+        }
+        return streamBuffer;
+    }
+
+    private void flushLingeringRecords() {
+        long now = System.currentTimeMillis();
+        for (StreamBuffer streamBuffer : streamBuffers.values()) {
+            streamBuffer.flushIfLingered(now);
+        }
+    }
+}
@@ -0,0 +1,300 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+
+/**
+ * The configuration of an {@link AmazonKinesisBufferedConsumer}.
+ */
+public class KinesisConsumerConfig {
+
+    /** The maximum number of records returned by a GetRecords call allowed by Amazon Kinesis. */
+    public static final int SERVICE_MAX_RECORDS_PER_FETCH = 10000;
+
+    /** The maximum number of records fetched from a shard by a GetRecords call. */
+    private int maxRecordsPerFetch;
+
+    public static final int MAX_RECORDS_PER_FETCH_DEFAULT = SERVICE_MAX_RECORDS_PER_FETCH;
+
+    /** The maximum number of batches of records fetched ahead of processing, per shard. */
+    private int maxPrefetchedBatches;
+
+    public static final int MAX_PREFETCHED_BATCHES_DEFAULT = 1;
+
+    /** The minimum time (milliseconds) between two GetRecords calls on a shard. */
+    private long minFetchIntervalMs;
+
+    public static final long MIN_FETCH_INTERVAL_MS_DEFAULT = 200;
+
+    /** The time (milliseconds) to wait after a GetRecords call returned no records. */
+    private long idleFetchIntervalMs;
+
+    public static final long IDLE_FETCH_INTERVAL_MS_DEFAULT = 1000;
+
+    /** The time (milliseconds) to wait after a shard was throttled, doubled each time. */
+    private long throttleBackoffMs;
+
+    public static final long THROTTLE_BACKOFF_MS_DEFAULT = 500;
+
+    /** The position in the shards at which records are first read. */
+    private String initialPosition;
+
+    public static final String INITIAL_POSITION_DEFAULT = ShardIteratorType.LATEST.toString();
+
+    /** The number of threads of the consumer's own executor. */
+    private int maxConcurrency;
+
+    public static final int MAX_CONCURRENCY_DEFAULT = 8;
+
+    public KinesisConsumerConfig() {
+        maxRecordsPerFetch = MAX_RECORDS_PER_FETCH_DEFAULT;
+        maxPrefetchedBatches = MAX_PREFETCHED_BATCHES_DEFAULT;
+        minFetchIntervalMs = MIN_FETCH_INTERVAL_MS_DEFAULT;
+        idleFetchIntervalMs = IDLE_FETCH_INTERVAL_MS_DEFAULT;
+        throttleBackoffMs = THROTTLE_BACKOFF_MS_DEFAULT;
+        initialPosition = INITIAL_POSITION_DEFAULT;
+        maxConcurrency = MAX_CONCURRENCY_DEFAULT;
+    }
+
+    /** copy constructor */
+    public KinesisConsumerConfig(KinesisConsumerConfig other) {
+        maxRecordsPerFetch = other.maxRecordsPerFetch;
+        maxPrefetchedBatches = other.maxPrefetchedBatches;
+        minFetchIntervalMs = other.minFetchIntervalMs;
+        idleFetchIntervalMs = other.idleFetchIntervalMs;
+        throttleBackoffMs = other.throttleBackoffMs;
+        initialPosition = other.initialPosition;
+        maxConcurrency = other.maxConcurrency;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisConsumerConfig [maxRecordsPerFetch=" + maxRecordsPerFetch
+                + ", maxPrefetchedBatches=" + maxPrefetchedBatches
+                + ", minFetchIntervalMs=" + minFetchIntervalMs
+                + ", idleFetchIntervalMs=" + idleFetchIntervalMs
+                + ", throttleBackoffMs=" + throttleBackoffMs
+                + ", initialPosition=" + initialPosition
+                + ", maxConcurrency=" + maxConcurrency + "]";
+    }
+
+    /**
+     * The maximum number of records fetched from a shard by a GetRecords
+     * call, and so passed to a single call of the record processor; at most
+     * 10000.
+     */
+    public int getMaxRecordsPerFetch() {
+        return maxRecordsPerFetch;
+    }
+
+    /**
+     * The maximum number of records fetched from a shard by a GetRecords
+     * call, and so passed to a single call of the record processor; at most
+     * 10000.
+     */
+    public void setMaxRecordsPerFetch(int maxRecordsPerFetch) {
+        this.maxRecordsPerFetch = maxRecordsPerFetch;
+    }
+
+    public KinesisConsumerConfig withMaxRecordsPerFetch(int maxRecordsPerFetch) {
+        setMaxRecordsPerFetch(maxRecordsPerFetch);
+        return this;
+    }
+
+    /**
+     * The maximum number of batches of records fetched from a shard ahead of
+     * their processing. With the default of one, the next batch is fetched
+     * while the current one is processed. Higher values smooth out the
+     * latency of GetRecords calls, at the cost of memory.
+     */
+    public int getMaxPrefetchedBatches() {
+        return maxPrefetchedBatches;
+    }
+
+    /**
+     * The maximum number of batches of records fetched from a shard ahead of
+     * their processing. With the default of one, the next batch is fetched
+     * while the current one is processed. Higher values smooth out the
+     * latency of GetRecords calls, at the cost of memory.
+     */
+    public void setMaxPrefetchedBatches(int maxPrefetchedBatches) {
+        this.maxPrefetchedBatches = maxPrefetchedBatches;
+    }
+
+    public KinesisConsumerConfig withMaxPrefetchedBatches(int maxPrefetchedBatches) {
+        setMaxPrefetchedBatches(maxPrefetchedBatches);
+        return this;
+    }
+
+    /**
+     * The minimum time (milliseconds) between two GetRecords calls on a
+     * shard. Amazon Kinesis allows five reads per second per shard, shared by
+     * all the consumers of the stream.
+     */
+    public long getMinFetchIntervalMs() {
+        return minFetchIntervalMs;
+    }
+
+    /**
+     * The minimum time (milliseconds) between two GetRecords calls on a
+     * shard. Amazon Kinesis allows five reads per second per shard, shared by
+     * all the consumers of the stream.
+     */
+    public void setMinFetchIntervalMs(long minFetchIntervalMs) {
+        this.minFetchIntervalMs = minFetchIntervalMs;
+    }
+
+    public KinesisConsumerConfig withMinFetchIntervalMs(long minFetchIntervalMs) {
+        setMinFetchIntervalMs(minFetchIntervalMs);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) to wait before fetching from a shard again,
+     * after a GetRecords call returned no records.
+     */
+    public long getIdleFetchIntervalMs() {
+        return idleFetchIntervalMs;
+    }
+
+    /**
+     * The time (milliseconds) to wait before fetching from a shard again,
+     * after a GetRecords call returned no records.
+     */
+    public void setIdleFetchIntervalMs(long idleFetchIntervalMs) {
+        this.idleFetchIntervalMs = idleFetchIntervalMs;
+    }
+
+    public KinesisConsumerConfig withIdleFetchIntervalMs(long idleFetchIntervalMs) {
+        setIdleFetchIntervalMs(idleFetchIntervalMs);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) to wait before fetching from a shard again,
+     * after its throughput was exceeded or the call failed; doubled for each
+     * further failure in a row.
+     */
+    public long getThrottleBackoffMs() {
+        return throttleBackoffMs;
+    }
+
+    /**
+     * The time (milliseconds) to wait before fetching from a shard again,
+     * after its throughput was exceeded or the call failed; doubled for each
+     * further failure in a row.
+     */
+    public void setThrottleBackoffMs(long throttleBackoffMs) {
+        this.throttleBackoffMs = throttleBackoffMs;
+    }
+
+    public KinesisConsumerConfig withThrottleBackoffMs(long throttleBackoffMs) {
+        setThrottleBackoffMs(throttleBackoffMs);
+        return this;
+    }
+
+    /**
+     * The position at which the shards without a starting sequence number are
+     * first read: {@link ShardIteratorType#LATEST} (the default) or
+     * {@link ShardIteratorType#TRIM_HORIZON}. The shards created by
+     * resharding of a shard read by the consumer are read from their start;
+     * from {@link ShardIteratorType#LATEST}, the shards already closed are
+     * skipped.
+     */
+    public String getInitialPosition() {
+        return initialPosition;
+    }
+
+    /**
+     * The position at which the shards without a starting sequence number are
+     * first read: {@link ShardIteratorType#LATEST} (the default) or
+     * {@link ShardIteratorType#TRIM_HORIZON}. The shards created by
+     * resharding of a shard read by the consumer are read from their start;
+     * from {@link ShardIteratorType#LATEST}, the shards already closed are
+     * skipped.
+     */
+    public void setInitialPosition(String initialPosition) {
+        this.initialPosition = initialPosition;
+    }
+
+    public KinesisConsumerConfig withInitialPosition(String initialPosition) {
+        setInitialPosition(initialPosition);
+        return this;
+    }
+
+    /**
+     * The position at which the shards without a starting sequence number are
+     * first read.
+     */
+    public void setInitialPosition(ShardIteratorType initialPosition) {
+        this.initialPosition = initialPosition.toString();
+    }
+
+    public KinesisConsumerConfig withInitialPosition(ShardIteratorType initialPosition) {
+        setInitialPosition(initialPosition);
+        return this;
+    }
+
+    /**
+     * The number of threads fetching and processing the records of the
+     * shards, when the consumer uses its own executor.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * The number of threads fetching and processing the records of the
+     * shards, when the consumer uses its own executor.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public KinesisConsumerConfig withMaxConcurrency(int maxConcurrency) {
+        setMaxConcurrency(maxConcurrency);
+        return this;
+    }
+
+    /**
+     * this method checks the config for validity. If the config is deemed to
+     * be invalid, an informative exception is thrown.
+     *
+     * @throws AmazonClientException
+     *             with a message explaining why the config was invalid
+     */
+    void validate() {
+        if (maxRecordsPerFetch <= 0 || maxRecordsPerFetch > SERVICE_MAX_RECORDS_PER_FETCH) {
+            throw new AmazonClientException("The maximum records per fetch must be between 1 and "
+                    + SERVICE_MAX_RECORDS_PER_FETCH);
+        }
+        if (maxPrefetchedBatches <= 0) {
+            throw new AmazonClientException("The maximum prefetched batches must be positive");
+        }
+        if (minFetchIntervalMs < 0 || idleFetchIntervalMs < 0 || throttleBackoffMs < 0) {
+            throw new AmazonClientException("The fetch intervals and throttle backoff may not be negative");
+        }
+        if (!ShardIteratorType.LATEST.toString().equals(initialPosition)
+                && !ShardIteratorType.TRIM_HORIZON.toString().equals(initialPosition)) {
+            throw new AmazonClientException("The initial position must be "
+                    + ShardIteratorType.LATEST + " or " + ShardIteratorType.TRIM_HORIZON);
+        }
+        if (maxConcurrency <= 0) {
+            throw new AmazonClientException("The maximum concurrency must be positive");
+        }
+    }
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * The configuration of an {@link AmazonKinesisBufferedProducer}.
+ */
+public class KinesisProducerConfig {
+
+    /** The maximum number of records of a PutRecords call allowed by Amazon Kinesis. */
+    public static final int SERVICE_MAX_BATCH_RECORDS = 500;
+
+    /** The maximum size, in bytes, of a PutRecords call allowed by Amazon Kinesis. */
+    public static final long SERVICE_MAX_BATCH_BYTES = 5 * 1024 * 1024;
+
+    /**
+     * The maximum size, in bytes, of a record, including its partition key,
+     * allowed by Amazon Kinesis.
+     */
+    public static final int SERVICE_MAX_RECORD_BYTES = 1024 * 1024;
+
+    /** The maximum number of records sent in a single PutRecords call. */
+    private int maxBatchRecords;
+
+    public static final int MAX_BATCH_RECORDS_DEFAULT = SERVICE_MAX_BATCH_RECORDS;
+
+    /** The maximum size, in bytes, of the records sent in a single PutRecords call. */
+    private long maxBatchBytes;
+
+    public static final long MAX_BATCH_BYTES_DEFAULT = SERVICE_MAX_BATCH_BYTES;
+
+    /**
+     * The maximum time (milliseconds) a record is buffered waiting for other
+     * records to be sent with.
+     */
+    private long lingerMs;
+
+    public static final long LINGER_MS_DEFAULT = 100;
+
+    /** Whether small records are aggregated into larger Kinesis records. */
+    private boolean aggregationEnabled;
+
+    public static final boolean AGGREGATION_ENABLED_DEFAULT = false;
+
+    /** The maximum size, in bytes, of an aggregated Kinesis record. */
+    private int maxAggregatedRecordBytes;
+
+    public static final int MAX_AGGREGATED_RECORD_BYTES_DEFAULT = 50 * 1024;
+
+    /** The maximum size, in bytes, of the records buffered and in flight. */
+    private long maxBufferedBytes;
+
+    public static final long MAX_BUFFERED_BYTES_DEFAULT = 64 * 1024 * 1024;
+
+    /** The maximum number of PutRecords calls made concurrently by default. */
+    private int maxConcurrentBatches;
+
+    public static final int MAX_CONCURRENT_BATCHES_DEFAULT = 8;
+
+    /** The maximum number of times a record that failed to be put is retried. */
+    private int maxRetries;
+
+    public static final int MAX_RETRIES_DEFAULT = 3;
+
+    /** The time (milliseconds) before the first retry of a failed record. */
+    private long retryBackoffMs;
+
+    public static final long RETRY_BACKOFF_MS_DEFAULT = 100;
+
+    public KinesisProducerConfig() {
+        maxBatchRecords = MAX_BATCH_RECORDS_DEFAULT;
+        maxBatchBytes = MAX_BATCH_BYTES_DEFAULT;
+        lingerMs = LINGER_MS_DEFAULT;
+        aggregationEnabled = AGGREGATION_ENABLED_DEFAULT;
+        maxAggregatedRecordBytes = MAX_AGGREGATED_RECORD_BYTES_DEFAULT;
+        maxBufferedBytes = MAX_BUFFERED_BYTES_DEFAULT;
+        maxConcurrentBatches = MAX_CONCURRENT_BATCHES_DEFAULT;
+        maxRetries = MAX_RETRIES_DEFAULT;
+        retryBackoffMs = RETRY_BACKOFF_MS_DEFAULT;
+    }
+
+    /** copy constructor */
+    public KinesisProducerConfig(KinesisProducerConfig other) {
+        maxBatchRecords = other.maxBatchRecords;
+        maxBatchBytes = other.maxBatchBytes;
+        lingerMs = other.lingerMs;
+        aggregationEnabled = other.aggregationEnabled;
+        maxAggregatedRecordBytes = other.maxAggregatedRecordBytes;
+        maxBufferedBytes = other.maxBufferedBytes;
+        maxConcurrentBatches = other.maxConcurrentBatches;
+        maxRetries = other.maxRetries;
+        retryBackoffMs = other.retryBackoffMs;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisProducerConfig [maxBatchRecords=" + maxBatchRecords
+                + ", maxBatchBytes=" + maxBatchBytes + ", lingerMs="
+                + lingerMs + ", aggregationEnabled=" + aggregationEnabled
+                + ", maxAggregatedRecordBytes=" + maxAggregatedRecordBytes
+                + ", maxBufferedBytes=" + maxBufferedBytes
+                + ", maxConcurrentBatches=" + maxConcurrentBatches
+                + ", maxRetries=" + maxRetries + ", retryBackoffMs="
+                + retryBackoffMs + "]";
+    }
+
+    /**
+     * The maximum number of records sent in a single PutRecords call; at most
+     * 500. When that many records are buffered, they are sent right away.
+     */
+    public int getMaxBatchRecords() {
+        return maxBatchRecords;
+    }
+
+    /**
+     * The maximum number of records sent in a single PutRecords call; at most
+     * 500. When that many records are buffered, they are sent right away.
+     */
+    public void setMaxBatchRecords(int maxBatchRecords) {
+        this.maxBatchRecords = maxBatchRecords;
+    }
+
+    public KinesisProducerConfig withMaxBatchRecords(int maxBatchRecords) {
+        setMaxBatchRecords(maxBatchRecords);
+        return this;
+    }
+
+    /**
+     * The maximum size, in bytes, of the records sent in a single PutRecords
+     * call; at most 5 MB. When that many bytes are buffered, they are sent
+     * right away.
+     */
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * The maximum size, in bytes, of the records sent in a single PutRecords
+     * call; at most 5 MB. When that many bytes are buffered, they are sent
+     * right away.
+     */
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public KinesisProducerConfig withMaxBatchBytes(long maxBatchBytes) {
+        setMaxBatchBytes(maxBatchBytes);
+        return this;
+    }
+
+    /**
+     * The maximum time (milliseconds) a record is buffered waiting for other
+     * records to be sent with. The longer this time, the fewer calls are made
+     * and the more records are aggregated, but the higher the latency of the
+     * records. Zero sends the records as soon as they are added.
+     */
+    public long getLingerMs() {
+        return lingerMs;
+    }
+
+    /**
+     * The maximum time (milliseconds) a record is buffered waiting for other
+     * records to be sent with. The longer this time, the fewer calls are made
+     * and the more records are aggregated, but the higher the latency of the
+     * records. Zero sends the records as soon as they are added.
+     */
+    public void setLingerMs(long lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    public KinesisProducerConfig withLingerMs(long lingerMs) {
+        setLingerMs(lingerMs);
+        return this;
+    }
+
+    /**
+     * Whether records put to the same shard are aggregated into larger Kinesis
+     * records, using the aggregation format of the Kinesis Producer Library.
+     * Aggregation greatly increases the number of small records a shard can
+     * take, but the consumers must deaggregate the records, as the Kinesis
+     * Client Library does. Records are only aggregated when the shards of the
+     * stream can be described.
+     */
+    public boolean isAggregationEnabled() {
+        return aggregationEnabled;
+    }
+
+    /**
+     * Whether records put to the same shard are aggregated into larger Kinesis
+     * records, using the aggregation format of the Kinesis Producer Library.
+     * Aggregation greatly increases the number of small records a shard can
+     * take, but the consumers must deaggregate the records, as the Kinesis
+     * Client Library does. Records are only aggregated when the shards of the
+     * stream can be described.
+     */
+    public void setAggregationEnabled(boolean aggregationEnabled) {
+        this.aggregationEnabled = aggregationEnabled;
+    }
+
+    public KinesisProducerConfig withAggregationEnabled(boolean aggregationEnabled) {
+        setAggregationEnabled(aggregationEnabled);
+        return this;
+    }
+
+    /** The maximum size, in bytes, of an aggregated Kinesis record. */
+    public int getMaxAggregatedRecordBytes() {
+        return maxAggregatedRecordBytes;
+    }
+
+    /** The maximum size, in bytes, of an aggregated Kinesis record. */
+    public void setMaxAggregatedRecordBytes(int maxAggregatedRecordBytes) {
+        this.maxAggregatedRecordBytes = maxAggregatedRecordBytes;
+    }
+
+    public KinesisProducerConfig withMaxAggregatedRecordBytes(int maxAggregatedRecordBytes) {
+        setMaxAggregatedRecordBytes(maxAggregatedRecordBytes);
+        return this;
+    }
+
+    /**
+     * The maximum size, in bytes, of the records buffered and in flight. Once
+     * reached, adding a record blocks until enough records have been put.
+     */
+    public long getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    /**
+     * The maximum size, in bytes, of the records buffered and in flight. Once
+     * reached, adding a record blocks until enough records have been put.
+     */
+    public void setMaxBufferedBytes(long maxBufferedBytes) {
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    public KinesisProducerConfig withMaxBufferedBytes(long maxBufferedBytes) {
+        setMaxBufferedBytes(maxBufferedBytes);
+        return this;
+    }
+
+    /**
+     * The maximum number of PutRecords calls made concurrently, when the
+     * producer uses its own executor.
+     */
+    public int getMaxConcurrentBatches() {
+        return maxConcurrentBatches;
+    }
+
+    /**
+     * The maximum number of PutRecords calls made concurrently, when the
+     * producer uses its own executor.
+     */
+    public void setMaxConcurrentBatches(int maxConcurrentBatches) {
+        this.maxConcurrentBatches = maxConcurrentBatches;
+    }
+
+    public KinesisProducerConfig withMaxConcurrentBatches(int maxConcurrentBatches) {
+        setMaxConcurrentBatches(maxConcurrentBatches);
+        return this;
+    }
+
+    /**
+     * The maximum number of times a record that failed to be put, for
+     * example because its shard was throttled, is retried. Only the failed
+     * records of a PutRecords call are retried.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * The maximum number of times a record that failed to be put, for
+     * example because its shard was throttled, is retried. Only the failed
+     * records of a PutRecords call are retried.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public KinesisProducerConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) before the first retry of a failed record,
+     * doubled for each further retry.
+     */
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    /**
+     * The time (milliseconds) before the first retry of a failed record,
+     * doubled for each further retry.
+     */
+    public void setRetryBackoffMs(long retryBackoffMs) {
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    public KinesisProducerConfig withRetryBackoffMs(long retryBackoffMs) {
+        setRetryBackoffMs(retryBackoffMs);
+        return this;
+    }
+
+    /**
+     * this method checks the config for validity. If the config is deemed to
+     * be invalid, an informative exception is thrown.
+     *
+     * @throws AmazonClientException
+     *             with a message explaining why the config was invalid
+     */
+    void validate() {
+        if (maxBatchRecords <= 0 || maxBatchRecords > SERVICE_MAX_BATCH_RECORDS) {
+            throw new AmazonClientException("The maximum batch records must be between 1 and "
+                    + SERVICE_MAX_BATCH_RECORDS);
+        }
+        if (maxBatchBytes < SERVICE_MAX_RECORD_BYTES || maxBatchBytes > SERVICE_MAX_BATCH_BYTES) {
+            throw new AmazonClientException("The maximum batch bytes must be between "
+                    + SERVICE_MAX_RECORD_BYTES + " and " + SERVICE_MAX_BATCH_BYTES);
+        }
+        if (lingerMs < 0) {
+            throw new AmazonClientException("The linger time may not be negative");
+        }
+        if (maxAggregatedRecordBytes <= 0 || maxAggregatedRecordBytes > SERVICE_MAX_RECORD_BYTES) {
+            throw new AmazonClientException("The maximum aggregated record bytes must be between 1 and "
+                    + SERVICE_MAX_RECORD_BYTES);
+        }
+        if (maxBufferedBytes < SERVICE_MAX_RECORD_BYTES || maxBufferedBytes > Integer.MAX_VALUE) {
+            throw new AmazonClientException("The maximum buffered bytes must be between "
+                    + SERVICE_MAX_RECORD_BYTES + " and " + Integer.MAX_VALUE);
+        }
+        if (maxConcurrentBatches <= 0) {
+            throw new AmazonClientException("The maximum concurrent batches must be positive");
+        }
+        if (maxRetries < 0 || retryBackoffMs < 0) {
+            throw new AmazonClientException("The maximum retries and retry backoff may not be negative");
+        }
+    }
+}
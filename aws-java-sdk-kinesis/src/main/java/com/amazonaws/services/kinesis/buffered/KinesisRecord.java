@@ -0,0 +1,217 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * A Kinesis record put by the producer, which holds either a single user
+ * record or, with aggregation, several user records predicted to map to the
+ * same shard.
+ * <p>
+ * Aggregated records use the format of the Kinesis Producer Library, so that
+ * they can be deaggregated by the Kinesis Client Library: the magic bytes
+ * <code>F3 89 9A C2</code>, followed by an <code>AggregatedRecord</code>
+ * protocol buffer message, followed by the MD5 digest of that message. The
+ * message holds the tables of the distinct partition keys and explicit hash
+ * keys, and the user records referring to them by index. A record holding a
+ * single user record is put as is.
+ * <p>
+ * This class is not thread-safe.
+ */
+final class KinesisRecord {
+
+    private static final byte[] AGGREGATION_MAGIC = new byte[] {
+        (byte) 0xF3, (byte) 0x89, (byte) 0x9A, (byte) 0xC2 };
+    private static final int DIGEST_LENGTH = 16;
+
+    // Protocol buffer tags of the AggregatedRecord and Record messages, as
+    // (field number << 3) | wire type
+    private static final int PARTITION_KEY_TABLE_TAG = 0x0A;
+    private static final int EXPLICIT_HASH_KEY_TABLE_TAG = 0x12;
+    private static final int RECORDS_TAG = 0x1A;
+    private static final int PARTITION_KEY_INDEX_TAG = 0x08;
+    private static final int EXPLICIT_HASH_KEY_INDEX_TAG = 0x10;
+    private static final int DATA_TAG = 0x1A;
+
+    private final List<UserRecord> userRecords = new ArrayList<UserRecord>();
+    private final Map<String, Integer> partitionKeys = new LinkedHashMap<String, Integer>();
+    private final Map<String, Integer> explicitHashKeys = new LinkedHashMap<String, Integer>();
+    /** The size of the AggregatedRecord message holding the user records. */
+    private int messageSize;
+
+    /** The shard this record is predicted to map to; may be null. */
+    final String predictedShardId;
+    /** The number of times this record failed to be put. */
+    int failures;
+
+    KinesisRecord(UserRecord userRecord, String predictedShardId) {
+        this.predictedShardId = predictedShardId;
+        messageSize = sizeWith(userRecord);
+        add(userRecord);
+    }
+
+    /**
+     * Aggregates the given user record into this one, unless that would grow
+     * this record beyond the given size, in which case false is returned.
+     */
+    boolean tryAggregate(UserRecord userRecord, int maxSize) {
+        int newMessageSize = sizeWith(userRecord);
+        if (aggregatedSize(newMessageSize) > maxSize) {
+            return false;
+        }
+        messageSize = newMessageSize;
+        add(userRecord);
+        return true;
+    }
+
+    List<UserRecord> getUserRecords() {
+        return userRecords;
+    }
+
+    /**
+     * Returns the size of this record as accounted by Kinesis, which is the
+     * size of its data and partition key.
+     */
+    int getSize() {
+        if (userRecords.size() == 1) {
+            return userRecords.get(0).getSize();
+        }
+        return aggregatedSize(messageSize);
+    }
+
+    /** Returns the entry of a PutRecords request putting this record. */
+    PutRecordsRequestEntry toEntry() {
+        UserRecord first = userRecords.get(0);
+        PutRecordsRequestEntry entry = new PutRecordsRequestEntry()
+                .withPartitionKey(first.partitionKey)
+                .withExplicitHashKey(first.explicitHashKey);
+        if (userRecords.size() == 1) {
+            return entry.withData(ByteBuffer.wrap(first.data));
+        }
+        return entry.withData(ByteBuffer.wrap(encode()));
+    }
+
+    private void add(UserRecord userRecord) {
+        userRecords.add(userRecord);
+        if (!partitionKeys.containsKey(userRecord.partitionKey)) {
+            partitionKeys.put(userRecord.partitionKey, partitionKeys.size());
+        }
+        if (userRecord.explicitHashKey != null
+                && !explicitHashKeys.containsKey(userRecord.explicitHashKey)) {
+            explicitHashKeys.put(userRecord.explicitHashKey, explicitHashKeys.size());
+        }
+    }
+
+    private int aggregatedSize(int messageSize) {
+        return userRecords.get(0).partitionKeyBytes.length
+             + AGGREGATION_MAGIC.length + messageSize + DIGEST_LENGTH;
+    }
+
+    /**
+     * Returns the size of the AggregatedRecord message once the given user
+     * record is added to it.
+     */
+    private int sizeWith(UserRecord userRecord) {
+        int size = messageSize;
+        Integer partitionKeyIndex = partitionKeys.get(userRecord.partitionKey);
+        if (partitionKeyIndex == null) {
+            partitionKeyIndex = partitionKeys.size();
+            size += lengthDelimitedSize(userRecord.partitionKeyBytes.length);
+        }
+        int recordSize = 1 + varintSize(partitionKeyIndex)
+                       + lengthDelimitedSize(userRecord.data.length);
+        if (userRecord.explicitHashKey != null) {
+            Integer explicitHashKeyIndex = explicitHashKeys.get(userRecord.explicitHashKey);
+            if (explicitHashKeyIndex == null) {
+                explicitHashKeyIndex = explicitHashKeys.size();
+                // Explicit hash keys are decimal digits, encoded in one byte each
+                size += lengthDelimitedSize(userRecord.explicitHashKey.length());
+            }
+            recordSize += 1 + varintSize(explicitHashKeyIndex);
+        }
+        return size + lengthDelimitedSize(recordSize);
+    }
+
+    private byte[] encode() {
+        ByteArrayOutputStream message = new ByteArrayOutputStream(messageSize);
+        for (String partitionKey : partitionKeys.keySet()) {
+            writeLengthDelimited(message, PARTITION_KEY_TABLE_TAG,
+                    partitionKey.getBytes(StringUtils.UTF8));
+        }
+        for (String explicitHashKey : explicitHashKeys.keySet()) {
+            writeLengthDelimited(message, EXPLICIT_HASH_KEY_TABLE_TAG,
+                    explicitHashKey.getBytes(StringUtils.UTF8));
+        }
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        for (UserRecord userRecord : userRecords) {
+            record.reset();
+            writeVarint(record, PARTITION_KEY_INDEX_TAG);
+            writeVarint(record, partitionKeys.get(userRecord.partitionKey));
+            if (userRecord.explicitHashKey != null) {
+                writeVarint(record, EXPLICIT_HASH_KEY_INDEX_TAG);
+                writeVarint(record, explicitHashKeys.get(userRecord.explicitHashKey));
+            }
+            writeLengthDelimited(record, DATA_TAG, userRecord.data);
+            writeLengthDelimited(message, RECORDS_TAG, record.toByteArray());
+        }
+        byte[] messageBytes = message.toByteArray();
+
+        ByteArrayOutputStream aggregated = new ByteArrayOutputStream(
+                AGGREGATION_MAGIC.length + messageBytes.length + DIGEST_LENGTH);
+        aggregated.write(AGGREGATION_MAGIC, 0, AGGREGATION_MAGIC.length);
+        aggregated.write(messageBytes, 0, messageBytes.length);
+        byte[] digest = Md5Utils.computeMD5Hash(messageBytes);
+        aggregated.write(digest, 0, digest.length);
+        return aggregated.toByteArray();
+    }
+
+    /** Returns the size of a length-delimited field, including its tag. */
+    private static int lengthDelimitedSize(int length) {
+        return 1 + varintSize(length) + length;
+    }
+
+    private static int varintSize(int value) {
+        int size = 1;
+        while ((value & ~0x7F) != 0) {
+            value >>>= 7;
+            size++;
+        }
+        return size;
+    }
+
+    private static void writeLengthDelimited(ByteArrayOutputStream out, int tag, byte[] bytes) {
+        writeVarint(out, tag);
+        writeVarint(out, bytes.length);
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static void writeVarint(ByteArrayOutputStream out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.List;
+
+import com.amazonaws.services.kinesis.model.Record;
+
+/**
+ * Processes the records read by an {@link AmazonKinesisBufferedConsumer}.
+ * The batches of a shard are processed one at a time, in order; the batches
+ * of different shards may be processed concurrently.
+ */
+public interface KinesisRecordProcessor {
+
+    /**
+     * Processes a batch of records read from the given shard. An exception
+     * thrown by this method stops the reading of the shard, and is reported
+     * by {@link KinesisShardStatus#getFailure()}; the batch isn't counted as
+     * processed, so that a restarted consumer reads it again.
+     */
+    void processRecords(String shardId, List<Record> records);
+
+    /**
+     * Called once all the records of the given shard, which was closed by
+     * resharding, have been processed. The records of its child shards are
+     * processed afterwards.
+     */
+    void shardEnded(String shardId);
+}
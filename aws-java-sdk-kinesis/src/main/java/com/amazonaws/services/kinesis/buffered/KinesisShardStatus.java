@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+/**
+ * A snapshot of the progress of an {@link AmazonKinesisBufferedConsumer} on a
+ * shard.
+ */
+public final class KinesisShardStatus {
+
+    private final String shardId;
+    private final String lastProcessedSequenceNumber;
+    private final long millisBehindLatest;
+    private final int prefetchedRecordCount;
+    private final long processedRecordCount;
+    private final long throttledFetchCount;
+    private final boolean isEnded;
+    private final RuntimeException failure;
+
+    KinesisShardStatus(String shardId, String lastProcessedSequenceNumber,
+            long millisBehindLatest, int prefetchedRecordCount,
+            long processedRecordCount, long throttledFetchCount, boolean isEnded,
+            RuntimeException failure) {
+        this.shardId = shardId;
+        this.lastProcessedSequenceNumber = lastProcessedSequenceNumber;
+        this.millisBehindLatest = millisBehindLatest;
+        this.prefetchedRecordCount = prefetchedRecordCount;
+        this.processedRecordCount = processedRecordCount;
+        this.throttledFetchCount = throttledFetchCount;
+        this.isEnded = isEnded;
+        this.failure = failure;
+    }
+
+    public String getShardId() {
+        return shardId;
+    }
+
+    /**
+     * Returns the sequence number of the last record processed, which the
+     * consumer can later be restarted after; or null if none was.
+     */
+    public String getLastProcessedSequenceNumber() {
+        return lastProcessedSequenceNumber;
+    }
+
+    /**
+     * Returns an estimate of how far (milliseconds) the consumer is behind
+     * the latest record of the shard: zero if the last fetch found no new
+     * records or the shard is closed, or else the time since the consumer last caught up with the
+     * shard, or started reading it.
+     */
+    public long getMillisBehindLatest() {
+        return millisBehindLatest;
+    }
+
+    /** Returns the number of records fetched that are waiting to be processed. */
+    public int getPrefetchedRecordCount() {
+        return prefetchedRecordCount;
+    }
+
+    /** Returns the number of records processed. */
+    public long getProcessedRecordCount() {
+        return processedRecordCount;
+    }
+
+    /** Returns the number of fetches that exceeded the throughput of the shard. */
+    public long getThrottledFetchCount() {
+        return throttledFetchCount;
+    }
+
+    /** Returns whether the shard was closed and all its records processed. */
+    public boolean isEnded() {
+        return isEnded;
+    }
+
+    /**
+     * Returns the exception thrown by the record processor, after which the
+     * shard is no longer read; or null if it hasn't failed. The records of
+     * the failed batch aren't counted as processed.
+     */
+    public RuntimeException getFailure() {
+        return failure;
+    }
+
+    @Override
+    public String toString() {
+        return "KinesisShardStatus [shardId=" + shardId
+                + ", lastProcessedSequenceNumber=" + lastProcessedSequenceNumber
+                + ", millisBehindLatest=" + millisBehindLatest
+                + ", prefetchedRecordCount=" + prefetchedRecordCount
+                + ", processedRecordCount=" + processedRecordCount
+                + ", throttledFetchCount=" + throttledFetchCount
+                + ", isEnded=" + isEnded
+                + ", failure=" + failure + "]";
+    }
+}
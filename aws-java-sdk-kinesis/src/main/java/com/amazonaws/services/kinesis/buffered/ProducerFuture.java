@@ -0,0 +1,103 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.internal.SettableFuture;
+
+/**
+ * The future of a record put by the producer, which calls the handler of the
+ * record, if any, once it is done.
+ */
+class ProducerFuture<Req extends AmazonWebServiceRequest, Res> extends SettableFuture<Res> {
+
+    /** Whether the current thread is calling the handler of a record */
+    private static final ThreadLocal<Boolean> IS_CALLING_HANDLER = new ThreadLocal<Boolean>();
+
+    private final Req request;
+
+    /** handler we should call after the future is done; may be null */
+    private final AsyncHandler<Req, Res> handler;
+
+    /** runs the handler, so that it doesn't hold up the producer's threads */
+    private final Executor executor;
+
+    ProducerFuture(Req request, AsyncHandler<Req, Res> handler, Executor executor) {
+        this.request = request;
+        this.handler = handler;
+        this.executor = executor;
+    }
+
+    /**
+     * Returns true if the current thread is calling the handler of a record.
+     */
+    static boolean isCallingHandler() {
+        return IS_CALLING_HANDLER.get() != null;
+    }
+
+    @Override
+    protected void onSuccess(final Res result) {
+        if (handler != null) {
+            callHandler(new Runnable() {
+                @Override
+                public void run() {
+                    handler.onSuccess(request, result);
+                }
+            });
+        }
+    }
+
+    @Override
+    protected void onFailure(final Exception e) {
+        if (handler != null) {
+            callHandler(new Runnable() {
+                @Override
+                public void run() {
+                    handler.onError(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * Calls the handler on the executor, or on the current thread if the
+     * executor rejects it.
+     */
+    private void callHandler(final Runnable call) {
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                boolean isNested = isCallingHandler();
+                IS_CALLING_HANDLER.set(Boolean.TRUE);
+                try {
+                    call.run();
+                } finally {
+                    if (!isNested) {
+                        IS_CALLING_HANDLER.remove();
+                    }
+                }
+            }
+        };
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            task.run();
+        }
+    }
+}
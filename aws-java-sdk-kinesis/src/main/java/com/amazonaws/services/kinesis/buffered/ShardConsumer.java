@@ -0,0 +1,302 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.LinkedList;
+import java.util.List;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.model.ExpiredIteratorException;
+import com.amazonaws.services.kinesis.model.GetRecordsRequest;
+import com.amazonaws.services.kinesis.model.GetRecordsResult;
+import com.amazonaws.services.kinesis.model.GetShardIteratorRequest;
+import com.amazonaws.services.kinesis.model.ProvisionedThroughputExceededException;
+import com.amazonaws.services.kinesis.model.Record;
+import com.amazonaws.services.kinesis.model.ShardIteratorType;
+
+/**
+ * Reads the records of a shard for the consumer. A fetch task calls
+ * GetRecords and queues the batches read, up to the maximum number of
+ * prefetched batches, while a process task passes the queued batches to the
+ * record processor, one at a time. Each task resubmits itself to the
+ * executor rather than looping, so that shards share the threads fairly.
+ * <p>
+ * The shard iterator is renewed after the last record fetched when it
+ * expires, and fetching backs off when the throughput of the shard is
+ * exceeded. The shard is no longer read once the record processor fails on a
+ * batch, which is left unprocessed.
+ */
+class ShardConsumer {
+
+    private static final Log log = LogFactory.getLog(ShardConsumer.class);
+
+    /** The maximum time (milliseconds) to back off before fetching again. */
+    private static final long MAX_BACKOFF_MS = 10 * 1000;
+
+    private final AmazonKinesisBufferedConsumer consumer;
+    private final KinesisConsumerConfig config;
+    private final KinesisRecordProcessor processor;
+    final String shardId;
+    /** The position at which the shard is first read */
+    private final String startingIteratorType;
+    private final String startingSequenceNumber;
+
+    // Only accessed by the fetch task, of which at most one runs at a time
+    private String shardIterator;
+    private String lastFetchedSequenceNumber;
+    private long backoffMs;
+    private long lastFetchTime;
+
+    // All guarded by this
+    private final LinkedList<List<Record>> prefetchedBatches = new LinkedList<List<Record>>();
+    private int prefetchedRecordCount;
+    private boolean isFetching;
+    private boolean isProcessing;
+    /** Whether all the records of the shard have been fetched */
+    private boolean isShardClosed;
+    private boolean isEnded;
+    /** The exception thrown by the record processor, which stopped the shard */
+    private RuntimeException failure;
+    private String lastProcessedSequenceNumber;
+    private long processedRecordCount;
+    private long throttledFetchCount;
+    /** The time at which a fetch last found no new records, or reading started */
+    private long caughtUpTime = System.currentTimeMillis();
+    private boolean isCaughtUp;
+
+    private final Runnable fetchTask = new Runnable() {
+        @Override
+        public void run() {
+            fetch();
+        }
+    };
+
+    private final Runnable processTask = new Runnable() {
+        @Override
+        public void run() {
+            process();
+        }
+    };
+
+    ShardConsumer(AmazonKinesisBufferedConsumer consumer,
+            KinesisConsumerConfig config, KinesisRecordProcessor processor,
+            String shardId, String startingIteratorType, String startingSequenceNumber) {
+        this.consumer = consumer;
+        this.config = config;
+        this.processor = processor;
+        this.shardId = shardId;
+        this.startingIteratorType = startingIteratorType;
+        this.startingSequenceNumber = startingSequenceNumber;
+    }
+
+    void start() {
+        synchronized (this) {
+            isFetching = true;
+        }
+        consumer.execute(fetchTask);
+    }
+
+    synchronized boolean isEnded() {
+        return isEnded;
+    }
+
+    synchronized KinesisShardStatus getStatus() {
+        long millisBehindLatest = isCaughtUp || isShardClosed
+                ? 0
+                : System.currentTimeMillis() - caughtUpTime;
+        return new KinesisShardStatus(shardId, lastProcessedSequenceNumber,
+                millisBehindLatest, prefetchedRecordCount, processedRecordCount,
+                throttledFetchCount, isEnded, failure);
+    }
+
+    /**
+     * Fetches a batch of records, queues it, and fetches the next one unless
+     * enough batches are queued.
+     */
+    private void fetch() {
+        synchronized (this) {
+            if (consumer.isShutdown() || failure != null) {
+                isFetching = false;
+                return;
+            }
+        }
+        long delayMs = lastFetchTime + config.getMinFetchIntervalMs() - System.currentTimeMillis();
+        if (delayMs > 0) {
+            consumer.schedule(fetchTask, delayMs);
+            return;
+        }
+        lastFetchTime = System.currentTimeMillis();
+
+        GetRecordsResult result;
+        try {
+            if (shardIterator == null) {
+                shardIterator = getShardIterator();
+            }
+            GetRecordsRequest request = new GetRecordsRequest()
+                    .withShardIterator(shardIterator)
+                    .withLimit(config.getMaxRecordsPerFetch());
+            request.getRequestClientOptions().appendUserAgent(AmazonKinesisBufferedConsumer.USER_AGENT);
+            result = consumer.getKinesis().getRecords(request);
+        } catch (ExpiredIteratorException e) {
+            // Renewed after the last record fetched
+            shardIterator = null;
+            consumer.execute(fetchTask);
+            return;
+        } catch (ProvisionedThroughputExceededException e) {
+            synchronized (this) {
+                throttledFetchCount++;
+            }
+            backOff();
+            return;
+        } catch (AmazonClientException e) {
+            log.warn("Unable to fetch the records of shard " + shardId, e);
+            backOff();
+            return;
+        }
+        backoffMs = 0;
+
+        List<Record> records = result.getRecords();
+        shardIterator = result.getNextShardIterator();
+        if (!records.isEmpty()) {
+            lastFetchedSequenceNumber = records.get(records.size() - 1).getSequenceNumber();
+        }
+        boolean fetchMore;
+        synchronized (this) {
+            if (records.isEmpty()) {
+                isCaughtUp = true;
+                caughtUpTime = lastFetchTime;
+            } else {
+                isCaughtUp = false;
+                prefetchedBatches.add(records);
+                prefetchedRecordCount += records.size();
+            }
+            // A closed shard has no next iterator once all its records are read
+            isShardClosed = shardIterator == null;
+            fetchMore = !isShardClosed
+                    && prefetchedBatches.size() < config.getMaxPrefetchedBatches();
+            isFetching = fetchMore;
+        }
+        startProcessing();
+        if (fetchMore) {
+            if (records.isEmpty()) {
+                consumer.schedule(fetchTask, config.getIdleFetchIntervalMs());
+            } else {
+                consumer.execute(fetchTask);
+            }
+        }
+    }
+
+    private String getShardIterator() {
+        GetShardIteratorRequest request = new GetShardIteratorRequest()
+                .withStreamName(consumer.getStreamName())
+                .withShardId(shardId);
+        if (lastFetchedSequenceNumber != null) {
+            request.setShardIteratorType(ShardIteratorType.AFTER_SEQUENCE_NUMBER);
+            request.setStartingSequenceNumber(lastFetchedSequenceNumber);
+        } else {
+            request.setShardIteratorType(startingIteratorType);
+            request.setStartingSequenceNumber(startingSequenceNumber);
+        }
+        request.getRequestClientOptions().appendUserAgent(AmazonKinesisBufferedConsumer.USER_AGENT);
+        return consumer.getKinesis().getShardIterator(request).getShardIterator();
+    }
+
+    private void backOff() {
+        backoffMs = backoffMs == 0
+                ? config.getThrottleBackoffMs()
+                : Math.min(backoffMs * 2, MAX_BACKOFF_MS);
+        consumer.schedule(fetchTask, backoffMs);
+    }
+
+    /**
+     * Submits the process task, unless it is running or there is nothing to
+     * process; ends the shard once all its records are processed.
+     */
+    private void startProcessing() {
+        boolean isEnding = false;
+        synchronized (this) {
+            if (isProcessing || isEnded || failure != null) {
+                return;
+            }
+            if (!prefetchedBatches.isEmpty()) {
+                isProcessing = true;
+            } else if (isShardClosed) {
+                isEnded = true;
+                isEnding = true;
+            } else {
+                return;
+            }
+        }
+        if (isEnding) {
+            try {
+                processor.shardEnded(shardId);
+            } catch (RuntimeException e) {
+                log.warn("The record processor failed on the end of shard " + shardId, e);
+            }
+            consumer.onShardEnded(this);
+        } else {
+            consumer.execute(processTask);
+        }
+    }
+
+    /**
+     * Processes the next queued batch, resuming the fetches so that the next
+     * batch is fetched meanwhile. If the record processor fails, the batch is
+     * queued back unprocessed and the shard is stopped.
+     */
+    private void process() {
+        List<Record> batch;
+        boolean startFetching;
+        synchronized (this) {
+            if (consumer.isShutdown()) {
+                isProcessing = false;
+                return;
+            }
+            batch = prefetchedBatches.removeFirst();
+            prefetchedRecordCount -= batch.size();
+            startFetching = !isFetching && !isShardClosed;
+            if (startFetching) {
+                isFetching = true;
+            }
+        }
+        if (startFetching) {
+            consumer.execute(fetchTask);
+        }
+
+        try {
+            processor.processRecords(shardId, batch);
+        } catch (RuntimeException e) {
+            log.error("The record processor failed on " + batch.size()
+                    + " records of shard " + shardId + ", which is no longer read", e);
+            synchronized (this) {
+                failure = e;
+                prefetchedBatches.addFirst(batch);
+                prefetchedRecordCount += batch.size();
+                isProcessing = false;
+            }
+            return;
+        }
+
+        synchronized (this) {
+            lastProcessedSequenceNumber = batch.get(batch.size() - 1).getSequenceNumber();
+            processedRecordCount += batch.size();
+            isProcessing = false;
+        }
+        startProcessing();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.kinesis.AmazonKinesis;
+import com.amazonaws.services.kinesis.model.DescribeStreamRequest;
+import com.amazonaws.services.kinesis.model.DescribeStreamResult;
+import com.amazonaws.services.kinesis.model.Shard;
+import com.amazonaws.services.kinesis.model.StreamDescription;
+import com.amazonaws.util.Md5Utils;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * The hash key ranges of the open shards of a stream, used to predict the
+ * shard a record is put to. The prediction can be wrong after the stream has
+ * been resharded; the map is then reloaded, and the records are still put
+ * correctly, since Kinesis itself maps the records to the shards.
+ */
+class ShardMap {
+
+    private static final Comparator<ShardRange> BY_STARTING_HASH_KEY = new Comparator<ShardRange>() {
+        @Override
+        public int compare(ShardRange a, ShardRange b) {
+            return a.startingHashKey.compareTo(b.startingHashKey);
+        }
+    };
+
+    private final ShardRange[] shards;
+
+    private ShardMap(List<ShardRange> shards) {
+        Collections.sort(shards, BY_STARTING_HASH_KEY);
+        this.shards = shards.toArray(new ShardRange[shards.size()]);
+    }
+
+    /**
+     * Describes the given stream and returns the map of its open shards.
+     *
+     * @throws AmazonClientException
+     *             if the stream can't be described or has no open shards
+     */
+    static ShardMap load(AmazonKinesis kinesis, String streamName, String userAgent) {
+        List<ShardRange> shards = new ArrayList<ShardRange>();
+        for (Shard shard : describeShards(kinesis, streamName, userAgent)) {
+            // Closed shards no longer accept records
+            if (shard.getSequenceNumberRange().getEndingSequenceNumber() == null) {
+                shards.add(new ShardRange(shard.getShardId(),
+                        new BigInteger(shard.getHashKeyRange().getStartingHashKey()),
+                        new BigInteger(shard.getHashKeyRange().getEndingHashKey())));
+            }
+        }
+        if (shards.isEmpty()) {
+            throw new AmazonClientException("Stream " + streamName + " has no open shards");
+        }
+        return new ShardMap(shards);
+    }
+
+    /**
+     * Returns all the shards of the given stream, open and closed, following
+     * the pages of the stream description.
+     */
+    static List<Shard> describeShards(AmazonKinesis kinesis, String streamName, String userAgent) {
+        List<Shard> shards = new ArrayList<Shard>();
+        StreamDescription description;
+        do {
+            String exclusiveStartShardId = shards.isEmpty()
+                    ? null
+                    : shards.get(shards.size() - 1).getShardId();
+            DescribeStreamRequest request = new DescribeStreamRequest()
+                    .withStreamName(streamName)
+                    .withExclusiveStartShardId(exclusiveStartShardId);
+            request.getRequestClientOptions().appendUserAgent(userAgent);
+            DescribeStreamResult result = kinesis.describeStream(request);
+            description = result.getStreamDescription();
+            shards.addAll(description.getShards());
+        } while (Boolean.TRUE.equals(description.getHasMoreShards())
+                && !description.getShards().isEmpty());
+        return shards;
+    }
+
+    /**
+     * Returns the id of the shard the given hash key maps to, or null if
+     * no open shard covers it.
+     */
+    String shardIdOf(BigInteger hashKey) {
+        int low = 0;
+        int high = shards.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            ShardRange shard = shards[middle];
+            if (hashKey.compareTo(shard.startingHashKey) < 0) {
+                high = middle - 1;
+            } else if (hashKey.compareTo(shard.endingHashKey) > 0) {
+                low = middle + 1;
+            } else {
+                return shard.shardId;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the hash key of a record: its explicit hash key if any, or else
+     * the MD5 digest of its partition key as a 128-bit unsigned integer, as
+     * computed by Kinesis.
+     */
+    static BigInteger hashKeyOf(String partitionKey, String explicitHashKey) {
+        if (explicitHashKey != null) {
+            return new BigInteger(explicitHashKey);
+        }
+        return new BigInteger(1, Md5Utils.computeMD5Hash(partitionKey.getBytes(StringUtils.UTF8)));
+    }
+
+    private static final class ShardRange {
+        final String shardId;
+        final BigInteger startingHashKey;
+        final BigInteger endingHashKey;
+
+        ShardRange(String shardId, BigInteger startingHashKey, BigInteger endingHashKey) {
+            this.shardId = shardId;
+            this.startingHashKey = startingHashKey;
+            this.endingHashKey = endingHashKey;
+        }
+    }
+}
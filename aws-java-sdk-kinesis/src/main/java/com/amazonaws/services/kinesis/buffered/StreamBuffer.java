@@ -0,0 +1,369 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.internal.BufferedPublisherSupport;
+import com.amazonaws.services.kinesis.model.PutRecordResult;
+import com.amazonaws.services.kinesis.model.PutRecordsRequest;
+import com.amazonaws.services.kinesis.model.PutRecordsRequestEntry;
+import com.amazonaws.services.kinesis.model.PutRecordsResult;
+import com.amazonaws.services.kinesis.model.PutRecordsResultEntry;
+
+/**
+ * The records buffered by the producer for a stream. Records are sent in
+ * PutRecords calls as soon as a batch is full, or once the oldest of them has
+ * been buffered for the linger time. With aggregation, the records predicted
+ * to map to the same shard are aggregated, one open aggregated record per
+ * shard, before being batched. Records that fail to be put are retried in
+ * their own batch, after a backoff.
+ */
+class StreamBuffer {
+
+    private static final Log log = LogFactory.getLog(StreamBuffer.class);
+
+    /** The maximum time (milliseconds) before a failed record is retried. */
+    private static final long MAX_RETRY_BACKOFF_MS = 10 * 1000;
+
+    /**
+     * The minimum time (milliseconds) between two loads of the shard map,
+     * so that stale predictions of the records in flight don't cause a burst
+     * of DescribeStream calls, which are throttled at a low rate.
+     */
+    private static final long MIN_SHARD_MAP_RELOAD_INTERVAL_MS = 30 * 1000;
+
+    private final AmazonKinesisBufferedProducer producer;
+    private final KinesisProducerConfig config;
+    private final String streamName;
+
+    private final Object shardMapLock = new Object();
+    /** Null until loaded, or if the stream couldn't be described */
+    private volatile ShardMap shardMap;
+    /** The time at which the shard map may next be loaded */
+    private volatile long nextShardMapLoadTime;
+    private final AtomicBoolean isReloadingShardMap = new AtomicBoolean();
+
+    // All guarded by this
+    /** The records ready to be sent, in the order they were buffered */
+    private List<KinesisRecord> pendingRecords = new ArrayList<KinesisRecord>();
+    /** The open aggregated records, by predicted shard id */
+    private final Map<String, KinesisRecord> aggregatingRecords = new HashMap<String, KinesisRecord>();
+    /** The number and size of the pending and aggregating records */
+    private int bufferedCount;
+    private long bufferedBytes;
+    /** The time at which the oldest buffered record was added */
+    private long oldestRecordTime;
+
+    StreamBuffer(AmazonKinesisBufferedProducer producer,
+            KinesisProducerConfig config, String streamName) {
+        this.producer = producer;
+        this.config = config;
+        this.streamName = streamName;
+    }
+
+    /**
+     * Buffers the given record, and sends the buffered records if a batch is
+     * full.
+     */
+    void add(UserRecord userRecord) {
+        ShardMap map = getShardMap();
+        String shardId = map == null ? null : map.shardIdOf(userRecord.hashKey);
+        List<List<KinesisRecord>> batches = null;
+        synchronized (this) {
+            if (bufferedCount == 0) {
+                oldestRecordTime = System.currentTimeMillis();
+            }
+            if (shardId == null) {
+                pendingRecords.add(new KinesisRecord(userRecord, null));
+                bufferedCount++;
+                bufferedBytes += userRecord.getSize();
+            } else {
+                KinesisRecord open = aggregatingRecords.get(shardId);
+                int openSize = open == null ? 0 : open.getSize();
+                if (open != null && open.tryAggregate(userRecord, config.getMaxAggregatedRecordBytes())) {
+                    bufferedBytes += open.getSize() - openSize;
+                } else {
+                    if (open != null) {
+                        pendingRecords.add(open);
+                    }
+                    aggregatingRecords.put(shardId, new KinesisRecord(userRecord, shardId));
+                    bufferedCount++;
+                    bufferedBytes += userRecord.getSize();
+                }
+            }
+            if (config.getLingerMs() == 0
+                    || bufferedCount >= config.getMaxBatchRecords()
+                    || bufferedBytes >= config.getMaxBatchBytes()) {
+                batches = drain();
+            }
+        }
+        sendAll(batches);
+    }
+
+    /** Sends all the buffered records. */
+    void flush() {
+        List<List<KinesisRecord>> batches;
+        synchronized (this) {
+            batches = drain();
+        }
+        sendAll(batches);
+    }
+
+    /**
+     * Sends all the buffered records if the oldest of them has been buffered
+     * for the linger time.
+     */
+    void flushIfLingered(long now) {
+        List<List<KinesisRecord>> batches = null;
+        synchronized (this) {
+            if (bufferedCount > 0 && now - oldestRecordTime >= config.getLingerMs()) {
+                batches = drain();
+            }
+        }
+        sendAll(batches);
+    }
+
+    /**
+     * Removes all the buffered records, closing the open aggregated records,
+     * and returns them split into batches.
+     */
+    private synchronized List<List<KinesisRecord>> drain() {
+        if (bufferedCount == 0) {
+            return null;
+        }
+        List<KinesisRecord> records = pendingRecords;
+        records.addAll(aggregatingRecords.values());
+        pendingRecords = new ArrayList<KinesisRecord>();
+        aggregatingRecords.clear();
+        bufferedCount = 0;
+        bufferedBytes = 0;
+
+        List<List<KinesisRecord>> batches = new ArrayList<List<KinesisRecord>>();
+        List<KinesisRecord> batch = new ArrayList<KinesisRecord>();
+        long batchBytes = 0;
+        for (KinesisRecord record : records) {
+            if (batch.size() == config.getMaxBatchRecords()
+                    || batchBytes + record.getSize() > config.getMaxBatchBytes()) {
+                batches.add(batch);
+                batch = new ArrayList<KinesisRecord>();
+                batchBytes = 0;
+            }
+            batch.add(record);
+            batchBytes += record.getSize();
+        }
+        batches.add(batch);
+        return batches;
+    }
+
+    private void sendAll(List<List<KinesisRecord>> batches) {
+        if (batches != null) {
+            for (List<KinesisRecord> batch : batches) {
+                send(batch);
+            }
+        }
+    }
+
+    /**
+     * Sends the given batch on the producer's executor; or fails its records,
+     * releasing their buffer space, if the executor rejects it.
+     */
+    private void send(final List<KinesisRecord> batch) {
+        try {
+            producer.getSupport().execute(new Runnable() {
+                @Override
+                public void run() {
+                    putRecords(batch);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            failAll(batch, new AmazonClientException(
+                    "Unable to send the records of stream " + streamName, e));
+        }
+    }
+
+    /**
+     * Puts the given batch of records, completes the user records that were
+     * put, and retries the others.
+     */
+    private void putRecords(List<KinesisRecord> batch) {
+        List<PutRecordsRequestEntry> entries = new ArrayList<PutRecordsRequestEntry>(batch.size());
+        for (KinesisRecord record : batch) {
+            entries.add(record.toEntry());
+        }
+        PutRecordsRequest request = new PutRecordsRequest()
+                .withStreamName(streamName)
+                .withRecords(entries);
+        request.getRequestClientOptions().appendUserAgent(AmazonKinesisBufferedProducer.USER_AGENT);
+
+        PutRecordsResult result;
+        try {
+            result = producer.getKinesis().putRecords(request);
+        } catch (AmazonClientException e) {
+            if (BufferedPublisherSupport.isRetryable(e)) {
+                retry(batch, e);
+            } else {
+                failAll(batch, e);
+            }
+            return;
+        } catch (RuntimeException e) {
+            failAll(batch, e);
+            return;
+        }
+
+        List<KinesisRecord> failedRecords = new ArrayList<KinesisRecord>();
+        AmazonServiceException lastError = null;
+        for (int i = 0; i < batch.size(); i++) {
+            KinesisRecord record = batch.get(i);
+            PutRecordsResultEntry entry = result.getRecords().get(i);
+            if (entry.getErrorCode() == null) {
+                succeed(record, entry);
+            } else {
+                lastError = new AmazonServiceException(entry.getErrorMessage());
+                lastError.setErrorCode(entry.getErrorCode());
+                lastError.setServiceName("AmazonKinesis");
+                failedRecords.add(record);
+            }
+        }
+        // The failed entries are throttled or internal failures, worth retrying
+        retry(failedRecords, lastError);
+    }
+
+    /**
+     * Schedules a batch of the given records to be sent again after a
+     * backoff, and fails the records that have exhausted their retries.
+     */
+    private void retry(List<KinesisRecord> records, Exception cause) {
+        final List<KinesisRecord> retryBatch = new ArrayList<KinesisRecord>(records.size());
+        int failures = 0;
+        for (KinesisRecord record : records) {
+            record.failures++;
+            if (record.failures > config.getMaxRetries()) {
+                fail(record, cause);
+            } else {
+                retryBatch.add(record);
+                failures = Math.max(failures, record.failures);
+            }
+        }
+        if (retryBatch.isEmpty()) {
+            return;
+        }
+        long backoffMs = BufferedPublisherSupport.backoffMs(config.getRetryBackoffMs(),
+                failures, MAX_RETRY_BACKOFF_MS);
+        try {
+            producer.getSupport().schedule(new Runnable() {
+                @Override
+                public void run() {
+                    send(retryBatch);
+                }
+            }, backoffMs);
+        } catch (RejectedExecutionException e) {
+            failAll(retryBatch, cause);
+        }
+    }
+
+    private void succeed(KinesisRecord record, PutRecordsResultEntry entry) {
+        PutRecordResult result = new PutRecordResult()
+                .withShardId(entry.getShardId())
+                .withSequenceNumber(entry.getSequenceNumber());
+        for (UserRecord userRecord : record.getUserRecords()) {
+            producer.complete(userRecord, result, null);
+        }
+        if (record.predictedShardId != null
+                && !record.predictedShardId.equals(entry.getShardId())) {
+            reloadShardMap();
+        }
+    }
+
+    private void fail(KinesisRecord record, Exception cause) {
+        for (UserRecord userRecord : record.getUserRecords()) {
+            producer.complete(userRecord, null, cause);
+        }
+    }
+
+    private void failAll(List<KinesisRecord> records, Exception cause) {
+        for (KinesisRecord record : records) {
+            fail(record, cause);
+        }
+    }
+
+    /**
+     * Returns the shard map of the stream, loading it if necessary; or null
+     * if records aren't aggregated, or the stream can't be described, in
+     * which case records aren't aggregated until it can.
+     */
+    private ShardMap getShardMap() {
+        ShardMap map = shardMap;
+        if (map != null || !config.isAggregationEnabled()
+                || System.currentTimeMillis() < nextShardMapLoadTime) {
+            return map;
+        }
+        synchronized (shardMapLock) {
+            if (shardMap == null && System.currentTimeMillis() >= nextShardMapLoadTime) {
+                loadShardMap();
+            }
+            return shardMap;
+        }
+    }
+
+    /**
+     * Reloads the shard map in the background, after a record was put to
+     * another shard than predicted, as happens once the stream is resharded.
+     */
+    private void reloadShardMap() {
+        if (System.currentTimeMillis() < nextShardMapLoadTime
+                || !isReloadingShardMap.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            producer.getSupport().execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        synchronized (shardMapLock) {
+                            loadShardMap();
+                        }
+                    } finally {
+                        isReloadingShardMap.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            isReloadingShardMap.set(false);
+        }
+    }
+
+    /** Must be called holding the shard map lock. */
+    private void loadShardMap() {
+        nextShardMapLoadTime = System.currentTimeMillis() + MIN_SHARD_MAP_RELOAD_INTERVAL_MS;
+        try {
+            shardMap = ShardMap.load(producer.getKinesis(), streamName,
+                    AmazonKinesisBufferedProducer.USER_AGENT);
+        } catch (AmazonClientException e) {
+            log.warn("Unable to load the shards of stream " + streamName
+                    + "; records won't be aggregated until they are loaded", e);
+        }
+    }
+}
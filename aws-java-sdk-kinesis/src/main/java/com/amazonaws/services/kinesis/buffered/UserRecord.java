@@ -0,0 +1,57 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.kinesis.buffered;
+
+import java.math.BigInteger;
+
+import com.amazonaws.services.kinesis.model.PutRecordRequest;
+import com.amazonaws.services.kinesis.model.PutRecordResult;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * A record added to the producer, with the future of its result.
+ */
+final class UserRecord {
+
+    final String partitionKey;
+    final byte[] partitionKeyBytes;
+    /** May be null */
+    final String explicitHashKey;
+    final BigInteger hashKey;
+    final byte[] data;
+    final ProducerFuture<PutRecordRequest, PutRecordResult> future;
+
+    UserRecord(PutRecordRequest request,
+            ProducerFuture<PutRecordRequest, PutRecordResult> future) {
+        this.partitionKey = request.getPartitionKey();
+        this.partitionKeyBytes = partitionKey.getBytes(StringUtils.UTF8);
+        this.explicitHashKey = request.getExplicitHashKey();
+        this.hashKey = ShardMap.hashKeyOf(partitionKey, explicitHashKey);
+        // Copied, so that the caller may reuse its buffer
+        this.data = request.getData() == null
+                ? new byte[0]
+                : BinaryUtils.copyBytesFrom(request.getData());
+        this.future = future;
+    }
+
+    /**
+     * Returns the size of this record as accounted by Kinesis, which is the
+     * size of its data and partition key.
+     */
+    int getSize() {
+        return data.length + partitionKeyBytes.length;
+    }
+}
@@ -0,0 +1,228 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.buffered;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.internal.BufferedPublisherSupport;
+import com.amazonaws.services.logs.AWSLogs;
+import com.amazonaws.services.logs.model.InputLogEvent;
+import com.amazonaws.util.StringUtils;
+import com.amazonaws.util.VersionInfoUtils;
+
+/**
+ * AWSLogsBufferedPublisher publishes events to CloudWatch Logs log streams in
+ * batches. <br>
+ *
+ * Rather than putting each event in its own PutLogEvents call, the publisher
+ * buffers the events of each log stream, sorts them by timestamp, and puts
+ * them in batches within the limits of the service: 10000 events, 1 MB, and
+ * a time span of 24 hours. Each log stream has one call in flight at a time,
+ * as the service requires the sequence token returned by the previous call;
+ * the next batch is buffered meanwhile, and sent as soon as the call
+ * completes if it is full, or once its oldest event has waited for the linger
+ * time (default=1000ms). The publisher keeps track of the sequence tokens,
+ * and recovers them when they conflict. <br>
+ *
+ * The events buffered and in flight are limited in size; once the limit is
+ * reached, publishing blocks or drops the events, according to the
+ * {@link OverflowPolicy}. Batches that fail to be sent are retried with a
+ * backoff, and dropped if they still fail. <br>
+ *
+ * The log groups and streams must exist. <br>
+ *
+ * AWSLogsBufferedPublisher is thread-safe.<br>
+ */
+@ThreadSafe
+public class AWSLogsBufferedPublisher {
+
+    public static final String USER_AGENT = AWSLogsBufferedPublisher.class.getSimpleName() + "/" + VersionInfoUtils.getVersion();
+
+    private final AWSLogs logs;
+    private final LogsPublisherConfig config;
+    /** Counts the events published that haven't been sent or dropped */
+    private final BufferedPublisherSupport support;
+
+    private final ConcurrentMap<List<String>, LogStreamBuffer> logStreamBuffers =
+            new ConcurrentHashMap<List<String>, LogStreamBuffer>();
+
+    private final AtomicLong droppedEvents = new AtomicLong();
+
+    public AWSLogsBufferedPublisher(AWSLogs logs) {
+        this(logs, new LogsPublisherConfig());
+    }
+
+    public AWSLogsBufferedPublisher(AWSLogs logs, LogsPublisherConfig config) {
+        this(logs, config, null);
+    }
+
+    /**
+     * Constructs a publisher which sends the batches on the given executor,
+     * which isn't shut down by this publisher. If the executor is null, the
+     * publisher uses its own pool of
+     * {@link LogsPublisherConfig#getMaxConcurrency()} threads.
+     */
+    public AWSLogsBufferedPublisher(AWSLogs logs, LogsPublisherConfig config,
+            ExecutorService executor) {
+        config.validate();
+        this.logs = logs;
+        this.config = new LogsPublisherConfig(config);
+        this.support = new BufferedPublisherSupport("logs-publisher-", executor,
+                config.getMaxConcurrency(), (int) config.getMaxBufferedBytes());
+        support.schedulePeriodically(new Runnable() {
+            @Override
+            public void run() {
+                flushLingeringEvents();
+            }
+        }, BufferedPublisherSupport.lingerCheckIntervalMs(config.getLingerMs()));
+    }
+
+    /**
+     * Publishes a message to the given log stream, timestamped now.
+     *
+     * @return false if the event was dropped because the buffer is full
+     * @see #publish(String, String, InputLogEvent)
+     */
+    public boolean publish(String logGroupName, String logStreamName, String message) {
+        return publish(logGroupName, logStreamName, new InputLogEvent()
+                .withTimestamp(System.currentTimeMillis())
+                .withMessage(message));
+    }
+
+    /**
+     * Publishes an event to the given log stream. If the buffer is full, the
+     * event is dropped, or the call blocks until there is room in the buffer,
+     * according to the overflow policy.
+     *
+     * @return false if the event was dropped because the buffer is full
+     * @throws AmazonClientException
+     *             if the event is invalid, if the publisher has been shut
+     *             down, or if the thread is interrupted while blocked
+     */
+    public boolean publish(String logGroupName, String logStreamName, InputLogEvent event) {
+        if (support.isShutdown()) {
+            throw new AmazonClientException("The publisher has been shut down");
+        }
+        if (event.getTimestamp() == null || event.getMessage() == null) {
+            throw new AmazonClientException("The timestamp and message of the event must be specified");
+        }
+        int size = event.getMessage().getBytes(StringUtils.UTF8).length
+                 + LogsPublisherConfig.EVENT_OVERHEAD_BYTES;
+        if (size > LogsPublisherConfig.SERVICE_MAX_EVENT_BYTES) {
+            throw new AmazonClientException("The size of the event, " + size
+                    + " bytes, exceeds the maximum of "
+                    + LogsPublisherConfig.SERVICE_MAX_EVENT_BYTES);
+        }
+
+        if (!support.tryReserve(1, size)) {
+            if (config.getOverflowPolicy() == OverflowPolicy.DROP) {
+                onDropped(1);
+                return false;
+            }
+            // Send what can be sent, rather than wait for the linger time
+            flush();
+            support.reserve(1, size);
+        }
+        getLogStreamBuffer(logGroupName, logStreamName).add(event, size);
+        return true;
+    }
+
+    /**
+     * Sends all the buffered events, without waiting for them to be sent.
+     */
+    public void flush() {
+        for (LogStreamBuffer buffer : logStreamBuffers.values()) {
+            buffer.flush();
+        }
+    }
+
+    /**
+     * Sends all the buffered events, and waits until all the events
+     * published so far have been sent or dropped.
+     *
+     * @throws AmazonClientException
+     *             if the thread is interrupted while waiting
+     */
+    public void flushSync() {
+        flush();
+        support.awaitOutstanding();
+    }
+
+    /** Returns the number of events published that haven't been sent or dropped. */
+    public long getOutstandingEventCount() {
+        return support.getOutstandingCount();
+    }
+
+    /**
+     * Returns the number of events dropped, because the buffer was full or
+     * their batch failed to be sent.
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.get();
+    }
+
+    /**
+     * Sends all the buffered events, waiting for them, and releases the
+     * threads of this publisher. The CloudWatch Logs client isn't shut down.
+     */
+    public void shutdown() {
+        support.markShutdown();
+        try {
+            flushSync();
+        } finally {
+            support.releaseThreads();
+        }
+    }
+
+    AWSLogs getLogs() {
+        return logs;
+    }
+
+    BufferedPublisherSupport getSupport() {
+        return support;
+    }
+
+    void onDropped(int count) {
+        droppedEvents.addAndGet(count);
+    }
+
+    private LogStreamBuffer getLogStreamBuffer(String logGroupName, String logStreamName) {
+        List<String> key = Arrays.asList(logGroupName, logStreamName);
+        LogStreamBuffer buffer = logStreamBuffers.get(key);
+        if (buffer == null) {
+            buffer = new LogStreamBuffer(this, config, logGroupName, logStreamName);
+            LogStreamBuffer existing = logStreamBuffers.putIfAbsent(key, buffer);
+            if (existing != null) {
+                buffer = existing;
+            }
+        }
+        return buffer;
+    }
+
+    private void flushLingeringEvents() {
+        long now = System.currentTimeMillis();
+        for (LogStreamBuffer buffer : logStreamBuffers.values()) {
+            buffer.flushIfLingered(now);
+        }
+    }
+}
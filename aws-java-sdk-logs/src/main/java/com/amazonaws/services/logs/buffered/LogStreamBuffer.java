@@ -0,0 +1,344 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.buffered;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.internal.BufferedPublisherSupport;
+import com.amazonaws.services.logs.model.DataAlreadyAcceptedException;
+import com.amazonaws.services.logs.model.DescribeLogStreamsRequest;
+import com.amazonaws.services.logs.model.DescribeLogStreamsResult;
+import com.amazonaws.services.logs.model.InputLogEvent;
+import com.amazonaws.services.logs.model.InvalidSequenceTokenException;
+import com.amazonaws.services.logs.model.LogStream;
+import com.amazonaws.services.logs.model.PutLogEventsRequest;
+import com.amazonaws.services.logs.model.PutLogEventsResult;
+import com.amazonaws.services.logs.model.RejectedLogEventsInfo;
+
+/**
+ * The events buffered by the publisher for a log stream. A log stream has at
+ * most one PutLogEvents call in flight, since each call needs the sequence
+ * token returned by the previous one; the events published meanwhile are
+ * buffered, and sent as soon as the call completes if a batch is full, a
+ * flush was requested, or the oldest event has lingered.
+ * <p>
+ * The buffered events are sorted by timestamp, and split into batches within
+ * the count, size and time span limits of the service. The sequence token is
+ * recovered from the error when it conflicts, as it does when another
+ * publisher writes to the same log stream.
+ */
+class LogStreamBuffer {
+
+    private static final Log log = LogFactory.getLog(LogStreamBuffer.class);
+
+    /** The maximum number of sequence token conflicts in a row before the batch counts as failed */
+    private static final int MAX_SEQUENCE_TOKEN_CONFLICTS = 5;
+
+    /** The maximum time (milliseconds) before a failed batch is retried. */
+    private static final long MAX_RETRY_BACKOFF_MS = 20 * 1000;
+
+    private static final Comparator<BufferedEvent> BY_TIMESTAMP = new Comparator<BufferedEvent>() {
+        @Override
+        public int compare(BufferedEvent a, BufferedEvent b) {
+            long x = a.event.getTimestamp();
+            long y = b.event.getTimestamp();
+            return x < y ? -1 : (x == y ? 0 : 1);
+        }
+    };
+
+    private final AWSLogsBufferedPublisher publisher;
+    private final LogsPublisherConfig config;
+    private final String logGroupName;
+    private final String logStreamName;
+
+    /**
+     * Only accessed by the task sending a batch, of which at most one runs
+     * at a time; null until known, and for a new log stream.
+     */
+    private String sequenceToken;
+
+    // All guarded by this
+    private List<BufferedEvent> pendingEvents = new ArrayList<BufferedEvent>();
+    private long pendingBytes;
+    /** The time at which the oldest pending event was buffered */
+    private long oldestEventTime;
+    private boolean isSending;
+    /** Whether all the pending events are to be sent, regardless of lingering */
+    private boolean isFlushRequested;
+
+    LogStreamBuffer(AWSLogsBufferedPublisher publisher,
+            LogsPublisherConfig config, String logGroupName, String logStreamName) {
+        this.publisher = publisher;
+        this.config = config;
+        this.logGroupName = logGroupName;
+        this.logStreamName = logStreamName;
+    }
+
+    /**
+     * Buffers the given event, and sends a batch if one is full and no call
+     * is in flight.
+     */
+    void add(InputLogEvent event, int size) {
+        List<BufferedEvent> batch = null;
+        synchronized (this) {
+            if (pendingEvents.isEmpty()) {
+                oldestEventTime = System.currentTimeMillis();
+            }
+            pendingEvents.add(new BufferedEvent(event, size));
+            pendingBytes += size;
+            if (!isSending && (config.getLingerMs() == 0 || isBatchFull())) {
+                batch = takeBatch();
+            }
+        }
+        send(batch, 0);
+    }
+
+    /** Sends all the pending events, in as many batches as needed. */
+    void flush() {
+        List<BufferedEvent> batch = null;
+        synchronized (this) {
+            if (pendingEvents.isEmpty()) {
+                return;
+            }
+            isFlushRequested = true;
+            if (!isSending) {
+                batch = takeBatch();
+            }
+        }
+        send(batch, 0);
+    }
+
+    /**
+     * Sends a batch if the oldest pending event has lingered and no call is
+     * in flight.
+     */
+    void flushIfLingered(long now) {
+        List<BufferedEvent> batch = null;
+        synchronized (this) {
+            if (!isSending && !pendingEvents.isEmpty()
+                    && now - oldestEventTime >= config.getLingerMs()) {
+                batch = takeBatch();
+            }
+        }
+        send(batch, 0);
+    }
+
+    private boolean isBatchFull() {
+        return pendingEvents.size() >= config.getMaxBatchEvents()
+            || pendingBytes >= config.getMaxBatchBytes();
+    }
+
+    /**
+     * Sorts the pending events, and removes from them the first batch within
+     * the limits of the service; must be called holding the lock, with no
+     * call in flight.
+     */
+    private List<BufferedEvent> takeBatch() {
+        Collections.sort(pendingEvents, BY_TIMESTAMP);
+        long firstTimestamp = pendingEvents.get(0).event.getTimestamp();
+        long batchBytes = 0;
+        int count = 0;
+        for (BufferedEvent event : pendingEvents) {
+            if (count == config.getMaxBatchEvents()
+                    || batchBytes + event.size > config.getMaxBatchBytes()
+                    || event.event.getTimestamp() - firstTimestamp > LogsPublisherConfig.SERVICE_MAX_BATCH_SPAN_MS) {
+                break;
+            }
+            batchBytes += event.size;
+            count++;
+        }
+        List<BufferedEvent> batch = new ArrayList<BufferedEvent>(pendingEvents.subList(0, count));
+        pendingEvents = new ArrayList<BufferedEvent>(pendingEvents.subList(count, pendingEvents.size()));
+        pendingBytes -= batchBytes;
+        if (pendingEvents.isEmpty()) {
+            isFlushRequested = false;
+        }
+        isSending = true;
+        return batch;
+    }
+
+    /**
+     * Sends the given batch on the publisher's executor; or, if the executor
+     * rejects it, drops it and the next batches due.
+     */
+    private void send(List<BufferedEvent> batch, int failures) {
+        while (batch != null) {
+            final List<BufferedEvent> sendingBatch = batch;
+            final int sendingFailures = failures;
+            try {
+                publisher.getSupport().execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        putLogEvents(sendingBatch, sendingFailures);
+                    }
+                });
+                return;
+            } catch (RejectedExecutionException e) {
+                drop(batch, e);
+                batch = release(batch);
+                failures = 0;
+            }
+        }
+    }
+
+    /**
+     * Sends the given batch, recovering the sequence token on conflicts, and
+     * retries it after a backoff if it fails.
+     */
+    private void putLogEvents(List<BufferedEvent> batch, int failures) {
+        List<InputLogEvent> events = new ArrayList<InputLogEvent>(batch.size());
+        for (BufferedEvent event : batch) {
+            events.add(event.event);
+        }
+        PutLogEventsRequest request = new PutLogEventsRequest()
+                .withLogGroupName(logGroupName)
+                .withLogStreamName(logStreamName)
+                .withLogEvents(events);
+        request.getRequestClientOptions().appendUserAgent(AWSLogsBufferedPublisher.USER_AGENT);
+
+        int conflicts = 0;
+        boolean isTokenUnknown = false;
+        while (true) {
+            try {
+                if (isTokenUnknown) {
+                    sequenceToken = describeSequenceToken();
+                }
+                request.setSequenceToken(sequenceToken);
+                PutLogEventsResult result = publisher.getLogs().putLogEvents(request);
+                sequenceToken = result.getNextSequenceToken();
+                logRejectedEvents(result.getRejectedLogEventsInfo());
+                break;
+            } catch (DataAlreadyAcceptedException e) {
+                // A previous attempt went through, but its response was lost
+                sequenceToken = e.getExpectedSequenceToken();
+                break;
+            } catch (InvalidSequenceTokenException e) {
+                if (++conflicts > MAX_SEQUENCE_TOKEN_CONFLICTS) {
+                    retryOrDrop(batch, failures, e, true);
+                    return;
+                }
+                // The expected token isn't always in the error
+                isTokenUnknown = e.getExpectedSequenceToken() == null;
+                sequenceToken = e.getExpectedSequenceToken();
+            } catch (AmazonClientException e) {
+                retryOrDrop(batch, failures, e, BufferedPublisherSupport.isRetryable(e));
+                return;
+            }
+        }
+        complete(batch);
+    }
+
+    /** Returns the sequence token of the log stream, as described by the service. */
+    private String describeSequenceToken() {
+        DescribeLogStreamsRequest request = new DescribeLogStreamsRequest()
+                .withLogGroupName(logGroupName)
+                .withLogStreamNamePrefix(logStreamName);
+        request.getRequestClientOptions().appendUserAgent(AWSLogsBufferedPublisher.USER_AGENT);
+        do {
+            DescribeLogStreamsResult result = publisher.getLogs().describeLogStreams(request);
+            for (LogStream logStream : result.getLogStreams()) {
+                if (logStreamName.equals(logStream.getLogStreamName())) {
+                    return logStream.getUploadSequenceToken();
+                }
+            }
+            request.setNextToken(result.getNextToken());
+        } while (request.getNextToken() != null);
+        return null;
+    }
+
+    private void retryOrDrop(final List<BufferedEvent> batch, final int failures,
+            AmazonClientException cause, boolean isRetryable) {
+        if (isRetryable && failures < config.getMaxRetries()) {
+            long backoffMs = BufferedPublisherSupport.backoffMs(config.getRetryBackoffMs(),
+                    failures + 1, MAX_RETRY_BACKOFF_MS);
+            try {
+                publisher.getSupport().schedule(new Runnable() {
+                    @Override
+                    public void run() {
+                        send(batch, failures + 1);
+                    }
+                }, backoffMs);
+                return;
+            } catch (RejectedExecutionException e) {
+                // Dropped below
+            }
+        }
+        drop(batch, cause);
+        complete(batch);
+    }
+
+    private void drop(List<BufferedEvent> batch, Exception cause) {
+        log.error("Dropping " + batch.size() + " events of log stream "
+                + logGroupName + "/" + logStreamName, cause);
+        publisher.onDropped(batch.size());
+    }
+
+    private void logRejectedEvents(RejectedLogEventsInfo info) {
+        if (info != null && log.isWarnEnabled()) {
+            log.warn("Some events of log stream " + logGroupName + "/"
+                    + logStreamName + " were rejected: " + info);
+        }
+    }
+
+    /**
+     * Releases the buffer space of the given batch, which was sent or
+     * dropped, and sends the next batch if it is due.
+     */
+    private void complete(List<BufferedEvent> batch) {
+        send(release(batch), 0);
+    }
+
+    /**
+     * Releases the buffer space of the given batch, which was sent or
+     * dropped, ending its call, and returns the next batch if it is due.
+     */
+    private List<BufferedEvent> release(List<BufferedEvent> batch) {
+        long bytes = 0;
+        for (BufferedEvent event : batch) {
+            bytes += event.size;
+        }
+        publisher.getSupport().release(batch.size(), bytes);
+
+        List<BufferedEvent> nextBatch = null;
+        synchronized (this) {
+            isSending = false;
+            if (!pendingEvents.isEmpty()
+                    && (isFlushRequested || isBatchFull()
+                        || System.currentTimeMillis() - oldestEventTime >= config.getLingerMs())) {
+                nextBatch = takeBatch();
+            }
+        }
+        return nextBatch;
+    }
+
+    private static final class BufferedEvent {
+        final InputLogEvent event;
+        /** The size of the event as accounted by the service */
+        final int size;
+
+        BufferedEvent(InputLogEvent event, int size) {
+            this.event = event;
+            this.size = size;
+        }
+    }
+}
@@ -0,0 +1,325 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.logs.buffered;
+
+import com.amazonaws.AmazonClientException;
+
+/**
+ * The configuration of an {@link AWSLogsBufferedPublisher}.
+ */
+public class LogsPublisherConfig {
+
+    /** The maximum number of events of a PutLogEvents call allowed by CloudWatch Logs. */
+    public static final int SERVICE_MAX_BATCH_EVENTS = 10000;
+
+    /**
+     * The maximum size, in bytes, of a PutLogEvents call allowed by
+     * CloudWatch Logs, counting the UTF-8 messages plus
+     * {@link #EVENT_OVERHEAD_BYTES} per event.
+     */
+    public static final long SERVICE_MAX_BATCH_BYTES = 1048576;
+
+    /** The maximum size, in bytes, of an event allowed by CloudWatch Logs, overhead included. */
+    public static final int SERVICE_MAX_EVENT_BYTES = 262144;
+
+    /** The size, in bytes, CloudWatch Logs counts for each event on top of its message. */
+    public static final int EVENT_OVERHEAD_BYTES = 26;
+
+    /** The maximum time span (milliseconds) of the events of a PutLogEvents call. */
+    public static final long SERVICE_MAX_BATCH_SPAN_MS = 24 * 60 * 60 * 1000L;
+
+    /** The maximum number of events sent in a single PutLogEvents call. */
+    private int maxBatchEvents;
+
+    public static final int MAX_BATCH_EVENTS_DEFAULT = SERVICE_MAX_BATCH_EVENTS;
+
+    /** The maximum size, in bytes, of the events sent in a single PutLogEvents call. */
+    private long maxBatchBytes;
+
+    public static final long MAX_BATCH_BYTES_DEFAULT = SERVICE_MAX_BATCH_BYTES;
+
+    /**
+     * The maximum time (milliseconds) an event is buffered waiting for other
+     * events to be sent with.
+     */
+    private long lingerMs;
+
+    public static final long LINGER_MS_DEFAULT = 1000;
+
+    /** The maximum size, in bytes, of the events buffered and in flight. */
+    private long maxBufferedBytes;
+
+    public static final long MAX_BUFFERED_BYTES_DEFAULT = 16 * 1024 * 1024;
+
+    /** What to do with the events published while the buffer is full. */
+    private OverflowPolicy overflowPolicy;
+
+    public static final OverflowPolicy OVERFLOW_POLICY_DEFAULT = OverflowPolicy.BLOCK;
+
+    /** The maximum number of times a batch that failed to be sent is retried. */
+    private int maxRetries;
+
+    public static final int MAX_RETRIES_DEFAULT = 3;
+
+    /** The time (milliseconds) before the first retry of a failed batch. */
+    private long retryBackoffMs;
+
+    public static final long RETRY_BACKOFF_MS_DEFAULT = 200;
+
+    /** The number of threads of the publisher's own executor. */
+    private int maxConcurrency;
+
+    public static final int MAX_CONCURRENCY_DEFAULT = 4;
+
+    public LogsPublisherConfig() {
+        maxBatchEvents = MAX_BATCH_EVENTS_DEFAULT;
+        maxBatchBytes = MAX_BATCH_BYTES_DEFAULT;
+        lingerMs = LINGER_MS_DEFAULT;
+        maxBufferedBytes = MAX_BUFFERED_BYTES_DEFAULT;
+        overflowPolicy = OVERFLOW_POLICY_DEFAULT;
+        maxRetries = MAX_RETRIES_DEFAULT;
+        retryBackoffMs = RETRY_BACKOFF_MS_DEFAULT;
+        maxConcurrency = MAX_CONCURRENCY_DEFAULT;
+    }
+
+    /** copy constructor */
+    public LogsPublisherConfig(LogsPublisherConfig other) {
+        maxBatchEvents = other.maxBatchEvents;
+        maxBatchBytes = other.maxBatchBytes;
+        lingerMs = other.lingerMs;
+        maxBufferedBytes = other.maxBufferedBytes;
+        overflowPolicy = other.overflowPolicy;
+        maxRetries = other.maxRetries;
+        retryBackoffMs = other.retryBackoffMs;
+        maxConcurrency = other.maxConcurrency;
+    }
+
+    @Override
+    public String toString() {
+        return "LogsPublisherConfig [maxBatchEvents=" + maxBatchEvents
+                + ", maxBatchBytes=" + maxBatchBytes + ", lingerMs=" + lingerMs
+                + ", maxBufferedBytes=" + maxBufferedBytes
+                + ", overflowPolicy=" + overflowPolicy
+                + ", maxRetries=" + maxRetries
+                + ", retryBackoffMs=" + retryBackoffMs
+                + ", maxConcurrency=" + maxConcurrency + "]";
+    }
+
+    /**
+     * The maximum number of events sent in a single PutLogEvents call; at
+     * most 10000. When that many events are buffered for a log stream, they
+     * are sent as soon as the stream has no call in flight.
+     */
+    public int getMaxBatchEvents() {
+        return maxBatchEvents;
+    }
+
+    /**
+     * The maximum number of events sent in a single PutLogEvents call; at
+     * most 10000. When that many events are buffered for a log stream, they
+     * are sent as soon as the stream has no call in flight.
+     */
+    public void setMaxBatchEvents(int maxBatchEvents) {
+        this.maxBatchEvents = maxBatchEvents;
+    }
+
+    public LogsPublisherConfig withMaxBatchEvents(int maxBatchEvents) {
+        setMaxBatchEvents(maxBatchEvents);
+        return this;
+    }
+
+    /**
+     * The maximum size, in bytes, of the events sent in a single PutLogEvents
+     * call, counting {@link #EVENT_OVERHEAD_BYTES} per event; at most 1 MB.
+     */
+    public long getMaxBatchBytes() {
+        return maxBatchBytes;
+    }
+
+    /**
+     * The maximum size, in bytes, of the events sent in a single PutLogEvents
+     * call, counting {@link #EVENT_OVERHEAD_BYTES} per event; at most 1 MB.
+     */
+    public void setMaxBatchBytes(long maxBatchBytes) {
+        this.maxBatchBytes = maxBatchBytes;
+    }
+
+    public LogsPublisherConfig withMaxBatchBytes(long maxBatchBytes) {
+        setMaxBatchBytes(maxBatchBytes);
+        return this;
+    }
+
+    /**
+     * The maximum time (milliseconds) an event is buffered waiting for other
+     * events to be sent with, if its log stream has no call in flight.
+     */
+    public long getLingerMs() {
+        return lingerMs;
+    }
+
+    /**
+     * The maximum time (milliseconds) an event is buffered waiting for other
+     * events to be sent with, if its log stream has no call in flight.
+     */
+    public void setLingerMs(long lingerMs) {
+        this.lingerMs = lingerMs;
+    }
+
+    public LogsPublisherConfig withLingerMs(long lingerMs) {
+        setLingerMs(lingerMs);
+        return this;
+    }
+
+    /**
+     * The maximum size, in bytes, of the events buffered and in flight, over
+     * all the log streams. Once reached, the overflow policy applies.
+     */
+    public long getMaxBufferedBytes() {
+        return maxBufferedBytes;
+    }
+
+    /**
+     * The maximum size, in bytes, of the events buffered and in flight, over
+     * all the log streams. Once reached, the overflow policy applies.
+     */
+    public void setMaxBufferedBytes(long maxBufferedBytes) {
+        this.maxBufferedBytes = maxBufferedBytes;
+    }
+
+    public LogsPublisherConfig withMaxBufferedBytes(long maxBufferedBytes) {
+        setMaxBufferedBytes(maxBufferedBytes);
+        return this;
+    }
+
+    /**
+     * What to do with the events published while the buffer is full: block
+     * the publishing thread (the default), or drop the events.
+     */
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * What to do with the events published while the buffer is full: block
+     * the publishing thread (the default), or drop the events.
+     */
+    public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    public LogsPublisherConfig withOverflowPolicy(OverflowPolicy overflowPolicy) {
+        setOverflowPolicy(overflowPolicy);
+        return this;
+    }
+
+    /**
+     * The maximum number of times a batch that failed to be sent, for example
+     * because of throttling, is retried before its events are dropped.
+     * Sequence token conflicts are resolved without counting as retries.
+     */
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * The maximum number of times a batch that failed to be sent, for example
+     * because of throttling, is retried before its events are dropped.
+     * Sequence token conflicts are resolved without counting as retries.
+     */
+    public void setMaxRetries(int maxRetries) {
+        this.maxRetries = maxRetries;
+    }
+
+    public LogsPublisherConfig withMaxRetries(int maxRetries) {
+        setMaxRetries(maxRetries);
+        return this;
+    }
+
+    /**
+     * The time (milliseconds) before the first retry of a failed batch,
+     * doubled for each further retry.
+     */
+    public long getRetryBackoffMs() {
+        return retryBackoffMs;
+    }
+
+    /**
+     * The time (milliseconds) before the first retry of a failed batch,
+     * doubled for each further retry.
+     */
+    public void setRetryBackoffMs(long retryBackoffMs) {
+        this.retryBackoffMs = retryBackoffMs;
+    }
+
+    public LogsPublisherConfig withRetryBackoffMs(long retryBackoffMs) {
+        setRetryBackoffMs(retryBackoffMs);
+        return this;
+    }
+
+    /**
+     * The number of threads sending the batches, when the publisher uses its
+     * own executor. Each log stream has at most one call in flight.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * The number of threads sending the batches, when the publisher uses its
+     * own executor. Each log stream has at most one call in flight.
+     */
+    public void setMaxConcurrency(int maxConcurrency) {
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    public LogsPublisherConfig withMaxConcurrency(int maxConcurrency) {
+        setMaxConcurrency(maxConcurrency);
+        return this;
+    }
+
+    /**
+     * this method checks the config for validity. If the config is deemed to
+     * be invalid, an informative exception is thrown.
+     *
+     * @throws AmazonClientException
+     *             with a message explaining why the config was invalid
+     */
+    void validate() {
+        if (maxBatchEvents <= 0 || maxBatchEvents > SERVICE_MAX_BATCH_EVENTS) {
+            throw new AmazonClientException("The maximum batch events must be between 1 and "
+                    + SERVICE_MAX_BATCH_EVENTS);
+        }
+        if (maxBatchBytes < SERVICE_MAX_EVENT_BYTES || maxBatchBytes > SERVICE_MAX_BATCH_BYTES) {
+            throw new AmazonClientException("The maximum batch bytes must be between "
+                    + SERVICE_MAX_EVENT_BYTES + " and " + SERVICE_MAX_BATCH_BYTES);
+        }
+        if (lingerMs < 0) {
+            throw new AmazonClientException("The linger time may not be negative");
+        }
+        if (maxBufferedBytes < SERVICE_MAX_EVENT_BYTES || maxBufferedBytes > Integer.MAX_VALUE) {
+            throw new AmazonClientException("The maximum buffered bytes must be between "
+                    + SERVICE_MAX_EVENT_BYTES + " and " + Integer.MAX_VALUE);
+        }
+        if (overflowPolicy == null) {
+            throw new AmazonClientException("The overflow policy must be specified");
+        }
+        if (maxRetries < 0 || retryBackoffMs < 0) {
+            throw new AmazonClientException("The maximum retries and retry backoff may not be negative");
+        }
+        if (maxConcurrency <= 0) {
+            throw new AmazonClientException("The maximum concurrency must be positive");
+        }
+    }
+}
@@ -37,6 +37,7 @@ import com.amazonaws.services.s3.internal.MultiFileOutputStream;
 import com.amazonaws.services.s3.internal.PartCreationEvent;
 import com.amazonaws.services.s3.internal.S3Direct;
 import com.amazonaws.services.s3.internal.crypto.CryptoModuleDispatcher;
+import com.amazonaws.services.s3.internal.crypto.EncryptedPartRequest;
 import com.amazonaws.services.s3.internal.crypto.S3CryptoModule;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
@@ -547,6 +548,48 @@ public class AmazonS3EncryptionClient extends AmazonS3Client implements
         return crypto.uploadPartSecurely(uploadPartRequest);
     }
 
+    /**
+     * Encrypts the content of the specified part in memory, and returns a
+     * request to upload the resulting ciphertext via
+     * {@link #uploadEncryptedPart(UploadPartRequest)}.
+     * <p>
+     * As with {@link #uploadPart(UploadPartRequest)}, parts must be encrypted
+     * serially and in order; however, the returned requests don't depend on
+     * each other and can be uploaded concurrently. This allows encryption to
+     * be pipelined with the upload of previously encrypted parts.
+     *
+     * @param uploadPartRequest
+     *            the part to encrypt, as would be passed to
+     *            {@link #uploadPart(UploadPartRequest)}
+     * @return a request holding the encrypted content of the part, to be
+     *         passed as is to {@link #uploadEncryptedPart(UploadPartRequest)}
+     */
+    public UploadPartRequest encryptPart(UploadPartRequest uploadPartRequest)
+            throws AmazonClientException {
+        return crypto.encryptPartSecurely(uploadPartRequest);
+    }
+
+    /**
+     * Uploads a part previously encrypted via
+     * {@link #encryptPart(UploadPartRequest)}, without encrypting it again.
+     * Unlike {@link #uploadPart(UploadPartRequest)}, this method can be
+     * called concurrently for the parts of the same multipart upload.
+     *
+     * @throws AmazonClientException
+     *             if the request wasn't returned by
+     *             {@link #encryptPart(UploadPartRequest)}, in which case
+     *             its content isn't encrypted
+     */
+    public UploadPartResult uploadEncryptedPart(UploadPartRequest encryptedPartRequest)
+            throws AmazonClientException, AmazonServiceException {
+        if (!(encryptedPartRequest instanceof EncryptedPartRequest)) {
+            throw new AmazonClientException("Only the requests returned by "
+                    + "encryptPart can be uploaded without encryption; "
+                    + "use uploadPart to encrypt and upload a part");
+        }
+        return super.uploadPart(encryptedPartRequest);
+    }
+
     @Override
     public CopyPartResult copyPart(CopyPartRequest copyPartRequest) {
         return crypto.copyPartSecurely(copyPartRequest);
@@ -49,6 +49,7 @@ import com.amazonaws.services.s3.model.CryptoMode;
 import com.amazonaws.services.s3.model.EncryptionMaterials;
 import com.amazonaws.services.s3.model.EncryptionMaterialsAccessor;
 import com.amazonaws.services.s3.model.ExtraMaterialsDescription;
+import com.amazonaws.services.s3.model.KMSDataKeyCache;
 import com.amazonaws.services.s3.model.KMSEncryptionMaterials;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
@@ -246,12 +247,15 @@ final class ContentCryptoMaterial {
      * @param securityProvider
      *            security provider or null if the default security provider of
      *            the JCE is used
+     * @param cache
+     *            the cache of the keys decrypted by KMS; or null if not cached
      */
     private static SecretKey cek(byte[] cekSecured, String keyWrapAlgo,
             EncryptionMaterials materials, Provider securityProvider,
-            ContentCryptoScheme contentCryptoScheme, AWSKMSClient kms) {
+            ContentCryptoScheme contentCryptoScheme, AWSKMSClient kms,
+            KMSDataKeyCache cache) {
         if (isKMSKeyWrapped(keyWrapAlgo))
-            return cekByKMS(cekSecured, keyWrapAlgo, materials, contentCryptoScheme, kms);
+            return cekByKMS(cekSecured, keyWrapAlgo, materials, contentCryptoScheme, kms, cache);
         Key kek;
         if (materials.getKeyPair() != null) {
             // Do envelope decryption with private key from key pair
@@ -295,19 +299,30 @@ final class ContentCryptoMaterial {
     }
 
     /**
-     * Decrypts the secured CEK via KMS; involves network calls.
+     * Decrypts the secured CEK via KMS, unless it is found in the given cache;
+     * involves network calls.
      * 
      * @return the CEK (in plaintext).
      */
     private static SecretKey cekByKMS(byte[] cekSecured, String keyWrapAlgo,
             EncryptionMaterials materials,
-            ContentCryptoScheme contentCryptoScheme, AWSKMSClient kms) {
+            ContentCryptoScheme contentCryptoScheme, AWSKMSClient kms,
+            KMSDataKeyCache cache) {
+        Map<String, String> context = materials.getMaterialsDescription();
+        if (cache != null) {
+            SecretKey cek = cache.getDecryptedKey(cekSecured, context);
+            if (cek != null)
+                return cek;
+        }
         DecryptRequest kmsreq = new DecryptRequest()
-            .withEncryptionContext(materials.getMaterialsDescription())
+            .withEncryptionContext(context)
             .withCiphertextBlob(ByteBuffer.wrap(cekSecured));
         DecryptResult result = kms.decrypt(kmsreq);
-        return new SecretKeySpec(copyAllBytesFrom(result.getPlaintext()),
+        SecretKey cek = new SecretKeySpec(copyAllBytesFrom(result.getPlaintext()),
                 contentCryptoScheme.getKeyGeneratorAlgorithm());
+        if (cache != null)
+            cache.putDecryptedKey(cekSecured, context, cek);
+        return cek;
     }
 
     /**
@@ -318,9 +333,10 @@ final class ContentCryptoMaterial {
             EncryptionMaterialsAccessor kekMaterialAccessor,
             Provider securityProvider,
             boolean keyWrapExpected, 
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSDataKeyCache cache) {
         return fromObjectMetadata0(metadata, kekMaterialAccessor,
-                securityProvider, null, NONE, keyWrapExpected, kms);
+                securityProvider, null, NONE, keyWrapExpected, kms, cache);
     }
 
     /**
@@ -337,9 +353,10 @@ final class ContentCryptoMaterial {
             long[] range,
             ExtraMaterialsDescription extra,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSDataKeyCache cache) {
         return fromObjectMetadata0(metadata, kekMaterialAccessor,
-                securityProvider, range, extra, keyWrapExpected, kms);
+                securityProvider, range, extra, keyWrapExpected, kms, cache);
     }
 
     /**
@@ -352,7 +369,8 @@ final class ContentCryptoMaterial {
             long[] range,
             ExtraMaterialsDescription extra,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSDataKeyCache cache) {
         // CEK and IV
         Map<String, String> userMeta = metadata.getUserMetadata();
         String b64key = userMeta.get(Headers.CRYPTO_KEY_V2);
@@ -416,7 +434,7 @@ final class ContentCryptoMaterial {
         if (keyWrapExpected && keyWrapAlgo == null)
             throw newKeyWrapException();
         SecretKey cek = cek(cekWrapped, keyWrapAlgo, materials,
-                securityProvider, contentCryptoScheme, kms);
+                securityProvider, contentCryptoScheme, kms, cache);
         return new ContentCryptoMaterial(merged, cekWrapped, keyWrapAlgo,
                 contentCryptoScheme.createCipherLite(cek, iv,
                         Cipher.DECRYPT_MODE, securityProvider));
@@ -435,9 +453,10 @@ final class ContentCryptoMaterial {
             EncryptionMaterialsAccessor kekMaterialAccessor,
             Provider securityProvider,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSDataKeyCache cache) {
         return fromInstructionFile0(instFile, kekMaterialAccessor,
-                securityProvider, null, NONE, keyWrapExpected, kms);
+                securityProvider, null, NONE, keyWrapExpected, kms, cache);
     }
 
     /**
@@ -454,9 +473,10 @@ final class ContentCryptoMaterial {
             long[] range,
             ExtraMaterialsDescription extra,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSDataKeyCache cache) {
         return fromInstructionFile0(instFile, kekMaterialAccessor,
-                securityProvider, range, extra, keyWrapExpected, kms);
+                securityProvider, range, extra, keyWrapExpected, kms, cache);
     }
 
     /**
@@ -469,7 +489,8 @@ final class ContentCryptoMaterial {
             long[] range,
             ExtraMaterialsDescription extra,
             boolean keyWrapExpected,
-            AWSKMSClient kms) {
+            AWSKMSClient kms,
+            KMSDataKeyCache cache) {
         // CEK and IV
         String b64key = instFile.get(Headers.CRYPTO_KEY_V2);
         if (b64key == null) {
@@ -534,7 +555,7 @@ final class ContentCryptoMaterial {
         if (keyWrapExpected && keyWrapAlgo == null)
             throw newKeyWrapException();
         SecretKey cek = cek(cekWrapped, keyWrapAlgo, materials,
-                securityProvider, contentCryptoScheme, kms);
+                securityProvider, contentCryptoScheme, kms, cache);
         return new ContentCryptoMaterial(merged, cekWrapped, keyWrapAlgo,
                 contentCryptoScheme.createCipherLite(cek, iv,
                         Cipher.DECRYPT_MODE, securityProvider));
@@ -644,7 +665,7 @@ final class ContentCryptoMaterial {
                     + " from the encryption material provider");
         }
         SecretKey cek = cek(encryptedCEK, keyWrappingAlgorithm, origKEK, p,
-                getContentCryptoScheme(), kms);
+                getContentCryptoScheme(), kms, null);
         ContentCryptoMaterial output = create(cek, cipherLite.getIV(), newKEK,
                 getContentCryptoScheme(),  // must use same content crypto scheme
                 targetScheme,
@@ -694,7 +715,7 @@ final class ContentCryptoMaterial {
             origKEK = accessor.getEncryptionMaterials(kekMaterialsDescription);
         }
         SecretKey cek = cek(encryptedCEK, keyWrappingAlgorithm, origKEK, p,
-                getContentCryptoScheme(), kms);
+                getContentCryptoScheme(), kms, null);
         ContentCryptoMaterial output =
             create(cek, cipherLite.getIV(), newKEK,
                    getContentCryptoScheme(),  // must use same content crypto scheme
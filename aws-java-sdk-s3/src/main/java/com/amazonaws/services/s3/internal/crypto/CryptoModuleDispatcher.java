@@ -170,6 +170,14 @@ public class CryptoModuleDispatcher extends S3CryptoModule<MultipartUploadContex
              ;
     }
 
+    @Override
+    public EncryptedPartRequest encryptPartSecurely(UploadPartRequest req) {
+        return defaultCryptoMode == EncryptionOnly
+             ? eo.encryptPartSecurely(req)
+             : ae.encryptPartSecurely(req)
+             ;
+    }
+
     @Override
     public CopyPartResult copyPartSecurely(CopyPartRequest req) {
         return defaultCryptoMode == EncryptionOnly 
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal.crypto;
+
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * A request to upload a part whose content has already been encrypted by a
+ * crypto module. Only the crypto modules can create one, so that a plaintext
+ * part can't be passed off as encrypted and uploaded without encryption.
+ */
+public final class EncryptedPartRequest extends UploadPartRequest {
+    EncryptedPartRequest() {
+    }
+}
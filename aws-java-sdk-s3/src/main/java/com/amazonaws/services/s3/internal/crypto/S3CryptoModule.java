@@ -60,6 +60,12 @@ public abstract class S3CryptoModule<T extends MultipartUploadContext> {
 
     public abstract UploadPartResult uploadPartSecurely(UploadPartRequest req);
 
+    /**
+     * @return a request to upload the encrypted content of the given part,
+     *         which must be uploaded without further encryption.
+     */
+    public abstract EncryptedPartRequest encryptPartSecurely(UploadPartRequest req);
+
     public abstract CopyPartResult copyPartSecurely(CopyPartRequest req);
 
     public abstract void abortMultipartUploadSecurely(AbortMultipartUploadRequest req);
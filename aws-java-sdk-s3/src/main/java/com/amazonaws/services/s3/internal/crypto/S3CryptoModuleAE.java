@@ -232,7 +232,8 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
                     cryptoRange,   // range is sometimes necessary to compute the adjusted IV
                     extraMatDesc,
                     keyWrapExpected,
-                    kms
+                    kms,
+                    cryptoConfig.getKmsDataKeyCache()
             );
         securityCheck(cekMaterial, retrieved);
         S3ObjectWrapper decrypted = decrypt(retrieved, cekMaterial, cryptoRange);
@@ -261,7 +262,8 @@ class S3CryptoModuleAE extends S3CryptoModuleBase<MultipartUploadCryptoContext>
                 cryptoRange,
                 extraMatDesc,
                 keyWrapExpected,
-                kms
+                kms,
+                cryptoConfig.getKmsDataKeyCache()
             );
         securityCheck(cekMaterial, retrieved);
         S3ObjectWrapper decrypted = decrypt(retrieved, cekMaterial, cryptoRange);
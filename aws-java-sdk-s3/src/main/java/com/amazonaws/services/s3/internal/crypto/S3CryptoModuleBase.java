@@ -34,6 +34,7 @@ import java.io.OutputStream;
 import java.security.KeyPair;
 import java.security.NoSuchAlgorithmException;
 import java.security.Provider;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -73,6 +74,8 @@ import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
 import com.amazonaws.services.s3.model.InstructionFileId;
+import com.amazonaws.services.s3.model.KMSDataKeyCache;
+import com.amazonaws.services.s3.model.KMSDataKeyCache.DataKey;
 import com.amazonaws.services.s3.model.MaterialsDescriptionProvider;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutInstructionFileRequest;
@@ -281,23 +284,9 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
     @Override
     public UploadPartResult uploadPartSecurely(UploadPartRequest req) {
         appendUserAgent(req, USER_AGENT);
-        final int blockSize = contentCryptoScheme.getBlockSizeInBytes();
         final boolean isLastPart = req.isLastPart();
-        final String uploadId = req.getUploadId();
         final long partSize = req.getPartSize();
-        final boolean partSizeMultipleOfCipherBlockSize = 0 == (partSize % blockSize);
-        if (!isLastPart && !partSizeMultipleOfCipherBlockSize) {
-            throw new AmazonClientException(
-                "Invalid part size: part sizes for encrypted multipart uploads must be multiples "
-                    + "of the cipher block size ("
-                    + blockSize
-                    + ") with the exception of the last part.");
-        }
-        final T uploadContext = multipartUploadContexts.get(uploadId);
-        if (uploadContext == null) {
-            throw new AmazonClientException(
-                "No client-side information available on upload ID " + uploadId);
-        }
+        final T uploadContext = uploadContextForPart(req);
         final UploadPartResult result;
         // Checks the parts are uploaded in series
         uploadContext.beginPartUpload(req.getPartNumber());
@@ -340,6 +329,111 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         return result;
     }
 
+    /**
+     * {@inheritDoc}
+     * <p>
+     * The part is encrypted in memory using the same cipher context that
+     * {@link #uploadPartSecurely(UploadPartRequest)} would have used, so parts
+     * must be encrypted serially and in order. The returned requests carry
+     * the ciphertext, and can be uploaded concurrently without further
+     * encryption.
+     */
+    @Override
+    public EncryptedPartRequest encryptPartSecurely(UploadPartRequest req) {
+        final boolean isLastPart = req.isLastPart();
+        final T uploadContext = uploadContextForPart(req);
+        if (isLastPart && uploadContext.hasFinalPartBeenSeen()) {
+            throw new AmazonClientException(
+                "This part was specified as the last part in a multipart upload, but a previous part was already marked as the last part.  "
+              + "Only the last part of the upload should be marked as the last part.");
+        }
+        uploadContext.beginPartUpload(req.getPartNumber());
+        CipherLite cipherLite = cipherLiteForNextPart(uploadContext);
+        final File fileOrig = req.getFile();
+        final InputStream isOrig = req.getInputStream();
+        SdkFilterInputStream isCurr = null;
+        byte[] ciphertext = new byte[encryptedPartCapacity(req.getPartSize())];
+        int length = 0;
+        try {
+            CipherLiteInputStream clis = newMultipartS3CipherInputStream(req, cipherLite);
+            isCurr = clis;
+            isCurr = wrapForMultipart(clis, req.getPartSize());
+            int bytesRead;
+            while ((bytesRead = isCurr.read(ciphertext, length, ciphertext.length - length)) > -1) {
+                length += bytesRead;
+                if (length == ciphertext.length) {
+                    // Only if the part is larger than it claims to be
+                    ciphertext = Arrays.copyOf(ciphertext, ciphertext.length * 2);
+                }
+            }
+        } catch (IOException e) {
+            throw failure(e, "Unable to encrypt part " + req.getPartNumber());
+        } finally {
+            cleanupDataSource(req, fileOrig, isOrig, isCurr, log);
+            uploadContext.endPartUpload();
+        }
+        if (isLastPart)
+            uploadContext.setHasFinalPartBeenSeen(true);
+        updateUploadContext(uploadContext, isCurr);
+
+        EncryptedPartRequest encrypted = new EncryptedPartRequest();
+        encrypted
+            .withBucketName(req.getBucketName())
+            .withKey(req.getKey())
+            .withUploadId(req.getUploadId())
+            .withPartNumber(req.getPartNumber())
+            .withPartSize(length)
+            .withInputStream(new ByteArrayInputStream(ciphertext, 0, length))
+            .withLastPart(isLastPart)
+            .withObjectMetadata(req.getObjectMetadata())
+            .withSSECustomerKey(req.getSSECustomerKey());
+        encrypted
+            .withGeneralProgressListener(req.getGeneralProgressListener())
+            .withRequestMetricCollector(req.getRequestMetricCollector())
+            ;
+        appendUserAgent(encrypted, USER_AGENT);
+        return encrypted;
+    }
+
+    /**
+     * Returns the size of the buffer to encrypt a part of the given size
+     * into: the part plus a cipher block of padding and the authentication
+     * tag, if any, so the ciphertext fits without the buffer being grown. The
+     * extra byte lets a full buffer be told apart from a larger part.
+     */
+    private int encryptedPartCapacity(long partSize) {
+        long capacity = partSize + contentCryptoScheme.getBlockSizeInBytes()
+                + contentCryptoScheme.getTagLengthInBits() / 8 + 1;
+        if (capacity > Integer.MAX_VALUE - 8) {
+            throw new AmazonClientException("Unable to encrypt a part of "
+                    + partSize + " bytes into memory");
+        }
+        return (int) capacity;
+    }
+
+    /**
+     * Checks the size of the given part, and returns the client-side context
+     * of the multipart upload it belongs to.
+     */
+    private T uploadContextForPart(UploadPartRequest req) {
+        final int blockSize = contentCryptoScheme.getBlockSizeInBytes();
+        final String uploadId = req.getUploadId();
+        final boolean partSizeMultipleOfCipherBlockSize = 0 == (req.getPartSize() % blockSize);
+        if (!req.isLastPart() && !partSizeMultipleOfCipherBlockSize) {
+            throw new AmazonClientException(
+                "Invalid part size: part sizes for encrypted multipart uploads must be multiples "
+                    + "of the cipher block size ("
+                    + blockSize
+                    + ") with the exception of the last part.");
+        }
+        final T uploadContext = multipartUploadContexts.get(uploadId);
+        if (uploadContext == null) {
+            throw new AmazonClientException(
+                "No client-side information available on upload ID " + uploadId);
+        }
+        return uploadContext;
+    }
+
     protected final CipherLiteInputStream newMultipartS3CipherInputStream(
             UploadPartRequest req, CipherLite cipherLite) {
         final File fileOrig = req.getFile();
@@ -518,22 +612,10 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         cryptoScheme.getSecureRandom().nextBytes(iv);
 
         if (kekMaterials.isKMSEnabled()) {
-            GenerateDataKeyRequest keyGenReq = new GenerateDataKeyRequest()
-                .withEncryptionContext(kekMaterials.getMaterialsDescription())
-                .withKeyId(kekMaterials.getCustomerMasterKeyId())
-                .withKeySpec(contentCryptoScheme.getKeySpec());
-            keyGenReq
-                .withGeneralProgressListener(req.getGeneralProgressListener())
-                .withRequestMetricCollector(req.getRequestMetricCollector())
-                ;
-            GenerateDataKeyResult keyGenRes = kms.generateDataKey(keyGenReq);
-            final SecretKey cek = 
-                new SecretKeySpec(copyAllBytesFrom(keyGenRes.getPlaintext()),
-                        contentCryptoScheme.getKeyGeneratorAlgorithm());
-            byte[] keyBlob = copyAllBytesFrom(keyGenRes.getCiphertextBlob());
-            return ContentCryptoMaterial.wrap(cek, iv,
+            final DataKey dataKey = dataKeyOf(kekMaterials, req);
+            return ContentCryptoMaterial.wrap(dataKey.getKey(), iv,
                     kekMaterials, contentCryptoScheme, provider,
-                    new KMSSecuredCEK(keyBlob));
+                    new KMSSecuredCEK(dataKey.getEncryptedKey()));
         } else {
             // Generate a one-time use symmetric key and initialize a cipher to encrypt object data
             return ContentCryptoMaterial.create(
@@ -542,6 +624,41 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         }
     }
 
+    /**
+     * Returns a data key generated by KMS under the given KMS-enabled
+     * materials, or a cached one if the crypto configuration has a data key
+     * cache and it holds one that can still be used.
+     */
+    private DataKey dataKeyOf(EncryptionMaterials kekMaterials,
+            AmazonWebServiceRequest req) {
+        final KMSDataKeyCache cache = cryptoConfig.getKmsDataKeyCache();
+        final String cmkId = kekMaterials.getCustomerMasterKeyId();
+        final Map<String, String> context = kekMaterials.getMaterialsDescription();
+        final String keySpec = contentCryptoScheme.getKeySpec();
+        if (cache != null) {
+            DataKey cached = cache.getDataKey(cmkId, context, keySpec);
+            if (cached != null)
+                return cached;
+        }
+        GenerateDataKeyRequest keyGenReq = new GenerateDataKeyRequest()
+            .withEncryptionContext(context)
+            .withKeyId(cmkId)
+            .withKeySpec(keySpec);
+        keyGenReq
+            .withGeneralProgressListener(req.getGeneralProgressListener())
+            .withRequestMetricCollector(req.getRequestMetricCollector())
+            ;
+        GenerateDataKeyResult keyGenRes = kms.generateDataKey(keyGenReq);
+        final SecretKey cek =
+            new SecretKeySpec(copyAllBytesFrom(keyGenRes.getPlaintext()),
+                    contentCryptoScheme.getKeyGeneratorAlgorithm());
+        byte[] keyBlob = copyAllBytesFrom(keyGenRes.getCiphertextBlob());
+        DataKey dataKey = new DataKey(cek, keyBlob);
+        if (cache != null)
+            cache.putDataKey(cmkId, context, keySpec, dataKey);
+        return dataKey;
+    }
+
     /**
      * @param kekMaterials non-null encryption materials
      */
@@ -848,7 +965,8 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
                     kekMaterialsProvider,
                     cryptoConfig.getCryptoProvider(),
                     false,   // existing CEK not necessarily key-wrapped
-                    kms
+                    kms,
+                    cryptoConfig.getKmsDataKeyCache()
                 );
         }
         S3ObjectWrapper orig_ifile = 
@@ -874,7 +992,8 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
             kekMaterialsProvider,
             cryptoConfig.getCryptoProvider(),
             false,   // existing CEK not necessarily key-wrapped
-            kms
+            kms,
+            cryptoConfig.getKmsDataKeyCache()
         );
     }
 
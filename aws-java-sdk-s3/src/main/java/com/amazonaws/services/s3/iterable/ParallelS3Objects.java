@@ -0,0 +1,735 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Iterates the Amazon S3 objects of a bucket like {@link S3Objects}, but lists
+ * separate partitions of the key space concurrently. For example:
+ *
+ * <pre class="brush: java">
+ * ParallelS3Objects.ParallelObjectIterator it =
+ *         ParallelS3Objects.inBucket(s3, &quot;my-bucket&quot;).withParallelism(16).iterator();
+ * try {
+ *     while ( it.hasNext() ) {
+ *         System.out.printf(&quot;Object with key '%s'\n&quot;, it.next().getKey());
+ *     }
+ * } finally {
+ *     it.close();
+ * }
+ * </pre>
+ * <p>
+ * By default, the partitions are discovered by listing the bucket (or prefix)
+ * with a delimiter: each common prefix is listed as a partition of its own,
+ * and the keys that don't have one are returned as they are discovered. This
+ * works well when the keys are spread over many prefixes, such as
+ * "logs/2015/", "logs/2016/", etc. with a prefix of "logs/". Alternatively,
+ * the key space can be split at given keys with
+ * {@link #withSplitPoints(String...)}.
+ * <p>
+ * Object summaries are fetched a page at a time by a fixed number of listing
+ * tasks, and at most the configured number of pages are buffered, so memory
+ * use doesn't grow with the size of the bucket. By default the summaries are
+ * returned in no particular order; with {@link #withOrdering(boolean)} they
+ * are returned in key order, as with {@link S3Objects}, in which case only
+ * the partitions following the one being returned are listed ahead.
+ * <p>
+ * An iterator that isn't iterated to the end should be closed, to stop its
+ * listing tasks. When used in a for-each loop, which can't close the iterator,
+ * the listing tasks of an abandoned iterator stop by themselves once it
+ * hasn't been used for the idle timeout (see
+ * {@link #withIdleTimeout(long)}), releasing their buffered pages and threads.
+ */
+public class ParallelS3Objects implements Iterable<S3ObjectSummary> {
+
+    /** The default number of concurrent listing tasks. */
+    public static final int DEFAULT_PARALLELISM = 8;
+
+    /** The default maximum number of pages of summaries buffered. */
+    public static final int DEFAULT_MAX_BUFFERED_PAGES = 16;
+
+    /**
+     * The default time, in milliseconds, after which the listing of an
+     * iterator that nothing has been taken from is stopped.
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /** The default delimiter used to discover partitions. */
+    public static final String DEFAULT_DELIMITER = "/";
+
+    /** Marks the end of the pages of a partition, or of a listing task. */
+    private static final List<S3ObjectSummary> END_OF_PAGES = Collections.emptyList();
+
+    /** Marks the end of the partitions, when returning them in order. */
+    private static final BlockingQueue<List<S3ObjectSummary>> END_OF_PARTITIONS =
+            new ArrayBlockingQueue<List<S3ObjectSummary>>(1);
+
+    /** How often blocked threads check whether the listing was stopped. */
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private AmazonS3 s3;
+    private String prefix = null;
+    private String bucketName;
+    private Integer batchSize = null;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private int maxBufferedPages = DEFAULT_MAX_BUFFERED_PAGES;
+    private String delimiter = DEFAULT_DELIMITER;
+    private List<String> splitPoints = null;
+    private boolean ordered = false;
+    private ExecutorService executorService = null;
+    private long idleTimeoutMillis = DEFAULT_IDLE_TIMEOUT_MILLIS;
+
+    private ParallelS3Objects(AmazonS3 s3, String bucketName) {
+        this.s3 = s3;
+        this.bucketName = bucketName;
+    }
+
+    /**
+     * Constructs an iterable that covers all the objects in an Amazon S3
+     * bucket.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @return An iterator for object summaries.
+     */
+    public static ParallelS3Objects inBucket(AmazonS3 s3, String bucketName) {
+        return new ParallelS3Objects(s3, bucketName);
+    }
+
+    /**
+     * Constructs an iterable that covers the objects in an Amazon S3 bucket
+     * where the key begins with the given prefix.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @param prefix
+     *            The prefix.
+     * @return An iterator for object summaries.
+     */
+    public static ParallelS3Objects withPrefix(AmazonS3 s3, String bucketName, String prefix) {
+        ParallelS3Objects objects = new ParallelS3Objects(s3, bucketName);
+        objects.prefix = prefix;
+        return objects;
+    }
+
+    /**
+     * Sets the batch size, i.e., how many {@link S3ObjectSummary}s will be
+     * fetched at once.
+     *
+     * @param batchSize
+     *            How many object summaries to fetch at once.
+     */
+    public ParallelS3Objects withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the number of partitions listed concurrently.
+     *
+     * @param parallelism
+     *            The number of concurrent listing tasks.
+     */
+    public ParallelS3Objects withParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("The parallelism must be positive");
+        }
+        this.parallelism = parallelism;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of pages of object summaries that are fetched
+     * ahead of the ones being returned. When returning the summaries in order,
+     * the pages are shared among the partitions being listed, with at least
+     * one page each.
+     *
+     * @param maxBufferedPages
+     *            The maximum number of pages buffered.
+     */
+    public ParallelS3Objects withMaxBufferedPages(int maxBufferedPages) {
+        if (maxBufferedPages <= 0) {
+            throw new IllegalArgumentException("The maximum buffered pages must be positive");
+        }
+        this.maxBufferedPages = maxBufferedPages;
+        return this;
+    }
+
+    /**
+     * Sets the delimiter used to discover the partitions, when no split points
+     * are given.
+     *
+     * @param delimiter
+     *            The delimiter.
+     */
+    public ParallelS3Objects withDelimiter(String delimiter) {
+        if (delimiter == null || delimiter.length() == 0) {
+            throw new IllegalArgumentException("The delimiter must not be empty");
+        }
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Sets the keys at which the key space is split into partitions, instead
+     * of discovering them with a delimiter. Each partition covers the keys
+     * after its split point, up to and including the next one; the first
+     * covers the keys up to and including the first split point. The keys
+     * needn't exist.
+     *
+     * @param splitPoints
+     *            The keys to split at.
+     */
+    public ParallelS3Objects withSplitPoints(String... splitPoints) {
+        List<String> points = new ArrayList<String>(Arrays.asList(splitPoints));
+        Collections.sort(points);
+        this.splitPoints = points;
+        return this;
+    }
+
+    /**
+     * Sets whether the object summaries are returned in key order. Partitions
+     * listed ahead stop when their share of the buffered pages is full, so
+     * ordered listing needs more buffered pages to be as fast.
+     *
+     * @param ordered
+     *            True to return the summaries in key order.
+     */
+    public ParallelS3Objects withOrdering(boolean ordered) {
+        this.ordered = ordered;
+        return this;
+    }
+
+    /**
+     * Sets the executor service that runs the listing tasks, which will be
+     * left running after the listing. By default, each iterator runs its
+     * tasks on threads of its own.
+     *
+     * @param executorService
+     *            The executor service.
+     */
+    public ParallelS3Objects withExecutorService(ExecutorService executorService) {
+        this.executorService = executorService;
+        return this;
+    }
+
+    /**
+     * Sets the time after which the listing tasks of an iterator stop if
+     * neither {@code hasNext()} nor {@code next()} has been called on it,
+     * which is how iterators that are abandoned without being closed release
+     * their resources. An iterator that is used after being idle for longer
+     * throws an {@link IllegalStateException}.
+     *
+     * @param idleTimeoutMillis
+     *            The idle timeout in milliseconds.
+     */
+    public ParallelS3Objects withIdleTimeout(long idleTimeoutMillis) {
+        if (idleTimeoutMillis <= 0) {
+            throw new IllegalArgumentException("The idle timeout must be positive");
+        }
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        return this;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public AmazonS3 getS3() {
+        return s3;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getMaxBufferedPages() {
+        return maxBufferedPages;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public List<String> getSplitPoints() {
+        return splitPoints == null ? null : Collections.unmodifiableList(splitPoints);
+    }
+
+    public boolean isOrdered() {
+        return ordered;
+    }
+
+    public ExecutorService getExecutorService() {
+        return executorService;
+    }
+
+    public long getIdleTimeout() {
+        return idleTimeoutMillis;
+    }
+
+    /**
+     * Starts listing the objects, and returns an iterator over their
+     * summaries.
+     */
+    @Override
+    public ParallelObjectIterator iterator() {
+        return new ParallelObjectIterator();
+    }
+
+    /**
+     * A range of keys to list: those after the marker, up to and including
+     * the end key, with the given prefix. A partition can also hold summaries
+     * that have already been listed.
+     */
+    private static final class Partition {
+        final String prefix;
+        final String marker;
+        final String endKey;
+        final List<S3ObjectSummary> summaries;
+
+        Partition(String prefix, String marker, String endKey) {
+            this.prefix = prefix;
+            this.marker = marker;
+            this.endKey = endKey;
+            this.summaries = null;
+        }
+
+        Partition(List<S3ObjectSummary> summaries) {
+            this.prefix = null;
+            this.marker = null;
+            this.endKey = null;
+            this.summaries = summaries;
+        }
+    }
+
+    /**
+     * Returns the partitions in key order. With a delimiter, the delimited
+     * listing is paged through as the partitions are needed.
+     */
+    private class PartitionSource {
+        private final Iterator<Partition> fixedPartitions;
+        private ObjectListing listing;
+        private int summaryIndex;
+        private int prefixIndex;
+        private List<String> commonPrefixes;
+
+        PartitionSource() {
+            if (splitPoints == null) {
+                fixedPartitions = null;
+                return;
+            }
+            List<Partition> partitions = new ArrayList<Partition>();
+            String marker = null;
+            for (String splitPoint : splitPoints) {
+                if (prefix != null && !splitPoint.startsWith(prefix)) {
+                    continue;
+                }
+                if (marker == null || !marker.equals(splitPoint)) {
+                    partitions.add(new Partition(prefix, marker, splitPoint));
+                    marker = splitPoint;
+                }
+            }
+            partitions.add(new Partition(prefix, marker, null));
+            fixedPartitions = partitions.iterator();
+        }
+
+        /** Returns the next partition, or null if there are no more. */
+        Partition next() {
+            if (fixedPartitions != null) {
+                return fixedPartitions.hasNext() ? fixedPartitions.next() : null;
+            }
+            while (listing == null || (summaryIndex == listing.getObjectSummaries().size()
+                    && prefixIndex == commonPrefixes.size() && listing.isTruncated())) {
+                if (listing == null) {
+                    ListObjectsRequest req = new ListObjectsRequest();
+                    req.setBucketName(getBucketName());
+                    req.setPrefix(getPrefix());
+                    req.setDelimiter(delimiter);
+                    req.setMaxKeys(getBatchSize());
+                    listing = getS3().listObjects(req);
+                } else {
+                    listing = getS3().listNextBatchOfObjects(listing);
+                }
+                summaryIndex = 0;
+                prefixIndex = 0;
+                // Common prefixes are returned in key order, but as a set
+                commonPrefixes = new ArrayList<String>(listing.getCommonPrefixes());
+                Collections.sort(commonPrefixes);
+            }
+            List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+            String nextPrefix = prefixIndex < commonPrefixes.size()
+                    ? commonPrefixes.get(prefixIndex) : null;
+            // Keys without a common prefix that precede the next one
+            int end = summaryIndex;
+            while (end < summaries.size()
+                    && (nextPrefix == null || summaries.get(end).getKey().compareTo(nextPrefix) < 0)) {
+                end++;
+            }
+            if (end > summaryIndex) {
+                List<S3ObjectSummary> page =
+                        new ArrayList<S3ObjectSummary>(summaries.subList(summaryIndex, end));
+                summaryIndex = end;
+                return new Partition(page);
+            }
+            if (nextPrefix != null) {
+                prefixIndex++;
+                return new Partition(nextPrefix, null, null);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * An iterator over the summaries of the objects being listed, which
+     * should be closed if it isn't iterated to the end.
+     */
+    public final class ParallelObjectIterator implements Iterator<S3ObjectSummary>, Closeable {
+
+        private final PartitionSource source = new PartitionSource();
+        private final ExecutorService executor;
+        private final boolean isOwnExecutor;
+        private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        private final long idleTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(idleTimeoutMillis);
+        private volatile long lastUseNanos = System.nanoTime();
+        private volatile boolean isStopped;
+        private volatile boolean isIdleStopped;
+
+        /** The pages of all the partitions, when not returning them in order. */
+        private final BlockingQueue<List<S3ObjectSummary>> pages;
+        private final AtomicInteger activeTasks = new AtomicInteger(parallelism);
+
+        /** The pages of each partition, in order, when returning them in order. */
+        private final BlockingQueue<BlockingQueue<List<S3ObjectSummary>>> partitionPages;
+        /** Limits the partitions listed ahead of the one being returned. */
+        private final Semaphore partitionWindow;
+        private final int pagesPerPartition;
+        private boolean isEndOfPartitions;
+
+        private BlockingQueue<List<S3ObjectSummary>> currentPartition;
+        private Iterator<S3ObjectSummary> currentPage;
+        private boolean isDone;
+
+        private ParallelObjectIterator() {
+            if (ordered) {
+                pages = null;
+                partitionPages = new LinkedBlockingQueue<BlockingQueue<List<S3ObjectSummary>>>();
+                partitionWindow = new Semaphore(parallelism);
+                pagesPerPartition = Math.max(1, maxBufferedPages / parallelism);
+            } else {
+                pages = new ArrayBlockingQueue<List<S3ObjectSummary>>(maxBufferedPages);
+                partitionPages = null;
+                partitionWindow = null;
+                pagesPerPartition = 0;
+            }
+            isOwnExecutor = executorService == null;
+            executor = isOwnExecutor ? newExecutor(parallelism) : executorService;
+            try {
+                for (int i = 0; i < parallelism; i++) {
+                    executor.execute(new Runnable() {
+                        @Override
+                        public void run() {
+                            listPartitions();
+                        }
+                    });
+                }
+            } catch (RejectedExecutionException e) {
+                // Stop the tasks already started, which have no consumer
+                close();
+                throw e;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            // Idleness is measured per object, so a slow consumer of a large
+            // page isn't mistaken for an abandoned iterator
+            lastUseNanos = System.nanoTime();
+            while (currentPage == null || !currentPage.hasNext()) {
+                if (isDone) {
+                    return false;
+                }
+                List<S3ObjectSummary> page = nextPage();
+                if (page == null) {
+                    isDone = true;
+                    shutdown();
+                    return false;
+                }
+                currentPage = page.iterator();
+            }
+            return true;
+        }
+
+        @Override
+        public S3ObjectSummary next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return currentPage.next();
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Stops listing the objects; the iterator can't be used afterwards.
+         */
+        @Override
+        public void close() {
+            isDone = true;
+            stop();
+            shutdown();
+        }
+
+        /** Returns the next page of summaries, or null if there are no more. */
+        private List<S3ObjectSummary> nextPage() {
+            while (true) {
+                if (!ordered) {
+                    // Only added by the last task to finish, after all the pages
+                    List<S3ObjectSummary> page = take(pages);
+                    return page == END_OF_PAGES ? null : page;
+                }
+                if (currentPartition == null) {
+                    currentPartition = take(partitionPages);
+                    if (currentPartition == END_OF_PARTITIONS) {
+                        return null;
+                    }
+                }
+                List<S3ObjectSummary> page = take(currentPartition);
+                if (page != END_OF_PAGES) {
+                    return page;
+                }
+                currentPartition = null;
+                partitionWindow.release();
+            }
+        }
+
+        private <T> T take(BlockingQueue<T> queue) {
+            try {
+                while (true) {
+                    checkFailure();
+                    if (isIdleStopped) {
+                        throw new IllegalStateException(
+                                "The listing was stopped after the iterator was idle for "
+                                + idleTimeoutMillis + " ms");
+                    }
+                    if (isStopped) {
+                        throw new IllegalStateException("The iterator has been closed");
+                    }
+                    lastUseNanos = System.nanoTime();
+                    T element = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                    if (element != null) {
+                        lastUseNanos = System.nanoTime();
+                        return element;
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                close();
+                throw new AmazonClientException("Interrupted while listing objects", e);
+            }
+        }
+
+        private void checkFailure() {
+            Throwable t = failure.get();
+            if (t == null) {
+                return;
+            }
+            isDone = true;
+            shutdown();
+            if (t instanceof AmazonClientException) {
+                throw (AmazonClientException) t;
+            }
+            throw new AmazonClientException("Unable to list objects: " + t.getMessage(), t);
+        }
+
+        /** Runs a listing task, which lists partitions until there are no more. */
+        private void listPartitions() {
+            try {
+                while (!isStopped) {
+                    Partition partition;
+                    BlockingQueue<List<S3ObjectSummary>> out;
+                    if (ordered) {
+                        if (!acquire(partitionWindow)) {
+                            return;
+                        }
+                        synchronized (source) {
+                            partition = source.next();
+                            if (partition == null) {
+                                partitionWindow.release();
+                                if (!isEndOfPartitions) {
+                                    isEndOfPartitions = true;
+                                    partitionPages.add(END_OF_PARTITIONS);
+                                }
+                                return;
+                            }
+                            out = new ArrayBlockingQueue<List<S3ObjectSummary>>(pagesPerPartition);
+                            partitionPages.add(out);
+                        }
+                    } else {
+                        synchronized (source) {
+                            partition = source.next();
+                        }
+                        if (partition == null) {
+                            return;
+                        }
+                        out = pages;
+                    }
+                    listPartition(partition, out);
+                    if (ordered) {
+                        put(out, END_OF_PAGES);
+                    }
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+                stop();
+            } finally {
+                if (!ordered && activeTasks.decrementAndGet() == 0) {
+                    // Wakes up the consumer; lost if stopped, which is fine
+                    put(pages, END_OF_PAGES);
+                }
+            }
+        }
+
+        private void listPartition(Partition partition,
+                BlockingQueue<List<S3ObjectSummary>> out) {
+            if (partition.summaries != null) {
+                put(out, partition.summaries);
+                return;
+            }
+            ListObjectsRequest req = new ListObjectsRequest();
+            req.setBucketName(getBucketName());
+            req.setPrefix(partition.prefix);
+            req.setMarker(partition.marker);
+            req.setMaxKeys(getBatchSize());
+            ObjectListing listing = getS3().listObjects(req);
+            while (!isStopped) {
+                List<S3ObjectSummary> summaries = listing.getObjectSummaries();
+                int end = summaries.size();
+                if (partition.endKey != null) {
+                    while (end > 0 && summaries.get(end - 1).getKey().compareTo(partition.endKey) > 0) {
+                        end--;
+                    }
+                }
+                if (end > 0) {
+                    put(out, end == summaries.size() ? summaries : summaries.subList(0, end));
+                }
+                if (end < summaries.size() || !listing.isTruncated()) {
+                    return;
+                }
+                listing = getS3().listNextBatchOfObjects(listing);
+            }
+        }
+
+        /** Adds the element unless the listing has been stopped. */
+        private <T> void put(BlockingQueue<T> queue, T element) {
+            try {
+                while (!isStopped) {
+                    if (queue.offer(element, POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                        return;
+                    }
+                    stopIfIdle();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+            }
+        }
+
+        /** Acquires a permit unless the listing has been stopped. */
+        private boolean acquire(Semaphore semaphore) throws InterruptedException {
+            while (!isStopped) {
+                if (semaphore.tryAcquire(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+                stopIfIdle();
+            }
+            return false;
+        }
+
+        /**
+         * Stops the listing if the iterator hasn't been used for the idle
+         * timeout, as when it was abandoned without being closed.
+         */
+        private void stopIfIdle() {
+            if (System.nanoTime() - lastUseNanos > idleTimeoutNanos) {
+                isIdleStopped = true;
+                shutdown();
+            }
+        }
+
+        private void stop() {
+            isStopped = true;
+        }
+
+        private void shutdown() {
+            stop();
+            if (isOwnExecutor) {
+                executor.shutdown();
+            }
+        }
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        ThreadFactory threadFactory = new ThreadFactory() {
+            private final AtomicInteger threadCount = new AtomicInteger(1);
+
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r);
+                thread.setName("s3-listing-worker-" + threadCount.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+        return Executors.newFixedThreadPool(threads, threadFactory);
+    }
+}
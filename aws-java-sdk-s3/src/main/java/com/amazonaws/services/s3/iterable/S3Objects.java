@@ -33,7 +33,8 @@ import com.amazonaws.services.s3.model.S3ObjectSummary;
  * <p>
  * The list of {@link S3ObjectSummary}s will be fetched lazily, a page at a
  * time, as they are needed. The size of the page can be controlled with the
- * {@link S3Objects#withBatchSize(int)} method.
+ * {@link S3Objects#withBatchSize(int)} method. To list the objects of a
+ * large bucket concurrently, see {@link ParallelS3Objects}.
  */
 public class S3Objects implements Iterable<S3ObjectSummary> {
 
@@ -43,6 +43,11 @@ public class CryptoConfiguration implements Cloneable {
      * null if no explicit KMS region is specified.
      */
     private Regions kmsRegion;
+    /**
+     * Used to cache the data keys obtained from KMS; or null if data keys are
+     * not cached.
+     */
+    private KMSDataKeyCache kmsDataKeyCache;
 
     /**
      * Creates a new CryptoConfiguration object with default storage mode and
@@ -283,6 +288,12 @@ public class CryptoConfiguration implements Cloneable {
         @Override public CryptoConfiguration withKmsRegion(Regions kmsRegion) {
             throw new UnsupportedOperationException();
         }
+        @Override public void setKmsDataKeyCache(KMSDataKeyCache kmsDataKeyCache) {
+            throw new UnsupportedOperationException();
+        }
+        @Override public CryptoConfiguration withKmsDataKeyCache(KMSDataKeyCache kmsDataKeyCache) {
+            throw new UnsupportedOperationException();
+        }
     }
 
     /**
@@ -305,6 +316,7 @@ public class CryptoConfiguration implements Cloneable {
         that.cryptoProvider = this.cryptoProvider;
         that.ignoreMissingInstructionFile = this.ignoreMissingInstructionFile;
         that.kmsRegion = this.kmsRegion;
+        that.kmsDataKeyCache = this.kmsDataKeyCache;
         return that;
     }
 
@@ -342,4 +354,36 @@ public class CryptoConfiguration implements Cloneable {
         this.kmsRegion = kmsRegion;
         return this;
     }
+
+    /**
+     * Returns the cache of the data keys obtained from KMS, or null if data
+     * keys are not cached, which is the default.
+     */
+    public KMSDataKeyCache getKmsDataKeyCache() {
+        return kmsDataKeyCache;
+    }
+
+    /**
+     * Sets the cache of the data keys obtained from KMS, which reduces the
+     * number of calls to KMS when encrypting or decrypting objects under a KMS
+     * customer master key; or null to not cache data keys. Clients sharing a
+     * cache, including through this configuration, share their KMS
+     * authorization.
+     *
+     * @see KMSDataKeyCache
+     */
+    public void setKmsDataKeyCache(KMSDataKeyCache kmsDataKeyCache) {
+        this.kmsDataKeyCache = kmsDataKeyCache;
+    }
+
+    /**
+     * Fluent API for setting the cache of the data keys obtained from KMS; or
+     * null to not cache data keys.
+     *
+     * @see KMSDataKeyCache
+     */
+    public CryptoConfiguration withKmsDataKeyCache(KMSDataKeyCache kmsDataKeyCache) {
+        this.kmsDataKeyCache = kmsDataKeyCache;
+        return this;
+    }
 }
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.crypto.SecretKey;
+
+import org.apache.http.annotation.ThreadSafe;
+
+/**
+ * A cache of the data keys obtained from AWS KMS by the Amazon S3 encryption
+ * client, which can be configured using
+ * {@link CryptoConfiguration#setKmsDataKeyCache(KMSDataKeyCache)}. Without a
+ * cache, every object encrypted under a KMS customer master key requires a
+ * <code>GenerateDataKey</code> call, and every such object decrypted requires
+ * a <code>Decrypt</code> call.
+ * <p>
+ * With a cache, a data key generated for a customer master key and encryption
+ * context is reused to encrypt further objects, each with its own random IV,
+ * until it has been used the configured maximum number of times or has been
+ * cached for longer than the time to live. Decrypted data keys are cached
+ * until the time to live by their encrypted form and encryption context, so
+ * that objects sharing a data key, including those encrypted by the same
+ * client, are decrypted without calling KMS. Each of the two caches holds at
+ * most the configured number of entries, evicting the least recently used.
+ * <p>
+ * Note that caching data keys keeps them in memory for longer, and that
+ * objects encrypted with a reused data key are no longer independently
+ * protected by KMS; choose the limits accordingly.
+ * <p>
+ * A data key found in the cache is used without calling KMS, and so without
+ * KMS checking that the caller is authorized to use the customer master key.
+ * Clients sharing a cache therefore share their KMS authorization: a client
+ * can encrypt and decrypt with the data keys obtained by any other. Only
+ * share a cache between clients using the same credentials; otherwise give
+ * each client its own.
+ * <p>
+ * This class is thread-safe.
+ */
+@ThreadSafe
+public final class KMSDataKeyCache {
+
+    private final int maxEntries;
+    private final long timeToLiveMillis;
+    private final int maxUsesPerDataKey;
+
+    // Both guarded by themselves
+    private final Map<List<Object>, DataKeyEntry> dataKeys;
+    private final Map<List<Object>, DecryptedKeyEntry> decryptedKeys;
+
+    private final AtomicLong dataKeyHits = new AtomicLong();
+    private final AtomicLong dataKeyMisses = new AtomicLong();
+    private final AtomicLong decryptedKeyHits = new AtomicLong();
+    private final AtomicLong decryptedKeyMisses = new AtomicLong();
+
+    /**
+     * @param maxEntries
+     *            the maximum number of data keys, and of decrypted data keys,
+     *            that are cached
+     * @param timeToLiveMillis
+     *            the time (in milliseconds) for which a data key is cached
+     * @param maxUsesPerDataKey
+     *            the maximum number of objects encrypted with a cached data
+     *            key, including the first
+     */
+    public KMSDataKeyCache(int maxEntries, long timeToLiveMillis,
+            int maxUsesPerDataKey) {
+        if (maxEntries <= 0 || timeToLiveMillis <= 0 || maxUsesPerDataKey <= 0) {
+            throw new IllegalArgumentException(
+                    "The maximum entries, time to live and maximum uses must be positive.");
+        }
+        this.maxEntries = maxEntries;
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.maxUsesPerDataKey = maxUsesPerDataKey;
+        this.dataKeys = new LruMap<DataKeyEntry>(maxEntries);
+        this.decryptedKeys = new LruMap<DecryptedKeyEntry>(maxEntries);
+    }
+
+    /**
+     * Returns the maximum number of data keys, and of decrypted data keys,
+     * that are cached.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the time (in milliseconds) for which a data key is cached.
+     */
+    public long getTimeToLiveMillis() {
+        return timeToLiveMillis;
+    }
+
+    /**
+     * Returns the maximum number of objects encrypted with a cached data key.
+     */
+    public int getMaxUsesPerDataKey() {
+        return maxUsesPerDataKey;
+    }
+
+    /**
+     * Returns a cached data key generated under the given customer master key
+     * and encryption context, and counts a use of it; or null if there is no
+     * such data key that can still be used.
+     */
+    public DataKey getDataKey(String customerMasterKeyId,
+            Map<String, String> encryptionContext, String keySpec) {
+        List<Object> key = dataKeyOf(customerMasterKeyId, encryptionContext, keySpec);
+        DataKeyEntry entry;
+        synchronized (dataKeys) {
+            entry = dataKeys.get(key);
+        }
+        if (entry != null) {
+            if (!entry.isExpired() && entry.uses.incrementAndGet() <= maxUsesPerDataKey) {
+                dataKeyHits.incrementAndGet();
+                return entry.dataKey;
+            }
+            synchronized (dataKeys) {
+                if (dataKeys.get(key) == entry) {
+                    dataKeys.remove(key);
+                }
+            }
+        }
+        dataKeyMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Caches a data key newly generated under the given customer master key
+     * and encryption context, which has been used once. The data key is also
+     * cached for decryption.
+     */
+    public void putDataKey(String customerMasterKeyId,
+            Map<String, String> encryptionContext, String keySpec,
+            DataKey dataKey) {
+        if (maxUsesPerDataKey > 1) {
+            List<Object> key = dataKeyOf(customerMasterKeyId, encryptionContext, keySpec);
+            DataKeyEntry entry = new DataKeyEntry(dataKey);
+            synchronized (dataKeys) {
+                dataKeys.put(key, entry);
+            }
+        }
+        putDecryptedKey(dataKey.encryptedKey, encryptionContext, dataKey.key);
+    }
+
+    /**
+     * Returns the cached plaintext of the given encrypted data key, or null
+     * if it isn't cached.
+     */
+    public SecretKey getDecryptedKey(byte[] encryptedKey,
+            Map<String, String> encryptionContext) {
+        List<Object> key = decryptedKeyOf(encryptedKey, encryptionContext);
+        DecryptedKeyEntry entry;
+        synchronized (decryptedKeys) {
+            entry = decryptedKeys.get(key);
+            if (entry != null && entry.isExpired()) {
+                decryptedKeys.remove(key);
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            decryptedKeyMisses.incrementAndGet();
+            return null;
+        }
+        decryptedKeyHits.incrementAndGet();
+        return entry.key;
+    }
+
+    /**
+     * Caches the plaintext of the given encrypted data key.
+     */
+    public void putDecryptedKey(byte[] encryptedKey,
+            Map<String, String> encryptionContext, SecretKey plaintextKey) {
+        List<Object> key = decryptedKeyOf(encryptedKey, encryptionContext);
+        DecryptedKeyEntry entry = new DecryptedKeyEntry(plaintextKey);
+        synchronized (decryptedKeys) {
+            decryptedKeys.put(key, entry);
+        }
+    }
+
+    /**
+     * Removes all the cached keys.
+     */
+    public void clear() {
+        synchronized (dataKeys) {
+            dataKeys.clear();
+        }
+        synchronized (decryptedKeys) {
+            decryptedKeys.clear();
+        }
+    }
+
+    /** Returns the number of times a cached data key was used for encryption. */
+    public long getDataKeyHitCount() {
+        return dataKeyHits.get();
+    }
+
+    /** Returns the number of times a data key had to be generated by KMS. */
+    public long getDataKeyMissCount() {
+        return dataKeyMisses.get();
+    }
+
+    /** Returns the number of times a cached decrypted data key was used. */
+    public long getDecryptedKeyHitCount() {
+        return decryptedKeyHits.get();
+    }
+
+    /** Returns the number of times a data key had to be decrypted by KMS. */
+    public long getDecryptedKeyMissCount() {
+        return decryptedKeyMisses.get();
+    }
+
+    /**
+     * Returns the fraction of the lookups, for both encryption and
+     * decryption, that were served from the cache; or 0 if there were none.
+     */
+    public double getHitRate() {
+        long hits = dataKeyHits.get() + decryptedKeyHits.get();
+        long lookups = hits + dataKeyMisses.get() + decryptedKeyMisses.get();
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    @Override
+    public String toString() {
+        return "KMSDataKeyCache [dataKeyHits=" + getDataKeyHitCount()
+            + ", dataKeyMisses=" + getDataKeyMissCount()
+            + ", decryptedKeyHits=" + getDecryptedKeyHitCount()
+            + ", decryptedKeyMisses=" + getDecryptedKeyMissCount() + "]";
+    }
+
+    private static List<Object> dataKeyOf(String customerMasterKeyId,
+            Map<String, String> encryptionContext, String keySpec) {
+        return Arrays.<Object>asList(customerMasterKeyId,
+                copyOf(encryptionContext), keySpec);
+    }
+
+    private static List<Object> decryptedKeyOf(byte[] encryptedKey,
+            Map<String, String> encryptionContext) {
+        return Arrays.<Object>asList(ByteBuffer.wrap(encryptedKey.clone()),
+                copyOf(encryptionContext));
+    }
+
+    private static Map<String, String> copyOf(Map<String, String> encryptionContext) {
+        return encryptionContext == null
+             ? new HashMap<String, String>()
+             : new HashMap<String, String>(encryptionContext);
+    }
+
+    /**
+     * A data key generated by KMS, in plaintext and encrypted under the
+     * customer master key.
+     */
+    public static final class DataKey {
+        private final SecretKey key;
+        private final byte[] encryptedKey;
+
+        public DataKey(SecretKey key, byte[] encryptedKey) {
+            this.key = key;
+            this.encryptedKey = encryptedKey.clone();
+        }
+
+        public SecretKey getKey() {
+            return key;
+        }
+
+        public byte[] getEncryptedKey() {
+            return encryptedKey.clone();
+        }
+    }
+
+    private final class DataKeyEntry {
+        final DataKey dataKey;
+        final long expirationTime = System.currentTimeMillis() + timeToLiveMillis;
+        /** The number of objects encrypted with the data key. */
+        final AtomicInteger uses = new AtomicInteger(1);
+
+        DataKeyEntry(DataKey dataKey) {
+            this.dataKey = dataKey;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expirationTime;
+        }
+    }
+
+    private final class DecryptedKeyEntry {
+        final SecretKey key;
+        final long expirationTime = System.currentTimeMillis() + timeToLiveMillis;
+
+        DecryptedKeyEntry(SecretKey key) {
+            this.key = key;
+        }
+
+        boolean isExpired() {
+            return System.currentTimeMillis() >= expirationTime;
+        }
+    }
+
+    /** A map that evicts its least recently used entry beyond a maximum size. */
+    @SuppressWarnings("serial")
+    private static final class LruMap<V> extends LinkedHashMap<List<Object>, V> {
+        private final int maxEntries;
+
+        LruMap(int maxEntries) {
+            super(16, 0.75f, true);
+            this.maxEntries = maxEntries;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<List<Object>, V> eldest) {
+            return size() > maxEntries;
+        }
+    }
+}
@@ -19,11 +19,9 @@ package com.amazonaws.services.s3.model.transform;
 
 import static com.amazonaws.util.StringUtils.UTF8;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
@@ -101,7 +99,17 @@ import com.amazonaws.util.DateUtils;
 public class XmlResponsesSaxParser {
     private static final Log log = LogFactory.getLog(XmlResponsesSaxParser.class);
 
-    private XMLReader xr = null;
+    /**
+     * Per-thread XML readers, reused across parses. Creating an XMLReader
+     * looks up the SAX driver through the class loader, which can cost more
+     * than parsing a small response; readers are reusable, but not
+     * thread-safe. A reader is taken out while in use, so a nested parse on
+     * the same thread gets a reader of its own.
+     */
+    private static final ThreadLocal<XMLReader> xmlReaders = new ThreadLocal<XMLReader>();
+
+    /** Set on idle readers, so that they don't hold on to the last handler. */
+    private static final DefaultHandler IDLE_HANDLER = new DefaultHandler();
 
     private boolean sanitizeXmlDocument = true;
 
@@ -112,8 +120,14 @@ public class XmlResponsesSaxParser {
      */
     public XmlResponsesSaxParser() throws AmazonClientException {
         // Ensure we can load the XML Reader.
+        if (xmlReaders.get() == null) {
+            xmlReaders.set(newXmlReader());
+        }
+    }
+
+    private static XMLReader newXmlReader() {
         try {
-            xr = XMLReaderFactory.createXMLReader();
+            return XMLReaderFactory.createXMLReader();
         } catch (SAXException e) {
             throw new AmazonClientException("Couldn't initialize a SAX driver to create an XMLReader", e);
         }
@@ -140,11 +154,21 @@ public class XmlResponsesSaxParser {
                 log.debug("Parsing XML response document with handler: " + handler.getClass());
             }
 
-            BufferedReader breader = new BufferedReader(new InputStreamReader(inputStream,
-                Constants.DEFAULT_ENCODING));
+            XMLReader xr = xmlReaders.get();
+            if (xr == null) {
+                xr = newXmlReader();
+            } else {
+                xmlReaders.set(null);
+            }
+            InputSource source = new InputSource(inputStream);
+            source.setEncoding(Constants.DEFAULT_ENCODING);
             xr.setContentHandler(handler);
             xr.setErrorHandler(handler);
-            xr.parse(new InputSource(breader));
+            xr.parse(source);
+            // Only a reader that completed its parse is reused
+            xr.setContentHandler(IDLE_HANDLER);
+            xr.setErrorHandler(IDLE_HANDLER);
+            xmlReaders.set(xr);
 
         } catch (IOException e) {
             throw e;
@@ -162,63 +186,118 @@ public class XmlResponsesSaxParser {
         }
     }
 
+    /**
+     * Returns the given XML document with any carriage return (\r) characters
+     * replaced with explicit XML character entities, to prevent the SAX parser
+     * from misinterpreting 0x0D characters as 0x0A and being unable to parse
+     * the XML. The characters are replaced as the document is read, so it
+     * isn't buffered in memory.
+     */
     protected InputStream sanitizeXmlDocument(DefaultHandler handler, InputStream inputStream)
             throws IOException {
 
         if (!sanitizeXmlDocument) {
             // No sanitizing will be performed, return the original input stream unchanged.
             return inputStream;
-        } else {
-            if (log.isDebugEnabled()) {
-                log.debug("Sanitizing XML document destined for handler " + handler.getClass());
-            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Sanitizing XML document destined for handler " + handler.getClass());
+        }
+        return new CarriageReturnEscapingInputStream(inputStream);
+    }
 
-            InputStream sanitizedInputStream = null;
+    /**
+     * Replaces the carriage return bytes of a UTF-8 encoded document with the
+     * equivalent character entity. The byte 0x0D never occurs within the
+     * encoding of another character in UTF-8, so the document doesn't need to
+     * be decoded.
+     */
+    private static final class CarriageReturnEscapingInputStream extends FilterInputStream {
+        private static final byte[] ENTITY = "&#013;".getBytes(UTF8);
 
-            try {
+        /** Raw bytes read from the underlying stream, but not yet returned. */
+        private final byte[] raw = new byte[8192];
+        private int rawPos;
+        private int rawEnd;
 
-                /*
-                 * Read object listing XML document from input stream provided into a
-                 * string buffer, so we can replace troublesome characters before
-                 * sending the document to the XML parser.
-                 */
-                StringBuilder listingDocBuffer = new StringBuilder();
-                BufferedReader br = new BufferedReader(
-                    new InputStreamReader(inputStream, Constants.DEFAULT_ENCODING));
-
-                char[] buf = new char[8192];
-                int read = -1;
-                while ((read = br.read(buf)) != -1) {
-                    listingDocBuffer.append(buf, 0, read);
-                }
-                br.close();
-
-                /*
-                 * Replace any carriage return (\r) characters with explicit XML
-                 * character entities, to prevent the SAX parser from
-                 * misinterpreting 0x0D characters as 0x0A and being unable to
-                 * parse the XML.
-                 */
-                String listingDoc = listingDocBuffer.toString().replaceAll("\r", "&#013;");
-
-                sanitizedInputStream = new ByteArrayInputStream(
-                    listingDoc.getBytes(UTF8));
+        /** The position in ENTITY of the next byte to return, if escaping. */
+        private int entityPos = ENTITY.length;
 
-            } catch (IOException e) {
-                throw e;
-
-            } catch (Throwable t) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    if (log.isErrorEnabled()) {
-                        log.error("Unable to close response InputStream after failure sanitizing XML document", e);
+        CarriageReturnEscapingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) == -1 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            int n = 0;
+            while (n < len) {
+                if (entityPos < ENTITY.length) {
+                    b[off + n++] = ENTITY[entityPos++];
+                    continue;
+                }
+                if (rawPos == rawEnd) {
+                    // Don't block for more input once some has been returned
+                    if (n > 0) {
+                        break;
+                    }
+                    int read = in.read(raw, 0, raw.length);
+                    if (read == -1) {
+                        return -1;
                     }
+                    rawPos = 0;
+                    rawEnd = read;
+                    continue;
+                }
+                byte c = raw[rawPos++];
+                if (c == '\r') {
+                    entityPos = 0;
+                } else {
+                    b[off + n++] = c;
+                }
+            }
+            return n;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (ENTITY.length - entityPos) + (rawEnd - rawPos);
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            byte[] b = new byte[512];
+            while (skipped < n) {
+                int read = read(b, 0, (int) Math.min(b.length, n - skipped));
+                if (read == -1) {
+                    break;
                 }
-                throw new AmazonClientException("Failed to sanitize XML document destined for handler "
-                    + handler.getClass(), t);
+                skipped += read;
             }
-            return sanitizedInputStream;
+            return skipped;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void mark(int readlimit) {
+        }
+
+        @Override
+        public void reset() throws IOException {
+            throw new IOException("mark/reset not supported");
         }
     }
 
@@ -19,11 +19,9 @@ import static com.amazonaws.services.s3.internal.ServiceUtils.OVERWRITE_MODE;
 
 import java.io.File;
 import java.io.InputStream;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.Stack;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
@@ -58,21 +56,19 @@ import com.amazonaws.services.s3.model.CopyObjectRequest;
 import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ListMultipartUploadsRequest;
-import com.amazonaws.services.s3.model.ListObjectsRequest;
 import com.amazonaws.services.s3.model.MultipartUpload;
 import com.amazonaws.services.s3.model.MultipartUploadListing;
-import com.amazonaws.services.s3.model.ObjectListing;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
-import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.transfer.Transfer.TransferState;
 import com.amazonaws.services.s3.transfer.internal.CopyCallable;
 import com.amazonaws.services.s3.transfer.internal.CopyImpl;
 import com.amazonaws.services.s3.transfer.internal.CopyMonitor;
+import com.amazonaws.services.s3.transfer.internal.DirectoryDownloadImpl;
 import com.amazonaws.services.s3.transfer.internal.DownloadImpl;
 import com.amazonaws.services.s3.transfer.internal.DownloadMonitor;
-import com.amazonaws.services.s3.transfer.internal.MultipleFileDownloadImpl;
+import com.amazonaws.services.s3.transfer.internal.MultipartDownloadMonitor;
 import com.amazonaws.services.s3.transfer.internal.MultipleFileTransferMonitor;
 import com.amazonaws.services.s3.transfer.internal.MultipleFileUploadImpl;
 import com.amazonaws.services.s3.transfer.internal.S3ProgressListener;
@@ -321,14 +317,19 @@ public class TransferManager {
      * finished).
      * </p>
      * <p>
-     * When uploading options from a stream, callers <b>must</b> supply the size of
+     * When uploading options from a stream, callers should supply the size of
      * options in the stream through the content length field in the
      * <code>ObjectMetadata</code> parameter.
      * If no content length is specified for the input
-     * stream, then TransferManager will attempt to buffer all the stream
-     * contents in memory and upload the options as a traditional, single part
-     * upload. Because the entire stream contents must be buffered in memory,
-     * this can be very expensive, and should be avoided whenever possible.
+     * stream, then TransferManager reads the stream in parts of
+     * {@link TransferManagerConfiguration#getMinimumUploadPartSize()} bytes,
+     * holding at most
+     * {@link TransferManagerConfiguration#getStreamUploadBufferCount()} parts
+     * in memory at a time, and uploads them in parallel as a multipart upload.
+     * Such uploads can't be paused, and are limited to 10,000 parts. When
+     * using the encryption client, the entire stream contents are buffered in
+     * memory instead, which can be very expensive and should be avoided
+     * whenever possible.
      * </p>
      * <p>
      * Use the returned <code>Upload</code> object to query the progress of the
@@ -748,6 +749,19 @@ public class TransferManager {
             final File file, final TransferStateChangeListener stateListener,
             final S3ProgressListener s3progressListener,
             final boolean resumeExistingDownload) {
+        return doDownload(getObjectRequest, file, stateListener,
+                s3progressListener, resumeExistingDownload, 0, null);
+    }
+
+    /**
+     * Same as above, but resumes a multi-part download with the specified
+     * part size if it is positive, skipping the parts already completed.
+     */
+    private Download doDownload(final GetObjectRequest getObjectRequest,
+            final File file, final TransferStateChangeListener stateListener,
+            final S3ProgressListener s3progressListener,
+            final boolean resumeExistingDownload,
+            final long resumedPartSize, final int[] completedParts) {
 
         appendSingleObjectUserAgent(getObjectRequest);
 
@@ -787,11 +801,6 @@ public class TransferManager {
         }
         final ObjectMetadata objectMetadata = s3.getObjectMetadata(getObjectMetadataRequest);
 
-        // We still pass the unfiltered listener chain into DownloadImpl
-        final DownloadImpl download = new DownloadImpl(description,
-                transferProgress, listenerChain, null, stateListener,
-                getObjectRequest, file);
-
         long startingByte = 0;
         long lastByte = objectMetadata.getContentLength() - 1;
 
@@ -804,6 +813,35 @@ public class TransferManager {
         long totalBytesToDownload = lastByte - startingByte + 1;
         transferProgress.setTotalBytesToTransfer(totalBytesToDownload);
 
+        long partSize = resumedPartSize;
+        if (partSize <= 0 && !resumeExistingDownload
+                && TransferManagerUtils.shouldUseMultipartDownload(
+                        totalBytesToDownload, s3 instanceof AmazonS3Encryption, configuration)) {
+            partSize = configuration.getMultipartDownloadPartSize();
+        }
+
+        // We still pass the unfiltered listener chain into DownloadImpl
+        final DownloadImpl download = new DownloadImpl(description,
+                transferProgress, listenerChain, null, stateListener,
+                getObjectRequest, file, partSize);
+
+        if (partSize > 0 && totalBytesToDownload > 0) {
+            // Only the metadata is available up front; each part has its own content
+            S3Object s3Object = new S3Object();
+            s3Object.setBucketName(getObjectRequest.getBucketName());
+            s3Object.setKey(getObjectRequest.getKey());
+            s3Object.setObjectMetadata(objectMetadata);
+            download.setS3Object(s3Object);
+
+            MultipartDownloadMonitor monitor = new MultipartDownloadMonitor(s3,
+                    threadPool, download, getObjectRequest, listenerChain, file,
+                    startingByte, lastByte, partSize, objectMetadata.getETag(),
+                    completedParts);
+            download.setMonitor(monitor);
+            monitor.start();
+            return download;
+        }
+
         if (resumeExistingDownload) {
             if (file.exists()) {
                 long numberOfBytesRead = file.length();
@@ -893,6 +931,13 @@ public class TransferManager {
      * keyPrefix given to the destination directory given. All virtual
      * subdirectories will be downloaded recursively.
      * <p>
+     * The objects are downloaded while the virtual directory is still being
+     * listed, by up to
+     * {@link TransferManagerConfiguration#getDirectoryDownloadConcurrency()}
+     * concurrent downloads, and the progress of the transfer's total bytes to
+     * transfer grows as the objects are listed. Any errors listing the
+     * objects are reported when waiting for the transfer to complete.
+     * <p>
      * If you are downloading <a href="http://aws.amazon.com/kms/">AWS
      * KMS</a>-encrypted objects, you need to specify the correct region of the
      * bucket on your client and configure AWS Signature Version 4 for added
@@ -914,95 +959,24 @@ public class TransferManager {
     public MultipleFileDownload downloadDirectory(String bucketName, String keyPrefix, File destinationDirectory) {
         if ( keyPrefix == null )
             keyPrefix = "";
-        List<S3ObjectSummary> objectSummaries = new LinkedList<S3ObjectSummary>();
-        Stack<String> commonPrefixes = new Stack<String>();
-        commonPrefixes.add(keyPrefix);
-        long totalSize = 0;
-        // Recurse all virtual subdirectories to get a list of object summaries.
-        // This is a depth-first search.
-        do {
-            String prefix = commonPrefixes.pop();
-            ObjectListing listObjectsResponse = null;
-
-            do {
-                if ( listObjectsResponse == null ) {
-                    ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName(bucketName)
-                            .withDelimiter(DEFAULT_DELIMITER).withPrefix(prefix);
-                    listObjectsResponse = s3.listObjects(listObjectsRequest);
-                } else {
-                    listObjectsResponse = s3.listNextBatchOfObjects(listObjectsResponse);
-                }
-
-                for ( S3ObjectSummary s : listObjectsResponse.getObjectSummaries() ) {
-                    // Skip any files that are also virtual directories, since
-                    // we can't save both a directory and a file of the same
-                    // name.
-                    if ( !s.getKey().equals(prefix)
-                            && !listObjectsResponse.getCommonPrefixes().contains(s.getKey() + DEFAULT_DELIMITER) ) {
-                        objectSummaries.add(s);
-                        totalSize += s.getSize();
-                    } else {
-                        log.debug("Skipping download for object " + s.getKey()
-                                + " since it is also a virtual directory");
-                    }
-                }
-
-                commonPrefixes.addAll(listObjectsResponse.getCommonPrefixes());
-            } while ( listObjectsResponse.isTruncated() );
-        } while ( !commonPrefixes.isEmpty() );
 
         /* This is the hook for adding additional progress listeners */
         ProgressListenerChain additionalListeners = new ProgressListenerChain();
 
         TransferProgress transferProgress = new TransferProgress();
-        transferProgress.setTotalBytesToTransfer(totalSize);
         /*
          * Bind additional progress listeners to this
          * MultipleFileTransferProgressUpdatingListener to receive
-         * ByteTransferred events from each single-file download implementation.
+         * ByteTransferred events from each single-file download.
          */
         ProgressListener listener = new MultipleFileTransferProgressUpdatingListener(
                 transferProgress, additionalListeners);
 
-        List<DownloadImpl> downloads = new ArrayList<DownloadImpl>();
-
         String description = "Downloading from " + bucketName + "/" + keyPrefix;
-        final MultipleFileDownloadImpl multipleFileDownload = new MultipleFileDownloadImpl(description, transferProgress,
-                additionalListeners, keyPrefix, bucketName, downloads);
-        multipleFileDownload.setMonitor(new MultipleFileTransferMonitor(multipleFileDownload, downloads));
-
-        final CountDownLatch latch = new CountDownLatch(1);
-        MultipleFileTransferStateChangeListener transferListener =
-                new MultipleFileTransferStateChangeListener(latch, multipleFileDownload);
-
-        for ( S3ObjectSummary summary : objectSummaries ) {
-            // TODO: non-standard delimiters
-            File f = new File(destinationDirectory, summary.getKey());
-            File parentFile = f.getParentFile();
-            if ( !parentFile.exists() && !parentFile.mkdirs() ) {
-                throw new RuntimeException("Couldn't create parent directories for " + f.getAbsolutePath());
-            }
-
-            // All the single-file downloads share the same
-            // MultipleFileTransferProgressUpdatingListener and
-            // MultipleFileTransferStateChangeListener
-            downloads.add((DownloadImpl) doDownload(
-                            new GetObjectRequest(summary.getBucketName(),
-                                    summary.getKey())
-                                    .<GetObjectRequest>withGeneralProgressListener(
-                                            listener),
-                            f,
-                            transferListener, null, false));
-        }
-
-        if ( downloads.isEmpty() ) {
-            multipleFileDownload.setState(TransferState.Completed);
-            return multipleFileDownload;
-        }
-
-        // Notify all state changes waiting for the downloads to all be queued
-        // to wake up and continue.
-        latch.countDown();
+        DirectoryDownloadImpl multipleFileDownload = new DirectoryDownloadImpl(description,
+                transferProgress, additionalListeners, listener, keyPrefix, bucketName,
+                destinationDirectory, s3, this, threadPool, USER_AGENT);
+        multipleFileDownload.start(configuration.getDirectoryDownloadConcurrency());
         return multipleFileDownload;
     }
 
@@ -1356,8 +1330,6 @@ public class TransferManager {
     private static final String USER_AGENT_MULTIPART = TransferManager.class.getName() + "_multipart/" + VersionInfoUtils.getVersion();
 
 
-    private static final String DEFAULT_DELIMITER = "/";
-
     /**
      * There is no need for threads from timedThreadPool if there is no more running threads in current process,
      * so we need a daemon thread factory for it.
@@ -1573,7 +1545,9 @@ public class TransferManager {
     /**
      * Resumes an download operation. This download operation uses the same
      * configuration as the original download. Any data already fetched will be
-     * skipped, and only the remaining data is retrieved from Amazon S3.
+     * skipped, and only the remaining data is retrieved from Amazon S3. A
+     * multi-part download fails if the object has been modified since it was
+     * paused.
      *
      * @param persistableDownload
      *            the download to resume.
@@ -1601,9 +1575,14 @@ public class TransferManager {
         }
         request.setRequesterPays(persistableDownload.isRequesterPays());
         request.setResponseHeaders(persistableDownload.getResponseHeaders());
+        if (persistableDownload.getETag() != null) {
+            // The parts already written must come from the same object
+            request.withMatchingETagConstraint(persistableDownload.getETag());
+        }
 
         return doDownload(request, new File(persistableDownload.getFile()), null, null,
-                APPEND_MODE);
+                APPEND_MODE, persistableDownload.getPartSize(),
+                persistableDownload.getCompletedParts());
     }
 
     /**
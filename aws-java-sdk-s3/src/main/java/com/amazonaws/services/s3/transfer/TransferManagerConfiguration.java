@@ -39,6 +39,18 @@ public class TransferManagerConfiguration {
     /** Default minimum size of each part for multi-part copy. */
     private static final long DEFAULT_MINIMUM_COPY_PART_SIZE = 100 * MB;
 
+    /** Default number of part buffers for uploads of unknown length or parallel encrypted uploads. */
+    private static final int DEFAULT_STREAM_UPLOAD_BUFFER_COUNT = 4;
+
+    /** Default size threshold for multi-part downloads; disabled by default. */
+    private static final long DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD = Long.MAX_VALUE;
+
+    /** Default size of each byte range fetched in a multi-part download. */
+    private static final long DEFAULT_MULTIPART_DOWNLOAD_PART_SIZE = 16 * MB;
+
+    /** Default number of concurrent object downloads of a directory download. */
+    private static final int DEFAULT_DIRECTORY_DOWNLOAD_CONCURRENCY = 10;
+
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
      * will cause multipart uploads to be split into a larger number of smaller
@@ -77,6 +89,42 @@ public class TransferManagerConfiguration {
      */
     private long multipartCopyPartSize = DEFAULT_MINIMUM_COPY_PART_SIZE;
 
+    /**
+     * The maximum number of parts held in memory at once while uploading an
+     * input stream of unknown length, or while uploading in parallel with
+     * client-side encryption. Parts are read (or encrypted) into these
+     * buffers and uploaded concurrently; reading pauses while all of them are
+     * in use.
+     */
+    private int streamUploadBufferCount = DEFAULT_STREAM_UPLOAD_BUFFER_COUNT;
+
+    /**
+     * Whether the parts of a client-side encrypted upload are encrypted into
+     * memory and uploaded concurrently, rather than encrypted while being
+     * uploaded one at a time. Disabled by default.
+     */
+    private boolean parallelEncryptedUploadEnabled;
+
+    /**
+     * The size threshold, in bytes, for when to use multi-part downloads.
+     * Downloads of objects (or ranges) over this size are split into byte
+     * ranges that are fetched concurrently and written directly into place in
+     * the destination file, while smaller downloads use a single connection.
+     * Multi-part downloads are disabled by default.
+     */
+    private long multipartDownloadThreshold = DEFAULT_MULTIPART_DOWNLOAD_THRESHOLD;
+
+    /**
+     * The size in bytes of each byte range fetched in a multi-part download.
+     */
+    private long multipartDownloadPartSize = DEFAULT_MULTIPART_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The maximum number of objects downloaded concurrently by a directory
+     * download, while the directory is still being listed.
+     */
+    private int directoryDownloadConcurrency = DEFAULT_DIRECTORY_DOWNLOAD_CONCURRENCY;
+
     /**
      * Returns the minimum part size for upload parts.
      * Decreasing the minimum part size causes
@@ -192,4 +240,146 @@ public class TransferManagerConfiguration {
     public void setMultipartCopyThreshold(long multipartCopyThreshold) {
         this.multipartCopyThreshold = multipartCopyThreshold;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the size threshold in bytes for when to use multi-part
+     * downloads. Downloads of objects over this size are split into byte
+     * ranges that are fetched concurrently using the transfer manager's thread
+     * pool, while smaller downloads use a single connection. Multi-part
+     * downloads are disabled by default.
+     *
+     * @return The size threshold in bytes for when to use multi-part
+     *         downloads.
+     */
+    public long getMultipartDownloadThreshold() {
+        return multipartDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold in bytes for when to use multi-part downloads.
+     * Downloads of objects over this size are split into byte ranges that are
+     * fetched concurrently using the transfer manager's thread pool, while
+     * smaller downloads use a single connection.
+     * <p>
+     * Multi-part downloads are not used with the Amazon S3 encryption client,
+     * and unlike single connection downloads, the data is not checked against
+     * the object's MD5 checksum.
+     *
+     * @param multipartDownloadThreshold
+     *            The size threshold in bytes for when to use multi-part
+     *            downloads.
+     */
+    public void setMultipartDownloadThreshold(long multipartDownloadThreshold) {
+        this.multipartDownloadThreshold = multipartDownloadThreshold;
+    }
+
+    /**
+     * Returns the size in bytes of each byte range fetched in a multi-part
+     * download.
+     *
+     * @return The size in bytes of each part of a multi-part download.
+     */
+    public long getMultipartDownloadPartSize() {
+        return multipartDownloadPartSize;
+    }
+
+    /**
+     * Sets the size in bytes of each byte range fetched in a multi-part
+     * download. Smaller parts allow a download to be paused and resumed with
+     * less repeated work, at the cost of more requests to Amazon S3.
+     *
+     * @param multipartDownloadPartSize
+     *            The size in bytes of each part of a multi-part download.
+     */
+    public void setMultipartDownloadPartSize(long multipartDownloadPartSize) {
+        this.multipartDownloadPartSize = multipartDownloadPartSize;
+    }
+
+    /**
+     * Returns the maximum number of parts held in memory at once while
+     * uploading an input stream whose content length isn't known, or while
+     * uploading in parallel with an
+     * {@link com.amazonaws.services.s3.AmazonS3EncryptionClient}. This bounds
+     * the memory used by such an upload.
+     *
+     * @return The maximum number of part buffers for an upload of unknown
+     *         length or an encrypted upload.
+     */
+    public int getStreamUploadBufferCount() {
+        return streamUploadBufferCount;
+    }
+
+    /**
+     * Sets the maximum number of parts held in memory at once while uploading
+     * an input stream whose content length isn't known, or while uploading in
+     * parallel with an {@link com.amazonaws.services.s3.AmazonS3EncryptionClient}.
+     * The parts are uploaded concurrently, so more buffers allow more
+     * parallelism, at the cost of up to one part size of memory each.
+     *
+     * @param streamUploadBufferCount
+     *            The maximum number of part buffers for an upload of unknown
+     *            length or an encrypted upload.
+     */
+    public void setStreamUploadBufferCount(int streamUploadBufferCount) {
+        this.streamUploadBufferCount = streamUploadBufferCount;
+    }
+
+    /**
+     * Returns whether the parts of an upload through an
+     * {@link com.amazonaws.services.s3.AmazonS3EncryptionClient} are uploaded
+     * in parallel.
+     *
+     * @return True if encrypted parts are uploaded in parallel.
+     */
+    public boolean isParallelEncryptedUploadEnabled() {
+        return parallelEncryptedUploadEnabled;
+    }
+
+    /**
+     * Sets whether the parts of an upload through an
+     * {@link com.amazonaws.services.s3.AmazonS3EncryptionClient} are uploaded
+     * in parallel. Each part must still be encrypted in order, so when this
+     * is enabled the parts are encrypted into memory one at a time and then
+     * uploaded concurrently. Up to
+     * {@link #getStreamUploadBufferCount()} encrypted parts, each the size of
+     * an upload part, are held in memory per upload. When disabled, the
+     * default, each part is encrypted while it is being uploaded and the
+     * parts are uploaded one at a time.
+     *
+     * @param parallelEncryptedUploadEnabled
+     *            True to upload encrypted parts in parallel.
+     */
+    public void setParallelEncryptedUploadEnabled(boolean parallelEncryptedUploadEnabled) {
+        this.parallelEncryptedUploadEnabled = parallelEncryptedUploadEnabled;
+    }
+
+    /**
+     * Returns the maximum number of objects downloaded concurrently by
+     * {@link TransferManager#downloadDirectory(String, String, java.io.File)}.
+     *
+     * @return The maximum number of concurrent object downloads of a
+     *         directory download.
+     */
+    public int getDirectoryDownloadConcurrency() {
+        return directoryDownloadConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of objects downloaded concurrently by
+     * {@link TransferManager#downloadDirectory(String, String, java.io.File)}.
+     * The objects are downloaded while the directory is still being listed,
+     * using the transfer manager's thread pool, so this should be no more than
+     * the number of threads in the pool. Objects large enough for multi-part
+     * downloads are not counted.
+     *
+     * @param directoryDownloadConcurrency
+     *            The maximum number of concurrent object downloads of a
+     *            directory download.
+     */
+    public void setDirectoryDownloadConcurrency(int directoryDownloadConcurrency) {
+        if (directoryDownloadConcurrency <= 0) {
+            throw new IllegalArgumentException("The directory download concurrency must be positive");
+        }
+        this.directoryDownloadConcurrency = directoryDownloadConcurrency;
+    }
+}
@@ -0,0 +1,484 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import static com.amazonaws.services.s3.internal.ServiceUtils.OVERWRITE_MODE;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Set;
+import java.util.Stack;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressEventFilter;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.event.ProgressListenerChain;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Encryption;
+import com.amazonaws.services.s3.internal.ServiceUtils;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.transfer.Download;
+import com.amazonaws.services.s3.transfer.MultipleFileDownload;
+import com.amazonaws.services.s3.transfer.Transfer;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerConfiguration;
+import com.amazonaws.services.s3.transfer.TransferProgress;
+
+/**
+ * Download of an entire virtual directory, which downloads the objects while
+ * the directory is still being listed.
+ * <p>
+ * One task lists the directory, and queues the object summaries to a bounded
+ * queue, from which a fixed number of tasks download the objects. If the
+ * queue is full, the listing task downloads the next object itself. The
+ * objects are downloaded over a single connection each, without a transfer
+ * object of their own, and report their progress to a single listener shared
+ * by all of them. Objects large enough for a multi-part download are
+ * downloaded with {@link TransferManager#download(GetObjectRequest, File)}
+ * instead, in addition to the objects downloaded by the download tasks.
+ * <p>
+ * None of the tasks wait for other tasks, so a download makes progress even
+ * if the thread pool has a single thread.
+ */
+public class DirectoryDownloadImpl extends MultipleFileTransfer<Download> implements MultipleFileDownload {
+
+    private static final Log log = LogFactory.getLog(DirectoryDownloadImpl.class);
+
+    /** The maximum number of object summaries queued for download. */
+    private static final int QUEUE_CAPACITY = 1000;
+
+    /** How often idle download tasks check whether the listing has finished. */
+    private static final long POLL_INTERVAL_MILLIS = 100;
+
+    private static final String DEFAULT_DELIMITER = "/";
+
+    private final String keyPrefix;
+    private final String bucketName;
+    private final File destinationDirectory;
+    private final AmazonS3 s3;
+    private final TransferManager transferManager;
+    private final ExecutorService threadPool;
+    private final TransferManagerConfiguration configuration;
+    private final String userAgent;
+
+    /** Updates the progress of this download, for all of its objects. */
+    private final ProgressListener progressListener;
+    /** The same as the above, without the completion event of each object. */
+    private final ProgressListenerChain objectProgressListener;
+
+    private final BlockingQueue<S3ObjectSummary> queue =
+            new ArrayBlockingQueue<S3ObjectSummary>(QUEUE_CAPACITY);
+    private volatile boolean isListingDone;
+
+    /**
+     * The number of tasks and multi-part downloads that haven't finished,
+     * including the listing task.
+     */
+    private final AtomicInteger pending = new AtomicInteger(1);
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    /** The multi-part download that failed, which holds the cause. */
+    private volatile Download failedDownload;
+    private volatile boolean isAborted;
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    /** The objects being downloaded, which are aborted on abort. */
+    private final Set<S3Object> openObjects =
+            Collections.newSetFromMap(new ConcurrentHashMap<S3Object, Boolean>());
+    private final Set<Download> largeDownloads =
+            Collections.newSetFromMap(new ConcurrentHashMap<Download, Boolean>());
+
+    public DirectoryDownloadImpl(String description, TransferProgress transferProgress,
+            ProgressListenerChain progressListenerChain, ProgressListener progressListener,
+            String keyPrefix, String bucketName, File destinationDirectory,
+            AmazonS3 s3, TransferManager transferManager, ExecutorService threadPool,
+            String userAgent) {
+        // The objects are downloaded without sub-transfers
+        super(description, transferProgress, progressListenerChain,
+                Collections.<Download>emptyList());
+        this.keyPrefix = keyPrefix;
+        this.bucketName = bucketName;
+        this.destinationDirectory = destinationDirectory;
+        this.s3 = s3;
+        this.transferManager = transferManager;
+        this.threadPool = threadPool;
+        this.configuration = transferManager.getConfiguration();
+        this.userAgent = userAgent;
+        this.progressListener = progressListener;
+        this.objectProgressListener = new ProgressListenerChain(
+                new ProgressEventFilter() {
+                    @Override
+                    public ProgressEvent filter(ProgressEvent progressEvent) {
+                        // Only this download as a whole completes
+                        return progressEvent.getEventType() == ProgressEventType.TRANSFER_COMPLETED_EVENT
+                             ? null
+                             : progressEvent;
+                    }
+                }, progressListener);
+        setMonitor(new DirectoryDownloadMonitor());
+    }
+
+    /**
+     * Returns the key prefix of the virtual directory being downloaded.
+     */
+    public String getKeyPrefix() {
+        return keyPrefix;
+    }
+
+    /**
+     * Returns the name of the bucket from which files are downloaded.
+     */
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    /**
+     * Starts listing and downloading the objects, with the given maximum
+     * number of concurrent downloads.
+     */
+    public void start(int concurrency) {
+        pending.addAndGet(concurrency);
+        threadPool.submit(new Callable<Boolean>() {
+            @Override
+            public Boolean call() {
+                listObjects();
+                return true;
+            }
+        });
+        for (int i = 0; i < concurrency; i++) {
+            threadPool.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    downloadQueuedObjects();
+                    return true;
+                }
+            });
+        }
+    }
+
+    /**
+     * Aborts all outstanding downloads.
+     */
+    public void abort() throws IOException {
+        isAborted = true;
+        for (S3Object s3Object : openObjects) {
+            s3Object.getObjectContent().abort();
+        }
+        for (Download download : largeDownloads) {
+            download.abort();
+        }
+    }
+
+    /**
+     * Lists all the objects in the virtual directory, including those in
+     * virtual subdirectories, and queues them for download. This is a
+     * depth-first search.
+     */
+    private void listObjects() {
+        try {
+            Stack<String> commonPrefixes = new Stack<String>();
+            commonPrefixes.add(keyPrefix);
+            long totalSize = 0;
+            getProgress().setTotalBytesToTransfer(totalSize);
+            do {
+                String prefix = commonPrefixes.pop();
+                ObjectListing listObjectsResponse = null;
+
+                do {
+                    if (isStopped())
+                        return;
+                    if ( listObjectsResponse == null ) {
+                        ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName(bucketName)
+                                .withDelimiter(DEFAULT_DELIMITER).withPrefix(prefix);
+                        listObjectsRequest.getRequestClientOptions().appendUserAgent(userAgent);
+                        listObjectsResponse = s3.listObjects(listObjectsRequest);
+                    } else {
+                        listObjectsResponse = s3.listNextBatchOfObjects(listObjectsResponse);
+                    }
+
+                    for ( S3ObjectSummary s : listObjectsResponse.getObjectSummaries() ) {
+                        // Skip any files that are also virtual directories, since
+                        // we can't save both a directory and a file of the same
+                        // name.
+                        if ( !s.getKey().equals(prefix)
+                                && !listObjectsResponse.getCommonPrefixes().contains(s.getKey() + DEFAULT_DELIMITER) ) {
+                            totalSize += s.getSize();
+                            getProgress().setTotalBytesToTransfer(totalSize);
+                            if (!queue.offer(s)) {
+                                // Make room for the object by downloading the oldest
+                                S3ObjectSummary oldest = queue.poll();
+                                if (oldest != null) {
+                                    downloadObject(oldest);
+                                }
+                                if (!queue.offer(s)) {
+                                    downloadObject(s);
+                                }
+                            }
+                        } else {
+                            log.debug("Skipping download for object " + s.getKey()
+                                    + " since it is also a virtual directory");
+                        }
+                    }
+
+                    commonPrefixes.addAll(listObjectsResponse.getCommonPrefixes());
+                } while ( listObjectsResponse.isTruncated() );
+            } while ( !commonPrefixes.isEmpty() );
+
+            isListingDone = true;
+            // Don't leave the objects to download tasks that may not get a thread
+            S3ObjectSummary s;
+            while (!isStopped() && (s = queue.poll()) != null) {
+                downloadObject(s);
+            }
+        } catch (Throwable t) {
+            fail(t);
+        } finally {
+            isListingDone = true;
+            taskDone();
+        }
+    }
+
+    /** Runs a download task, until the listing is done and the queue empty. */
+    private void downloadQueuedObjects() {
+        try {
+            while (!isStopped()) {
+                S3ObjectSummary s = queue.poll(POLL_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+                if (s != null) {
+                    downloadObject(s);
+                } else if (isListingDone && queue.isEmpty()) {
+                    return;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(e);
+        } finally {
+            taskDone();
+        }
+    }
+
+    private void downloadObject(S3ObjectSummary summary) {
+        if (isStopped())
+            return;
+        try {
+            // TODO: non-standard delimiters
+            File f = new File(destinationDirectory, summary.getKey());
+            File parentFile = f.getParentFile();
+            if ( !parentFile.mkdirs() && !parentFile.isDirectory() ) {
+                throw new AmazonClientException("Couldn't create parent directories for " + f.getAbsolutePath());
+            }
+            if (getState() == TransferState.Waiting) {
+                setState(TransferState.InProgress);
+            }
+
+            final boolean isUsingEncryption = s3 instanceof AmazonS3Encryption;
+            if (TransferManagerUtils.shouldUseMultipartDownload(
+                    summary.getSize(), isUsingEncryption, configuration)) {
+                startLargeDownload(summary, f);
+                return;
+            }
+
+            final GetObjectRequest getObjectRequest =
+                    new GetObjectRequest(summary.getBucketName(), summary.getKey());
+            getObjectRequest.setGeneralProgressListener(objectProgressListener);
+            getObjectRequest.getRequestClientOptions().appendUserAgent(userAgent);
+            final AtomicReference<S3Object> current = new AtomicReference<S3Object>();
+            try {
+                ServiceUtils.retryableDownloadS3ObjectToFile(f,
+                    new ServiceUtils.RetryableS3DownloadTask() {
+                        @Override
+                        public S3Object getS3ObjectStream() {
+                            S3Object previous = current.get();
+                            if (previous != null) {
+                                openObjects.remove(previous);
+                            }
+                            S3Object s3Object = s3.getObject(getObjectRequest);
+                            if (s3Object != null) {
+                                current.set(s3Object);
+                                openObjects.add(s3Object);
+                            }
+                            return s3Object;
+                        }
+
+                        @Override
+                        public boolean needIntegrityCheck() {
+                            // Don't perform the integrity check if the stream
+                            // data is wrapped in a decryption stream
+                            return !isUsingEncryption;
+                        }
+                    }, OVERWRITE_MODE);
+            } finally {
+                S3Object s3Object = current.get();
+                if (s3Object != null) {
+                    openObjects.remove(s3Object);
+                }
+            }
+        } catch (Throwable t) {
+            fail(t);
+        }
+    }
+
+    /**
+     * Starts a multi-part download of the object, which is tracked until it
+     * finishes without holding on to a thread.
+     */
+    private void startLargeDownload(S3ObjectSummary summary, File f) {
+        final GetObjectRequest getObjectRequest =
+                new GetObjectRequest(summary.getBucketName(), summary.getKey());
+        getObjectRequest.setGeneralProgressListener(progressListener);
+        pending.incrementAndGet();
+        final Download download = transferManager.download(getObjectRequest, f);
+        largeDownloads.add(download);
+        final AtomicBoolean isFinished = new AtomicBoolean();
+        TransferStateChangeListener listener = new TransferStateChangeListener() {
+            @Override
+            public void transferStateChanged(Transfer transfer, TransferState state) {
+                if (!transfer.isDone() || !isFinished.compareAndSet(false, true))
+                    return;
+                largeDownloads.remove(download);
+                if (state == TransferState.Failed && !isAborted && failure.compareAndSet(null,
+                        new AmazonClientException("Unable to complete transfer: " + download.getDescription()))) {
+                    failedDownload = download;
+                }
+                taskDone();
+            }
+        };
+        ((AbstractTransfer) download).addStateChangeListener(listener);
+        // The download may have finished before the listener was added
+        listener.transferStateChanged(download, download.getState());
+        if (isAborted) {
+            try {
+                download.abort();
+            } catch (IOException e) {
+                log.debug("Unable to abort the download of " + summary.getKey(), e);
+            }
+        }
+    }
+
+    private boolean isStopped() {
+        return isAborted || failure.get() != null;
+    }
+
+    private void fail(Throwable t) {
+        if (isAborted) {
+            log.debug("Ignoring failure of aborted download", t);
+            return;
+        }
+        failure.compareAndSet(null, t);
+    }
+
+    /** Finishes this download once all its tasks and downloads have finished. */
+    private void taskDone() {
+        if (pending.decrementAndGet() != 0)
+            return;
+        if (isAborted) {
+            setState(TransferState.Canceled);
+        } else if (failure.get() != null) {
+            setState(TransferState.Failed);
+        } else {
+            setState(TransferState.Completed);
+        }
+        done.countDown();
+    }
+
+    /**
+     * Monitors the directory download as a whole, whose future completes when
+     * all the objects have been downloaded.
+     */
+    private final class DirectoryDownloadMonitor implements TransferMonitor {
+        private final Future<Boolean> future = new Future<Boolean>() {
+            @Override
+            public boolean cancel(boolean mayInterruptIfRunning) {
+                return false;
+            }
+
+            @Override
+            public boolean isCancelled() {
+                return getState() == TransferState.Canceled;
+            }
+
+            @Override
+            public boolean isDone() {
+                return done.getCount() == 0;
+            }
+
+            @Override
+            public Boolean get() throws InterruptedException, ExecutionException {
+                done.await();
+                return result();
+            }
+
+            @Override
+            public Boolean get(long timeout, TimeUnit unit)
+                    throws InterruptedException, ExecutionException, TimeoutException {
+                if (!done.await(timeout, unit)) {
+                    throw new TimeoutException();
+                }
+                return result();
+            }
+
+            private Boolean result() throws InterruptedException, ExecutionException {
+                if (isAborted) {
+                    throw new CancellationException("The download was aborted");
+                }
+                Throwable t = failure.get();
+                if (t == null) {
+                    return true;
+                }
+                Download download = failedDownload;
+                if (download != null) {
+                    AmazonClientException cause = download.waitForException();
+                    if (cause != null) {
+                        t = cause;
+                    }
+                }
+                throw new ExecutionException(t);
+            }
+        };
+
+        @Override
+        public Future<?> getFuture() {
+            return future;
+        }
+
+        @Override
+        public boolean isDone() {
+            return future.isDone();
+        }
+    }
+}
@@ -35,13 +35,33 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     private final PersistableDownload persistableDownload;
 
+    private final GetObjectRequest getObjectRequest;
+    private final File file;
+
+    /**
+     * The size of each part of a multi-part download, or zero if the object
+     * is downloaded over a single connection.
+     */
+    private final long partSize;
+
     public DownloadImpl(String description, TransferProgress transferProgress,
             ProgressListenerChain progressListenerChain, S3Object s3Object,
             TransferStateChangeListener listener,
             GetObjectRequest getObjectRequest, File file) {
+        this(description, transferProgress, progressListenerChain, s3Object,
+                listener, getObjectRequest, file, 0);
+    }
+
+    public DownloadImpl(String description, TransferProgress transferProgress,
+            ProgressListenerChain progressListenerChain, S3Object s3Object,
+            TransferStateChangeListener listener,
+            GetObjectRequest getObjectRequest, File file, long partSize) {
         super(description, transferProgress, progressListenerChain, listener);
         this.s3Object = s3Object;
-        this.persistableDownload = captureDownloadState(getObjectRequest, file);
+        this.getObjectRequest = getObjectRequest;
+        this.file = file;
+        this.partSize = partSize;
+        this.persistableDownload = captureDownloadState(getObjectRequest, file, null, null);
         S3ProgressPublisher.publishTransferPersistable(progressListenerChain,
                 persistableDownload);
     }
@@ -82,7 +102,7 @@ public class DownloadImpl extends AbstractTransfer implements Download {
 
         this.monitor.getFuture().cancel(true);
 
-        if ( s3Object != null ) {
+        if ( s3Object != null && s3Object.getObjectContent() != null ) {
               s3Object.getObjectContent().abort();
         }
         setState(TransferState.Canceled);
@@ -123,14 +143,16 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      * captured (for security reason).
      */
     private PersistableDownload captureDownloadState(
-            final GetObjectRequest getObjectRequest, final File file) {
+            final GetObjectRequest getObjectRequest, final File file,
+            final int[] completedParts, final String eTag) {
         if (getObjectRequest.getSSECustomerKey() == null) {
             return new PersistableDownload(
                     getObjectRequest.getBucketName(),
                     getObjectRequest.getKey(), getObjectRequest.getVersionId(),
                     getObjectRequest.getRange(),
                     getObjectRequest.getResponseHeaders(),
-                    getObjectRequest.isRequesterPays(), file.getAbsolutePath());
+                    getObjectRequest.isRequesterPays(), file.getAbsolutePath(),
+                    partSize, completedParts, eTag);
         }
         return null;
     }
@@ -150,6 +172,13 @@ public class DownloadImpl extends AbstractTransfer implements Download {
             throw new PauseException(TransferManagerUtils.determinePauseStatus(
                     currentState, forceCancel));
         }
+        if (monitor instanceof MultipartDownloadMonitor) {
+            // Record the parts already written so only the rest are fetched on resume
+            MultipartDownloadMonitor multipartMonitor = (MultipartDownloadMonitor) monitor;
+            return captureDownloadState(getObjectRequest, file,
+                    multipartMonitor.getCompletedParts(),
+                    multipartMonitor.getETag());
+        }
         return persistableDownload;
     }
 }
\ No newline at end of file
@@ -0,0 +1,506 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import static com.amazonaws.event.SDKProgressPublisher.publishProgress;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.net.ssl.SSLProtocolException;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.event.ProgressEvent;
+import com.amazonaws.event.ProgressEventFilter;
+import com.amazonaws.event.ProgressEventType;
+import com.amazonaws.event.ProgressListener;
+import com.amazonaws.event.ProgressListenerChain;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.transfer.Transfer.TransferState;
+
+/**
+ * Manages a multi-part download, where an object is split into byte ranges
+ * that are fetched concurrently on the transfer manager's thread pool and
+ * written directly into place in the destination file.
+ * <p>
+ * The last part to finish completes the download, so no thread pool thread is
+ * held waiting for the other parts. The parts that have been written are
+ * tracked so that a paused download can be resumed by fetching only the
+ * remaining parts.
+ */
+public class MultipartDownloadMonitor implements TransferMonitor {
+
+    private static final Log log = LogFactory.getLog(MultipartDownloadMonitor.class);
+
+    /** Size of the buffer used to copy each part into the file. */
+    private static final int BUFFER_SIZE = 1024 * 16;
+
+    private final AmazonS3 s3;
+    private final ExecutorService threadPool;
+    private final DownloadImpl download;
+    private final GetObjectRequest origReq;
+    private final ProgressListenerChain listenerChain;
+    private final File file;
+
+    /** The first and last bytes of the object to download, inclusive. */
+    private final long firstByte;
+    private final long lastByte;
+
+    private final long partSize;
+    private final int partCount;
+
+    /** The ETag all parts must match, so they come from the same object. */
+    private final String eTag;
+
+    /** Guarded by itself. */
+    private final BitSet completedParts = new BitSet();
+
+    private final AtomicInteger remainingParts = new AtomicInteger();
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+    private final List<Future<?>> futures =
+            Collections.synchronizedList(new ArrayList<Future<?>>());
+    private final Set<S3Object> inFlight =
+            Collections.synchronizedSet(new HashSet<S3Object>());
+
+    private final CompletionFuture completion = new CompletionFuture();
+
+    private RandomAccessFile randomAccessFile;
+    private FileChannel channel;
+
+    /**
+     * @param s3
+     *            The client used to fetch the parts.
+     * @param threadPool
+     *            The thread pool the parts are fetched on.
+     * @param download
+     *            The download being performed.
+     * @param origReq
+     *            The original request for the object.
+     * @param listenerChain
+     *            The listeners for the download's progress.
+     * @param file
+     *            The file the object is written to.
+     * @param firstByte
+     *            The first byte of the object to download.
+     * @param lastByte
+     *            The last byte of the object to download, inclusive.
+     * @param partSize
+     *            The size of each byte range.
+     * @param eTag
+     *            The ETag of the object, or null to not check it.
+     * @param resumedParts
+     *            The indexes of parts already written to the file by a
+     *            previous attempt, or null when starting a new download.
+     */
+    public MultipartDownloadMonitor(AmazonS3 s3, ExecutorService threadPool,
+            DownloadImpl download, GetObjectRequest origReq,
+            ProgressListenerChain listenerChain, File file, long firstByte,
+            long lastByte, long partSize, String eTag, int[] resumedParts) {
+        if (partSize <= 0) {
+            throw new IllegalArgumentException("Part size must be positive");
+        }
+        this.s3 = s3;
+        this.threadPool = threadPool;
+        this.download = download;
+        this.origReq = origReq;
+        this.listenerChain = listenerChain;
+        this.file = file;
+        this.firstByte = firstByte;
+        this.lastByte = lastByte;
+        this.partSize = partSize;
+        this.eTag = eTag;
+
+        long totalBytes = lastByte - firstByte + 1;
+        this.partCount = (int) ((totalBytes + partSize - 1) / partSize);
+
+        if (resumedParts != null) {
+            for (int part : resumedParts) {
+                if (part >= 0 && part < partCount) {
+                    completedParts.set(part);
+                }
+            }
+        }
+    }
+
+    @Override
+    public Future<?> getFuture() {
+        return completion;
+    }
+
+    @Override
+    public boolean isDone() {
+        return download.isDone();
+    }
+
+    /**
+     * Returns the size of each part of this download.
+     */
+    public long getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * Returns the ETag all parts must match, or null if it isn't checked.
+     */
+    public String getETag() {
+        return eTag;
+    }
+
+    /**
+     * Returns the indexes of the parts that have been written to the file.
+     */
+    public int[] getCompletedParts() {
+        synchronized (completedParts) {
+            int[] parts = new int[completedParts.cardinality()];
+            int i = 0;
+            for (int part = completedParts.nextSetBit(0); part >= 0;
+                    part = completedParts.nextSetBit(part + 1)) {
+                parts[i++] = part;
+            }
+            return parts;
+        }
+    }
+
+    /**
+     * Starts the download on the thread pool.
+     */
+    public void start() {
+        try {
+            futures.add(threadPool.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    try {
+                        submitParts();
+                    } catch (Throwable t) {
+                        fail(t);
+                    }
+                    return true;
+                }
+            }));
+        } catch (RuntimeException e) {
+            // Most likely the thread pool has been shut down
+            fail(e);
+        }
+    }
+
+    /**
+     * Opens the destination file and submits the parts that still need to be
+     * downloaded to the thread pool.
+     */
+    private void submitParts() {
+        if (completion.isDone()) return;
+        download.setState(TransferState.InProgress);
+        try {
+            randomAccessFile = new RandomAccessFile(file, "rw");
+            long length = lastByte - firstByte + 1;
+            if (randomAccessFile.length() != length) {
+                // The file isn't the one a previous attempt wrote parts to
+                synchronized (completedParts) {
+                    completedParts.clear();
+                }
+                randomAccessFile.setLength(length);
+            }
+            channel = randomAccessFile.getChannel();
+        } catch (IOException e) {
+            fail(new AmazonClientException("Unable to open file "
+                    + file.getAbsolutePath() + " for writing: " + e.getMessage(), e));
+            return;
+        }
+
+        publishProgress(listenerChain, ProgressEventType.TRANSFER_STARTED_EVENT);
+
+        List<Integer> pendingParts = new ArrayList<Integer>();
+        long resumedBytes = 0;
+        for (int part = 0; part < partCount; part++) {
+            if (isCompleted(part)) {
+                resumedBytes += partLength(part);
+            } else {
+                pendingParts.add(part);
+            }
+        }
+        if (resumedBytes > 0) {
+            download.getProgress().updateProgress(resumedBytes);
+        }
+
+        remainingParts.set(pendingParts.size());
+        if (pendingParts.isEmpty()) {
+            completion.run();
+            return;
+        }
+
+        try {
+            for (int part : pendingParts) {
+                if (completion.isDone()) break;
+                futures.add(threadPool.submit(new DownloadPartCallable(part)));
+            }
+        } catch (RuntimeException e) {
+            // Most likely the thread pool has been shut down
+            fail(e);
+        }
+    }
+
+    private boolean isCompleted(int part) {
+        synchronized (completedParts) {
+            return completedParts.get(part);
+        }
+    }
+
+    private void markCompleted(int part) {
+        synchronized (completedParts) {
+            completedParts.set(part);
+        }
+    }
+
+    private long partStart(int part) {
+        return firstByte + part * partSize;
+    }
+
+    private long partLength(int part) {
+        return Math.min(partStart(part) + partSize - 1, lastByte) - partStart(part) + 1;
+    }
+
+    /**
+     * Records the first failure and completes the download without waiting
+     * for the remaining parts.
+     */
+    private void fail(Throwable t) {
+        if (failure.compareAndSet(null, t)) {
+            cancelParts();
+        }
+        completion.run();
+    }
+
+    private void cancelParts() {
+        synchronized (futures) {
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+        }
+        synchronized (inFlight) {
+            for (S3Object s3Object : inFlight) {
+                s3Object.getObjectContent().abort();
+            }
+        }
+    }
+
+    private synchronized void closeFile() {
+        try {
+            if (randomAccessFile != null) {
+                randomAccessFile.close();
+            }
+        } catch (IOException e) {
+            log.warn("Unable to close file " + file.getAbsolutePath(), e);
+        }
+    }
+
+    /**
+     * Listener for the requests of the individual parts; the download as a
+     * whole reports when it has started and completed.
+     */
+    private ProgressListener newPartListener() {
+        return new ProgressListenerChain(new ProgressEventFilter() {
+            @Override
+            public ProgressEvent filter(ProgressEvent progressEvent) {
+                ProgressEventType type = progressEvent.getEventType();
+                return type == ProgressEventType.TRANSFER_STARTED_EVENT
+                        || type == ProgressEventType.TRANSFER_COMPLETED_EVENT
+                        ? null
+                        : progressEvent;
+            }
+        }, listenerChain);
+    }
+
+    /**
+     * Fetches a single byte range of the object and writes it at its offset
+     * in the file.
+     */
+    private class DownloadPartCallable implements Callable<Boolean> {
+        private final int part;
+
+        DownloadPartCallable(int part) {
+            this.part = part;
+        }
+
+        @Override
+        public Boolean call() throws Exception {
+            try {
+                if (completion.isDone()) return false;
+                downloadPart();
+                markCompleted(part);
+                return true;
+            } catch (Throwable t) {
+                fail(t);
+                if (t instanceof Exception)
+                    throw (Exception) t;
+                else
+                    throw (Error) t;
+            } finally {
+                if (remainingParts.decrementAndGet() == 0) {
+                    completion.run();
+                }
+            }
+        }
+
+        /**
+         * Downloads the part, retrying it once the same way
+         * {@link com.amazonaws.services.s3.internal.ServiceUtils#retryableDownloadS3ObjectToFile}
+         * does for a single connection download.
+         */
+        private void downloadPart() {
+            boolean hasRetried = false;
+            while (true) {
+                S3Object s3Object = getPart();
+                if (s3Object == null) {
+                    throw new AmazonClientException("Unable to download part "
+                            + part + " of " + origReq.getKey()
+                            + ": the object was modified during the download");
+                }
+                try {
+                    writePart(s3Object);
+                    return;
+                } catch (AmazonClientException ace) {
+                    if (!ace.isRetryable() || hasRetried || completion.isDone()
+                            || ace.getCause() instanceof SocketException
+                            || ace.getCause() instanceof SSLProtocolException) {
+                        throw ace;
+                    }
+                    log.info("Retry the download of part " + part + " of object "
+                            + origReq.getKey() + " (bucket "
+                            + origReq.getBucketName() + ")", ace);
+                    hasRetried = true;
+                }
+            }
+        }
+
+        /**
+         * Returns the content of the part, or null if the object no longer
+         * matches the ETag.
+         */
+        private S3Object getPart() {
+            GetObjectRequest req = (GetObjectRequest) origReq.clone();
+            req.setRange(partStart(part), partStart(part) + partLength(part) - 1);
+            req.setGeneralProgressListener(newPartListener());
+            if (eTag != null && origReq.getMatchingETagConstraints().isEmpty()) {
+                req.setMatchingETagConstraints(Collections.singletonList(eTag));
+            }
+            return s3.getObject(req);
+        }
+
+        private void writePart(S3Object s3Object) {
+            long start = partStart(part);
+            long end = start + partLength(part) - 1;
+
+            inFlight.add(s3Object);
+            boolean success = false;
+            try {
+                InputStream in = s3Object.getObjectContent();
+                byte[] buffer = new byte[BUFFER_SIZE];
+                long position = start - firstByte;
+                int bytesRead;
+                while ((bytesRead = in.read(buffer)) > -1) {
+                    ByteBuffer byteBuffer = ByteBuffer.wrap(buffer, 0, bytesRead);
+                    while (byteBuffer.hasRemaining()) {
+                        position += channel.write(byteBuffer, position);
+                    }
+                }
+                if (position != end - firstByte + 1) {
+                    throw new AmazonClientException("Unable to download part "
+                            + part + " of " + origReq.getKey() + ": expected "
+                            + (end - start + 1) + " bytes but received "
+                            + (position - (start - firstByte)));
+                }
+                success = true;
+            } catch (IOException e) {
+                throw new AmazonClientException("Unable to store part " + part
+                        + " of object content to disk: " + e.getMessage(), e);
+            } finally {
+                inFlight.remove(s3Object);
+                if (success) {
+                    try {
+                        s3Object.getObjectContent().close();
+                    } catch (IOException e) {
+                        log.debug("Unable to close the content of part " + part, e);
+                    }
+                } else {
+                    s3Object.getObjectContent().abort();
+                }
+            }
+        }
+    }
+
+    /**
+     * Completes once every part has been written or the first part fails.
+     * Cancelling it cancels all the outstanding parts. The transfer's
+     * completed, failed or canceled event is published from here, since the
+     * events of the individual parts are filtered out.
+     */
+    private class CompletionFuture extends FutureTask<Boolean> {
+        CompletionFuture() {
+            super(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    closeFile();
+                    Throwable t = failure.get();
+                    if (t != null) {
+                        // Downloads aren't allowed to move from canceled to failed
+                        if (download.getState() != TransferState.Canceled) {
+                            download.setState(TransferState.Failed);
+                            publishProgress(listenerChain, ProgressEventType.TRANSFER_FAILED_EVENT);
+                        }
+                        if (t instanceof Exception)
+                            throw (Exception) t;
+                        else
+                            throw (Error) t;
+                    }
+                    download.setState(TransferState.Completed);
+                    return true;
+                }
+            });
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                cancelParts();
+                closeFile();
+                publishProgress(listenerChain, ProgressEventType.TRANSFER_CANCELED_EVENT);
+            }
+            return cancelled;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * Copyright 2010-2015 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+
+/**
+ * A bounded pool of equally sized buffers used to hold the parts of a
+ * multipart upload while they're being uploaded. Buffers are allocated
+ * lazily, up to the maximum, and reused once released; callers asking for a
+ * buffer when all of them are in use can block until one is released, which
+ * applies backpressure to whoever is filling them.
+ */
+class PartBufferPool {
+
+    private final int bufferSize;
+    private final Semaphore permits;
+    private final Queue<byte[]> freeBuffers = new ConcurrentLinkedQueue<byte[]>();
+
+    PartBufferPool(int bufferSize, int maxBuffers) {
+        this.bufferSize = bufferSize;
+        this.permits = new Semaphore(maxBuffers);
+    }
+
+    /**
+     * Returns a free buffer, or null if all the buffers are in use.
+     */
+    byte[] tryAcquire() {
+        return permits.tryAcquire() ? takeBuffer() : null;
+    }
+
+    /**
+     * Returns a free buffer, waiting for one to be released if all the
+     * buffers are in use.
+     */
+    byte[] acquire() throws InterruptedException {
+        permits.acquire();
+        return takeBuffer();
+    }
+
+    /**
+     * Returns the specified buffer to the pool.
+     */
+    void release(byte[] buffer) {
+        freeBuffers.offer(buffer);
+        permits.release();
+    }
+
+    /**
+     * Returns a callback that returns the specified buffer to the pool.
+     */
+    Runnable releaser(final byte[] buffer) {
+        return new Runnable() {
+            public void run() {
+                release(buffer);
+            }
+        };
+    }
+
+    private byte[] takeBuffer() {
+        byte[] buffer = freeBuffers.poll();
+        return buffer != null ? buffer : new byte[bufferSize];
+    }
+}
@@ -64,7 +64,8 @@ public class TransferManagerUtils {
      */
     public static boolean isUploadParallelizable(final PutObjectRequest putObjectRequest, final boolean isUsingEncryption) {
         // Each uploaded part in an encrypted upload depends on the encryption context
-        // from the previous upload, so we cannot parallelize encrypted upload parts.
+        // from the previous upload, so encrypted parts can't be uploaded straight
+        // from the file in parallel; they can only be encrypted in series first.
         if (isUsingEncryption) return false;
 
         // Otherwise, if there's a file, we can process the uploads concurrently.
@@ -132,6 +133,52 @@ public class TransferManagerUtils {
         return (contentLength > configuration.getMultipartUploadThreshold());
     }
 
+    /**
+     * Returns true if the specified request uploads data from an input stream
+     * whose length isn't known up front. Such uploads are read into part
+     * buffers and, if they're larger than a single part, uploaded as a
+     * multipart upload.
+     *
+     * @param putObjectRequest
+     *            The request to check.
+     * @param isUsingEncryption
+     *            True if the upload is encrypted by the Amazon S3 encryption
+     *            client, which needs to know which part is the last one as it
+     *            encrypts it.
+     *
+     * @return True if the request uploads a stream of unknown length.
+     */
+    public static boolean isUploadOfUnknownLength(
+            final PutObjectRequest putObjectRequest, final boolean isUsingEncryption) {
+        if (isUsingEncryption) return false;
+        return getRequestFile(putObjectRequest) == null
+                && putObjectRequest.getInputStream() != null
+                && getContentLength(putObjectRequest) < 0;
+    }
+
+    /**
+     * Returns true if a download of the specified size should be split into
+     * byte ranges that are fetched concurrently.
+     *
+     * @param contentLength
+     *            The number of bytes to download.
+     * @param isUsingEncryption
+     *            True if the download is decrypted by the Amazon S3
+     *            encryption client, which needs the object's data in a single
+     *            stream.
+     * @param configuration
+     *            The configuration for the TransferManager.
+     *
+     * @return True if the download should use multiple concurrent parts.
+     */
+    public static boolean shouldUseMultipartDownload(long contentLength,
+            boolean isUsingEncryption, TransferManagerConfiguration configuration) {
+        if (isUsingEncryption) return false;
+        return configuration.getMultipartDownloadPartSize() > 0
+                && contentLength > configuration.getMultipartDownloadThreshold()
+                && contentLength > configuration.getMultipartDownloadPartSize();
+    }
+
     /**
      * Convenience method for getting the file specified in a request.
      */
@@ -15,7 +15,10 @@
 package com.amazonaws.services.s3.transfer.internal;
 
 import static com.amazonaws.event.SDKProgressPublisher.publishProgress;
+import static com.amazonaws.services.s3.internal.Constants.MAXIMUM_UPLOAD_PARTS;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -25,14 +28,20 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Encryption;
+import com.amazonaws.services.s3.AmazonS3EncryptionClient;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
 import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
@@ -40,6 +49,7 @@ import com.amazonaws.services.s3.model.EncryptedInitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.EncryptedPutObjectRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PartListing;
 import com.amazonaws.services.s3.model.PartSummary;
@@ -75,6 +85,24 @@ public class UploadCallable implements Callable<UploadResult> {
 
     private PersistableUpload persistableUpload;
 
+    /**
+     * Set once an input stream of unknown length turns out to be larger than
+     * a single part and is being uploaded as a multipart upload.
+     */
+    private volatile boolean isStreamUploadedInParts;
+
+    /**
+     * The first failure of a part uploaded from memory, which stops any
+     * further parts from being read or encrypted.
+     */
+    private final AtomicReference<Throwable> partFailure = new AtomicReference<Throwable>();
+
+    /**
+     * Index into {@link #futures} of the first part uploaded from memory that
+     * may not have been started by the thread pool yet.
+     */
+    private int pendingPartIndex;
+
     public UploadCallable(TransferManager transferManager,
             ExecutorService threadPool, UploadImpl upload,
             PutObjectRequest origReq,
@@ -112,7 +140,8 @@ public class UploadCallable implements Callable<UploadResult> {
      * @return True if this UploadCallable is processing a multipart upload.
      */
     public boolean isMultipartUpload() {
-        return TransferManagerUtils.shouldUseMultipartUpload(origReq, configuration);
+        return isStreamUploadedInParts
+            || TransferManagerUtils.shouldUseMultipartUpload(origReq, configuration);
     }
 
     public UploadResult call() throws Exception {
@@ -120,6 +149,9 @@ public class UploadCallable implements Callable<UploadResult> {
         if ( isMultipartUpload() ) {
             publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
             return uploadInParts();
+        } else if (TransferManagerUtils.isUploadOfUnknownLength(origReq,
+                s3 instanceof AmazonS3Encryption)) {
+            return uploadStreamOfUnknownLength();
         } else {
             return uploadInOneChunk();
         }
@@ -186,11 +218,16 @@ public class UploadCallable implements Callable<UploadResult> {
                 captureUploadStateIfPossible();
                 uploadPartsInParallel(requestFactory, multipartUploadId);
                 return null;
+            } else if (s3 instanceof AmazonS3EncryptionClient
+                    && configuration.isParallelEncryptedUploadEnabled()) {
+                encryptAndUploadPartsInParallel(requestFactory);
+                return null;
             } else {
                 return uploadPartsInSeries(requestFactory);
             }
         } catch (Exception e) {
             publishProgress(listener, ProgressEventType.TRANSFER_FAILED_EVENT);
+            cancelFutures();
             performAbortMultipartUpload();
             throw e;
         } finally {
@@ -295,6 +332,42 @@ public class UploadCallable implements Callable<UploadResult> {
         }
     }
 
+    /**
+     * Encrypts the parts of a client-side encrypted upload in series on this
+     * thread, while the parts already encrypted are uploaded concurrently on
+     * the thread pool. Encryption pauses while
+     * {@link TransferManagerConfiguration#getStreamUploadBufferCount()}
+     * encrypted parts are waiting to be uploaded. Only used when
+     * {@link TransferManagerConfiguration#isParallelEncryptedUploadEnabled()}.
+     */
+    private void encryptAndUploadPartsInParallel(
+            UploadPartRequestFactory requestFactory) throws Exception {
+        final AmazonS3EncryptionClient encryptionClient = (AmazonS3EncryptionClient) s3;
+        final Semaphore permits = new Semaphore(
+                Math.max(1, configuration.getStreamUploadBufferCount()));
+        final Runnable releasePermit = new Runnable() {
+            public void run() {
+                permits.release();
+            }
+        };
+
+        while (requestFactory.hasMoreRequests()) {
+            if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
+            while (!permits.tryAcquire()) {
+                if (!runPendingPart()) {
+                    permits.acquire();
+                    break;
+                }
+            }
+            checkPartFailure();
+
+            UploadPartRequest request = encryptionClient.encryptPart(
+                    requestFactory.getNextUploadPartRequest());
+            TransferManager.appendMultipartUserAgent(request);
+            submitPartFromMemory(request, true, releasePermit);
+        }
+    }
+
     private Map<Integer, PartSummary> identifyExistingPartsForResume(
             String uploadId) {
         Map<Integer, PartSummary> partNumbers = new HashMap<Integer, PartSummary>();
@@ -318,6 +391,212 @@ public class UploadCallable implements Callable<UploadResult> {
         }
     }
 
+    /**
+     * Uploads an input stream whose length isn't known up front. The stream
+     * is read into a bounded pool of part buffers; if it fits in the first
+     * buffer it's uploaded in a single request, otherwise the full buffers
+     * are uploaded concurrently as the parts of a multipart upload while the
+     * next ones are being filled. Reading stops while all the buffers are in
+     * use, so memory use is bounded regardless of the length of the stream.
+     */
+    private UploadResult uploadStreamOfUnknownLength() throws Exception {
+        final int partSize = (int) Math.min(
+                configuration.getMinimumUploadPartSize(), Integer.MAX_VALUE);
+        final PartBufferPool bufferPool = new PartBufferPool(partSize,
+                Math.max(1, configuration.getStreamUploadBufferCount()));
+        final InputStream input = origReq.getInputStream();
+
+        try {
+            byte[] buffer = bufferPool.acquire();
+            int length = fill(input, buffer);
+            if (length < buffer.length) {
+                return uploadBufferInOneChunk(buffer, length);
+            }
+
+            isStreamUploadedInParts = true;
+            publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
+            multipartUploadId = initiateMultipartUpload(origReq, false);
+
+            long totalBytes = 0;
+            int partNumber = 1;
+            try {
+                while (true) {
+                    if (partNumber > MAXIMUM_UPLOAD_PARTS) {
+                        throw new AmazonClientException("Unable to upload stream: "
+                                + "it doesn't fit in " + MAXIMUM_UPLOAD_PARTS
+                                + " parts of " + partSize
+                                + " bytes; increase the minimum upload part size");
+                    }
+                    submitPartFromMemory(
+                            newBufferedPartRequest(buffer, length, partNumber++,
+                                    length < buffer.length),
+                            false, bufferPool.releaser(buffer));
+                    totalBytes += length;
+                    if (length < buffer.length) break;
+
+                    buffer = bufferPool.tryAcquire();
+                    while (buffer == null) {
+                        buffer = runPendingPart()
+                               ? bufferPool.tryAcquire()
+                               : bufferPool.acquire();
+                    }
+                    checkPartFailure();
+
+                    length = fill(input, buffer);
+                    if (length == 0) {
+                        bufferPool.release(buffer);
+                        break;
+                    }
+                }
+            } catch (Exception e) {
+                publishProgress(listener, ProgressEventType.TRANSFER_FAILED_EVENT);
+                cancelFutures();
+                performAbortMultipartUpload();
+                throw e;
+            }
+
+            transferProgress.setTotalBytesToTransfer(totalBytes);
+            // The upload monitor completes the upload once all the parts are done
+            return null;
+        } finally {
+            try { input.close(); } catch (Exception e) {
+                log.warn("Unable to cleanly close input stream: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Uploads the complete contents of a stream that fit in a single buffer.
+     */
+    private UploadResult uploadBufferInOneChunk(byte[] buffer, int length) {
+        PutObjectRequest req = origReq.clone();
+        req.setInputStream(new ByteArrayInputStream(buffer, 0, length));
+        if (req.getMetadata() == null) req.setMetadata(new ObjectMetadata());
+        req.getMetadata().setContentLength(length);
+        transferProgress.setTotalBytesToTransfer(length);
+
+        PutObjectResult putObjectResult = s3.putObject(req);
+
+        UploadResult uploadResult = new UploadResult();
+        uploadResult.setBucketName(origReq.getBucketName());
+        uploadResult.setKey(origReq.getKey());
+        uploadResult.setETag(putObjectResult.getETag());
+        uploadResult.setVersionId(putObjectResult.getVersionId());
+        return uploadResult;
+    }
+
+    private UploadPartRequest newBufferedPartRequest(byte[] buffer, int length,
+            int partNumber, boolean isLastPart) {
+        UploadPartRequest req = new UploadPartRequest()
+            .withBucketName(origReq.getBucketName())
+            .withKey(origReq.getKey())
+            .withUploadId(multipartUploadId)
+            .withInputStream(new ByteArrayInputStream(buffer, 0, length))
+            .withPartNumber(partNumber)
+            .withPartSize(length);
+        TransferManager.appendMultipartUserAgent(req);
+
+        if (origReq.getSSECustomerKey() != null) req.setSSECustomerKey(origReq.getSSECustomerKey());
+        req.setLastPart(isLastPart);
+
+        req.withGeneralProgressListener(origReq.getGeneralProgressListener())
+           .withRequestMetricCollector(origReq.getRequestMetricCollector())
+           ;
+        return req;
+    }
+
+    /**
+     * Reads from the stream until the buffer is full or the stream ends, and
+     * returns the number of bytes read.
+     */
+    private static int fill(InputStream input, byte[] buffer) throws IOException {
+        int length = 0;
+        while (length < buffer.length) {
+            int bytesRead = input.read(buffer, length, buffer.length - length);
+            if (bytesRead == -1) break;
+            length += bytesRead;
+        }
+        return length;
+    }
+
+    /**
+     * Submits the upload of a part held in memory to the thread pool. The
+     * given callback is run once the part is done, successfully or not, to
+     * free the memory it holds.
+     */
+    private void submitPartFromMemory(final UploadPartRequest request,
+            final boolean isEncrypted, final Runnable onDone) {
+        PartFromMemoryUpload part = new PartFromMemoryUpload(new Callable<PartETag>() {
+            public PartETag call() throws Exception {
+                try {
+                    return isEncrypted
+                         ? ((AmazonS3EncryptionClient) s3).uploadEncryptedPart(request).getPartETag()
+                         : s3.uploadPart(request).getPartETag();
+                } finally {
+                    onDone.run();
+                }
+            }
+        });
+        futures.add(part);
+        threadPool.execute(part);
+    }
+
+    /**
+     * Runs the next part uploaded from memory that hasn't been picked up by
+     * the thread pool yet on this thread, and returns false if there's no
+     * such part. Used while waiting for memory to be freed, so the upload
+     * keeps progressing even if the thread pool is saturated.
+     */
+    private boolean runPendingPart() {
+        while (pendingPartIndex < futures.size()) {
+            PartFromMemoryUpload part = (PartFromMemoryUpload) futures.get(pendingPartIndex++);
+            if (part.runIfNotStarted()) return true;
+        }
+        return false;
+    }
+
+    private void checkPartFailure() {
+        Throwable t = partFailure.get();
+        if (t != null) {
+            throw new AmazonClientException("Unable to upload part: " + t.getMessage(), t);
+        }
+    }
+
+    private void cancelFutures() {
+        for (Future<PartETag> future : futures) {
+            future.cancel(true);
+        }
+    }
+
+    /**
+     * The upload of a part held in memory. Runs at most once, whether it's
+     * picked up by the thread pool or run by the thread producing the parts.
+     */
+    private final class PartFromMemoryUpload extends FutureTask<PartETag> {
+        private final AtomicBoolean started = new AtomicBoolean();
+
+        PartFromMemoryUpload(Callable<PartETag> callable) {
+            super(callable);
+        }
+
+        boolean runIfNotStarted() {
+            if (!started.compareAndSet(false, true)) return false;
+            super.run();
+            return true;
+        }
+
+        @Override
+        public void run() {
+            runIfNotStarted();
+        }
+
+        @Override
+        protected void setException(Throwable t) {
+            partFailure.compareAndSet(null, t);
+            super.setException(t);
+        }
+    }
+
     /**
      * Initiates a multipart upload and returns the upload id
      * @param isUsingEncryption
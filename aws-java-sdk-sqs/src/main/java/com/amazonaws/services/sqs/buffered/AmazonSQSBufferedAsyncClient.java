@@ -20,6 +20,7 @@ package com.amazonaws.services.sqs.buffered;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
 
 import com.amazonaws.AmazonClientException;
@@ -84,7 +85,8 @@ import com.amazonaws.util.VersionInfoUtils;
  * Future receiveMessage calls will be satisfied from the buffer, and only if
  * the buffer is empty  will the calling thread have to wait for the
  * messages to be fetched. The size of the buffer and the maximum number of
- * threads used for prefetching are configurable. <br>
+ * threads used for prefetching are configurable; the number of receive
+ * batches in flight adapts to the demand, up to that maximum. <br>
  *
  * AmazonSQSBufferedAsyncClient is thread-safe.<br>
  * */
@@ -95,17 +97,40 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
     private final CachingMap buffers = new CachingMap( 16, (float) 0.75, true );
     private final AmazonSQSAsync realSQS;
     private final QueueBufferConfig bufferConfigExemplar;
+    private final ExecutorService executor;
+    private final ExecutorService receiveExecutor;
 
     public AmazonSQSBufferedAsyncClient( AmazonSQSAsync paramRealSQS) {
         this( paramRealSQS, new QueueBufferConfig());
     }
 
+    public AmazonSQSBufferedAsyncClient( AmazonSQSAsync paramRealSQS, QueueBufferConfig config) {
+        this( paramRealSQS, config, QueueBuffer.defaultExecutor, QueueBuffer.defaultReceiveExecutor);
+    }
+
+    /**
+     * Constructs a client whose queue buffers run their batches and callbacks
+     * on the given executor, instead of the executors shared by default, which
+     * run the receive batches apart from the sends and callbacks, on a bounded
+     * number of threads each. Each queue being received from keeps up to
+     * {@link QueueBufferConfig#getMaxInflightReceiveBatches()} tasks, which may
+     * long poll, running on the executor; a bounded executor needs more
+     * threads than that, or the sends and callbacks wait behind the long
+     * polls. The executor isn't shut down by this client.
+     */
+    public AmazonSQSBufferedAsyncClient( AmazonSQSAsync paramRealSQS, QueueBufferConfig config, ExecutorService executor) {
+        this( paramRealSQS, config, executor, executor);
+    }
+
     //route all future constructors to the most general one, because validation
     //happens here
-    public AmazonSQSBufferedAsyncClient( AmazonSQSAsync paramRealSQS, QueueBufferConfig config) {
+    private AmazonSQSBufferedAsyncClient( AmazonSQSAsync paramRealSQS, QueueBufferConfig config,
+            ExecutorService executor, ExecutorService receiveExecutor) {
         config.validate();
         realSQS = paramRealSQS;
         bufferConfigExemplar = config;
+        this.executor = executor;
+        this.receiveExecutor = receiveExecutor;
     }
 
 
@@ -396,7 +421,7 @@ public class AmazonSQSBufferedAsyncClient implements AmazonSQSAsync {
         QueueBuffer toReturn = buffers.get(qUrl);
         if ( null == toReturn ) {
             QueueBufferConfig config = new QueueBufferConfig( bufferConfigExemplar );
-            toReturn = new QueueBuffer( config, qUrl, realSQS );
+            toReturn = new QueueBuffer( config, qUrl, realSQS, executor, receiveExecutor );
             buffers.put(qUrl,toReturn);
         }
         return toReturn;
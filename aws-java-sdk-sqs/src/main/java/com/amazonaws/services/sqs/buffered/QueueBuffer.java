@@ -16,9 +16,11 @@ package com.amazonaws.services.sqs.buffered;
 
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import com.amazonaws.AmazonClientException;
@@ -56,20 +58,46 @@ class QueueBuffer {
     private final AmazonSQSAsync realSqs;
     QueueBufferConfig config;
 
-    /** This executor that will be shared among all queue buffers. Since a single JVM can
+    /** The maximum number of threads of the default executor. */
+    static final int DEFAULT_MAX_THREADS = 50;
+
+    /** The maximum number of threads of the default receive executor. */
+    static final int DEFAULT_MAX_RECEIVE_THREADS = 25;
+
+    /** This executor that will be shared among all queue buffers by default. Since a single JVM can
      * access hundreds of queues, it won't do to have hundreds of executors spinning up
      * hundreds of threads for each queue.
      *
+     *  The executor runs the outbound batches and the callbacks, on at most DEFAULT_MAX_THREADS
+     *  threads; the receive batches, which may long poll, run on the defaultReceiveExecutor
+     *  instead, so that they never keep the sends and callbacks waiting. Tasks beyond the
+     *  limit are queued. The threads time out when idle, so an idle buffer uses no threads.
+     *
      *  The DaemonThreadFactory creates daemon threads, which means they won't block the JVM
      *  from exiting if only they are still around.
      *  */
-    static ExecutorService executor = Executors.newCachedThreadPool(new DaemonThreadFactory());;
+    static final ExecutorService defaultExecutor =
+            newBoundedExecutor(DEFAULT_MAX_THREADS, "SQSQueueBufferWorkerThread-");
+
+    /** The executor shared among all queue buffers by default for the receive batches, on at
+     * most DEFAULT_MAX_RECEIVE_THREADS threads; further receive batches wait for a thread. */
+    static final ExecutorService defaultReceiveExecutor =
+            newBoundedExecutor(DEFAULT_MAX_RECEIVE_THREADS, "SQSQueueBufferReceiveThread-");
+
+    /** The executor of this buffer's outbound batches and callbacks. */
+    final ExecutorService executor;
 
     QueueBuffer( QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs) {
+        this(paramConfig, url, sqs, defaultExecutor, defaultReceiveExecutor);
+    }
+
+    QueueBuffer( QueueBufferConfig paramConfig, String url, AmazonSQSAsync sqs,
+            ExecutorService paramExecutor, ExecutorService receiveExecutor) {
         realSqs = sqs;
         config = paramConfig;
+        executor = paramExecutor;
         sendBuffer = new SendQueueBuffer(sqs, executor, paramConfig, url);
-        receiveBuffer =  new ReceiveQueueBuffer(sqs, executor, paramConfig, url);
+        receiveBuffer =  new ReceiveQueueBuffer(sqs, receiveExecutor, paramConfig, url);
     }
 
 
@@ -239,13 +267,31 @@ class QueueBuffer {
      * We need daemon threads in our executor so that we don't keep the process
      * running if our executor threads are the only ones left in the process.
      * */
+    /**
+     * Returns an executor running at most the given number of threads, which
+     * time out when idle, and queueing the tasks beyond.
+     */
+    private static ExecutorService newBoundedExecutor(int maxThreads, String threadNamePrefix) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(maxThreads, maxThreads,
+                60L, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new DaemonThreadFactory(threadNamePrefix));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
     private static class DaemonThreadFactory implements ThreadFactory {
         static AtomicInteger threadCount = new AtomicInteger( 0 );
+        private final String threadNamePrefix;
+
+        DaemonThreadFactory( String threadNamePrefix ) {
+            this.threadNamePrefix = threadNamePrefix;
+        }
+
         public Thread newThread( Runnable r) {
             int threadNumber = threadCount.addAndGet(1);
             Thread thread = new Thread( r );
             thread.setDaemon(true);
-            thread.setName("SQSQueueBufferWorkerThread-" + threadNumber );
+            thread.setName(threadNamePrefix + threadNumber );
             return thread;
         }
 
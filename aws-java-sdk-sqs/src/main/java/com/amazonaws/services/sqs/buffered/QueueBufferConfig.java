@@ -63,7 +63,9 @@ public class QueueBufferConfig {
     /**
      * The maximum number of concurrent receive message batches.  The greater
      * this number, the faster the queue will be pulling messages from the SQS
-     * servers (at the expense of consuming more threads).
+     * servers (at the expense of consuming more threads). The number of
+     * batches in flight adapts to the demand of the consumers, up to this
+     * maximum.
      */
     private int maxInflightReceiveBatches;
 
@@ -267,7 +269,9 @@ public class QueueBufferConfig {
     /**
      * The maximum number of concurrent receive message batches.  The greater
      * this number, the faster the queue will be pulling messages from the SQS
-     * servers (at the expense of consuming more threads).
+     * servers (at the expense of consuming more threads). The number of
+     * batches in flight adapts to the demand of the consumers, up to this
+     * maximum.
      */
 
     public int getMaxInflightReceiveBatches() {
@@ -277,7 +281,9 @@ public class QueueBufferConfig {
     /**
      * The maximum number of concurrent receive message batches.  The greater
      * this number, the faster the queue will be pulling messages from the SQS
-     * servers (at the expense of consuming more threads).
+     * servers (at the expense of consuming more threads). The number of
+     * batches in flight adapts to the demand of the consumers, up to this
+     * maximum.
      */
     public void setMaxInflightReceiveBatches(int maxInflightReceiveBatches) {
         this.maxInflightReceiveBatches = maxInflightReceiveBatches;
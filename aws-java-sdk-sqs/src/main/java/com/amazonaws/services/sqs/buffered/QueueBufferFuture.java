@@ -18,13 +18,9 @@
 package com.amazonaws.services.sqs.buffered;
 
 import java.util.concurrent.Callable;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
 
 import com.amazonaws.AmazonWebServiceRequest;
-import com.amazonaws.handlers.AsyncHandler;
+import com.amazonaws.internal.SettableFuture;
 
 /**
  * QueueBufferFuture class is used to deliver asynchronous results of various
@@ -32,10 +28,7 @@ import com.amazonaws.handlers.AsyncHandler;
  * 
  * QueueBufferFutures are not cancellable
  * */
-class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> implements Future<Res> {
-    private Res result = null;
-    private Exception e = null;
-    private boolean done = false;
+class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> extends SettableFuture<Res> {
     
     /** 
      * callback we should call after the future is done.  may be null 
@@ -49,7 +42,7 @@ class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> implements Fut
      * garbage collected while at least one future it issued is still
      * outstanding.
      */
-    private QueueBuffer issuingBuffer = null;
+    private volatile QueueBuffer issuingBuffer = null;
     
     public QueueBufferFuture() {
         this(null);
@@ -60,19 +53,16 @@ class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> implements Fut
     }
 
     /**
-     * Report that the task this future represents has succeeded.
+     * Calls the callback, if any, once the task this future represents has
+     * succeeded.
      * */
-    public synchronized void setSuccess(Res paramResult) {
-        if (done) return;  //can't mark done twice
-        result = paramResult;
-        done = true;
-        notifyAll();
-        
+    @Override
+    protected void onSuccess(final Res result) {
         //if we have a callback to call, schedule
         //it on a different thread. Who knows what this
         //thread is doing.
         if ( callback != null && issuingBuffer != null ) {
-            QueueBuffer.executor.submit(new Callable<Void>() {
+            issuingBuffer.executor.submit(new Callable<Void>() {
                 public Void call() throws Exception {
                     callback.onSuccess(result);
                     return null;
@@ -83,19 +73,16 @@ class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> implements Fut
     }
 
     /**
-     * Report that the task this future represents has failed.
+     * Calls the callback, if any, once the task this future represents has
+     * failed.
      * */
-    public synchronized void setFailure(Exception paramE) {
-        if (done) return;  //can't mark done twice
-        e = paramE;
-        done = true;
-        notifyAll();
-        
+    @Override
+    protected void onFailure(final Exception e) {
         //if we have a callback to call, schedule
         //it on a different thread. Who knows what this
         //thread is doing.
         if ( callback != null && issuingBuffer != null ) {
-            QueueBuffer.executor.submit(new Callable<Void>() {
+            issuingBuffer.executor.submit(new Callable<Void>() {
                 public Void call() throws Exception {
                     callback.onError(e);
                     return null;
@@ -105,73 +92,8 @@ class QueueBufferFuture<Req extends AmazonWebServiceRequest, Res> implements Fut
         }
 
     }
-
-    @Override
-    public boolean cancel(boolean arg0) {
-        // not cancellable
-        return false;
-    }
     
     public void setBuffer ( QueueBuffer paramBuffer ) {
         issuingBuffer = paramBuffer;
     }
-    
-
-    @Override
-    public Res get() throws InterruptedException, ExecutionException {
-        while (true) {
-            try {
-                return get(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
-            } catch (TimeoutException te) {
-                // shouldn't really happen, since we're specifying a very-very
-                // long wait. but if it does, just loop
-                // and wait more.
-            }
-        }
-    }
-
-    @Override
-    public synchronized Res get(long timeout, TimeUnit tu)
-            throws InterruptedException, ExecutionException,
-            TimeoutException {
-
-        long waitStartMs = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-        long timeoutMs = TimeUnit.MILLISECONDS.convert(timeout, tu);
-        long timeToWaitMs = timeoutMs;
-
-        while (!done) {
-            //if timeToWaitMs is zero, we don't call wait() at all, because wait(0) means 
-            //"wait forever", which is the opposite of what we want.
-            if ( timeToWaitMs <= 0 ) {
-                throw new TimeoutException("Timed out waiting for results after " + timeout + " " + tu);
-            }
-            
-            wait(timeToWaitMs);
-            
-            //compute how long to wait in the next loop
-            long nowMs = TimeUnit.MILLISECONDS.convert(System.nanoTime(), TimeUnit.NANOSECONDS);
-            timeToWaitMs = timeoutMs - ( nowMs - waitStartMs  );
-
-        }
-
-        //if we got here, we are done.  Throw if there's anything to throw, 
-        //otherwise return the result 
-        if (e != null) {
-            throw new ExecutionException(e);
-        }
-
-        // may be null, e.g. for Void futures 
-        return result;
-    }
-
-    @Override
-    public boolean isCancelled() {
-        // not cancellable
-        return false;
-    }
-
-    @Override
-    public synchronized boolean isDone() {
-        return done;
-    }
 }
@@ -19,13 +19,19 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.internal.AdaptiveTarget;
+import com.amazonaws.internal.DrainLock;
 import com.amazonaws.services.sqs.AmazonSQS;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequest;
 import com.amazonaws.services.sqs.model.ChangeMessageVisibilityBatchRequestEntry;
@@ -40,18 +46,35 @@ import com.amazonaws.services.sqs.model.ReceiveMessageResult;
  * pre-fetched and kept in the buffer, as well as the maximum number of threads used to retrieve
  * the messages are configurable. <p>
  *
+ *  The number of receive batches in flight adapts to the demand of the consumers, between one
+ *  and {@link QueueBufferConfig#getMaxInflightReceiveBatches()}: there is at least one batch
+ *  for each waiting receive request, and the number of batches prefetched grows when a receive
+ *  request can't be satisfied from the buffer, and shrinks when a batch comes back empty or
+ *  failed, or when the buffer is full. An idle queue is thus long polled by a single batch
+ *  per waiting receive request. <p>
+ *
+ *  Pre-fetched messages expire before their visibility timeout lapses, once less than a tenth
+ *  of it remains, so that consumers have time to process them. The remaining messages of an
+ *  expired batch are made visible again right away. <p>
+ *
  *  Synchronization strategy:
- *  - Threads must hold the TaskSpawnSyncPoint object monitor to spawn a new task or modify
- *    the number of inflight tasks
- *  - Threads must hold the monitor of the "futures" list to modify the list
- *  - Threads must hold the monitor of the "finishedTasks" list to modify the list
- *  - If you need to lock both futures and finishedTasks, lock futures first and
- *    finishedTasks second
+ *  - Issued futures and finished batches are kept in concurrent queues
+ *  - Futures are matched with finished batches by a single thread at a time, holding the
+ *    drain lock; other threads never wait for the lock, and the holder re-checks both
+ *    queues after releasing it, so that no work is left behind
+ *  - Futures are completed, and expired batches released, after the drain lock is released
+ *  - The number of inflight batches is maintained with compare-and-set
  * */
 public class ReceiveQueueBuffer {
 
     private static Log log = LogFactory.getLog(ReceiveQueueBuffer.class);
 
+    /**
+     * The fraction of the visibility timeout of a pre-fetched message which
+     * must remain for it to be returned to a consumer.
+     */
+    private static final int VISIBILITY_TIMEOUT_MARGIN_DIVISOR = 10;
+
     private final QueueBufferConfig config;
 
     private final String qUrl;
@@ -60,37 +83,64 @@ public class ReceiveQueueBuffer {
 
     private final AmazonSQS sqsClient;
 
-    private long bufferCounter = 0;
+    private final AtomicInteger bufferCounter = new AtomicInteger();
 
     /**
      * This buffer's queue visibility timeout. Used to detect expired message
      * that should not be returned by the {@code receiveMessage} call.
-     * Synchronized by {@code receiveMessageLock}. -1 indicates that the time is
-     * uninitialized.
+     * Initialized under {@code visibilityTimeoutLock}. -1 indicates that the
+     * time is uninitialized.
      */
     private volatile long visibilityTimeoutNanos = -1;
 
-    /**
-     * Used as permits controlling the number of in flight receive batches.
-     * Synchronized by {@code taskSpawnSyncPoint}.
-     */
-    private volatile int inflightReceiveMessageBatches;
+    private final Object visibilityTimeoutLock = new Object();
+
+    /** The number of in flight receive batches. */
+    private final AtomicInteger inflightReceiveMessageBatches = new AtomicInteger();
 
     /**
-     * synchronize on this object to create new receive batches or modify
-     * inflight message count
+     * The number of receive batches to keep in flight, adapted to the demand
+     * of the consumers; between one and the configured maximum.
      */
-    private final Object taskSpawnSyncPoint = new Object();
-
+    private final AdaptiveTarget inflightReceiveMessageBatchesTarget = new AdaptiveTarget(1);
 
     /** shutdown buffer does not retrieve any more messages from sqs */
     volatile boolean shutDown = false;
 
     /** message delivery futures we gave out */
-    private final LinkedList< ReceiveMessageFuture > futures = new LinkedList<ReceiveMessageFuture>();
+    private final Queue<ReceiveMessageFuture> futures = new ConcurrentLinkedQueue<ReceiveMessageFuture>();
+
+    /** The number of futures in {@code futures}. */
+    private final AtomicInteger futureCount = new AtomicInteger();
 
-    /** finished batches are stored in this list. */
-    private LinkedList<ReceiveMessageBatchTask> finishedTasks = new LinkedList<ReceiveMessageBatchTask>();
+    /** finished batches are stored in this queue. */
+    private final Queue<ReceiveMessageBatchTask> finishedTasks = new ConcurrentLinkedQueue<ReceiveMessageBatchTask>();
+
+    /** The number of batches in {@code finishedTasks}. */
+    private final AtomicInteger finishedTaskCount = new AtomicInteger();
+
+    /** Held by the thread matching futures with finished batches. */
+    private final DrainLock drainLock = new DrainLock();
+
+    /** Matches futures with finished batches, holding the drain lock. */
+    private final DrainLock.Drain<List<Runnable>> futureFiller = new DrainLock.Drain<List<Runnable>>() {
+        @Override
+        public boolean hasWork() {
+            return !futures.isEmpty() && !finishedTasks.isEmpty();
+        }
+
+        @Override
+        public List<Runnable> drain() {
+            return fillFutures();
+        }
+
+        @Override
+        public void afterDrain(List<Runnable> completions) {
+            for ( Runnable completion : completions ) {
+                completion.run();
+            }
+        }
+    };
 
     ReceiveQueueBuffer( AmazonSQS paramSQS, Executor paramExecutor, QueueBufferConfig paramConfig, String url ) {
         config = paramConfig;
@@ -107,7 +157,7 @@ public class ReceiveQueueBuffer {
     public void shutdown() {
         shutDown = true;
         try {
-        while ( inflightReceiveMessageBatches > 0 )
+        while ( inflightReceiveMessageBatches.get() > 0 )
             Thread.sleep(100);
         } catch( InterruptedException e) {
             Thread.currentThread().interrupt();
@@ -133,11 +183,17 @@ public class ReceiveQueueBuffer {
         if ( rq.getMaxNumberOfMessages() != null ) {
             numMessages = rq.getMaxNumberOfMessages();
         }
-        QueueBufferFuture<ReceiveMessageRequest,ReceiveMessageResult> toReturn = issueFuture(numMessages, callback);
+        ReceiveMessageFuture toReturn = issueFuture(numMessages, callback);
 
         //attempt to satisfy it right away...
         satisfyFuturesFromBuffer();
 
+        //the buffer couldn't keep up with the consumers, so fetch more
+        //batches at a time
+        if ( !toReturn.isDone() ) {
+            adaptInflightTarget(1);
+        }
+
         //spawn more receive tasks if we need them...
         spawnMoreReceiveTasks();
 
@@ -145,54 +201,77 @@ public class ReceiveQueueBuffer {
     }
 
     /**
-     * Creates and returns a new future object. Sleeps if the list of
-     * already-issued but as yet unsatisfied futures is over a throttle limit.
+     * Creates and returns a new future object.
      *
      * @return never null
      */
     private ReceiveMessageFuture issueFuture( int size, QueueBufferCallback<ReceiveMessageRequest, ReceiveMessageResult> callback) {
-        synchronized( futures )    {
-            ReceiveMessageFuture theFuture = new ReceiveMessageFuture(callback, size);
-            futures.addLast(theFuture);
-            return theFuture;
-        }
+        ReceiveMessageFuture theFuture = new ReceiveMessageFuture(callback, size);
+        futures.add(theFuture);
+        futureCount.incrementAndGet();
+        return theFuture;
     }
 
     /**
      * Attempts to satisfy some or all of the already-issued futures from the
      * local buffer. If the buffer is empty or there are no futures, this method
-     * won't do anything.
+     * won't do anything. Returns without waiting if another thread is already
+     * doing so.
      * */
     private void satisfyFuturesFromBuffer()    {
-        synchronized( futures )    {
-            synchronized( finishedTasks ) {
-                //attempt to satisfy futures until we run out of either futures or
-                //finished tasks
-                while ( (!futures.isEmpty())  &&  (!finishedTasks.isEmpty()) )    {
-                    ReceiveMessageFuture currentFuture = futures.poll();
-                    fillFuture( currentFuture);
-                }
+        drainLock.drain(futureFiller);
+    }
+
+    /**
+     * Attempts to satisfy futures until we run out of either futures or
+     * finished tasks, and returns the completion of the filled futures and
+     * the release of the expired batches, which are run after the drain lock
+     * is released.
+     *
+     * this method assumes that you are holding the drain lock */
+    private List<Runnable> fillFutures() {
+        List<Runnable> completions = new ArrayList<Runnable>();
+        List<ReceiveMessageBatchTask> expired = new ArrayList<ReceiveMessageBatchTask>();
+        while ( !futures.isEmpty() )    {
+            discardExpiredTasks( expired );
+            if ( finishedTasks.isEmpty() ) {
+                break;
             }
+            final ReceiveMessageFuture currentFuture = futures.poll();
+            futureCount.decrementAndGet();
+            fillFuture( currentFuture, expired );
+            completions.add(new Runnable() {
+                public void run() {
+                    currentFuture.complete();
+                }
+            });
+        }
+        for ( final ReceiveMessageBatchTask t : expired ) {
+            completions.add(new Runnable() {
+                public void run() {
+                    t.clear();
+                }
+            });
         }
+        return completions;
     }
 
     /**
      * Fills the future with whatever results were received by the full batch
      * currently at the head of the completed batch queue.  Those results may be retrieved
-     * messages, or an exception.
+     * messages, or an exception.  The future is completed by the caller.
      *
-     * this method assumes that you are holding the finished tasks lock
-     * locks when invoking it.  violate this assumption at
+     * this method assumes that you are holding the drain lock
+     * when invoking it.  violate this assumption at
      * your own peril */
-    private void fillFuture( ReceiveMessageFuture f ){
+    private void fillFuture( ReceiveMessageFuture f, List<ReceiveMessageBatchTask> expired ){
         ReceiveMessageResult r = new ReceiveMessageResult();
         LinkedList<Message> messages = new LinkedList<Message>();
         r.setMessages(messages);
         Exception exception = null;
 
-        if ( !finishedTasks.isEmpty() ) {
-            ReceiveMessageBatchTask t = finishedTasks.getFirst();
-
+        ReceiveMessageBatchTask t = finishedTasks.peek();
+        if ( t != null ) {
             exception = t.getException();
             int retrieved = 0;
             boolean batchDone = false;
@@ -214,7 +293,7 @@ public class ReceiveQueueBuffer {
             //we may have just drained the batch.
             batchDone = batchDone || t.isEmpty() || ( exception != null );
             if ( batchDone) {
-                finishedTasks.removeFirst();
+                removeFinishedTask(expired);
             }
             r.setMessages(messages);
         }
@@ -224,27 +303,59 @@ public class ReceiveQueueBuffer {
         //report that in the Future.  Otherwise, we will fill
         //the future with the receive result
         if ( exception != null )
-            f.setFailure(exception);
+            f.setResult(null, exception);
         else
-            f.setSuccess(r);
+            f.setResult(r, null);
 
         //now, a bit of maintenance.  remove empty non-exception-bearing
         //batches so we can get new ones.
-        while ( !finishedTasks.isEmpty() ) {
-            ReceiveMessageBatchTask t = finishedTasks.getFirst();
+        while ( (t = finishedTasks.peek()) != null ) {
             if ( (!t.isEmpty()) || (t.getException() != null) ) {
                 //if we found a finished task that has useful content,
                 //our cleanup is done
                 break;
             }
             //throw away the empty batch.
-            finishedTasks.removeFirst();
+            removeFinishedTask(expired);
+        }
+    }
+
+    /**
+     * Removes the batches at the head of the finished batches whose messages
+     * expired, collecting them to be released.
+     *
+     * this method assumes that you are holding the drain lock */
+    private void discardExpiredTasks( List<ReceiveMessageBatchTask> expired ) {
+        ReceiveMessageBatchTask t;
+        while ( (t = finishedTasks.peek()) != null
+                && t.getException() == null && t.isExpired() ) {
+            removeFinishedTask(expired);
         }
     }
 
+    /**
+     * Removes the batch at the head of the finished batches, collecting it
+     * to be released if its messages expired.
+     */
+    private void removeFinishedTask( List<ReceiveMessageBatchTask> expired ) {
+        ReceiveMessageBatchTask t = finishedTasks.poll();
+        finishedTaskCount.decrementAndGet();
+        if ( !t.isEmpty() && t.isExpired() ) {
+            expired.add(t);
+        }
+    }
+
+    /**
+     * Adjusts the number of receive batches to keep in flight by the given
+     * delta, within one and the configured maximum.
+     */
+    private void adaptInflightTarget( int delta ) {
+        inflightReceiveMessageBatchesTarget.adjust(delta, config.getMaxInflightReceiveBatches());
+    }
+
     /**
      * maybe create more receive tasks. extra receive tasks won't be created if
-     * we are already at the maximum number of receive tasks, or if we are at
+     * we are already at the target number of receive tasks, or if we are at
      * the maximum number of prefetched buffers
      */
     private void spawnMoreReceiveTasks() {
@@ -255,19 +366,52 @@ public class ReceiveQueueBuffer {
         int desiredBatches = config.getMaxDoneReceiveBatches();
         desiredBatches = desiredBatches < 1 ? 1 : desiredBatches;
 
-        synchronized( finishedTasks ) {
-            if (  finishedTasks.size() >= desiredBatches )
-                return;
+        int finished = finishedTaskCount.get();
+        if (  finished >= desiredBatches )
+            return;
 
-            //if we have some finished batches already, and
-            //existing inflight batches will bring us to the limit,
-            //don't spawn more. if our finished tasks cache is empty, we will
-            //always spawn a thread.
-            if ( finishedTasks.size() > 0 && ( finishedTasks.size() + inflightReceiveMessageBatches ) >= desiredBatches )
+        initVisibilityTimeout();
+
+        //must allow at least one inflight receive task, or receive won't
+        //work at all. keep a batch in flight for each waiting future, so
+        //that none waits for the long polls of the others. if we have some
+        //finished batches already, don't let inflight batches take us over
+        //the limit.
+        int max = Math.max(config.getMaxInflightReceiveBatches(), 1);
+        int demand = Math.max(inflightReceiveMessageBatchesTarget.get(), futureCount.get());
+        int target = Math.min(Math.min(demand, max), desiredBatches - finished);
+        while (true) {
+            int inflight = inflightReceiveMessageBatches.get();
+            if ( inflight >= target ) {
                 return;
+            }
+            if ( !inflightReceiveMessageBatches.compareAndSet(inflight, inflight + 1) ) {
+                continue;
+            }
+            ReceiveMessageBatchTask task = new ReceiveMessageBatchTask(this );
+            int batchNumber = bufferCounter.incrementAndGet();
+            if (log.isTraceEnabled()) {
+                log.trace("Spawned receive batch #" + batchNumber + " (" + (inflight + 1)
+                        + " of " + target + " inflight) for queue " + qUrl);
+            }
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                inflightReceiveMessageBatches.decrementAndGet();
+                throw new AmazonClientException("Unable to fetch messages from queue " + qUrl, e);
+            }
         }
+    }
 
-        synchronized (taskSpawnSyncPoint) {
+    /**
+     * Retrieves the visibility timeout of the queue the first time it's
+     * needed.
+     */
+    private void initVisibilityTimeout() {
+        if (visibilityTimeoutNanos != -1) {
+            return;
+        }
+        synchronized (visibilityTimeoutLock) {
             if (visibilityTimeoutNanos == -1) {
                 GetQueueAttributesRequest request = new GetQueueAttributesRequest().
                         withQueueUrl(qUrl).
@@ -276,22 +420,6 @@ public class ReceiveQueueBuffer {
                 long visibilityTimeoutSeconds = Long.parseLong(sqsClient.getQueueAttributes( request ).getAttributes().get("VisibilityTimeout"));
                 visibilityTimeoutNanos = TimeUnit.NANOSECONDS.convert(visibilityTimeoutSeconds, TimeUnit.SECONDS);
             }
-
-            int max = config.getMaxInflightReceiveBatches();
-            //must allow at least one inflight receive task, or receive won't
-            //work at all.
-            max = max > 0 ? max : 1;
-            int toSpawn =  max - inflightReceiveMessageBatches;
-            if (toSpawn > 0) {
-                ReceiveMessageBatchTask task = new ReceiveMessageBatchTask(this );
-                ++inflightReceiveMessageBatches;
-                ++bufferCounter;
-                if (log.isTraceEnabled()) {
-                    log.trace("Spawned receive batch #" + bufferCounter + " (" + inflightReceiveMessageBatches
-                            + " of " + max + " inflight) for queue " + qUrl);
-                }
-                executor.execute(task);
-            }
         }
     }
 
@@ -302,15 +430,19 @@ public class ReceiveQueueBuffer {
      * */
     void reportBatchFinished( ReceiveMessageBatchTask batch )
     {
-        synchronized( finishedTasks ) {
-            finishedTasks.addLast( batch );
-            if ( log.isTraceEnabled() ) {
-                log.info("Queue " + qUrl + " now has " + finishedTasks.size() + " receive results cached ");
-            }
+        //checked before the batch can be drained by the consumers
+        boolean isIdleOrFailing = batch.getException() != null || batch.isEmpty();
+        finishedTasks.add( batch );
+        int finished = finishedTaskCount.incrementAndGet();
+        if ( log.isTraceEnabled() ) {
+            log.trace("Queue " + qUrl + " now has " + finished + " receive results cached ");
         }
-        synchronized( taskSpawnSyncPoint )    {
-            --inflightReceiveMessageBatches;
+        //fetch fewer batches at a time if the queue is idle or failing, or if
+        //the consumers can't keep up
+        if ( isIdleOrFailing || finished >= config.getMaxDoneReceiveBatches() ) {
+            adaptInflightTarget(-1);
         }
+        inflightReceiveMessageBatches.decrementAndGet();
         satisfyFuturesFromBuffer();
         spawnMoreReceiveTasks();
     }
@@ -323,8 +455,14 @@ public class ReceiveQueueBuffer {
         boolean done = false;
         while ( !done ) {
             ReceiveMessageBatchTask currentBatch = null;
-            synchronized (finishedTasks) {
+            drainLock.lock();
+            try {
                 currentBatch = finishedTasks.poll();
+                if ( currentBatch != null ) {
+                    finishedTaskCount.decrementAndGet();
+                }
+            } finally {
+                drainLock.unlock();
             }
 
             if ( currentBatch != null ) {
@@ -341,6 +479,10 @@ public class ReceiveQueueBuffer {
         /* how many messages did the request ask for*/
         private int requestedSize;
 
+        /* the outcome, set while holding the drain lock */
+        private ReceiveMessageResult result;
+        private Exception exception;
+
         ReceiveMessageFuture( int paramSize ) {
             this(null,paramSize);
         }
@@ -354,6 +496,23 @@ public class ReceiveQueueBuffer {
             return requestedSize;
         }
 
+        /**
+         * Sets the outcome of the future, which is signalled by
+         * {@link #complete()}.
+         */
+        void setResult( ReceiveMessageResult paramResult, Exception paramException ) {
+            result = paramResult;
+            exception = paramException;
+        }
+
+        /** Signals the outcome of the future. */
+        void complete() {
+            if ( exception != null )
+                setFailure(exception);
+            else
+                setSuccess(result);
+        }
+
     }
 
     /**
@@ -367,6 +526,7 @@ public class ReceiveQueueBuffer {
         private Exception exception = null;
         private List<Message> messages;
         private long visibilityDeadlineNano;
+        private long visibilityTimeoutMarginNano;
         private boolean open = false;
         private ReceiveQueueBuffer parentBuffer;
 
@@ -417,9 +577,9 @@ public class ReceiveQueueBuffer {
             if (!open)
                 throw new IllegalStateException("batch is not open");
 
-            // our messages expired.
-            if ( System.nanoTime() > visibilityDeadlineNano ) {
-                messages.clear();
+            // our messages expired; they are released when the batch is
+            // removed from the buffer.
+            if ( isExpired() ) {
                 return null;
             }
 
@@ -429,6 +589,14 @@ public class ReceiveQueueBuffer {
                 return messages.remove(messages.size() - 1);
         }
 
+        /**
+         * Returns true if too little of the visibility timeout of the
+         * messages of this batch remains for them to be returned.
+         */
+        synchronized boolean isExpired() {
+            return System.nanoTime() > visibilityDeadlineNano - visibilityTimeoutMarginNano;
+        }
+
         /**
          * Nacks and clears all messages remaining in the batch.
          */
@@ -436,7 +604,7 @@ public class ReceiveQueueBuffer {
             if (!open)
                 throw new IllegalStateException("batch is not open");
 
-            if (System.nanoTime() < visibilityDeadlineNano) {
+            if (!messages.isEmpty() && System.nanoTime() < visibilityDeadlineNano) {
                 ChangeMessageVisibilityBatchRequest batchRequest = new ChangeMessageVisibilityBatchRequest()
                 .withQueueUrl(qUrl);
                 ResultConverter.appendUserAgent(batchRequest, AmazonSQSBufferedAsyncClient.USER_AGENT);
@@ -476,10 +644,13 @@ public class ReceiveQueueBuffer {
                 ReceiveMessageRequest request = new ReceiveMessageRequest(qUrl).withMaxNumberOfMessages(config.getMaxBatchSize());
                 ResultConverter.appendUserAgent(request, AmazonSQSBufferedAsyncClient.USER_AGENT);
 
+                long timeoutNanos = visibilityTimeoutNanos;
                 if ( config.getVisibilityTimeoutSeconds() > 0 ) {
                     request.setVisibilityTimeout(config.getVisibilityTimeoutSeconds());
-                    visibilityDeadlineNano = System.nanoTime() + TimeUnit.NANOSECONDS.convert(config.getVisibilityTimeoutSeconds(), TimeUnit.SECONDS);
+                    timeoutNanos = TimeUnit.NANOSECONDS.convert(config.getVisibilityTimeoutSeconds(), TimeUnit.SECONDS);
+                    visibilityDeadlineNano = System.nanoTime() + timeoutNanos;
                 }
+                visibilityTimeoutMarginNano = timeoutNanos / VISIBILITY_TIMEOUT_MARGIN_DIVISOR;
 
                 if ( config.isLongPoll() ) {
                     request.withWaitTimeSeconds(config.getLongPollWaitTimeoutSeconds());
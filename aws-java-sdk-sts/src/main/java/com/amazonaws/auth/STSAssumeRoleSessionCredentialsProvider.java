@@ -15,8 +15,6 @@
 
 package com.amazonaws.auth;
 
-import java.util.Date;
-
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.internal.StaticCredentialsProvider;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
@@ -29,24 +27,24 @@ import com.amazonaws.services.securitytoken.model.Credentials;
  * AWSCredentialsProvider implementation that uses the AWS Security Token
  * Service to assume a Role and create temporary, short-lived sessions to use
  * for authentication.
+ * <p>
+ * Sessions are renewed in the background ahead of their expiration; see
+ * {@link AbstractRefreshingCredentialsProvider}.
  */
-public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsProvider {
+public class STSAssumeRoleSessionCredentialsProvider extends AbstractRefreshingCredentialsProvider {
 
     /** Default duration for started sessions. */
     public static final int DEFAULT_DURATION_SECONDS = 900;
 
-    /** Time before expiry within which credentials will be renewed. */
+    /** Time before expiry within which credentials must be renewed before use. */
     private static final int EXPIRY_TIME_MILLIS = 60 * 1000;
 
+    /** Time before expiry within which credentials are renewed in the background. */
+    private static final int PREFETCH_TIME_MILLIS = 5 * 60 * 1000;
+
     /** The client for starting STS sessions. */
     private final AWSSecurityTokenService securityTokenService;
 
-    /** The current session credentials. */
-    private AWSSessionCredentials sessionCredentials;
-
-    /** The expiration time for the current session credentials. */
-    private Date sessionCredentialsExpiration;
-
     /** The arn of the role to be assumed. */
     private String roleArn;
 
@@ -173,6 +171,8 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
      */
     
     private STSAssumeRoleSessionCredentialsProvider(Builder builder) {
+        super(EXPIRY_TIME_MILLIS, PREFETCH_TIME_MILLIS);
+
          /**
          * Passing two types of credential interfaces is not permitted
          */
@@ -229,21 +229,7 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
      */
     public void setSTSClientEndpoint(String endpoint) {
         securityTokenService.setEndpoint(endpoint);
-        sessionCredentials = null;
-    }
-
-    
-    @Override
-    public AWSCredentials getCredentials() {
-        if (needsNewSession()) {
-            startSession();
-        }
-        return sessionCredentials;
-    }
-
-    @Override
-    public void refresh() {
-        startSession();
+        invalidate();
     }
 
     /**
@@ -252,7 +238,8 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
      * class then vends the short lived session credentials for the assumed Role
      * sent back from STS.
      */
-    private void startSession() {
+    @Override
+    protected ExpiringCredentials loadCredentials() {
         AssumeRoleRequest assumeRoleRequest = new AssumeRoleRequest()
             .withRoleArn(roleArn).withDurationSeconds(DEFAULT_DURATION_SECONDS)
             .withRoleSessionName(roleSessionName);
@@ -262,24 +249,9 @@ public class STSAssumeRoleSessionCredentialsProvider implements AWSCredentialsPr
         AssumeRoleResult assumeRoleResult = securityTokenService.assumeRole(assumeRoleRequest);
         Credentials stsCredentials = assumeRoleResult.getCredentials();
 
-        sessionCredentials = new BasicSessionCredentials(stsCredentials.getAccessKeyId(),
-                stsCredentials.getSecretAccessKey(), stsCredentials.getSessionToken());
-        sessionCredentialsExpiration = stsCredentials.getExpiration();
-    }
-
-    /**
-     * Returns true if a new STS session needs to be started. A new STS session
-     * is needed when no session has been started yet, or if the last session is
-     * within {@link #EXPIRY_TIME_MILLIS} seconds of expiring.
-     * 
-     * @return True if a new STS session needs to be started.
-     */
-    private boolean needsNewSession() {
-        if (sessionCredentials == null) {
-            return true;
-        }
-        long timeRemaining = sessionCredentialsExpiration.getTime() - System.currentTimeMillis();
-        return timeRemaining < EXPIRY_TIME_MILLIS;
+        return new ExpiringCredentials(new BasicSessionCredentials(stsCredentials.getAccessKeyId(),
+                stsCredentials.getSecretAccessKey(), stsCredentials.getSessionToken()),
+                stsCredentials.getExpiration());
     }
     
     
@@ -15,8 +15,6 @@
 
 package com.amazonaws.auth;
 
-import java.util.Date;
-
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
@@ -27,21 +25,23 @@ import com.amazonaws.services.securitytoken.model.GetSessionTokenResult;
 /**
  * AWSCredentialsProvider implementation that uses the AWS Security Token
  * Service to create temporary, short-lived sessions to use for authentication.
+ * <p>
+ * Sessions are renewed in the background ahead of their expiration; see
+ * {@link AbstractRefreshingCredentialsProvider}.
  */
-public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
+public class STSSessionCredentialsProvider extends AbstractRefreshingCredentialsProvider {
 
     /** Default duration for started sessions */
     public static final int DEFAULT_DURATION_SECONDS = 3600;
 
-    /** The client for starting STS sessions */
-    private final AWSSecurityTokenService securityTokenService;
+    /** Time before expiry within which credentials must be renewed before use. */
+    private static final int EXPIRY_TIME_MILLIS = 60 * 1000;
 
-    /** The current session credentials */
-    private AWSSessionCredentials sessionCredentials;
-
-    /** The expiration time for the current session credentials */
-    private Date sessionCredentialsExpiration;
+    /** Time before expiry within which credentials are renewed in the background. */
+    private static final int PREFETCH_TIME_MILLIS = 5 * 60 * 1000;
 
+    /** The client for starting STS sessions */
+    private final AWSSecurityTokenService securityTokenService;
 
     /**
      * Constructs a new STSSessionCredentialsProvider, which will use the
@@ -70,6 +70,7 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      *            Client configuration connection parameters.
      */
     public STSSessionCredentialsProvider(AWSCredentials longLivedCredentials, ClientConfiguration clientConfiguration) {
+        super(EXPIRY_TIME_MILLIS, PREFETCH_TIME_MILLIS);
         securityTokenService = new AWSSecurityTokenServiceClient(longLivedCredentials, clientConfiguration);
     }
 
@@ -85,6 +86,7 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      *            account.
      */
     public STSSessionCredentialsProvider(AWSCredentialsProvider longLivedCredentialsProvider) {
+        super(EXPIRY_TIME_MILLIS, PREFETCH_TIME_MILLIS);
         securityTokenService = new AWSSecurityTokenServiceClient(longLivedCredentialsProvider);
     }
 
@@ -102,6 +104,7 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      *            Client configuration connection parameters.
      */
     public STSSessionCredentialsProvider(AWSCredentialsProvider longLivedCredentialsProvider, ClientConfiguration clientConfiguration) {
+        super(EXPIRY_TIME_MILLIS, PREFETCH_TIME_MILLIS);
         securityTokenService = new AWSSecurityTokenServiceClient(longLivedCredentialsProvider, clientConfiguration);
     }
 
@@ -119,19 +122,7 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      */
     public void setSTSClientEndpoint(String endpoint) {
         securityTokenService.setEndpoint(endpoint);
-        sessionCredentials = null;
-    }
-
-    @Override
-    public AWSCredentials getCredentials() {
-        if (needsNewSession()) startSession();
-
-        return sessionCredentials;
-    }
-
-    @Override
-    public void refresh() {
-        startSession();
+        invalidate();
     }
 
     /**
@@ -139,30 +130,17 @@ public class STSSessionCredentialsProvider implements AWSCredentialsProvider {
      * Service (STS) with the long lived AWS credentials. This class then vends
      * the short lived session credentials sent back from STS.
      */
-    private void startSession() {
+    @Override
+    protected ExpiringCredentials loadCredentials() {
         GetSessionTokenResult sessionTokenResult = securityTokenService
                 .getSessionToken(new GetSessionTokenRequest().withDurationSeconds(DEFAULT_DURATION_SECONDS));
         Credentials stsCredentials = sessionTokenResult.getCredentials();
 
-        sessionCredentials = new BasicSessionCredentials(
+        return new ExpiringCredentials(new BasicSessionCredentials(
                 stsCredentials.getAccessKeyId(),
                 stsCredentials.getSecretAccessKey(),
-                stsCredentials.getSessionToken());
-        sessionCredentialsExpiration = stsCredentials.getExpiration();
-    }
-
-    /**
-     * Returns true if a new STS session needs to be started. A new STS session
-     * is needed when no session has been started yet, or if the last session is
-     * within 60 seconds of expiring.
-     *
-     * @return True if a new STS session needs to be started.
-     */
-    private boolean needsNewSession() {
-        if (sessionCredentials == null) return true;
-
-        long timeRemaining = sessionCredentialsExpiration.getTime() - System.currentTimeMillis();
-        return timeRemaining < (60 * 1000);
+                stsCredentials.getSessionToken()),
+                stsCredentials.getExpiration());
     }
 
 }
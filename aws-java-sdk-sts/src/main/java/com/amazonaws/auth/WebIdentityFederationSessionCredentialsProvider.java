@@ -15,8 +15,6 @@
 
 package com.amazonaws.auth;
 
-import java.util.Date;
-
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenService;
 import com.amazonaws.services.securitytoken.AWSSecurityTokenServiceClient;
@@ -27,8 +25,11 @@ import com.amazonaws.services.securitytoken.model.Credentials;
 /**
  * AWSCredentialsProvider implementation that uses the AWS Security Token
  * Service to create temporary, short-lived sessions to use for authentication.
+ * <p>
+ * Sessions are renewed in the background ahead of the refresh threshold; see
+ * {@link AbstractRefreshingCredentialsProvider}.
  */
-public class WebIdentityFederationSessionCredentialsProvider implements AWSCredentialsProvider {
+public class WebIdentityFederationSessionCredentialsProvider extends AbstractRefreshingCredentialsProvider {
 
     /** Default duration for started sessions */
     public static final int DEFAULT_DURATION_SECONDS = 3600;
@@ -36,21 +37,21 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
     /** Default threshold for refreshing session credentials */
     public static final int DEFAULT_THRESHOLD_SECONDS = 500;
 
+    /**
+     * Time before the refresh threshold within which session credentials are
+     * renewed in the background.
+     */
+    private static final int PREFETCH_TIME_SECONDS = 300;
+
     /** The client for starting STS sessions */
     private final AWSSecurityTokenService securityTokenService;
 
-    /** The current session credentials */
-    private AWSSessionCredentials sessionCredentials;
-
-    /** The expiration time for the current session credentials */
-    private Date sessionCredentialsExpiration;
-
     private final String wifToken;
     private final String wifProvider;
     private final String roleArn;
-    private int sessionDuration;
-    private int refreshThreshold;
-    private String subjectFromWIF;
+    private volatile int sessionDuration;
+    private volatile int refreshThreshold;
+    private volatile String subjectFromWIF;
 
     /**
      * Constructs a new WebIdentityFederationSessionCredentialsProvider, which will use the
@@ -107,6 +108,7 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
      *            Preconfigured STS client to make requests with
      */
     public WebIdentityFederationSessionCredentialsProvider(String wifToken, String wifProvider, String roleArn, AWSSecurityTokenService stsClient) {
+        super(DEFAULT_THRESHOLD_SECONDS * 1000L, (DEFAULT_THRESHOLD_SECONDS + PREFETCH_TIME_SECONDS) * 1000L);
         this.securityTokenService = stsClient; 
         this.wifProvider = wifProvider;
         this.wifToken = wifToken;
@@ -115,18 +117,6 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
         this.refreshThreshold = DEFAULT_THRESHOLD_SECONDS;
     }
 
-    @Override
-    public AWSCredentials getCredentials() {
-        if (needsNewSession()) startSession();
-
-        return sessionCredentials;
-    }
-
-    @Override
-    public void refresh() {
-        startSession();
-    }
-
    /**
      * Set the duration of the session credentials created by this client in
      * seconds. Values must be supported by AssumeRoleWithWebIdentityRequest.
@@ -186,6 +176,8 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
      *              provider
      */
     public void setRefreshThreshold(int refreshThreshold) {
+        setRefreshThresholds(refreshThreshold * 1000L,
+                (refreshThreshold + PREFETCH_TIME_SECONDS) * 1000L);
         this.refreshThreshold = refreshThreshold;
     }
 
@@ -241,7 +233,8 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
      * Service (STS) with the long lived AWS credentials. This class then vends
      * the short lived session credentials sent back from STS.
      */
-    private void startSession() {
+    @Override
+    protected ExpiringCredentials loadCredentials() {
         AssumeRoleWithWebIdentityResult sessionTokenResult = securityTokenService
                 .assumeRoleWithWebIdentity(new AssumeRoleWithWebIdentityRequest().withWebIdentityToken(wifToken)
                         .withProviderId(wifProvider)
@@ -252,25 +245,11 @@ public class WebIdentityFederationSessionCredentialsProvider implements AWSCrede
 
         subjectFromWIF = sessionTokenResult.getSubjectFromWebIdentityToken();
 
-        sessionCredentials = new BasicSessionCredentials(
+        return new ExpiringCredentials(new BasicSessionCredentials(
                 stsCredentials.getAccessKeyId(),
                 stsCredentials.getSecretAccessKey(),
-                stsCredentials.getSessionToken());
-        sessionCredentialsExpiration = stsCredentials.getExpiration();
-    }
-
-    /**
-     * Returns true if a new STS session needs to be started. A new STS session
-     * is needed when no session has been started yet, or if the last session is
-     * within the configured refresh threshold.
-     *
-     * @return True if a new STS session needs to be started.
-     */
-    private boolean needsNewSession() {
-        if (sessionCredentials == null) return true;
-
-        long timeRemaining = sessionCredentialsExpiration.getTime() - System.currentTimeMillis();
-        return timeRemaining < (this.refreshThreshold * 1000);
+                stsCredentials.getSessionToken()),
+                stsCredentials.getExpiration());
     }
 
 }